@@ -0,0 +1,218 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.HashMap;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+
+/**
+ * Immutable copy of the structure of a graph in a few primitive arrays.
+ * 
+ * <p>
+ * Nodes are numbered like in the graph at the time of the copy (see
+ * {@link org.graphstream.graph.Element#getIndex()}). The edges that can be
+ * followed from node i are the entries between {@link #getFirst(int)
+ * getFirst(i)} and {@link #getFirst(int) getFirst(i+1)} (excluded) of the
+ * target and weight arrays. An undirected edge appears once in each
+ * direction.
+ * </p>
+ * 
+ * <p>
+ * Since it never changes, this copy can be shared by any number of threads
+ * while the graph itself continues to evolve.
+ * </p>
+ */
+public class AdjacencyArrays {
+	// Attribute
+
+	/**
+	 * Identifiers of the nodes.
+	 */
+	protected String[] ids;
+
+	/**
+	 * Index of each node identifier.
+	 */
+	protected HashMap<String, Integer> indices;
+
+	/**
+	 * Start of the edges of each node, plus the total number of entries.
+	 */
+	protected int[] first;
+
+	/**
+	 * Node reached by each entry.
+	 */
+	protected int[] target;
+
+	/**
+	 * Weight of each entry, null if the graph is not weighted.
+	 */
+	protected float[] weight;
+
+	// Construction
+
+	/**
+	 * Copy the structure of a graph.
+	 * 
+	 * @param graph
+	 *            The graph to copy.
+	 * @param weightAttribute
+	 *            Edge attribute giving the weights, or null to copy no
+	 *            weight. Edges without this attribute weight 1.
+	 */
+	public AdjacencyArrays(Graph graph, String weightAttribute) {
+		this(graph, weightAttribute, false);
+	}
+
+	/**
+	 * Copy the structure of a graph, possibly ignoring the direction of
+	 * edges.
+	 * 
+	 * @param graph
+	 *            The graph to copy.
+	 * @param weightAttribute
+	 *            Edge attribute giving the weights, or null to copy no
+	 *            weight. Edges without this attribute weight 1.
+	 * @param undirected
+	 *            If true, directed edges also appear in both directions.
+	 */
+	public AdjacencyArrays(Graph graph, String weightAttribute,
+			boolean undirected) {
+		int n = graph.getNodeCount();
+
+		ids = new String[n];
+		indices = new HashMap<String, Integer>(n * 2);
+		first = new int[n + 1];
+
+		for (int i = 0; i < n; i++) {
+			ids[i] = graph.getNode(i).getId();
+			indices.put(ids[i], i);
+		}
+
+		for (Edge edge : graph.getEachEdge()) {
+			first[edge.getSourceNode().getIndex() + 1]++;
+
+			if (undirected || !edge.isDirected())
+				first[edge.getTargetNode().getIndex() + 1]++;
+		}
+
+		for (int i = 0; i < n; i++)
+			first[i + 1] += first[i];
+
+		int[] fill = new int[n];
+		target = new int[first[n]];
+
+		if (weightAttribute != null)
+			weight = new float[first[n]];
+
+		for (Edge edge : graph.getEachEdge()) {
+			int s = edge.getSourceNode().getIndex();
+			int t = edge.getTargetNode().getIndex();
+			float w = 1;
+
+			if (weightAttribute != null && edge.hasNumber(weightAttribute))
+				w = (float) edge.getNumber(weightAttribute);
+
+			add(s, t, w, fill);
+
+			if (undirected || !edge.isDirected())
+				add(t, s, w, fill);
+		}
+	}
+
+	// Access
+
+	/**
+	 * Number of nodes.
+	 */
+	public int getNodeCount() {
+		return ids.length;
+	}
+
+	/**
+	 * Number of entries, that is directed edges plus twice undirected edges.
+	 */
+	public int getEntryCount() {
+		return target.length;
+	}
+
+	/**
+	 * Identifier of a node.
+	 */
+	public String getNodeId(int node) {
+		return ids[node];
+	}
+
+	/**
+	 * Index of a node.
+	 * 
+	 * @return The index of the node, or -1 if there was no such node in the
+	 *         graph.
+	 */
+	public int getNodeIndex(String id) {
+		Integer index = indices.get(id);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * First entry of a node.
+	 */
+	public int getFirst(int node) {
+		return first[node];
+	}
+
+	/**
+	 * Node reached by an entry.
+	 */
+	public int getTarget(int entry) {
+		return target[entry];
+	}
+
+	/**
+	 * Weight of an entry, 1 if the graph is not weighted.
+	 */
+	public float getWeight(int entry) {
+		return weight == null ? 1 : weight[entry];
+	}
+
+	/**
+	 * Are the edges weighted?
+	 */
+	public boolean isWeighted() {
+		return weight != null;
+	}
+
+	// Utility
+
+	protected void add(int s, int t, float w, int[] fill) {
+		int entry = first[s] + fill[s]++;
+
+		target[entry] = t;
+
+		if (weight != null)
+			weight[entry] = w;
+	}
+}
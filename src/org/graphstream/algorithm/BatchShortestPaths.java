@@ -0,0 +1,600 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+
+/**
+ * Distances from many sources at once, computed in parallel on a copy of the
+ * graph.
+ * 
+ * <p>
+ * {@link #init(Graph)} copies the graph into {@link AdjacencyArrays}, the
+ * graph can then change without disturbing the computation. Without weight
+ * attribute, distances are numbers of edges and are computed by a
+ * breadth-first search exploring from 64 sources at once (one bit of a long
+ * per source). With a weight attribute, a Dijkstra search is run per source.
+ * Weights must not be negative. In both cases the sources are shared between
+ * the threads of a fork/join pool.
+ * </p>
+ * 
+ * <p>
+ * Each source gives a row of distances, indexed by node index in the copy
+ * (see {@link AdjacencyArrays#getNodeIndex(String)}). Unreachable nodes are at
+ * distance {@link Float#POSITIVE_INFINITY}. Rows can be:
+ * <ul>
+ * <li>written in a matrix given by the caller with {@link #compute(float[][])},</li>
+ * <li>given by blocks to a {@link BlockListener} with
+ * {@link #compute(BlockListener)}, a block never using more memory than
+ * {@link #setMaxMemory(long)} allows, which is the way to go through all
+ * pairs of large graphs,</li>
+ * <li>stored in the nodes by {@link #compute()}, each node receiving in the
+ * result attribute an array of floats giving its distance from each source.
+ * These arrays take O(n.k) memory for n nodes and k sources, only the
+ * computation itself is done by blocks.</li>
+ * </ul>
+ * </p>
+ */
+public class BatchShortestPaths {
+	// Attribute
+
+	/**
+	 * Receives the distances block by block.
+	 */
+	public static interface BlockListener {
+		/**
+		 * Distances from a block of sources are available. The rows are
+		 * reused for the next block, they must be copied to be kept.
+		 * 
+		 * @param first
+		 *            Rank of the first source of the block in the list of
+		 *            sources.
+		 * @param count
+		 *            Number of sources in the block.
+		 * @param rows
+		 *            Distances from each source of the block, rows[i][j]
+		 *            being the distance from source first+i to node j.
+		 */
+		void blockComputed(int first, int count, float[][] rows);
+	}
+
+	/**
+	 * The graph, as given to {@link #init(Graph)}.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph.
+	 */
+	protected AdjacencyArrays arrays;
+
+	/**
+	 * Edge attribute giving the weights, null to count edges.
+	 */
+	protected String weightAttribute;
+
+	/**
+	 * Node attribute receiving the distances in {@link #compute()}.
+	 */
+	protected String resultAttribute = "distances";
+
+	/**
+	 * Identifiers of the sources, null for all the nodes.
+	 */
+	protected String[] sourceIds;
+
+	/**
+	 * Indices of the sources in the copy.
+	 */
+	protected int[] sources;
+
+	/**
+	 * Number of threads.
+	 */
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Maximum number of bytes used by a block of rows.
+	 */
+	protected long maxMemory = 256L * 1024 * 1024;
+
+	// Construction
+
+	/**
+	 * New computation of distances in number of edges.
+	 */
+	public BatchShortestPaths() {
+		this(null);
+	}
+
+	/**
+	 * New computation of weighted distances.
+	 * 
+	 * @param weightAttribute
+	 *            Edge attribute giving the weights, edges without it weight 1.
+	 *            If null, distances are numbers of edges.
+	 */
+	public BatchShortestPaths(String weightAttribute) {
+		this.weightAttribute = weightAttribute;
+	}
+
+	// Access
+
+	/**
+	 * The copy of the graph, giving the index of the nodes in the rows.
+	 */
+	public AdjacencyArrays getArrays() {
+		return arrays;
+	}
+
+	/**
+	 * Number of sources, that is of rows.
+	 */
+	public int getSourceCount() {
+		return sources.length;
+	}
+
+	/**
+	 * Identifier of a source.
+	 * 
+	 * @param rank
+	 *            Rank of the source, that is of its row.
+	 */
+	public String getSource(int rank) {
+		return arrays.getNodeId(sources[rank]);
+	}
+
+	/**
+	 * Number of rows computed per block by {@link #compute(BlockListener)}.
+	 */
+	public int getBlockSize() {
+		long rowSize = 4L * Math.max(arrays.getNodeCount(), 1);
+		long size = Math.max(64, maxMemory / rowSize / 64 * 64);
+
+		return (int) Math.min(size, Math.max(sources.length, 1));
+	}
+
+	// Command
+
+	/**
+	 * Choose the sources. By default all nodes are sources.
+	 * 
+	 * @param ids
+	 *            Identifiers of the sources, none for all the nodes.
+	 */
+	public void setSources(String... ids) {
+		sourceIds = ids.length == 0 ? null : ids;
+
+		if (arrays != null)
+			initSources();
+	}
+
+	/**
+	 * Node attribute receiving the distances in {@link #compute()},
+	 * "distances" by default.
+	 */
+	public void setResultAttribute(String attribute) {
+		resultAttribute = attribute;
+	}
+
+	/**
+	 * Number of threads, by default the number of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Maximum memory used by a block of rows in
+	 * {@link #compute(BlockListener)}, 256MB by default. A block has at least
+	 * 64 rows whatever this limit.
+	 * 
+	 * @param bytes
+	 *            Memory in bytes.
+	 */
+	public void setMaxMemory(long bytes) {
+		maxMemory = bytes;
+	}
+
+	/**
+	 * Copy the structure of the graph into arrays. The sources are looked up
+	 * in the graph now, {@link #compute()} works on this copy.
+	 * 
+	 * @param graph
+	 *            The graph to work on.
+	 */
+	public void init(Graph graph) {
+		this.graph = graph;
+		arrays = new AdjacencyArrays(graph, weightAttribute);
+		initSources();
+	}
+
+	/**
+	 * Store in each node the array of its distances from the sources, ranked
+	 * like the sources. Nodes removed from the graph since
+	 * {@link #init(Graph)} are ignored.
+	 * 
+	 * <p>
+	 * The rows are computed by blocks as with {@link #compute(BlockListener)},
+	 * but the arrays stored in the nodes need one float per node and per
+	 * source, O(n.k) memory in all. Use a {@link BlockListener} to go through
+	 * the distances of large graphs in bounded memory.
+	 * </p>
+	 */
+	public void compute() {
+		final float[][] columns = new float[arrays.getNodeCount()][];
+
+		for (int j = 0; j < columns.length; j++)
+			if (graph.getNode(arrays.getNodeId(j)) != null)
+				columns[j] = new float[sources.length];
+
+		compute(new BlockListener() {
+			public void blockComputed(int first, int count, float[][] rows) {
+				for (int i = 0; i < count; i++) {
+					float[] row = rows[i];
+
+					for (int j = 0; j < columns.length; j++)
+						if (columns[j] != null)
+							columns[j][first + i] = row[j];
+				}
+			}
+		});
+
+		for (int j = 0; j < columns.length; j++) {
+			Node node = graph.getNode(arrays.getNodeId(j));
+
+			if (node != null && columns[j] != null)
+				node.setAttribute(resultAttribute, (Object) columns[j]);
+		}
+	}
+
+	/**
+	 * Write the distances in a matrix.
+	 * 
+	 * @param matrix
+	 *            At least one row per source, each row having at least one
+	 *            column per node.
+	 */
+	public void compute(float[][] matrix) {
+		run(0, sources.length, matrix);
+	}
+
+	/**
+	 * Compute the distances block by block, the listener being called after
+	 * each block. Only one block is in memory at a time.
+	 * 
+	 * @param listener
+	 *            Receives the blocks.
+	 */
+	public void compute(BlockListener listener) {
+		int size = getBlockSize();
+		float[][] rows = new float[size][arrays.getNodeCount()];
+
+		for (int first = 0; first < sources.length; first += size) {
+			int count = Math.min(size, sources.length - first);
+
+			run(first, count, rows);
+			listener.blockComputed(first, count, rows);
+		}
+	}
+
+	// Utility
+
+	protected void initSources() {
+		if (sourceIds == null) {
+			sources = new int[arrays.getNodeCount()];
+
+			for (int i = 0; i < sources.length; i++)
+				sources[i] = i;
+		} else {
+			sources = new int[sourceIds.length];
+
+			for (int i = 0; i < sources.length; i++) {
+				sources[i] = arrays.getNodeIndex(sourceIds[i]);
+
+				if (sources[i] < 0)
+					throw new IllegalArgumentException(String.format(
+							"no node '%s'", sourceIds[i]));
+			}
+		}
+	}
+
+	/**
+	 * Compute the rows of some sources in parallel.
+	 * 
+	 * @param first
+	 *            Rank of the first source.
+	 * @param count
+	 *            Number of sources.
+	 * @param rows
+	 *            Receives the rows, from index 0.
+	 */
+	protected void run(int first, int count, float[][] rows) {
+		int group = arrays.isWeighted() ? 1 : 64;
+		int groups = (count + group - 1) / group;
+		int grain = Math.max(1, groups / (parallelism * 4));
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+		try {
+			pool.invoke(new Task(first, count, group, 0, groups, grain, rows));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Computes a range of groups of sources, splitting it while it is larger
+	 * than the grain.
+	 */
+	protected class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected int first, count, group, from, to, grain;
+
+		protected float[][] rows;
+
+		protected Task(int first, int count, int group, int from, int to,
+				int grain, float[][] rows) {
+			this.first = first;
+			this.count = count;
+			this.group = group;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.rows = rows;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int middle = (from + to) >>> 1;
+
+				invokeAll(new Task(first, count, group, from, middle, grain,
+						rows), new Task(first, count, group, middle, to, grain,
+						rows));
+			} else if (arrays.isWeighted()) {
+				IndexedHeap heap = new IndexedHeap(arrays.getNodeCount());
+
+				for (int i = from; i < to; i++)
+					dijkstra(sources[first + i], rows[i], heap);
+			} else {
+				int n = arrays.getNodeCount();
+				long[][] scratch = new long[3][n];
+
+				for (int i = from; i < to; i++) {
+					int start = i * group;
+					int end = Math.min(start + group, count);
+
+					bfs(first + start, end - start, rows, start, scratch);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Breadth-first search from up to 64 sources at once. Bit i of the words
+	 * tells if the node was seen by source i, is in its current frontier or
+	 * in its next frontier.
+	 * 
+	 * @param first
+	 *            Rank of the first source.
+	 * @param count
+	 *            Number of sources, at most 64.
+	 * @param rows
+	 *            Receives the distances.
+	 * @param row
+	 *            Row of the first source.
+	 * @param scratch
+	 *            Three arrays of one word per node.
+	 */
+	protected void bfs(int first, int count, float[][] rows, int row,
+			long[][] scratch) {
+		int n = arrays.getNodeCount();
+		int[] start = arrays.first;
+		int[] target = arrays.target;
+		long[] seen = scratch[0];
+		long[] frontier = scratch[1];
+		long[] next = scratch[2];
+
+		Arrays.fill(seen, 0);
+		Arrays.fill(frontier, 0);
+		Arrays.fill(next, 0);
+
+		for (int i = 0; i < count; i++) {
+			int s = sources[first + i];
+
+			Arrays.fill(rows[row + i], 0, n, Float.POSITIVE_INFINITY);
+			rows[row + i][s] = 0;
+			seen[s] |= 1L << i;
+			frontier[s] |= 1L << i;
+		}
+
+		boolean active = true;
+
+		for (float level = 1; active; level++) {
+			for (int v = 0; v < n; v++) {
+				long bits = frontier[v];
+
+				if (bits != 0) {
+					for (int e = start[v]; e < start[v + 1]; e++)
+						next[target[e]] |= bits;
+
+					frontier[v] = 0;
+				}
+			}
+
+			active = false;
+
+			for (int u = 0; u < n; u++) {
+				long bits = next[u] & ~seen[u];
+
+				next[u] = 0;
+
+				if (bits != 0) {
+					seen[u] |= bits;
+					frontier[u] = bits;
+					active = true;
+
+					while (bits != 0) {
+						int i = Long.numberOfTrailingZeros(bits);
+						rows[row + i][u] = level;
+						bits &= bits - 1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra search from one source.
+	 * 
+	 * @param source
+	 *            Index of the source.
+	 * @param row
+	 *            Receives the distances.
+	 * @param heap
+	 *            An empty heap.
+	 */
+	protected void dijkstra(int source, float[] row, IndexedHeap heap) {
+		int[] start = arrays.first;
+		int[] target = arrays.target;
+		float[] weight = arrays.weight;
+
+		Arrays.fill(row, 0, arrays.getNodeCount(), Float.POSITIVE_INFINITY);
+		row[source] = 0;
+		heap.put(source, 0);
+
+		while (!heap.isEmpty()) {
+			double d = heap.getPriority(heap.peek());
+			int v = heap.poll();
+
+			for (int e = start[v]; e < start[v + 1]; e++) {
+				int u = target[e];
+				double du = d + weight[e];
+
+				if ((float) du < row[u]) {
+					row[u] = (float) du;
+					heap.put(u, du);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compare the time needed to go through a random graph from a number of
+	 * sources with breadth-first iterators and with this class, then give the
+	 * time of a weighted computation.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges and the number of
+	 * sources (defaults to 20000, 100000 and 4096). The iterators are slow on
+	 * large graphs, they are only run from three sources.
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		for (int i = 0; i < edges; i++) {
+			String from = Integer.toString(random.nextInt(nodes));
+			String to = Integer.toString(random.nextInt(nodes));
+
+			try {
+				graph.addEdge(Integer.toString(i), from, to).addAttribute(
+						"weight", 1 + random.nextInt(100));
+			} catch (IdAlreadyInUseException e) {
+				// Two edges between the same nodes, forget it.
+			}
+		}
+
+		String[] ids = new String[count];
+
+		for (int i = 0; i < count; i++)
+			ids[i] = Integer.toString(random.nextInt(nodes));
+
+		int iterated = Math.min(count, 3);
+		long t = System.nanoTime();
+
+		for (int i = 0; i < iterated; i++) {
+			Iterator<Node> it = graph.getNode(ids[i]).getBreadthFirstIterator();
+
+			while (it.hasNext())
+				it.next();
+		}
+
+		double iterators = (System.nanoTime() - t) / 1e6 / iterated;
+
+		System.out.printf("%d nodes, %d edges, iterator %.2f ms per source%n",
+				graph.getNodeCount(), graph.getEdgeCount(), iterators);
+
+		BatchShortestPaths bfs = new BatchShortestPaths();
+		BatchShortestPaths dijkstra = new BatchShortestPaths("weight");
+
+		t = System.nanoTime();
+		bfs.init(graph);
+		System.out.printf("copy %.1f ms%n", (System.nanoTime() - t) / 1e6);
+
+		bfs.setSources(ids);
+		final long[] reached = new long[1];
+		t = System.nanoTime();
+		bfs.compute(new BlockListener() {
+			public void blockComputed(int first, int count, float[][] rows) {
+				for (int i = 0; i < count; i++)
+					for (float d : rows[i])
+						if (d != Float.POSITIVE_INFINITY)
+							reached[0]++;
+			}
+		});
+
+		double batch = (System.nanoTime() - t) / 1e6 / count;
+
+		System.out.printf("breadth-first %.3f ms per source (x%.0f faster), "
+				+ "%.0f nodes reached per source%n", batch, iterators / batch,
+				(double) reached[0] / count);
+
+		int weighted = Math.min(count, 256);
+		float[][] matrix = new float[weighted][nodes];
+
+		dijkstra.init(graph);
+		dijkstra.setSources(Arrays.copyOf(ids, weighted));
+		t = System.nanoTime();
+		dijkstra.compute(matrix);
+		System.out.printf("dijkstra %.3f ms per source%n",
+				(System.nanoTime() - t) / 1e6 / weighted);
+	}
+}
@@ -0,0 +1,493 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * Compact copy of the structure of a graph, for algorithms.
+ * 
+ * <p>
+ * Nodes and edges are stored in slots, small integers that do not change as
+ * long as the element exists. The slot of a removed element is reused by the
+ * next element added. Algorithms can therefore store their data in plain
+ * arrays indexed by slots, growing them to {@link #getNodeSlotCount()} or
+ * {@link #getEdgeSlotCount()} elements. Each edge has a weight.
+ * </p>
+ * 
+ * <p>
+ * The adjacency of each node is made of two arrays of edge slots: the edges
+ * that can be followed from the node ("out" edges) and the edges that can be
+ * followed to reach the node ("in" edges). An undirected edge is both an out
+ * and an in edge of its two nodes. Use {@link #getOpposite(int, int)} to
+ * cross an edge.
+ * </p>
+ * 
+ * <p>
+ * This class does not listen at a graph. The algorithms using it update it
+ * from the graph events they receive, in the order they need.
+ * </p>
+ */
+public class CompactGraph {
+	// Attribute
+
+	protected HashMap<String, Integer> nodeSlots = new HashMap<String, Integer>();
+
+	protected HashMap<String, Integer> edgeSlots = new HashMap<String, Integer>();
+
+	protected String[] nodeIds = new String[16];
+
+	protected String[] edgeIds = new String[16];
+
+	protected int[][] out = new int[16][];
+
+	protected int[] outDegree = new int[16];
+
+	protected int[][] in = new int[16][];
+
+	protected int[] inDegree = new int[16];
+
+	protected int[] from = new int[16];
+
+	protected int[] to = new int[16];
+
+	protected boolean[] directed = new boolean[16];
+
+	protected double[] weight = new double[16];
+
+	/**
+	 * Number of node and edge slots ever used.
+	 */
+	protected int nodeSlotCount, edgeSlotCount;
+
+	/**
+	 * Slots of removed elements, to be reused.
+	 */
+	protected int[] freeNodes = new int[16], freeEdges = new int[16];
+
+	protected int freeNodeCount, freeEdgeCount;
+
+	// Construction
+
+	/**
+	 * New empty graph.
+	 */
+	public CompactGraph() {
+	}
+
+	/**
+	 * New copy of a graph.
+	 * 
+	 * @param graph
+	 *            The graph to copy.
+	 * @param weightAttribute
+	 *            The edge attribute giving the weight of edges, null if all
+	 *            edges have the default weight.
+	 * @param defaultWeight
+	 *            The weight of edges without the weight attribute.
+	 */
+	public CompactGraph(Graph graph, String weightAttribute,
+			double defaultWeight) {
+		for (Node node : graph.getEachNode())
+			addNode(node.getId());
+
+		for (Edge edge : graph.getEachEdge()) {
+			Object w = weightAttribute == null ? null : edge
+					.getAttribute(weightAttribute);
+
+			addEdge(edge.getId(), edge.getSourceNode().getId(), edge
+					.getTargetNode().getId(), edge.isDirected(), weightOf(w,
+					defaultWeight));
+		}
+	}
+
+	// Access
+
+	/**
+	 * Number of nodes.
+	 */
+	public int getNodeCount() {
+		return nodeSlotCount - freeNodeCount;
+	}
+
+	/**
+	 * Number of edges.
+	 */
+	public int getEdgeCount() {
+		return edgeSlotCount - freeEdgeCount;
+	}
+
+	/**
+	 * Upper bound of the node slots, used or not. Arrays indexed by node slots
+	 * must have at least this size.
+	 */
+	public int getNodeSlotCount() {
+		return nodeSlotCount;
+	}
+
+	/**
+	 * Upper bound of the edge slots, used or not. Arrays indexed by edge slots
+	 * must have at least this size.
+	 */
+	public int getEdgeSlotCount() {
+		return edgeSlotCount;
+	}
+
+	/**
+	 * Slot of a node.
+	 * 
+	 * @param id
+	 *            The node identifier.
+	 * @return The slot, -1 if there is no such node.
+	 */
+	public int getNodeSlot(String id) {
+		Integer slot = nodeSlots.get(id);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Slot of an edge.
+	 * 
+	 * @param id
+	 *            The edge identifier.
+	 * @return The slot, -1 if there is no such edge.
+	 */
+	public int getEdgeSlot(String id) {
+		Integer slot = edgeSlots.get(id);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Identifier of the node in a slot, null if the slot is free.
+	 */
+	public String getNodeId(int node) {
+		return nodeIds[node];
+	}
+
+	/**
+	 * Identifier of the edge in a slot, null if the slot is free.
+	 */
+	public String getEdgeId(int edge) {
+		return edgeIds[edge];
+	}
+
+	/**
+	 * Is there a node in this slot?
+	 */
+	public boolean isNode(int node) {
+		return node >= 0 && node < nodeSlotCount && nodeIds[node] != null;
+	}
+
+	/**
+	 * Is there an edge in this slot?
+	 */
+	public boolean isEdge(int edge) {
+		return edge >= 0 && edge < edgeSlotCount && edgeIds[edge] != null;
+	}
+
+	/**
+	 * Number of edges that can be followed from a node.
+	 */
+	public int getOutDegree(int node) {
+		return outDegree[node];
+	}
+
+	/**
+	 * The i-th edge that can be followed from a node.
+	 */
+	public int getOutEdge(int node, int i) {
+		return out[node][i];
+	}
+
+	/**
+	 * Number of edges that can be followed to reach a node.
+	 */
+	public int getInDegree(int node) {
+		return inDegree[node];
+	}
+
+	/**
+	 * The i-th edge that can be followed to reach a node.
+	 */
+	public int getInEdge(int node, int i) {
+		return in[node][i];
+	}
+
+	/**
+	 * Source node of an edge.
+	 */
+	public int getSource(int edge) {
+		return from[edge];
+	}
+
+	/**
+	 * Target node of an edge.
+	 */
+	public int getTarget(int edge) {
+		return to[edge];
+	}
+
+	/**
+	 * The node at the other end of an edge.
+	 * 
+	 * @param edge
+	 *            The edge slot.
+	 * @param node
+	 *            One of the nodes of the edge.
+	 * @return The other node, or the node itself for a loop.
+	 */
+	public int getOpposite(int edge, int node) {
+		return from[edge] == node ? to[edge] : from[edge];
+	}
+
+	/**
+	 * Is an edge directed?
+	 */
+	public boolean isDirected(int edge) {
+		return directed[edge];
+	}
+
+	/**
+	 * Weight of an edge.
+	 */
+	public double getWeight(int edge) {
+		return weight[edge];
+	}
+
+	/**
+	 * The weight given by an attribute value.
+	 * 
+	 * @param value
+	 *            The value of the attribute.
+	 * @param defaultWeight
+	 *            The weight to use if the value is not a number.
+	 * @return The weight.
+	 */
+	public static double weightOf(Object value, double defaultWeight) {
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+
+		return defaultWeight;
+	}
+
+	// Command
+
+	/**
+	 * Add a node, or do nothing if it already exists.
+	 * 
+	 * @param id
+	 *            The node identifier.
+	 * @return The slot of the node.
+	 */
+	public int addNode(String id) {
+		Integer existing = nodeSlots.get(id);
+
+		if (existing != null)
+			return existing;
+
+		int slot;
+
+		if (freeNodeCount > 0) {
+			slot = freeNodes[--freeNodeCount];
+		} else {
+			slot = nodeSlotCount++;
+
+			if (slot >= nodeIds.length) {
+				int n = nodeIds.length * 2;
+				nodeIds = Arrays.copyOf(nodeIds, n);
+				out = Arrays.copyOf(out, n);
+				in = Arrays.copyOf(in, n);
+				outDegree = Arrays.copyOf(outDegree, n);
+				inDegree = Arrays.copyOf(inDegree, n);
+			}
+		}
+
+		nodeIds[slot] = id;
+		outDegree[slot] = 0;
+		inDegree[slot] = 0;
+
+		if (out[slot] == null) {
+			out[slot] = new int[4];
+			in[slot] = new int[4];
+		}
+
+		nodeSlots.put(id, slot);
+
+		return slot;
+	}
+
+	/**
+	 * Remove a node and all its edges.
+	 * 
+	 * @param node
+	 *            The node slot.
+	 */
+	public void removeNode(int node) {
+		while (outDegree[node] > 0)
+			removeEdge(out[node][outDegree[node] - 1]);
+
+		while (inDegree[node] > 0)
+			removeEdge(in[node][inDegree[node] - 1]);
+
+		nodeSlots.remove(nodeIds[node]);
+		nodeIds[node] = null;
+
+		if (out[node].length > 64) {
+			out[node] = new int[4];
+			in[node] = new int[4];
+		}
+
+		freeNodes = push(freeNodes, freeNodeCount++, node);
+	}
+
+	/**
+	 * Add an edge, or do nothing if it already exists. The nodes are created
+	 * if needed.
+	 * 
+	 * @param id
+	 *            The edge identifier.
+	 * @param fromId
+	 *            The source node identifier.
+	 * @param toId
+	 *            The target node identifier.
+	 * @param isDirected
+	 *            Is the edge directed?
+	 * @param w
+	 *            The edge weight.
+	 * @return The slot of the edge.
+	 */
+	public int addEdge(String id, String fromId, String toId,
+			boolean isDirected, double w) {
+		Integer existing = edgeSlots.get(id);
+
+		if (existing != null)
+			return existing;
+
+		int f = addNode(fromId);
+		int t = addNode(toId);
+		int slot;
+
+		if (freeEdgeCount > 0) {
+			slot = freeEdges[--freeEdgeCount];
+		} else {
+			slot = edgeSlotCount++;
+
+			if (slot >= edgeIds.length) {
+				int n = edgeIds.length * 2;
+				edgeIds = Arrays.copyOf(edgeIds, n);
+				from = Arrays.copyOf(from, n);
+				to = Arrays.copyOf(to, n);
+				directed = Arrays.copyOf(directed, n);
+				weight = Arrays.copyOf(weight, n);
+			}
+		}
+
+		edgeIds[slot] = id;
+		from[slot] = f;
+		to[slot] = t;
+		directed[slot] = isDirected;
+		weight[slot] = w;
+		edgeSlots.put(id, slot);
+
+		out[f] = push(out[f], outDegree[f]++, slot);
+		in[t] = push(in[t], inDegree[t]++, slot);
+
+		if (!isDirected && f != t) {
+			out[t] = push(out[t], outDegree[t]++, slot);
+			in[f] = push(in[f], inDegree[f]++, slot);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Remove an edge.
+	 * 
+	 * @param edge
+	 *            The edge slot.
+	 */
+	public void removeEdge(int edge) {
+		int f = from[edge];
+		int t = to[edge];
+
+		outDegree[f] = remove(out[f], outDegree[f], edge);
+		inDegree[t] = remove(in[t], inDegree[t], edge);
+
+		if (!directed[edge] && f != t) {
+			outDegree[t] = remove(out[t], outDegree[t], edge);
+			inDegree[f] = remove(in[f], inDegree[f], edge);
+		}
+
+		edgeSlots.remove(edgeIds[edge]);
+		edgeIds[edge] = null;
+		freeEdges = push(freeEdges, freeEdgeCount++, edge);
+	}
+
+	/**
+	 * Change the weight of an edge.
+	 */
+	public void setWeight(int edge, double w) {
+		weight[edge] = w;
+	}
+
+	/**
+	 * Remove all nodes and edges.
+	 */
+	public void clear() {
+		nodeSlots.clear();
+		edgeSlots.clear();
+		Arrays.fill(nodeIds, null);
+		Arrays.fill(edgeIds, null);
+		nodeSlotCount = 0;
+		edgeSlotCount = 0;
+		freeNodeCount = 0;
+		freeEdgeCount = 0;
+	}
+
+	// Utility
+
+	protected static int[] push(int[] array, int size, int value) {
+		if (size >= array.length)
+			array = Arrays.copyOf(array, array.length * 2);
+
+		array[size] = value;
+
+		return array;
+	}
+
+	protected static int remove(int[] array, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == value) {
+				array[i] = array[size - 1];
+				return size - 1;
+			}
+		}
+
+		return size;
+	}
+}
@@ -0,0 +1,823 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.stream.ElementSink;
+
+/**
+ * Connected components, updated as the graph changes.
+ * 
+ * <p>
+ * Once initialised with a graph, this algorithm registers as an element sink
+ * of the graph and keeps the number of connected components and the
+ * component of each node up to date. The direction of edges is ignored.
+ * </p>
+ * 
+ * <p>
+ * Components are sets of a union-find structure with path compression, and a
+ * spanning forest of the graph is kept along:
+ * <ul>
+ * <li>when an edge joins two components, their sets are merged and the edge
+ * goes in the forest, otherwise nothing changes;</li>
+ * <li>when an edge outside of the forest is removed nothing changes;</li>
+ * <li>when an edge of the forest is removed, its tree is cut in two. Both
+ * parts are explored at the same pace until one of them is completely
+ * explored, then the edges of this smaller part are searched for an edge
+ * reconnecting it to the other one. If there is one, it replaces the removed
+ * edge in the forest. Otherwise the smaller part becomes a new set and a new
+ * component.</li>
+ * </ul>
+ * The cost of a removal therefore depends on the size of the smaller part,
+ * not on the size of the graph.
+ * </p>
+ * 
+ * <p>
+ * Each component has an integer identifier. When two components merge, the
+ * largest one keeps its identifier; when a component is cut, the largest
+ * part keeps it. If a result attribute is given, each node receives the
+ * identifier of its component in this attribute, and the attribute is only
+ * changed when this identifier changes, so that sinks of the graph are not
+ * flooded with events.
+ * </p>
+ * 
+ * <pre>
+ * DynamicConnectedComponents cc = new DynamicConnectedComponents(&quot;component&quot;);
+ * cc.init(graph);
+ * // ... modify the graph ...
+ * int count = cc.getComponentCount();
+ * </pre>
+ */
+public class DynamicConnectedComponents implements ElementSink {
+	// Attribute
+
+	/**
+	 * The graph followed.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph structure.
+	 */
+	protected CompactGraph compact;
+
+	/**
+	 * Node attribute receiving the component identifiers, null if none.
+	 */
+	protected String resultAttribute;
+
+	/**
+	 * Set of each node slot in the union-find structure.
+	 */
+	protected int[] set = new int[0];
+
+	/**
+	 * Identifier last given to each node slot in the result attribute, -1 if
+	 * none.
+	 */
+	protected int[] published = new int[0];
+
+	/**
+	 * Marks of the nodes explored when an edge of the forest is removed.
+	 */
+	protected int[] mark = new int[0];
+
+	/**
+	 * Current mark value.
+	 */
+	protected int currentMark;
+
+	/**
+	 * Is each edge slot in the spanning forest?
+	 */
+	protected boolean[] forest = new boolean[0];
+
+	/**
+	 * Parent of each set, itself for the root of a union-find tree.
+	 */
+	protected int[] parent = new int[16];
+
+	/**
+	 * Number of nodes in each set, valid for roots only.
+	 */
+	protected int[] size = new int[16];
+
+	/**
+	 * Component identifier of each set, valid for roots only.
+	 */
+	protected int[] label = new int[16];
+
+	/**
+	 * Number of sets created. Sets are never removed, they are compacted
+	 * when too many of them are not used anymore.
+	 */
+	protected int setCount;
+
+	/**
+	 * Next component identifier.
+	 */
+	protected int nextLabel;
+
+	/**
+	 * Number of components.
+	 */
+	protected int componentCount;
+
+	/**
+	 * The two parts explored when an edge of the forest is removed.
+	 */
+	protected int[] partA = new int[16], partB = new int[16];
+
+	/**
+	 * Slot of the node being removed, -1 if none.
+	 */
+	protected int removedNode = -1;
+
+	/**
+	 * Number of nodes explored during the last update.
+	 */
+	protected int lastUpdateSize;
+
+	// Construction
+
+	/**
+	 * New connected components algorithm not storing the components in the
+	 * graph.
+	 */
+	public DynamicConnectedComponents() {
+		this(null);
+	}
+
+	/**
+	 * New connected components algorithm.
+	 * 
+	 * @param resultAttribute
+	 *            Node attribute receiving the component identifiers, null if
+	 *            they are not stored in the graph.
+	 */
+	public DynamicConnectedComponents(String resultAttribute) {
+		this.resultAttribute = resultAttribute;
+	}
+
+	// Access
+
+	/**
+	 * Number of connected components.
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * Identifier of the component of a node.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The component identifier, -1 if the node does not exist.
+	 */
+	public int getComponentId(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 ? -1 : label[find(set[n])];
+	}
+
+	/**
+	 * Number of nodes in the component of a node.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The component size, 0 if the node does not exist.
+	 */
+	public int getComponentSize(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 ? 0 : size[find(set[n])];
+	}
+
+	/**
+	 * Are two nodes in the same component?
+	 */
+	public boolean areConnected(String nodeId1, String nodeId2) {
+		int n1 = compact.getNodeSlot(nodeId1);
+		int n2 = compact.getNodeSlot(nodeId2);
+
+		return n1 >= 0 && n2 >= 0 && find(set[n1]) == find(set[n2]);
+	}
+
+	/**
+	 * Number of nodes explored during the last update. This measures the
+	 * cost of the update.
+	 */
+	public int getLastUpdateSize() {
+		return lastUpdateSize;
+	}
+
+	// Command
+
+	/**
+	 * Copy the structure of the graph, compute the results from scratch and
+	 * follow the graph until {@link #terminate()} is called. A graph given
+	 * before is left.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public void init(Graph graph) {
+		if (this.graph != null)
+			terminate();
+
+		this.graph = graph;
+		compact = new CompactGraph(graph, null, 1);
+		graph.addElementSink(this);
+		compute();
+	}
+
+	/**
+	 * Compute all components from scratch. All components receive new
+	 * identifiers.
+	 */
+	public void compute() {
+		ensureCapacity();
+		Arrays.fill(forest, false);
+		setCount = 0;
+		componentCount = 0;
+
+		for (int n = 0; n < compact.getNodeSlotCount(); n++)
+			if (compact.isNode(n))
+				set[n] = newSet(1);
+
+		for (int e = 0; e < compact.getEdgeSlotCount(); e++)
+			if (compact.isEdge(e))
+				join(e, false);
+
+		for (int n = 0; n < compact.getNodeSlotCount(); n++)
+			if (compact.isNode(n))
+				publish(n);
+
+		lastUpdateSize = compact.getNodeCount();
+	}
+
+	/**
+	 * Stop listening at the graph. The results remain those of the graph at
+	 * the time this method is called.
+	 */
+	public void terminate() {
+		if (graph != null) {
+			graph.removeElementSink(this);
+			graph = null;
+		}
+	}
+
+	// Sink
+
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (compact.getNodeSlot(nodeId) >= 0)
+			return;
+
+		int n = compact.addNode(nodeId);
+
+		ensureCapacity();
+		set[n] = newSet(1);
+		published[n] = -1;
+		lastUpdateSize = 1;
+		publish(n);
+	}
+
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		if (n < 0)
+			return;
+
+		// The graph may send the removal of the edges after the removal of
+		// the node, they are removed here so that the forest stays coherent.
+
+		int explored = 0;
+		removedNode = n;
+
+		while (compact.getOutDegree(n) > 0) {
+			removeEdge(compact.getOutEdge(n, 0));
+			explored += lastUpdateSize;
+		}
+
+		while (compact.getInDegree(n) > 0) {
+			removeEdge(compact.getInEdge(n, 0));
+			explored += lastUpdateSize;
+		}
+
+		removedNode = -1;
+		size[find(set[n])]--;
+		componentCount--;
+		compact.removeNode(n);
+		set[n] = -1;
+		published[n] = -1;
+		lastUpdateSize = explored;
+
+		if (setCount > 2 * compact.getNodeCount() + 16)
+			compactSets();
+	}
+
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (compact.getEdgeSlot(edgeId) >= 0)
+			return;
+
+		nodeAdded(graphId, timeId, fromNodeId);
+		nodeAdded(graphId, timeId, toNodeId);
+
+		int e = compact.addEdge(edgeId, fromNodeId, toNodeId, directed, 1);
+
+		ensureCapacity();
+		forest[e] = false;
+		lastUpdateSize = join(e, true);
+	}
+
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e >= 0)
+			removeEdge(e);
+	}
+
+	public void graphCleared(String graphId, long timeId) {
+		compact.clear();
+		setCount = 0;
+		nextLabel = 0;
+		componentCount = 0;
+		currentMark = 0;
+		Arrays.fill(set, -1);
+		Arrays.fill(published, -1);
+		Arrays.fill(mark, 0);
+		Arrays.fill(forest, false);
+		lastUpdateSize = 0;
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+	}
+
+	// Utility
+
+	protected void ensureCapacity() {
+		int n = compact.getNodeSlotCount();
+
+		if (set.length < n) {
+			int old = set.length;
+			n = Math.max(n, old * 2);
+			set = Arrays.copyOf(set, n);
+			published = Arrays.copyOf(published, n);
+			mark = Arrays.copyOf(mark, n);
+			Arrays.fill(published, old, n, -1);
+		}
+
+		if (forest.length < compact.getEdgeSlotCount())
+			forest = Arrays.copyOf(forest,
+					Math.max(compact.getEdgeSlotCount(), forest.length * 2));
+	}
+
+	/**
+	 * Create a set that is a new component.
+	 * 
+	 * @param nodes
+	 *            Number of nodes in the set.
+	 * @return The set.
+	 */
+	protected int newSet(int nodes) {
+		if (setCount >= parent.length) {
+			int n = parent.length * 2;
+			parent = Arrays.copyOf(parent, n);
+			size = Arrays.copyOf(size, n);
+			label = Arrays.copyOf(label, n);
+		}
+
+		int s = setCount++;
+
+		parent[s] = s;
+		size[s] = nodes;
+		label[s] = nextLabel++;
+		componentCount++;
+
+		return s;
+	}
+
+	/**
+	 * Root of the union-find tree of a set. Each set on the way is moved to
+	 * its grand-parent.
+	 */
+	protected int find(int s) {
+		while (parent[s] != s) {
+			parent[s] = parent[parent[s]];
+			s = parent[s];
+		}
+
+		return s;
+	}
+
+	/**
+	 * Merge the components of the ends of a new edge, if they differ. The
+	 * edge then goes in the forest.
+	 * 
+	 * @param e
+	 *            The edge slot.
+	 * @param publish
+	 *            Publish the new identifiers of the smaller component.
+	 * @return The number of nodes whose identifier changed.
+	 */
+	protected int join(int e, boolean publish) {
+		int f = compact.getSource(e);
+		int t = compact.getTarget(e);
+		int rf = find(set[f]);
+		int rt = find(set[t]);
+
+		if (rf == rt)
+			return 0;
+
+		int small = size[rf] < size[rt] ? rf : rt;
+		int large = small == rf ? rt : rf;
+		int changed = size[small];
+
+		parent[small] = large;
+		size[large] += size[small];
+		componentCount--;
+
+		if (publish && resultAttribute != null)
+			changed = publishTree(small == rf ? f : t);
+
+		forest[e] = true;
+
+		return changed;
+	}
+
+	/**
+	 * Remove an edge, looking for a replacement if it was in the forest.
+	 * 
+	 * @param e
+	 *            The edge slot.
+	 */
+	protected void removeEdge(int e) {
+		int f = compact.getSource(e);
+		int t = compact.getTarget(e);
+
+		compact.removeEdge(e);
+		lastUpdateSize = 0;
+
+		if (forest[e]) {
+			forest[e] = false;
+			cut(f, t);
+		}
+	}
+
+	/**
+	 * Explore the two trees obtained by removing an edge of the forest from
+	 * its ends, at the same pace, until one is completely explored. Then look
+	 * for an edge joining this smaller tree to the other one, or else make it
+	 * a new component.
+	 * 
+	 * @param u
+	 *            An end of the removed edge.
+	 * @param v
+	 *            The other end.
+	 */
+	protected void cut(int u, int v) {
+		int markA = ++currentMark;
+		int markB = ++currentMark;
+		int sizeA = 1, sizeB = 1;
+		int nextA = 0, nextB = 0;
+
+		partA[0] = u;
+		partB[0] = v;
+		mark[u] = markA;
+		mark[v] = markB;
+
+		while (nextA < sizeA && nextB < sizeB) {
+			sizeA = expand(partA[nextA++], markA, sizeA, true);
+			sizeB = expand(partB[nextB++], markB, sizeB, false);
+		}
+
+		boolean smallIsA = nextA == sizeA;
+		int[] part = smallIsA ? partA : partB;
+		int count = smallIsA ? sizeA : sizeB;
+		int smallMark = smallIsA ? markA : markB;
+
+		lastUpdateSize = sizeA + sizeB;
+
+		for (int i = 0; i < count; i++) {
+			int e = replacement(part[i], smallMark);
+
+			if (e >= 0) {
+				forest[e] = true;
+				return;
+			}
+		}
+
+		int old = find(set[u]);
+		int s = newSet(count);
+
+		size[old] -= count;
+
+		for (int i = 0; i < count; i++) {
+			set[part[i]] = s;
+			publish(part[i]);
+		}
+
+		if (setCount > 2 * compact.getNodeCount() + 16)
+			compactSets();
+	}
+
+	/**
+	 * Add the neighbours of a node in the forest to a part.
+	 * 
+	 * @return The new size of the part.
+	 */
+	protected int expand(int n, int m, int count, boolean a) {
+		for (int i = 0; i < compact.getOutDegree(n); i++)
+			count = visit(compact.getOutEdge(n, i), n, m, count, a);
+
+		for (int i = 0; i < compact.getInDegree(n); i++)
+			count = visit(compact.getInEdge(n, i), n, m, count, a);
+
+		return count;
+	}
+
+	protected int visit(int e, int n, int m, int count, boolean a) {
+		if (forest[e]) {
+			int o = compact.getOpposite(e, n);
+
+			if (mark[o] != m) {
+				mark[o] = m;
+
+				if (a)
+					partA = CompactGraph.push(partA, count++, o);
+				else
+					partB = CompactGraph.push(partB, count++, o);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Search an edge outside of the forest going from a node to a node not
+	 * marked.
+	 * 
+	 * @return The edge slot, -1 if none.
+	 */
+	protected int replacement(int n, int m) {
+		for (int i = 0; i < compact.getOutDegree(n); i++) {
+			int e = compact.getOutEdge(n, i);
+
+			if (!forest[e] && mark[compact.getOpposite(e, n)] != m)
+				return e;
+		}
+
+		for (int i = 0; i < compact.getInDegree(n); i++) {
+			int e = compact.getInEdge(n, i);
+
+			if (!forest[e] && mark[compact.getOpposite(e, n)] != m)
+				return e;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Publish the identifier of all nodes of the tree of a node.
+	 * 
+	 * @return The number of nodes of the tree.
+	 */
+	protected int publishTree(int n) {
+		int m = ++currentMark;
+		int count = 1;
+
+		partA[0] = n;
+		mark[n] = m;
+
+		for (int i = 0; i < count; i++) {
+			count = expand(partA[i], m, count, true);
+			publish(partA[i]);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Set the result attribute of a node, if its component identifier
+	 * changed.
+	 */
+	protected void publish(int n) {
+		if (resultAttribute == null || n == removedNode)
+			return;
+
+		int l = label[find(set[n])];
+
+		if (published[n] != l) {
+			Node node = graph.getNode(compact.getNodeId(n));
+			published[n] = l;
+
+			if (node != null)
+				node.setAttribute(resultAttribute, l);
+		}
+	}
+
+	/**
+	 * Rebuild the union-find structure with one set per component, keeping
+	 * the component identifiers, to forget the sets left by cuts and node
+	 * removals.
+	 */
+	protected void compactSets() {
+		int[] newSet = new int[set.length];
+		int[] newSize = new int[parent.length];
+		int[] newLabel = new int[parent.length];
+		int count = 0;
+		int m = ++currentMark;
+
+		for (int n = 0; n < compact.getNodeSlotCount(); n++) {
+			if (compact.isNode(n) && mark[n] != m) {
+				int s = count++;
+				int nodes = 1;
+
+				newLabel[s] = label[find(set[n])];
+				partA[0] = n;
+				mark[n] = m;
+
+				for (int i = 0; i < nodes; i++) {
+					nodes = expand(partA[i], m, nodes, true);
+					newSet[partA[i]] = s;
+				}
+
+				newSize[s] = nodes;
+			}
+		}
+
+		for (int s = 0; s < count; s++)
+			parent[s] = s;
+
+		set = newSet;
+		size = newSize;
+		label = newLabel;
+		setCount = count;
+	}
+
+	/**
+	 * Compare the time needed to compute the components of a random graph
+	 * with the time of an update, as edges are removed and added, and check
+	 * the result.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges and the number of
+	 * changes (defaults to 100000, 150000 and 100000).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 150000;
+		int changes = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		int next = 0;
+
+		for (int i = 0; i < edges; i++)
+			next = addRandomEdge(graph, next, random);
+
+		DynamicConnectedComponents cc = new DynamicConnectedComponents(
+				"component");
+		long t = System.nanoTime();
+		cc.init(graph);
+		double full = (System.nanoTime() - t) / 1e6;
+
+		t = System.nanoTime();
+		cc.compute();
+		full = Math.min(full, (System.nanoTime() - t) / 1e6);
+
+		System.out.printf("%d nodes, %d edges, %d components, "
+				+ "full computation %.1f ms%n", graph.getNodeCount(),
+				graph.getEdgeCount(), cc.getComponentCount(), full);
+
+		long explored = 0;
+		t = System.nanoTime();
+
+		for (int i = 0; i < changes; i++) {
+			if (i % 1000 == 999) {
+				graph.removeNode(graph.getNode(
+						random.nextInt(graph.getNodeCount())).getId());
+				graph.addNode(Integer.toString(nodes + i));
+			} else if (i % 2 == 0) {
+				Edge e = graph.getEdge(random.nextInt(graph.getEdgeCount()));
+				graph.removeEdge(e.getId());
+			} else {
+				next = addRandomEdge(graph, next, random);
+			}
+
+			explored += cc.getLastUpdateSize();
+		}
+
+		double update = (System.nanoTime() - t) / 1e6 / changes;
+
+		System.out.printf("update %.4f ms on average (x%.0f faster), "
+				+ "%.1f nodes explored, %d components%n", update, full
+				/ update, (double) explored / changes, cc.getComponentCount());
+
+		System.out.printf("%d errors%n", check(graph, cc));
+
+		// Clear the graph, build a smaller one and change it again, the
+		// slots of the first graph being reused.
+
+		graph.clear();
+		nodes /= 10;
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		for (int i = 0; i < edges / 10; i++)
+			next = addRandomEdge(graph, next, random);
+
+		for (int i = 0; i < changes / 10; i++) {
+			if (i % 2 == 0) {
+				Edge e = graph.getEdge(random.nextInt(graph.getEdgeCount()));
+				graph.removeEdge(e.getId());
+			} else {
+				next = addRandomEdge(graph, next, random);
+			}
+		}
+
+		System.out.printf("after a clear, %d components, %d errors%n", cc
+				.getComponentCount(), check(graph, cc));
+		cc.terminate();
+	}
+
+	/**
+	 * Compare the components with a computation from scratch.
+	 * 
+	 * @return The number of differences.
+	 */
+	protected static int check(Graph graph, DynamicConnectedComponents cc) {
+		DynamicConnectedComponents reference = new DynamicConnectedComponents();
+		reference.init(graph);
+
+		HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+		HashMap<Integer, Integer> inverse = new HashMap<Integer, Integer>();
+		int errors = Math.abs(reference.getComponentCount()
+				- cc.getComponentCount());
+
+		for (Node node : graph) {
+			int c = cc.getComponentId(node.getId());
+			int r = reference.getComponentId(node.getId());
+			Integer a = map.put(r, c);
+			Integer b = inverse.put(c, r);
+
+			if ((a != null && a != c) || (b != null && b != r)
+					|| node.getNumber("component") != c)
+				errors++;
+		}
+
+		reference.terminate();
+
+		return errors;
+	}
+
+	protected static int addRandomEdge(Graph graph, int next, Random random) {
+		int n = graph.getNodeCount();
+
+		while (true) {
+			try {
+				graph.addEdge(Integer.toString(next++),
+						graph.getNode(random.nextInt(n)).getId(),
+						graph.getNode(random.nextInt(n)).getId());
+				return next;
+			} catch (IdAlreadyInUseException e) {
+				// Already an edge between these nodes, try again.
+			}
+		}
+	}
+}
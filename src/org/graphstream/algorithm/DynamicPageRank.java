@@ -0,0 +1,699 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.stream.ElementSink;
+
+/**
+ * PageRank, updated as the graph changes.
+ * 
+ * <p>
+ * The score of each node is kept such that, up to the tolerance,
+ * 
+ * <pre>
+ * score(v) = (1 - d) + d * sum(score(u) / outDegree(u))
+ * </pre>
+ * 
+ * where d is the damping factor and the sum is over the edges going from u
+ * to v (undirected edges go both ways). The rank of a node is its score
+ * divided by the sum of all scores. Nodes without leaving edges do not give
+ * their score to anybody.
+ * </p>
+ * 
+ * <p>
+ * Along with the score, each node has a residual, the part of its score that
+ * has not yet been given to its neighbours. Pushing a node moves its residual
+ * to its score and gives a share of it to the residual of each neighbour.
+ * When an edge is added or removed, only the residuals of the neighbours of
+ * its source change, then nodes whose residual is above the tolerance are
+ * pushed. Residuals may be negative. Since each push lowers the sum of
+ * residuals, updates stay local to the region of the graph that really
+ * changes.
+ * </p>
+ * 
+ * <p>
+ * {@link #compute()} computes all scores from scratch with a power
+ * iteration run in parallel, which is the faster way to load a large graph.
+ * Once initialised with a graph, this algorithm registers as an element sink
+ * of the graph. If a rank attribute is set, ranks are written in the nodes at
+ * each step and by {@link #publish()}, only for nodes whose rank moved.
+ * </p>
+ */
+public class DynamicPageRank implements ElementSink {
+	// Attribute
+
+	/**
+	 * The graph followed.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph structure.
+	 */
+	protected CompactGraph compact;
+
+	/**
+	 * Damping factor.
+	 */
+	protected double damping = 0.85;
+
+	/**
+	 * Largest residual left in a node.
+	 */
+	protected double tolerance = 1e-4;
+
+	/**
+	 * Node attribute receiving the ranks, null if none.
+	 */
+	protected String rankAttribute;
+
+	/**
+	 * Number of threads of the power iteration.
+	 */
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Score of each node slot.
+	 */
+	protected double[] score = new double[0];
+
+	/**
+	 * Residual of each node slot.
+	 */
+	protected double[] residual = new double[0];
+
+	/**
+	 * Rank last written in each node slot, NaN if none.
+	 */
+	protected double[] published = new double[0];
+
+	/**
+	 * Is each node slot in the stack of nodes to push?
+	 */
+	protected boolean[] stacked = new boolean[0];
+
+	/**
+	 * Nodes to push.
+	 */
+	protected int[] stack = new int[16];
+
+	protected int stackSize;
+
+	/**
+	 * Sum of the scores.
+	 */
+	protected double total;
+
+	/**
+	 * Number of pushes during the last update.
+	 */
+	protected int lastUpdateSize;
+
+	// Construction
+
+	/**
+	 * New PageRank not storing the ranks in the graph.
+	 */
+	public DynamicPageRank() {
+		this(null);
+	}
+
+	/**
+	 * New PageRank.
+	 * 
+	 * @param rankAttribute
+	 *            Node attribute receiving the ranks, null if they are not
+	 *            stored in the graph.
+	 */
+	public DynamicPageRank(String rankAttribute) {
+		this.rankAttribute = rankAttribute;
+	}
+
+	// Access
+
+	/**
+	 * Rank of a node, between 0 and 1.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The rank, 0 if the node does not exist.
+	 */
+	public double getRank(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 || total <= 0 ? 0 : score[n] / total;
+	}
+
+	/**
+	 * Score of a node, as in the equation above, that is without division by
+	 * the sum of scores.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The score, 0 if the node does not exist.
+	 */
+	public double getScore(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 ? 0 : score[n];
+	}
+
+	/**
+	 * The damping factor.
+	 */
+	public double getDampingFactor() {
+		return damping;
+	}
+
+	/**
+	 * The tolerance.
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Number of nodes pushed during the last update. This measures the cost
+	 * of the update.
+	 */
+	public int getLastUpdateSize() {
+		return lastUpdateSize;
+	}
+
+	// Command
+
+	/**
+	 * Set the damping factor, the probability to follow an edge rather than
+	 * jump to a random node, 0.85 by default. Scores are computed again if
+	 * the algorithm is running.
+	 */
+	public void setDampingFactor(double damping) {
+		if (damping <= 0 || damping >= 1)
+			throw new IllegalArgumentException("the damping factor must be "
+					+ "between 0 and 1");
+
+		this.damping = damping;
+
+		if (compact != null)
+			compute();
+	}
+
+	/**
+	 * Set the largest residual left in a node, 1e-4 by default. Since the
+	 * average score is around 1, this is roughly the relative error on
+	 * ranks.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Set the node attribute receiving the ranks, null for none.
+	 */
+	public void setRankAttribute(String attribute) {
+		rankAttribute = attribute;
+
+		if (published.length > 0)
+			Arrays.fill(published, Double.NaN);
+	}
+
+	/**
+	 * Number of threads used by {@link #compute()}, by default the number
+	 * of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Copy the structure of the graph, compute the results from scratch and
+	 * follow the graph until {@link #terminate()} is called. A graph given
+	 * before is left.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public void init(Graph graph) {
+		if (this.graph != null)
+			terminate();
+
+		this.graph = graph;
+		compact = new CompactGraph(graph, null, 1);
+		graph.addElementSink(this);
+		compute();
+	}
+
+	/**
+	 * Compute all scores from scratch, by a parallel power iteration
+	 * followed by a push of the residuals left, then write the ranks in the
+	 * graph if a rank attribute is set.
+	 */
+	public void compute() {
+		ensureCapacity();
+
+		int slots = compact.getNodeSlotCount();
+		double[] next = new double[score.length];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		int grain = Math.max(1024, slots / (parallelism * 8));
+		double delta;
+
+		Arrays.fill(score, 0);
+		Arrays.fill(stacked, false);
+		stackSize = 0;
+
+		try {
+			do {
+				pool.invoke(new Pull(0, slots, grain, next));
+				delta = 0;
+
+				for (int n = 0; n < slots; n++)
+					delta = Math.max(delta, Math.abs(next[n] - score[n]));
+
+				double[] t = score;
+				score = next;
+				next = t;
+			} while (delta > tolerance);
+
+			pool.invoke(new Pull(0, slots, grain, residual));
+		} finally {
+			pool.shutdown();
+		}
+
+		total = 0;
+
+		for (int n = 0; n < slots; n++) {
+			residual[n] -= score[n];
+			total += score[n];
+
+			if (Math.abs(residual[n]) > tolerance)
+				stack(n);
+		}
+
+		lastUpdateSize = push();
+		publish();
+	}
+
+	/**
+	 * Write the ranks that moved in the graph, if a rank attribute is set. A
+	 * rank moved if it changed by more than the tolerance times the average
+	 * rank since it was last written. This is done at each step.
+	 */
+	public void publish() {
+		if (rankAttribute == null || total <= 0)
+			return;
+
+		double threshold = tolerance / compact.getNodeCount();
+
+		for (int n = 0; n < compact.getNodeSlotCount(); n++) {
+			if (compact.isNode(n)) {
+				double rank = score[n] / total;
+
+				if (!(Math.abs(rank - published[n]) <= threshold)) {
+					Node node = graph.getNode(compact.getNodeId(n));
+					published[n] = rank;
+
+					if (node != null)
+						node.setAttribute(rankAttribute, rank);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop listening at the graph. The results remain those of the graph at
+	 * the time this method is called.
+	 */
+	public void terminate() {
+		if (graph != null) {
+			graph.removeElementSink(this);
+			graph = null;
+		}
+	}
+
+	// Sink
+
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (compact.getNodeSlot(nodeId) >= 0)
+			return;
+
+		int n = compact.addNode(nodeId);
+
+		ensureCapacity();
+		score[n] = 0;
+		residual[n] = 1 - damping;
+		published[n] = Double.NaN;
+		stack(n);
+		lastUpdateSize = push();
+	}
+
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		if (n < 0)
+			return;
+
+		// The graph may send the removal of the edges after the removal of
+		// the node, they are removed here so that the scores stay coherent.
+
+		int size = 0;
+
+		while (compact.getOutDegree(n) > 0) {
+			removeEdge(compact.getOutEdge(n, 0));
+			size += lastUpdateSize;
+		}
+
+		while (compact.getInDegree(n) > 0) {
+			removeEdge(compact.getInEdge(n, 0));
+			size += lastUpdateSize;
+		}
+
+		total -= score[n];
+		score[n] = 0;
+		residual[n] = 0;
+		published[n] = Double.NaN;
+		compact.removeNode(n);
+		lastUpdateSize = size;
+	}
+
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (compact.getEdgeSlot(edgeId) >= 0)
+			return;
+
+		nodeAdded(graphId, timeId, fromNodeId);
+		nodeAdded(graphId, timeId, toNodeId);
+
+		int f = compact.getNodeSlot(fromNodeId);
+		int t = compact.getNodeSlot(toNodeId);
+		boolean both = !directed && f != t;
+
+		give(f, -1);
+
+		if (both)
+			give(t, -1);
+
+		compact.addEdge(edgeId, fromNodeId, toNodeId, directed, 1);
+		give(f, 1);
+
+		if (both)
+			give(t, 1);
+
+		lastUpdateSize = push();
+	}
+
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e >= 0)
+			removeEdge(e);
+	}
+
+	public void graphCleared(String graphId, long timeId) {
+		compact.clear();
+		Arrays.fill(score, 0);
+		Arrays.fill(residual, 0);
+		Arrays.fill(published, Double.NaN);
+		Arrays.fill(stacked, false);
+		stackSize = 0;
+		total = 0;
+		lastUpdateSize = 0;
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		publish();
+	}
+
+	// Utility
+
+	protected void ensureCapacity() {
+		int n = compact.getNodeSlotCount();
+
+		if (score.length < n) {
+			int old = score.length;
+			n = Math.max(n, old * 2);
+			score = Arrays.copyOf(score, n);
+			residual = Arrays.copyOf(residual, n);
+			published = Arrays.copyOf(published, n);
+			stacked = Arrays.copyOf(stacked, n);
+			Arrays.fill(published, old, n, Double.NaN);
+		}
+	}
+
+	protected void removeEdge(int e) {
+		int f = compact.getSource(e);
+		int t = compact.getTarget(e);
+		boolean both = !compact.isDirected(e) && f != t;
+
+		give(f, -1);
+
+		if (both)
+			give(t, -1);
+
+		compact.removeEdge(e);
+		give(f, 1);
+
+		if (both)
+			give(t, 1);
+
+		lastUpdateSize = push();
+	}
+
+	/**
+	 * Add (or remove) the share of the score of a node given to each of its
+	 * neighbours to (from) their residual. Removing the shares before a
+	 * change of the leaving edges of the node and adding them after keeps
+	 * the residuals coherent with the scores.
+	 * 
+	 * @param n
+	 *            The node slot.
+	 * @param sign
+	 *            1 to add the shares, -1 to remove them.
+	 */
+	protected void give(int n, int sign) {
+		int degree = compact.getOutDegree(n);
+
+		if (degree == 0 || score[n] == 0)
+			return;
+
+		double share = sign * damping * score[n] / degree;
+
+		for (int i = 0; i < degree; i++) {
+			int o = compact.getOpposite(compact.getOutEdge(n, i), n);
+			residual[o] += share;
+
+			if (Math.abs(residual[o]) > tolerance)
+				stack(o);
+		}
+	}
+
+	protected void stack(int n) {
+		if (!stacked[n]) {
+			stacked[n] = true;
+			stack = CompactGraph.push(stack, stackSize++, n);
+		}
+	}
+
+	/**
+	 * Push nodes until no residual is above the tolerance.
+	 * 
+	 * @return The number of pushes.
+	 */
+	protected int push() {
+		int pushes = 0;
+
+		while (stackSize > 0) {
+			int n = stack[--stackSize];
+			double r = residual[n];
+
+			stacked[n] = false;
+
+			if (Math.abs(r) <= tolerance)
+				continue;
+
+			score[n] += r;
+			total += r;
+			residual[n] = 0;
+			pushes++;
+
+			int degree = compact.getOutDegree(n);
+			double share = damping * r / degree;
+
+			for (int i = 0; i < degree; i++) {
+				int o = compact.getOpposite(compact.getOutEdge(n, i), n);
+				residual[o] += share;
+
+				if (Math.abs(residual[o]) > tolerance)
+					stack(o);
+			}
+		}
+
+		return pushes;
+	}
+
+	/**
+	 * One step of power iteration on a range of node slots, reading the
+	 * scores and writing the next ones.
+	 */
+	protected class Pull extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected int from, to, grain;
+
+		protected double[] next;
+
+		protected Pull(int from, int to, int grain, double[] next) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.next = next;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int middle = (from + to) >>> 1;
+
+				invokeAll(new Pull(from, middle, grain, next), new Pull(middle,
+						to, grain, next));
+				return;
+			}
+
+			for (int n = from; n < to; n++) {
+				if (!compact.isNode(n)) {
+					next[n] = 0;
+					continue;
+				}
+
+				double sum = 0;
+
+				for (int i = 0; i < compact.getInDegree(n); i++) {
+					int o = compact.getOpposite(compact.getInEdge(n, i), n);
+					sum += score[o] / compact.getOutDegree(o);
+				}
+
+				next[n] = 1 - damping + damping * sum;
+			}
+		}
+	}
+
+	/**
+	 * Compare the time needed to compute PageRank on a random directed graph
+	 * with the time of an update, as edges are removed and added, and check
+	 * the result against a full computation.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges and the number of
+	 * changes (defaults to 200000, 2000000 and 100000). A graph of ten
+	 * million edges needs about 8GB of heap.
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		int changes = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		int next = 0;
+
+		for (int i = 0; i < edges; i++)
+			next = addRandomEdge(graph, next, random);
+
+		DynamicPageRank pr = new DynamicPageRank();
+		long t = System.nanoTime();
+		pr.init(graph);
+		double full = (System.nanoTime() - t) / 1e6;
+
+		t = System.nanoTime();
+		pr.compute();
+		full = Math.min(full, (System.nanoTime() - t) / 1e6);
+
+		System.out.printf("%d nodes, %d edges, full computation %.1f ms "
+				+ "with %d threads%n", graph.getNodeCount(),
+				graph.getEdgeCount(), full, pr.parallelism);
+
+		long pushes = 0;
+		t = System.nanoTime();
+
+		for (int i = 0; i < changes; i++) {
+			if (i % 2 == 0) {
+				Edge e = graph.getEdge(random.nextInt(graph.getEdgeCount()));
+				graph.removeEdge(e.getId());
+			} else {
+				next = addRandomEdge(graph, next, random);
+			}
+
+			pushes += pr.getLastUpdateSize();
+		}
+
+		double update = (System.nanoTime() - t) / 1e6 / changes;
+
+		System.out.printf("update %.4f ms on average (x%.0f faster), "
+				+ "%.1f pushes%n", update, full / update, (double) pushes
+				/ changes);
+
+		DynamicPageRank reference = new DynamicPageRank();
+		reference.setTolerance(pr.getTolerance() / 100);
+		reference.init(graph);
+
+		double error = 0;
+
+		for (Node node : graph) {
+			double r = reference.getRank(node.getId());
+			error = Math.max(error, Math.abs(pr.getRank(node.getId()) - r)
+					/ r);
+		}
+
+		System.out.printf("largest relative error %.2e%n", error);
+		reference.terminate();
+		pr.terminate();
+	}
+
+	protected static int addRandomEdge(Graph graph, int next, Random random) {
+		int n = graph.getNodeCount();
+
+		while (true) {
+			try {
+				graph.addEdge(Integer.toString(next++),
+						graph.getNode(random.nextInt(n)).getId(),
+						graph.getNode(random.nextInt(n)).getId(), true);
+				return next;
+			} catch (IdAlreadyInUseException e) {
+				// Already an edge between these nodes, try again.
+			}
+		}
+	}
+}
@@ -0,0 +1,684 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.Path;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.stream.SinkAdapter;
+
+/**
+ * Single source shortest paths, updated as the graph changes.
+ * 
+ * <p>
+ * Once initialised with a graph, this algorithm registers as a sink of the
+ * graph and keeps the distance from a source node to all other nodes, and the
+ * tree of shortest paths, up to date. Instead of running Dijkstra's algorithm
+ * again after each change, only the region of the graph whose distances
+ * change is explored:
+ * <ul>
+ * <li>when an edge is added or its weight decreases, distances are lowered
+ * from the end of the edge, as far as they improve;</li>
+ * <li>when an edge of the tree of shortest paths is removed or its weight
+ * increases, the nodes under this edge in the tree are the only ones whose
+ * distance may grow. Their distances are computed again from the nodes
+ * around them. Changes to edges outside of the tree cost nothing.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * Weights are given by an edge attribute, they must be positive or zero.
+ * Edges without this attribute have the default weight (1 by default). If no
+ * attribute is given, all edges have the default weight.
+ * </p>
+ * 
+ * <p>
+ * Distances and predecessors are stored in arrays indexed by the slots of a
+ * {@link CompactGraph} copy of the graph, and the nodes to settle in an
+ * {@link IndexedHeap}.
+ * </p>
+ * 
+ * <pre>
+ * DynamicShortestPaths sp = new DynamicShortestPaths(&quot;A&quot;, &quot;weight&quot;);
+ * sp.init(graph);
+ * sp.compute();
+ * // ... modify the graph ...
+ * Path path = sp.getPath(&quot;B&quot;);
+ * </pre>
+ */
+public class DynamicShortestPaths extends SinkAdapter {
+	// Attribute
+
+	/**
+	 * The graph followed.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph structure.
+	 */
+	protected CompactGraph compact;
+
+	/**
+	 * Identifier of the source node.
+	 */
+	protected String sourceId;
+
+	/**
+	 * Edge attribute giving the weights, null if all edges have the default
+	 * weight.
+	 */
+	protected String weightAttribute;
+
+	/**
+	 * Weight of edges without the weight attribute.
+	 */
+	protected double defaultWeight = 1;
+
+	/**
+	 * Distance of each node, infinite if not reachable.
+	 */
+	protected double[] distance = new double[0];
+
+	/**
+	 * Slot of the edge leading to each node in the tree, -1 if none.
+	 */
+	protected int[] predecessor = new int[0];
+
+	/**
+	 * Marks of the nodes affected by an increase.
+	 */
+	protected int[] mark = new int[0];
+
+	/**
+	 * Current mark value.
+	 */
+	protected int currentMark;
+
+	/**
+	 * Nodes to settle.
+	 */
+	protected IndexedHeap heap = new IndexedHeap(16);
+
+	/**
+	 * Stack used to collect the affected nodes.
+	 */
+	protected int[] stack = new int[16];
+
+	/**
+	 * The affected nodes.
+	 */
+	protected int[] affected = new int[16];
+
+	/**
+	 * Number of nodes whose distance changed during the last update.
+	 */
+	protected int lastUpdateSize;
+
+	// Construction
+
+	/**
+	 * New shortest paths algorithm where all edges have a weight of 1.
+	 * 
+	 * @param sourceId
+	 *            Identifier of the source node.
+	 */
+	public DynamicShortestPaths(String sourceId) {
+		this(sourceId, null);
+	}
+
+	/**
+	 * New shortest paths algorithm.
+	 * 
+	 * @param sourceId
+	 *            Identifier of the source node.
+	 * @param weightAttribute
+	 *            Edge attribute giving the weights, null if all edges have
+	 *            the default weight.
+	 */
+	public DynamicShortestPaths(String sourceId, String weightAttribute) {
+		this.sourceId = sourceId;
+		this.weightAttribute = weightAttribute;
+	}
+
+	// Access
+
+	/**
+	 * Identifier of the source node.
+	 */
+	public String getSource() {
+		return sourceId;
+	}
+
+	/**
+	 * Distance from the source to a node.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The distance, infinite if the node cannot be reached or does not
+	 *         exist.
+	 */
+	public double getDistance(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 ? Double.POSITIVE_INFINITY : distance[n];
+	}
+
+	/**
+	 * Shortest path from the source to a node. The path is built from the
+	 * nodes and edges of the graph.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The path, null if the node cannot be reached.
+	 */
+	public Path getPath(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		if (n < 0 || Double.isInfinite(distance[n]))
+			return null;
+
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+
+		while (predecessor[n] >= 0) {
+			int e = predecessor[n];
+			edges.add(graph.getEdge(compact.getEdgeId(e)));
+			n = compact.getOpposite(e, n);
+		}
+
+		Path path = new Path();
+		Node current = graph.getNode(compact.getNodeId(n));
+		path.setRoot(current);
+
+		for (int i = edges.size() - 1; i >= 0; i--) {
+			Edge edge = edges.get(i);
+			path.add(current, edge);
+			current = edge.getOpposite(current);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Number of nodes whose distance changed during the last update. This
+	 * measures the size of the region explored.
+	 */
+	public int getLastUpdateSize() {
+		return lastUpdateSize;
+	}
+
+	// Command
+
+	/**
+	 * Set the weight of edges without the weight attribute. This must be set
+	 * before {@link #init(Graph)}.
+	 */
+	public void setDefaultWeight(double w) {
+		defaultWeight = w;
+	}
+
+	/**
+	 * Change the source node and compute all distances again.
+	 */
+	public void setSource(String sourceId) {
+		this.sourceId = sourceId;
+
+		if (compact != null)
+			compute();
+	}
+
+	/**
+	 * Copy the structure of the graph, compute the results from scratch and
+	 * follow the graph until {@link #terminate()} is called. A graph given
+	 * before is left.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public void init(Graph graph) {
+		if (this.graph != null)
+			terminate();
+
+		this.graph = graph;
+		compact = new CompactGraph(graph, weightAttribute, defaultWeight);
+		graph.addSink(this);
+		compute();
+	}
+
+	/**
+	 * Compute all distances from scratch with Dijkstra's algorithm.
+	 */
+	public void compute() {
+		ensureCapacity();
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		Arrays.fill(predecessor, -1);
+		heap.clear();
+
+		int s = compact.getNodeSlot(sourceId);
+
+		if (s >= 0) {
+			distance[s] = 0;
+			heap.put(s, 0);
+		}
+
+		lastUpdateSize = propagate(false);
+	}
+
+	/**
+	 * Stop listening at the graph. The results remain those of the graph at
+	 * the time this method is called.
+	 */
+	public void terminate() {
+		if (graph != null) {
+			graph.removeSink(this);
+			graph = null;
+		}
+	}
+
+	// Sink
+
+	@Override
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		int n = compact.addNode(nodeId);
+		ensureCapacity();
+		distance[n] = Double.POSITIVE_INFINITY;
+		predecessor[n] = -1;
+		lastUpdateSize = 0;
+
+		if (nodeId.equals(sourceId))
+			distance[n] = 0;
+	}
+
+	@Override
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		if (n < 0)
+			return;
+
+		if (nodeId.equals(sourceId)) {
+			compact.removeNode(n);
+			compute();
+			lastUpdateSize = compact.getNodeCount();
+			return;
+		}
+
+		// Edges are removed one by one so that the distances stay coherent,
+		// the graph may not send their removal before the node removal.
+
+		int size = 0;
+
+		while (compact.getOutDegree(n) > 0)
+			size += removeEdge(compact.getOutEdge(n, 0));
+
+		while (compact.getInDegree(n) > 0)
+			size += removeEdge(compact.getInEdge(n, 0));
+
+		compact.removeNode(n);
+		distance[n] = Double.POSITIVE_INFINITY;
+		predecessor[n] = -1;
+		lastUpdateSize = size;
+	}
+
+	@Override
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (compact.getEdgeSlot(edgeId) >= 0)
+			return;
+
+		int e = compact.addEdge(edgeId, fromNodeId, toNodeId, directed,
+				defaultWeight);
+		ensureCapacity();
+
+		int f = compact.getSource(e);
+		int t = compact.getTarget(e);
+
+		if (nodeIdIsSource(f))
+			distance[f] = 0;
+
+		if (nodeIdIsSource(t))
+			distance[t] = 0;
+
+		lastUpdateSize = decrease(e);
+	}
+
+	@Override
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e >= 0)
+			lastUpdateSize = removeEdge(e);
+	}
+
+	@Override
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (attribute.equals(weightAttribute))
+			changeWeight(edgeId, CompactGraph.weightOf(value, defaultWeight));
+	}
+
+	@Override
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (attribute.equals(weightAttribute))
+			changeWeight(edgeId,
+					CompactGraph.weightOf(newValue, defaultWeight));
+	}
+
+	@Override
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		if (attribute.equals(weightAttribute))
+			changeWeight(edgeId, defaultWeight);
+	}
+
+	@Override
+	public void graphCleared(String graphId, long timeId) {
+		compact.clear();
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		Arrays.fill(predecessor, -1);
+		lastUpdateSize = 0;
+	}
+
+	// Utility
+
+	protected boolean nodeIdIsSource(int n) {
+		return compact.getNodeId(n).equals(sourceId);
+	}
+
+	protected void ensureCapacity() {
+		int n = compact.getNodeSlotCount();
+
+		if (distance.length < n) {
+			int old = distance.length;
+			n = Math.max(n, old * 2);
+			distance = Arrays.copyOf(distance, n);
+			predecessor = Arrays.copyOf(predecessor, n);
+			mark = Arrays.copyOf(mark, n);
+			Arrays.fill(distance, old, n, Double.POSITIVE_INFINITY);
+			Arrays.fill(predecessor, old, n, -1);
+		}
+	}
+
+	/**
+	 * Change the weight of an edge and update the distances.
+	 */
+	protected void changeWeight(String edgeId, double w) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e < 0)
+			return;
+
+		double old = compact.getWeight(e);
+		compact.setWeight(e, w);
+
+		if (w < old) {
+			lastUpdateSize = decrease(e);
+		} else if (w > old) {
+			int head = treeHead(e);
+			lastUpdateSize = head >= 0 ? increase(head) : 0;
+		}
+	}
+
+	/**
+	 * Remove an edge and update the distances.
+	 * 
+	 * @return The number of nodes whose distance changed.
+	 */
+	protected int removeEdge(int e) {
+		int head = treeHead(e);
+
+		compact.removeEdge(e);
+
+		return head >= 0 ? increase(head) : 0;
+	}
+
+	/**
+	 * The node reached by an edge of the tree, or -1 if the edge is not in the
+	 * tree.
+	 */
+	protected int treeHead(int e) {
+		int t = compact.getTarget(e);
+
+		if (predecessor[t] == e)
+			return t;
+
+		int f = compact.getSource(e);
+
+		if (!compact.isDirected(e) && predecessor[f] == e)
+			return f;
+
+		return -1;
+	}
+
+	/**
+	 * Lower the distances after an edge was added or its weight decreased.
+	 */
+	protected int decrease(int e) {
+		int f = compact.getSource(e);
+		int t = compact.getTarget(e);
+		double w = compact.getWeight(e);
+
+		heap.clear();
+		relax(e, f, t, w);
+
+		if (!compact.isDirected(e))
+			relax(e, t, f, w);
+
+		return propagate(false);
+	}
+
+	protected void relax(int e, int from, int to, double w) {
+		double d = distance[from] + w;
+
+		if (d < distance[to]) {
+			distance[to] = d;
+			predecessor[to] = e;
+			heap.put(to, d);
+		}
+	}
+
+	/**
+	 * Update the distances of the nodes under a node in the tree, after the
+	 * edge leading to this node was removed or its weight increased.
+	 * 
+	 * @param head
+	 *            The node under the edge.
+	 * @return The number of nodes affected.
+	 */
+	protected int increase(int head) {
+		if (++currentMark == Integer.MAX_VALUE) {
+			Arrays.fill(mark, 0);
+			currentMark = 1;
+		}
+
+		// Collect the sub-tree, only these nodes may have a longer distance.
+
+		int count = 0;
+		int top = 0;
+		stack = CompactGraph.push(stack, top++, head);
+		mark[head] = currentMark;
+
+		while (top > 0) {
+			int n = stack[--top];
+			affected = CompactGraph.push(affected, count++, n);
+
+			for (int i = 0; i < compact.getOutDegree(n); i++) {
+				int e = compact.getOutEdge(n, i);
+				int o = compact.getOpposite(e, n);
+
+				if (predecessor[o] == e && mark[o] != currentMark) {
+					mark[o] = currentMark;
+					stack = CompactGraph.push(stack, top++, o);
+				}
+			}
+		}
+
+		// Each affected node starts from its best neighbour outside of the
+		// sub-tree, then Dijkstra's algorithm runs inside the sub-tree.
+
+		for (int i = 0; i < count; i++) {
+			distance[affected[i]] = Double.POSITIVE_INFINITY;
+			predecessor[affected[i]] = -1;
+		}
+
+		heap.clear();
+
+		for (int i = 0; i < count; i++) {
+			int n = affected[i];
+
+			for (int j = 0; j < compact.getInDegree(n); j++) {
+				int e = compact.getInEdge(n, j);
+				int o = compact.getOpposite(e, n);
+
+				if (mark[o] != currentMark)
+					relax(e, o, n, compact.getWeight(e));
+			}
+		}
+
+		propagate(true);
+
+		return count;
+	}
+
+	/**
+	 * Run Dijkstra's algorithm from the nodes in the heap. If restricted, only
+	 * the marked nodes may change.
+	 * 
+	 * @return The number of nodes settled.
+	 */
+	protected int propagate(boolean restricted) {
+		int settled = 0;
+
+		while (!heap.isEmpty()) {
+			int n = heap.poll();
+			settled++;
+
+			for (int i = 0; i < compact.getOutDegree(n); i++) {
+				int e = compact.getOutEdge(n, i);
+				int o = compact.getOpposite(e, n);
+
+				if (!restricted || mark[o] == currentMark)
+					relax(e, n, o, compact.getWeight(e));
+			}
+		}
+
+		return settled;
+	}
+
+	/**
+	 * Benchmark of the update time versus a complete computation, on a random
+	 * graph whose edges are removed, added and re-weighted at random. The
+	 * distances are checked against a complete computation at the end.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges and the number of
+	 * changes (defaults to 100000, 1000000 and 10000).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int changes = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		for (int i = 0; i < edges; i++)
+			addRandomEdge(graph, Integer.toString(i), random);
+
+		DynamicShortestPaths sp = new DynamicShortestPaths("0", "weight");
+		long t = System.nanoTime();
+		sp.init(graph);
+		double full = (System.nanoTime() - t) / 1e6;
+
+		t = System.nanoTime();
+		sp.compute();
+		full = Math.min(full, (System.nanoTime() - t) / 1e6);
+
+		System.out.printf("%d nodes, %d edges, full computation %.1f ms%n",
+				graph.getNodeCount(), graph.getEdgeCount(), full);
+
+		long explored = 0;
+		int next = edges;
+		t = System.nanoTime();
+
+		for (int i = 0; i < changes; i++) {
+			Edge e = graph.getEdge(random.nextInt(graph.getEdgeCount()));
+
+			switch (i % 3) {
+			case 0:
+				graph.removeEdge(e.getId());
+				break;
+			case 1:
+				addRandomEdge(graph, Integer.toString(next++), random);
+				break;
+			default:
+				e.changeAttribute("weight", 1 + random.nextInt(100));
+			}
+
+			explored += sp.getLastUpdateSize();
+		}
+
+		double update = (System.nanoTime() - t) / 1e6 / changes;
+
+		System.out.printf("update %.4f ms on average (x%.0f faster), "
+				+ "%.1f nodes explored%n", update, full / update,
+				(double) explored / changes);
+
+		double[] incremental = Arrays.copyOf(sp.distance, sp.distance.length);
+		sp.compute();
+		int errors = 0;
+
+		for (int i = 0; i < sp.compact.getNodeSlotCount(); i++)
+			if (sp.compact.isNode(i) && incremental[i] != sp.distance[i])
+				errors++;
+
+		System.out.printf("%d errors%n", errors);
+		sp.terminate();
+	}
+
+	protected static void addRandomEdge(Graph graph, String id, Random random) {
+		int n = graph.getNodeCount();
+
+		while (true) {
+			try {
+				Edge e = graph.addEdge(id, Integer.toString(random.nextInt(n)),
+						Integer.toString(random.nextInt(n)));
+				e.addAttribute("weight", 1 + random.nextInt(100));
+				return;
+			} catch (IdAlreadyInUseException e) {
+				// The nodes are already linked, try others.
+			}
+		}
+	}
+}
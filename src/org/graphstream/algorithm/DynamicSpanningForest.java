@@ -0,0 +1,957 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.stream.SinkAdapter;
+
+/**
+ * Minimum (or maximum) spanning forest, updated as the graph changes.
+ * 
+ * <p>
+ * {@link #compute()} builds the forest from scratch with Boruvka's
+ * algorithm: at each round, the lightest edge leaving each tree is searched
+ * in parallel over all edges, then these edges join the trees. Once
+ * initialised with a graph, this algorithm registers as a sink of the graph
+ * and keeps the forest up to date:
+ * <ul>
+ * <li>when an edge is added or gets lighter, if its ends are in different
+ * trees it joins them, otherwise it replaces the heaviest edge of the path
+ * between its ends in the tree if it is lighter;</li>
+ * <li>when an edge of the forest is removed or gets heavier, its tree is cut
+ * in two and the lightest edge joining the two parts is searched from the
+ * smaller one, both parts being explored at the same pace until one of them
+ * is completely explored;</li>
+ * <li>other changes cost nothing.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * Each tree is stored as a parent edge for each node. Joining two trees
+ * turns one of them upside down from an end of the new edge to its root, the
+ * shorter way being chosen. Edges of equal weight are ordered by their slot
+ * so that the forest is unique and the updates coherent.
+ * </p>
+ * 
+ * <p>
+ * Weights are given by an edge attribute, edges without it have the default
+ * weight. If a tree attribute is set, edges of the forest receive it, for
+ * example "ui.class" with value "tree" to highlight them in a viewer with the
+ * style sheet, and lose it when they leave the forest.
+ * </p>
+ */
+public class DynamicSpanningForest extends SinkAdapter {
+	// Attribute
+
+	/**
+	 * The graph followed.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph structure.
+	 */
+	protected CompactGraph compact;
+
+	/**
+	 * Edge attribute giving the weights, null if all edges have the default
+	 * weight.
+	 */
+	protected String weightAttribute;
+
+	/**
+	 * Weight of edges without the weight attribute.
+	 */
+	protected double defaultWeight = 1;
+
+	/**
+	 * 1 for a minimum spanning forest, -1 for a maximum one.
+	 */
+	protected double sign = 1;
+
+	/**
+	 * Edge attribute marking the forest and its value, null if none.
+	 */
+	protected String treeAttribute;
+
+	protected Object treeValue;
+
+	/**
+	 * Number of threads used by {@link #compute()}.
+	 */
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Slot of the edge towards the parent of each node slot, -1 for roots.
+	 */
+	protected int[] parentEdge = new int[0];
+
+	/**
+	 * Marks of the nodes explored.
+	 */
+	protected int[] mark = new int[0];
+
+	protected int currentMark;
+
+	/**
+	 * Is each edge slot in the forest?
+	 */
+	protected boolean[] forest = new boolean[0];
+
+	/**
+	 * Does each edge slot have the tree attribute?
+	 */
+	protected boolean[] marked = new boolean[0];
+
+	/**
+	 * Edges that joined or left the forest during an update.
+	 */
+	protected int[] touched = new int[16];
+
+	protected int touchedCount;
+
+	/**
+	 * The two parts explored when an edge of the forest is removed.
+	 */
+	protected int[] partA = new int[16], partB = new int[16];
+
+	/**
+	 * Total weight and number of edges of the forest.
+	 */
+	protected double forestWeight;
+
+	protected int forestSize;
+
+	/**
+	 * Number of nodes explored during the last update.
+	 */
+	protected int lastUpdateSize;
+
+	// Construction
+
+	/**
+	 * New spanning forest where all edges have a weight of 1.
+	 */
+	public DynamicSpanningForest() {
+		this(null);
+	}
+
+	/**
+	 * New spanning forest.
+	 * 
+	 * @param weightAttribute
+	 *            Edge attribute giving the weights, null if all edges have
+	 *            the default weight.
+	 */
+	public DynamicSpanningForest(String weightAttribute) {
+		this.weightAttribute = weightAttribute;
+	}
+
+	// Access
+
+	/**
+	 * Is an edge in the forest?
+	 */
+	public boolean isInForest(String edgeId) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		return e >= 0 && forest[e];
+	}
+
+	/**
+	 * Sum of the weights of the edges of the forest.
+	 */
+	public double getForestWeight() {
+		return forestWeight;
+	}
+
+	/**
+	 * Number of edges in the forest.
+	 */
+	public int getForestSize() {
+		return forestSize;
+	}
+
+	/**
+	 * Number of nodes explored during the last update. This measures the
+	 * cost of the update.
+	 */
+	public int getLastUpdateSize() {
+		return lastUpdateSize;
+	}
+
+	// Command
+
+	/**
+	 * Set the weight of edges without the weight attribute. This must be set
+	 * before {@link #init(Graph)}.
+	 */
+	public void setDefaultWeight(double w) {
+		defaultWeight = w;
+	}
+
+	/**
+	 * Compute a maximum spanning forest rather than a minimum one. This must
+	 * be set before {@link #init(Graph)}.
+	 */
+	public void setMaximum(boolean on) {
+		sign = on ? -1 : 1;
+	}
+
+	/**
+	 * Mark the edges of the forest with an attribute.
+	 * 
+	 * @param attribute
+	 *            The attribute, null to stop marking. Marks already set are
+	 *            not removed.
+	 * @param value
+	 *            The attribute value.
+	 */
+	public void setTreeAttribute(String attribute, Object value) {
+		treeAttribute = attribute;
+		treeValue = value;
+
+		if (compact != null) {
+			Arrays.fill(marked, false);
+			publishAll();
+		}
+	}
+
+	/**
+	 * Number of threads used by {@link #compute()}, by default the number
+	 * of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Copy the structure of the graph, compute the results from scratch and
+	 * follow the graph until {@link #terminate()} is called. A graph given
+	 * before is left.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public void init(Graph graph) {
+		if (this.graph != null)
+			terminate();
+
+		this.graph = graph;
+		compact = new CompactGraph(graph, weightAttribute, defaultWeight);
+		graph.addSink(this);
+		compute();
+	}
+
+	/**
+	 * Build the forest from scratch with a parallel Boruvka algorithm.
+	 */
+	public void compute() {
+		ensureCapacity();
+
+		int nodes = compact.getNodeSlotCount();
+		int[] set = new int[nodes];
+		int[] root = new int[nodes];
+		AtomicIntegerArray lightest = new AtomicIntegerArray(nodes);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		int grain = Math.max(4096, compact.getEdgeSlotCount()
+				/ (parallelism * 8));
+		int added = 1;
+
+		Arrays.fill(forest, false);
+		forestWeight = 0;
+		forestSize = 0;
+
+		for (int n = 0; n < nodes; n++)
+			set[n] = n;
+
+		try {
+			while (added > 0) {
+				added = 0;
+
+				for (int n = 0; n < nodes; n++) {
+					root[n] = find(set, n);
+					lightest.set(n, -1);
+				}
+
+				pool.invoke(new Lightest(0, compact.getEdgeSlotCount(), grain,
+						root, lightest));
+
+				for (int n = 0; n < nodes; n++) {
+					int e = lightest.get(n);
+
+					if (e >= 0) {
+						int a = find(set, compact.getSource(e));
+						int b = find(set, compact.getTarget(e));
+
+						if (a != b) {
+							set[a] = b;
+							forest[e] = true;
+							forestWeight += compact.getWeight(e);
+							forestSize++;
+							added++;
+						}
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		orient();
+		publishAll();
+		lastUpdateSize = compact.getNodeCount();
+	}
+
+	/**
+	 * Stop listening at the graph. The results remain those of the graph at
+	 * the time this method is called.
+	 */
+	public void terminate() {
+		if (graph != null) {
+			graph.removeSink(this);
+			graph = null;
+		}
+	}
+
+	// Sink
+
+	@Override
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (compact.getNodeSlot(nodeId) >= 0)
+			return;
+
+		int n = compact.addNode(nodeId);
+		ensureCapacity();
+		parentEdge[n] = -1;
+		lastUpdateSize = 0;
+	}
+
+	@Override
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		if (n < 0)
+			return;
+
+		// The graph may send the removal of the edges after the removal of
+		// the node, they are removed here so that the forest stays coherent.
+
+		int size = 0;
+
+		while (compact.getOutDegree(n) > 0) {
+			removeEdge(compact.getOutEdge(n, 0));
+			size += lastUpdateSize;
+		}
+
+		while (compact.getInDegree(n) > 0) {
+			removeEdge(compact.getInEdge(n, 0));
+			size += lastUpdateSize;
+		}
+
+		compact.removeNode(n);
+		parentEdge[n] = -1;
+		lastUpdateSize = size;
+	}
+
+	@Override
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (compact.getEdgeSlot(edgeId) >= 0)
+			return;
+
+		nodeAdded(graphId, timeId, fromNodeId);
+		nodeAdded(graphId, timeId, toNodeId);
+
+		int e = compact.addEdge(edgeId, fromNodeId, toNodeId, directed,
+				defaultWeight);
+
+		ensureCapacity();
+		forest[e] = false;
+		marked[e] = false;
+		touchedCount = 0;
+		lastUpdateSize = insert(e);
+		publish(-1);
+	}
+
+	@Override
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e >= 0)
+			removeEdge(e);
+	}
+
+	@Override
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (attribute.equals(weightAttribute))
+			changeWeight(edgeId, CompactGraph.weightOf(value, defaultWeight));
+	}
+
+	@Override
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (attribute.equals(weightAttribute))
+			changeWeight(edgeId,
+					CompactGraph.weightOf(newValue, defaultWeight));
+	}
+
+	@Override
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		if (attribute.equals(weightAttribute))
+			changeWeight(edgeId, defaultWeight);
+	}
+
+	@Override
+	public void graphCleared(String graphId, long timeId) {
+		compact.clear();
+		Arrays.fill(forest, false);
+		Arrays.fill(marked, false);
+		forestWeight = 0;
+		forestSize = 0;
+		lastUpdateSize = 0;
+	}
+
+	// Utility
+
+	protected void ensureCapacity() {
+		int n = compact.getNodeSlotCount();
+
+		if (parentEdge.length < n) {
+			int old = parentEdge.length;
+			n = Math.max(n, old * 2);
+			parentEdge = Arrays.copyOf(parentEdge, n);
+			mark = Arrays.copyOf(mark, n);
+			Arrays.fill(parentEdge, old, n, -1);
+		}
+
+		int e = compact.getEdgeSlotCount();
+
+		if (forest.length < e) {
+			e = Math.max(e, forest.length * 2);
+			forest = Arrays.copyOf(forest, e);
+			marked = Arrays.copyOf(marked, e);
+		}
+	}
+
+	protected static int find(int[] set, int n) {
+		while (set[n] != n) {
+			set[n] = set[set[n]];
+			n = set[n];
+		}
+
+		return n;
+	}
+
+	/**
+	 * Is an edge before another in the order of weights? The slots break
+	 * ties.
+	 */
+	protected boolean before(int e1, int e2) {
+		double w1 = sign * compact.getWeight(e1);
+		double w2 = sign * compact.getWeight(e2);
+
+		return w1 < w2 || (w1 == w2 && e1 < e2);
+	}
+
+	/**
+	 * Searches in parallel, for each tree, the lightest edge leaving it.
+	 */
+	protected class Lightest extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected int from, to, grain;
+
+		protected int[] root;
+
+		protected AtomicIntegerArray lightest;
+
+		protected Lightest(int from, int to, int grain, int[] root,
+				AtomicIntegerArray lightest) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.root = root;
+			this.lightest = lightest;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int middle = (from + to) >>> 1;
+
+				invokeAll(new Lightest(from, middle, grain, root, lightest),
+						new Lightest(middle, to, grain, root, lightest));
+				return;
+			}
+
+			for (int e = from; e < to; e++) {
+				if (compact.isEdge(e)) {
+					int a = root[compact.getSource(e)];
+					int b = root[compact.getTarget(e)];
+
+					if (a != b) {
+						offer(a, e);
+						offer(b, e);
+					}
+				}
+			}
+		}
+
+		protected void offer(int tree, int e) {
+			while (true) {
+				int current = lightest.get(tree);
+
+				if (current >= 0 && !before(e, current))
+					return;
+
+				if (lightest.compareAndSet(tree, current, e))
+					return;
+			}
+		}
+	}
+
+	/**
+	 * Set the parent edges of all nodes from the edges of the forest.
+	 */
+	protected void orient() {
+		int m = ++currentMark;
+
+		for (int n = 0; n < compact.getNodeSlotCount(); n++) {
+			if (compact.isNode(n) && mark[n] != m) {
+				int count = 1;
+
+				partA[0] = n;
+				mark[n] = m;
+				parentEdge[n] = -1;
+
+				for (int i = 0; i < count; i++)
+					count = expand(partA[i], m, count, true, true);
+			}
+		}
+	}
+
+	/**
+	 * Add the neighbours of a node in the forest not yet marked to a part.
+	 * 
+	 * @param orient
+	 *            Make the node the parent of its neighbours.
+	 * @return The new size of the part.
+	 */
+	protected int expand(int n, int m, int count, boolean a, boolean orient) {
+		for (int i = 0; i < compact.getOutDegree(n); i++)
+			count = visit(compact.getOutEdge(n, i), n, m, count, a, orient);
+
+		for (int i = 0; i < compact.getInDegree(n); i++)
+			count = visit(compact.getInEdge(n, i), n, m, count, a, orient);
+
+		return count;
+	}
+
+	protected int visit(int e, int n, int m, int count, boolean a,
+			boolean orient) {
+		if (forest[e]) {
+			int o = compact.getOpposite(e, n);
+
+			if (mark[o] != m) {
+				mark[o] = m;
+
+				if (orient)
+					parentEdge[o] = e;
+
+				if (a)
+					partA = CompactGraph.push(partA, count++, o);
+				else
+					partB = CompactGraph.push(partB, count++, o);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Add an edge that is not in the forest, if it belongs there.
+	 * 
+	 * @return The number of nodes explored.
+	 */
+	protected int insert(int e) {
+		int u = compact.getSource(e);
+		int v = compact.getTarget(e);
+		int m = ++currentMark;
+		int explored = 0;
+
+		if (u == v)
+			return 0;
+
+		for (int x = u; x >= 0; x = parent(x)) {
+			mark[x] = m;
+			explored++;
+		}
+
+		int top = v;
+
+		while (mark[top] != m) {
+			if (parentEdge[top] < 0) {
+				link(e);
+				return explored;
+			}
+
+			top = parent(top);
+			explored++;
+		}
+
+		int heaviest = heaviest(u, top, heaviest(v, top, -1));
+
+		if (before(e, heaviest)) {
+			cut(heaviest);
+			link(e);
+		}
+
+		return explored;
+	}
+
+	protected int parent(int n) {
+		int e = parentEdge[n];
+
+		return e < 0 ? -1 : compact.getOpposite(e, n);
+	}
+
+	/**
+	 * Heaviest edge between a node and one of its ancestors.
+	 * 
+	 * @param heaviest
+	 *            Heaviest edge found up to now, -1 if none.
+	 */
+	protected int heaviest(int n, int ancestor, int heaviest) {
+		for (; n != ancestor; n = parent(n))
+			if (heaviest < 0 || before(heaviest, parentEdge[n]))
+				heaviest = parentEdge[n];
+
+		return heaviest;
+	}
+
+	/**
+	 * Join two trees with an edge. The tree whose root is closer to its end
+	 * of the edge is turned upside down to hang from the edge.
+	 */
+	protected void link(int e) {
+		int u = compact.getSource(e);
+		int v = compact.getTarget(e);
+		int a = u, b = v;
+
+		while (true) {
+			if (parentEdge[a] < 0)
+				break;
+
+			if (parentEdge[b] < 0) {
+				u = v;
+				break;
+			}
+
+			a = parent(a);
+			b = parent(b);
+		}
+
+		int incoming = e;
+
+		for (int n = u; n >= 0;) {
+			int next = parentEdge[n];
+			int up = parent(n);
+
+			parentEdge[n] = incoming;
+			incoming = next;
+			n = up;
+		}
+
+		forest[e] = true;
+		forestWeight += compact.getWeight(e);
+		forestSize++;
+		touched = CompactGraph.push(touched, touchedCount++, e);
+	}
+
+	/**
+	 * Remove an edge from the forest, the subtree under it becoming a tree.
+	 */
+	protected void cut(int e) {
+		int u = compact.getSource(e);
+		int child = parentEdge[u] == e ? u : compact.getTarget(e);
+
+		parentEdge[child] = -1;
+		forest[e] = false;
+		forestWeight -= compact.getWeight(e);
+		forestSize--;
+		touched = CompactGraph.push(touched, touchedCount++, e);
+	}
+
+	/**
+	 * Join again two trees that were one, with the lightest edge joining
+	 * them, if any. Both trees are explored at the same pace until one is
+	 * completely explored, then the edges of this smaller one are searched.
+	 * 
+	 * @return The number of nodes explored.
+	 */
+	protected int reconnect(int u, int v) {
+		int markA = ++currentMark;
+		int markB = ++currentMark;
+		int sizeA = 1, sizeB = 1;
+		int nextA = 0, nextB = 0;
+
+		partA[0] = u;
+		partB[0] = v;
+		mark[u] = markA;
+		mark[v] = markB;
+
+		while (nextA < sizeA && nextB < sizeB) {
+			sizeA = expand(partA[nextA++], markA, sizeA, true, false);
+			sizeB = expand(partB[nextB++], markB, sizeB, false, false);
+		}
+
+		boolean smallIsA = nextA == sizeA;
+		int[] part = smallIsA ? partA : partB;
+		int count = smallIsA ? sizeA : sizeB;
+		int small = smallIsA ? markA : markB;
+		int lightest = -1;
+
+		for (int i = 0; i < count; i++) {
+			int n = part[i];
+
+			for (int j = 0; j < compact.getOutDegree(n); j++)
+				lightest = lighter(compact.getOutEdge(n, j), n, small,
+						lightest);
+
+			for (int j = 0; j < compact.getInDegree(n); j++)
+				lightest = lighter(compact.getInEdge(n, j), n, small,
+						lightest);
+		}
+
+		if (lightest >= 0)
+			link(lightest);
+
+		return sizeA + sizeB;
+	}
+
+	protected int lighter(int e, int n, int small, int lightest) {
+		if (!forest[e] && mark[compact.getOpposite(e, n)] != small
+				&& (lightest < 0 || before(e, lightest)))
+			return e;
+
+		return lightest;
+	}
+
+	protected void removeEdge(int e) {
+		int u = compact.getSource(e);
+		int v = compact.getTarget(e);
+
+		touchedCount = 0;
+		lastUpdateSize = 0;
+
+		if (forest[e]) {
+			cut(e);
+			compact.removeEdge(e);
+			lastUpdateSize = reconnect(u, v);
+		} else {
+			compact.removeEdge(e);
+		}
+
+		marked[e] = false;
+		publish(e);
+	}
+
+	protected void changeWeight(String edgeId, double w) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e < 0)
+			return;
+
+		double old = compact.getWeight(e);
+		touchedCount = 0;
+		lastUpdateSize = 0;
+
+		if (forest[e]) {
+			forestWeight += w - old;
+			compact.setWeight(e, w);
+
+			if (sign * w > sign * old) {
+				cut(e);
+				lastUpdateSize = reconnect(compact.getSource(e),
+						compact.getTarget(e));
+			}
+		} else {
+			compact.setWeight(e, w);
+
+			if (sign * w < sign * old)
+				lastUpdateSize = insert(e);
+		}
+
+		publish(-1);
+	}
+
+	/**
+	 * Update the tree attribute of the edges touched by the last update.
+	 * 
+	 * @param removed
+	 *            Slot of an edge being removed from the graph, not to be
+	 *            touched, -1 if none.
+	 */
+	protected void publish(int removed) {
+		for (int i = 0; i < touchedCount; i++)
+			if (touched[i] != removed)
+				publish(touched[i], compact.getEdgeId(touched[i]));
+
+		touchedCount = 0;
+	}
+
+	protected void publishAll() {
+		for (int e = 0; e < compact.getEdgeSlotCount(); e++)
+			if (compact.isEdge(e))
+				publish(e, compact.getEdgeId(e));
+	}
+
+	protected void publish(int e, String edgeId) {
+		if (treeAttribute == null || marked[e] == forest[e])
+			return;
+
+		Edge edge = graph.getEdge(edgeId);
+		marked[e] = forest[e];
+
+		if (edge != null) {
+			if (forest[e])
+				edge.setAttribute(treeAttribute, treeValue);
+			else
+				edge.removeAttribute(treeAttribute);
+		}
+	}
+
+	/**
+	 * Compare the time needed to build the forest of a random graph with the
+	 * time of an update, as edges are removed, added and weighted again, and
+	 * check the result.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges and the number of
+	 * changes (defaults to 100000, 1000000 and 100000).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int changes = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		int next = 0;
+
+		for (int i = 0; i < edges; i++)
+			next = addRandomEdge(graph, next, random);
+
+		DynamicSpanningForest msf = new DynamicSpanningForest("weight");
+		msf.setTreeAttribute("ui.class", "tree");
+		long t = System.nanoTime();
+		msf.init(graph);
+		double full = (System.nanoTime() - t) / 1e6;
+
+		t = System.nanoTime();
+		msf.compute();
+		full = Math.min(full, (System.nanoTime() - t) / 1e6);
+
+		System.out.printf("%d nodes, %d edges, forest of %d edges, "
+				+ "full computation %.1f ms%n", graph.getNodeCount(),
+				graph.getEdgeCount(), msf.getForestSize(), full);
+
+		long explored = 0;
+		t = System.nanoTime();
+
+		for (int i = 0; i < changes; i++) {
+			Edge e = graph.getEdge(random.nextInt(graph.getEdgeCount()));
+
+			switch (i % 3) {
+			case 0:
+				graph.removeEdge(e.getId());
+				break;
+			case 1:
+				next = addRandomEdge(graph, next, random);
+				break;
+			default:
+				e.changeAttribute("weight", 1 + random.nextInt(1000));
+			}
+
+			explored += msf.getLastUpdateSize();
+		}
+
+		double update = (System.nanoTime() - t) / 1e6 / changes;
+
+		System.out.printf("update %.4f ms on average (x%.0f faster), "
+				+ "%.1f nodes explored%n", update, full / update,
+				(double) explored / changes);
+
+		DynamicSpanningForest reference = new DynamicSpanningForest("weight");
+		reference.init(graph);
+
+		// Edges of equal weight may be ordered differently by the reference,
+		// so only the size and weight of the forests are compared.
+
+		int errors = Math.abs(msf.getForestSize() - reference.getForestSize());
+
+		if (msf.getForestWeight() != reference.getForestWeight())
+			errors++;
+
+		for (Edge e : graph.getEachEdge())
+			if (msf.isInForest(e.getId()) != e.hasAttribute("ui.class"))
+				errors++;
+
+		System.out.printf("forest weight %.1f, reference %.1f, %d errors%n",
+				msf.getForestWeight(), reference.getForestWeight(), errors);
+		reference.terminate();
+		msf.terminate();
+	}
+
+	protected static int addRandomEdge(Graph graph, int next, Random random) {
+		int n = graph.getNodeCount();
+
+		while (true) {
+			try {
+				Edge e = graph.addEdge(Integer.toString(next++),
+						graph.getNode(random.nextInt(n)).getId(),
+						graph.getNode(random.nextInt(n)).getId());
+				e.addAttribute("weight", 1 + random.nextInt(1000));
+				return next;
+			} catch (IdAlreadyInUseException e) {
+				// Already an edge between these nodes, try again.
+			}
+		}
+	}
+}
@@ -0,0 +1,894 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.stream.ElementSink;
+
+/**
+ * Triangles and clustering coefficients, updated as the graph changes.
+ * 
+ * <p>
+ * The direction of edges is ignored, several edges between the same nodes
+ * count once and loops are ignored. Each node has a sorted array of its
+ * neighbours. When two nodes become neighbours (or stop being neighbours),
+ * the intersection of their arrays gives the triangles created (or removed),
+ * so that an update costs the sum of their degrees.
+ * </p>
+ * 
+ * <p>
+ * {@link #compute()} counts all triangles from scratch in parallel: nodes
+ * are ranked by degree and each triangle is found once, from its node of
+ * lowest rank, by intersecting the neighbours of higher rank of two nodes.
+ * Once initialised with a graph, this algorithm registers as an element sink
+ * of the graph.
+ * </p>
+ * 
+ * <p>
+ * The local clustering coefficient of a node is the proportion of pairs of
+ * its neighbours that are linked. The global clustering coefficient is the
+ * proportion of paths of two edges that are closed by a third one, that is
+ * three times the number of triangles divided by the number of such paths.
+ * If attributes are set, the triangle count and clustering coefficient of
+ * each node, and the global ones in the graph, are written at each step and
+ * by {@link #publish()}, only for nodes whose values changed.
+ * </p>
+ */
+public class DynamicTriangleCount implements ElementSink {
+	// Attribute
+
+	/**
+	 * The graph followed.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph structure.
+	 */
+	protected CompactGraph compact;
+
+	/**
+	 * Attributes receiving the triangle counts and clustering coefficients,
+	 * null if none.
+	 */
+	protected String triangleAttribute, clusteringAttribute;
+
+	/**
+	 * Number of threads used by {@link #compute()}.
+	 */
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Sorted neighbours of each node slot.
+	 */
+	protected int[][] neighbors = new int[0][];
+
+	/**
+	 * Number of edges toward each neighbour.
+	 */
+	protected int[][] links = new int[0][];
+
+	/**
+	 * Number of neighbours of each node slot.
+	 */
+	protected int[] degree = new int[0];
+
+	/**
+	 * Number of triangles of each node slot.
+	 */
+	protected int[] triangles = new int[0];
+
+	/**
+	 * Nodes whose values changed since the last publication.
+	 */
+	protected boolean[] dirty = new boolean[0];
+
+	protected int[] dirtyNodes = new int[16];
+
+	protected int dirtyCount;
+
+	/**
+	 * Number of triangles.
+	 */
+	protected long triangleCount;
+
+	/**
+	 * Number of paths of two edges.
+	 */
+	protected long pathCount;
+
+	/**
+	 * Common neighbours found by the last intersection.
+	 */
+	protected int[] common = new int[16];
+
+	/**
+	 * Number of triangles created or removed by the last update.
+	 */
+	protected int lastUpdateSize;
+
+	// Construction
+
+	/**
+	 * New triangle count not storing anything in the graph.
+	 */
+	public DynamicTriangleCount() {
+	}
+
+	/**
+	 * New triangle count.
+	 * 
+	 * @param triangleAttribute
+	 *            Attribute receiving the triangle counts, null for none.
+	 * @param clusteringAttribute
+	 *            Attribute receiving the clustering coefficients, null for
+	 *            none.
+	 */
+	public DynamicTriangleCount(String triangleAttribute,
+			String clusteringAttribute) {
+		this.triangleAttribute = triangleAttribute;
+		this.clusteringAttribute = clusteringAttribute;
+	}
+
+	// Access
+
+	/**
+	 * Number of triangles in the graph.
+	 */
+	public long getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Number of triangles a node belongs to.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The number of triangles, 0 if the node does not exist.
+	 */
+	public int getTriangleCount(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 ? 0 : triangles[n];
+	}
+
+	/**
+	 * Local clustering coefficient of a node.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The coefficient, 0 if the node has less than two neighbours or
+	 *         does not exist.
+	 */
+	public double getClustering(String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		return n < 0 ? 0 : clustering(n);
+	}
+
+	/**
+	 * Global clustering coefficient, or transitivity.
+	 */
+	public double getGlobalClustering() {
+		return pathCount == 0 ? 0 : 3.0 * triangleCount / pathCount;
+	}
+
+	/**
+	 * Average of the local clustering coefficients. This costs a pass on all
+	 * nodes.
+	 */
+	public double getAverageClustering() {
+		double sum = 0;
+
+		for (int n = 0; n < compact.getNodeSlotCount(); n++)
+			if (compact.isNode(n))
+				sum += clustering(n);
+
+		return compact.getNodeCount() == 0 ? 0 : sum
+				/ compact.getNodeCount();
+	}
+
+	/**
+	 * Number of triangles created or removed by the last update.
+	 */
+	public int getLastUpdateSize() {
+		return lastUpdateSize;
+	}
+
+	// Command
+
+	/**
+	 * Number of threads used by {@link #compute()}, by default the number
+	 * of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Copy the structure of the graph, compute the results from scratch and
+	 * follow the graph until {@link #terminate()} is called. A graph given
+	 * before is left.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public void init(Graph graph) {
+		if (this.graph != null)
+			terminate();
+
+		this.graph = graph;
+		compact = new CompactGraph(graph, null, 1);
+		graph.addElementSink(this);
+		compute();
+	}
+
+	/**
+	 * Count all triangles from scratch, in parallel, and publish the results.
+	 */
+	public void compute() {
+		int slots = compact.getNodeSlotCount();
+
+		ensureCapacity();
+		Arrays.fill(degree, 0);
+
+		for (int e = 0; e < compact.getEdgeSlotCount(); e++)
+			if (compact.isEdge(e))
+				link(compact.getSource(e), compact.getTarget(e));
+
+		// Edges are counted once the neighbours are sorted, duplicate
+		// neighbours keeping no edge are then removed by countAll().
+
+		for (int n = 0; n < slots; n++) {
+			if (compact.isNode(n)) {
+				Arrays.sort(neighbors[n], 0, degree[n]);
+				Arrays.fill(links[n], 0, degree[n], 0);
+
+				for (int i = 0; i < compact.getOutDegree(n); i++)
+					countLink(n, compact.getOpposite(compact.getOutEdge(n, i),
+							n));
+
+				for (int i = 0; i < compact.getInDegree(n); i++) {
+					int e = compact.getInEdge(n, i);
+
+					if (compact.isDirected(e))
+						countLink(n, compact.getOpposite(e, n));
+				}
+			}
+		}
+
+		countAll();
+		publish();
+	}
+
+	/**
+	 * Write the values of the nodes that changed and the global values, if
+	 * attributes are set. This is done at each step.
+	 */
+	public void publish() {
+		if (triangleAttribute != null)
+			graph.setAttribute(triangleAttribute, triangleCount);
+
+		if (clusteringAttribute != null)
+			graph.setAttribute(clusteringAttribute, getGlobalClustering());
+
+		for (int i = 0; i < dirtyCount; i++) {
+			int n = dirtyNodes[i];
+
+			dirty[n] = false;
+
+			if (compact.isNode(n)) {
+				Node node = graph.getNode(compact.getNodeId(n));
+
+				if (node == null)
+					continue;
+
+				if (triangleAttribute != null)
+					node.setAttribute(triangleAttribute, triangles[n]);
+
+				if (clusteringAttribute != null)
+					node.setAttribute(clusteringAttribute, clustering(n));
+			}
+		}
+
+		dirtyCount = 0;
+	}
+
+	/**
+	 * Stop listening at the graph. The results remain those of the graph at
+	 * the time this method is called.
+	 */
+	public void terminate() {
+		if (graph != null) {
+			graph.removeElementSink(this);
+			graph = null;
+		}
+	}
+
+	// Sink
+
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (compact.getNodeSlot(nodeId) >= 0)
+			return;
+
+		int n = compact.addNode(nodeId);
+
+		ensureCapacity();
+		degree[n] = 0;
+		triangles[n] = 0;
+		touch(n);
+		lastUpdateSize = 0;
+	}
+
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int n = compact.getNodeSlot(nodeId);
+
+		if (n < 0)
+			return;
+
+		// The graph may send the removal of the edges after the removal of
+		// the node, they are removed here so that the counts stay coherent.
+
+		int size = 0;
+
+		while (compact.getOutDegree(n) > 0) {
+			removeEdge(compact.getOutEdge(n, 0));
+			size += lastUpdateSize;
+		}
+
+		while (compact.getInDegree(n) > 0) {
+			removeEdge(compact.getInEdge(n, 0));
+			size += lastUpdateSize;
+		}
+
+		compact.removeNode(n);
+		lastUpdateSize = size;
+	}
+
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (compact.getEdgeSlot(edgeId) >= 0)
+			return;
+
+		nodeAdded(graphId, timeId, fromNodeId);
+		nodeAdded(graphId, timeId, toNodeId);
+
+		int e = compact.addEdge(edgeId, fromNodeId, toNodeId, directed, 1);
+		int u = compact.getSource(e);
+		int v = compact.getTarget(e);
+
+		lastUpdateSize = 0;
+
+		if (u == v)
+			return;
+
+		int i = find(u, v);
+
+		if (i >= 0) {
+			links[u][i]++;
+			links[v][find(v, u)]++;
+			return;
+		}
+
+		int count = intersect(u, v);
+
+		change(u, v, count, 1);
+		insert(u, v, -i - 1);
+		insert(v, u, -find(v, u) - 1);
+		pathCount += degree[u] - 1 + degree[v] - 1;
+		touch(u);
+		touch(v);
+	}
+
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = compact.getEdgeSlot(edgeId);
+
+		if (e >= 0)
+			removeEdge(e);
+	}
+
+	public void graphCleared(String graphId, long timeId) {
+		compact.clear();
+		Arrays.fill(degree, 0);
+		Arrays.fill(triangles, 0);
+		triangleCount = 0;
+		pathCount = 0;
+		lastUpdateSize = 0;
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		publish();
+	}
+
+	// Utility
+
+	protected void ensureCapacity() {
+		int n = compact.getNodeSlotCount();
+
+		if (degree.length < n) {
+			int old = degree.length;
+			n = Math.max(n, old * 2);
+			neighbors = Arrays.copyOf(neighbors, n);
+			links = Arrays.copyOf(links, n);
+			degree = Arrays.copyOf(degree, n);
+			triangles = Arrays.copyOf(triangles, n);
+			dirty = Arrays.copyOf(dirty, n);
+
+			for (int i = old; i < n; i++) {
+				neighbors[i] = new int[4];
+				links[i] = new int[4];
+			}
+		}
+	}
+
+	protected double clustering(int n) {
+		int d = degree[n];
+
+		return d < 2 ? 0 : 2.0 * triangles[n] / ((double) d * (d - 1));
+	}
+
+	protected void touch(int n) {
+		if (!dirty[n]) {
+			dirty[n] = true;
+			dirtyNodes = CompactGraph.push(dirtyNodes, dirtyCount++, n);
+		}
+	}
+
+	/**
+	 * Position of a neighbour in the sorted neighbours of a node.
+	 * 
+	 * @return The position, or -(insertion point)-1 if not a neighbour.
+	 */
+	protected int find(int n, int neighbor) {
+		return Arrays.binarySearch(neighbors[n], 0, degree[n], neighbor);
+	}
+
+	/**
+	 * Add a neighbour, unsorted, during {@link #compute()}.
+	 */
+	protected void link(int u, int v) {
+		if (u == v)
+			return;
+
+		append(u, v);
+		append(v, u);
+	}
+
+	protected void append(int n, int neighbor) {
+		// Duplicates are skipped by looking at the last neighbour only, the
+		// others are removed when counting links.
+
+		int d = degree[n];
+
+		if (d > 0 && neighbors[n][d - 1] == neighbor)
+			return;
+
+		if (d >= neighbors[n].length) {
+			neighbors[n] = Arrays.copyOf(neighbors[n], d * 2);
+			links[n] = Arrays.copyOf(links[n], d * 2);
+		}
+
+		neighbors[n][d] = neighbor;
+		degree[n] = d + 1;
+	}
+
+	/**
+	 * Count an edge toward a neighbour, during {@link #compute()}, once the
+	 * neighbours are sorted. Duplicate neighbours left are merged.
+	 */
+	protected void countLink(int n, int neighbor) {
+		if (neighbor == n)
+			return;
+
+		int i = find(n, neighbor);
+
+		while (i > 0 && neighbors[n][i - 1] == neighbor)
+			i--;
+
+		links[n][i]++;
+	}
+
+	/**
+	 * Remove the duplicate neighbours (without links) left by
+	 * {@link #append(int, int)} and count all triangles.
+	 */
+	protected void countAll() {
+		int slots = compact.getNodeSlotCount();
+
+		pathCount = 0;
+
+		for (int n = 0; n < slots; n++) {
+			if (!compact.isNode(n))
+				continue;
+
+			int d = 0;
+
+			for (int i = 0; i < degree[n]; i++) {
+				if (links[n][i] > 0) {
+					neighbors[n][d] = neighbors[n][i];
+					links[n][d++] = links[n][i];
+				}
+			}
+
+			degree[n] = d;
+			pathCount += (long) d * (d - 1) / 2;
+		}
+
+		int[] rank = new int[slots];
+		Integer[] order = new Integer[compact.getNodeCount()];
+		int count = 0;
+
+		for (int n = 0; n < slots; n++)
+			if (compact.isNode(n))
+				order[count++] = n;
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = degree[a] - degree[b];
+				return c != 0 ? c : a - b;
+			}
+		});
+
+		for (int i = 0; i < count; i++)
+			rank[order[i]] = i;
+
+		AtomicIntegerArray found = new AtomicIntegerArray(slots);
+		long[] totals = new long[parallelism];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+		try {
+			pool.invoke(new Count(-1, rank, found, totals));
+		} finally {
+			pool.shutdown();
+		}
+
+		triangleCount = 0;
+
+		for (long t : totals)
+			triangleCount += t;
+
+		for (int n = 0; n < slots; n++) {
+			if (compact.isNode(n)) {
+				triangles[n] = found.get(n);
+				touch(n);
+			}
+		}
+	}
+
+	/**
+	 * Counts the triangles whose node of lowest rank is in a share of the
+	 * nodes. Each task takes the nodes whose slot modulo the number of tasks
+	 * is its number.
+	 */
+	protected class Count extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected int task;
+
+		protected int[] rank;
+
+		protected AtomicIntegerArray found;
+
+		protected long[] totals;
+
+		protected Count(int task, int[] rank, AtomicIntegerArray found,
+				long[] totals) {
+			this.task = task;
+			this.rank = rank;
+			this.found = found;
+			this.totals = totals;
+		}
+
+		@Override
+		protected void compute() {
+			if (task < 0) {
+				ArrayList<Count> tasks = new ArrayList<Count>();
+
+				for (int t = 0; t < parallelism; t++)
+					tasks.add(new Count(t, rank, found, totals));
+
+				invokeAll(tasks);
+				return;
+			}
+
+			long total = 0;
+
+			for (int u = task; u < compact.getNodeSlotCount(); u += parallelism) {
+				if (!compact.isNode(u))
+					continue;
+
+				int[] nu = neighbors[u];
+
+				for (int i = 0; i < degree[u]; i++) {
+					int v = nu[i];
+
+					if (rank[v] <= rank[u])
+						continue;
+
+					int[] nv = neighbors[v];
+					int a = 0, b = 0;
+
+					while (a < degree[u] && b < degree[v]) {
+						int x = nu[a], y = nv[b];
+
+						if (x < y) {
+							a++;
+						} else if (x > y) {
+							b++;
+						} else {
+							if (rank[x] > rank[v]) {
+								found.incrementAndGet(u);
+								found.incrementAndGet(v);
+								found.incrementAndGet(x);
+								total++;
+							}
+
+							a++;
+							b++;
+						}
+					}
+				}
+			}
+
+			totals[task] = total;
+		}
+	}
+
+	/**
+	 * Common neighbours of two nodes, put in {@link #common}. When one node
+	 * has far more neighbours, the neighbours of the other are searched in
+	 * its array rather than merging both arrays.
+	 * 
+	 * @return The number of common neighbours.
+	 */
+	protected int intersect(int u, int v) {
+		if (degree[u] > degree[v]) {
+			int t = u;
+			u = v;
+			v = t;
+		}
+
+		int[] nu = neighbors[u];
+		int[] nv = neighbors[v];
+		int du = degree[u], dv = degree[v];
+		int count = 0;
+
+		if ((long) du * 16 < dv) {
+			for (int a = 0; a < du; a++)
+				if (Arrays.binarySearch(nv, 0, dv, nu[a]) >= 0)
+					common = CompactGraph.push(common, count++, nu[a]);
+		} else {
+			int a = 0, b = 0;
+
+			while (a < du && b < dv) {
+				if (nu[a] < nv[b]) {
+					a++;
+				} else if (nu[a] > nv[b]) {
+					b++;
+				} else {
+					common = CompactGraph.push(common, count++, nu[a]);
+					a++;
+					b++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Add or remove the triangles made by two nodes and their common
+	 * neighbours.
+	 */
+	protected void change(int u, int v, int count, int sign) {
+		triangles[u] += sign * count;
+		triangles[v] += sign * count;
+		triangleCount += sign * count;
+
+		for (int i = 0; i < count; i++) {
+			triangles[common[i]] += sign;
+			touch(common[i]);
+		}
+
+		lastUpdateSize = count;
+	}
+
+	protected void insert(int n, int neighbor, int position) {
+		int d = degree[n];
+
+		if (d >= neighbors[n].length) {
+			neighbors[n] = Arrays.copyOf(neighbors[n], Math.max(4, d * 2));
+			links[n] = Arrays.copyOf(links[n], Math.max(4, d * 2));
+		}
+
+		System.arraycopy(neighbors[n], position, neighbors[n], position + 1,
+				d - position);
+		System.arraycopy(links[n], position, links[n], position + 1, d
+				- position);
+		neighbors[n][position] = neighbor;
+		links[n][position] = 1;
+		degree[n] = d + 1;
+	}
+
+	protected void delete(int n, int position) {
+		int d = degree[n] - 1;
+
+		System.arraycopy(neighbors[n], position + 1, neighbors[n], position,
+				d - position);
+		System.arraycopy(links[n], position + 1, links[n], position, d
+				- position);
+		degree[n] = d;
+	}
+
+	protected void removeEdge(int e) {
+		int u = compact.getSource(e);
+		int v = compact.getTarget(e);
+
+		compact.removeEdge(e);
+		lastUpdateSize = 0;
+
+		if (u == v)
+			return;
+
+		int i = find(u, v);
+		int j = find(v, u);
+
+		if (--links[u][i] > 0) {
+			links[v][j]--;
+			return;
+		}
+
+		delete(u, i);
+		delete(v, j);
+		pathCount -= degree[u] + degree[v];
+		change(u, v, intersect(u, v), -1);
+		touch(u);
+		touch(v);
+	}
+
+	/**
+	 * Compare the time needed to count triangles with neighbour lookups,
+	 * with this class from scratch and on updates, then check the result.
+	 * The graph is made of nodes on a circle linked to near nodes, plus
+	 * random edges, to have many triangles.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges and the number of
+	 * changes (defaults to 100000, 400000 and 100000).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 400000;
+		int changes = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		int next = 0;
+
+		for (int i = 0; i < edges; i++)
+			next = addRandomEdge(graph, next, random);
+
+		int sample = Math.min(nodes, 1000);
+		long lookups = 0;
+		long t = System.nanoTime();
+
+		for (int i = 0; i < sample; i++) {
+			Node node = graph.getNode(i);
+			ArrayList<Node> around = new ArrayList<Node>();
+			Iterator<Node> it = node.getNeighborNodeIterator();
+
+			while (it.hasNext())
+				around.add(it.next());
+
+			for (int a = 0; a < around.size(); a++)
+				for (int b = a + 1; b < around.size(); b++)
+					if (around.get(a).getEdgeToward(around.get(b).getId()) != null)
+						lookups++;
+		}
+
+		double naive = (System.nanoTime() - t) / 1e6 / sample * nodes;
+
+		DynamicTriangleCount tc = new DynamicTriangleCount();
+		t = System.nanoTime();
+		tc.init(graph);
+		double full = (System.nanoTime() - t) / 1e6;
+
+		t = System.nanoTime();
+		tc.compute();
+		full = Math.min(full, (System.nanoTime() - t) / 1e6);
+
+		System.out.printf("%d nodes, %d edges, %d triangles, global "
+				+ "clustering %.4f, average clustering %.4f%n",
+				graph.getNodeCount(), graph.getEdgeCount(),
+				tc.getTriangleCount(), tc.getGlobalClustering(),
+				tc.getAverageClustering());
+		System.out.printf("lookups %.0f ms (estimated from %d nodes, %d "
+				+ "links found), full computation %.1f ms with %d threads%n",
+				naive, sample, lookups, full, tc.parallelism);
+
+		t = System.nanoTime();
+
+		for (int i = 0; i < changes; i++) {
+			if (i % 2 == 0)
+				graph.removeEdge(graph.getEdge(
+						random.nextInt(graph.getEdgeCount())).getId());
+			else
+				next = addRandomEdge(graph, next, random);
+		}
+
+		double update = (System.nanoTime() - t) / 1e6 / changes;
+
+		System.out.printf("update %.4f ms on average (x%.0f faster)%n",
+				update, full / update);
+
+		DynamicTriangleCount reference = new DynamicTriangleCount();
+		reference.init(graph);
+
+		int errors = reference.getTriangleCount() == tc.getTriangleCount() ? 0
+				: 1;
+
+		for (Node node : graph)
+			if (reference.getTriangleCount(node.getId()) != tc
+					.getTriangleCount(node.getId()))
+				errors++;
+
+		System.out.printf("%d triangles, %d errors%n", tc.getTriangleCount(),
+				errors);
+		reference.terminate();
+		tc.terminate();
+	}
+
+	protected static int addRandomEdge(Graph graph, int next, Random random) {
+		int n = graph.getNodeCount();
+
+		while (true) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(10) == 0 ? random.nextInt(n)
+					: (from + 1 + random.nextInt(10)) % n;
+
+			try {
+				graph.addEdge(Integer.toString(next++),
+						graph.getNode(from).getId(), graph.getNode(to).getId());
+				return next;
+			} catch (IdAlreadyInUseException e) {
+				// Already an edge between these nodes, try again.
+			}
+		}
+	}
+}
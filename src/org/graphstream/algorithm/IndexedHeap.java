@@ -0,0 +1,226 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of integers (usually node slots or indices) with a real
+ * priority, allowing to change the priority of an element in logarithmic
+ * time.
+ * 
+ * <p>
+ * Elements are integers between 0 and the capacity of the heap, the capacity
+ * growing as needed. Each element is at most once in the heap. Nothing is
+ * allocated once the capacity is reached.
+ * </p>
+ */
+public class IndexedHeap {
+	// Attribute
+
+	/**
+	 * The heap, as an array of elements.
+	 */
+	protected int[] heap;
+
+	/**
+	 * Position of each element in the heap, -1 if not in the heap.
+	 */
+	protected int[] position;
+
+	/**
+	 * Priority of each element.
+	 */
+	protected double[] priority;
+
+	/**
+	 * Number of elements in the heap.
+	 */
+	protected int size;
+
+	// Construction
+
+	/**
+	 * New empty heap.
+	 * 
+	 * @param capacity
+	 *            Initial number of possible elements.
+	 */
+	public IndexedHeap(int capacity) {
+		capacity = Math.max(capacity, 16);
+		heap = new int[capacity];
+		position = new int[capacity];
+		priority = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	// Access
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Is an element in the heap?
+	 */
+	public boolean contains(int element) {
+		return element < position.length && position[element] >= 0;
+	}
+
+	/**
+	 * Priority of an element of the heap.
+	 */
+	public double getPriority(int element) {
+		return priority[element];
+	}
+
+	/**
+	 * Element with the smallest priority, without removing it.
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	// Command
+
+	/**
+	 * Add an element or change its priority.
+	 * 
+	 * @param element
+	 *            The element.
+	 * @param p
+	 *            Its priority.
+	 */
+	public void put(int element, double p) {
+		if (element >= position.length)
+			grow(element + 1);
+
+		int i = position[element];
+
+		if (i < 0) {
+			i = size++;
+			heap[i] = element;
+			position[element] = i;
+			priority[element] = p;
+			up(i);
+		} else {
+			double old = priority[element];
+			priority[element] = p;
+
+			if (p < old)
+				up(i);
+			else
+				down(i);
+		}
+	}
+
+	/**
+	 * Remove the element with the smallest priority.
+	 * 
+	 * @return The element.
+	 */
+	public int poll() {
+		int top = heap[0];
+
+		position[top] = -1;
+		size--;
+
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			down(0);
+		}
+
+		return top;
+	}
+
+	/**
+	 * Remove all the elements.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+
+		size = 0;
+	}
+
+	// Utility
+
+	protected void grow(int capacity) {
+		int n = Math.max(capacity, position.length * 2);
+		int old = position.length;
+
+		heap = Arrays.copyOf(heap, n);
+		position = Arrays.copyOf(position, n);
+		priority = Arrays.copyOf(priority, n);
+		Arrays.fill(position, old, n, -1);
+	}
+
+	protected void up(int i) {
+		int e = heap[i];
+		double p = priority[e];
+
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			int pe = heap[parent];
+
+			if (priority[pe] <= p)
+				break;
+
+			heap[i] = pe;
+			position[pe] = i;
+			i = parent;
+		}
+
+		heap[i] = e;
+		position[e] = i;
+	}
+
+	protected void down(int i) {
+		int e = heap[i];
+		double p = priority[e];
+		int half = size >> 1;
+
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+
+			if (right < size && priority[heap[right]] < priority[heap[child]])
+				child = right;
+
+			if (priority[heap[child]] >= p)
+				break;
+
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+
+		heap[i] = e;
+		position[e] = i;
+	}
+}
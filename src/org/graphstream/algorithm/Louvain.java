@@ -0,0 +1,875 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+
+/**
+ * Community detection by modularity optimisation with the Louvain method.
+ * 
+ * <p>
+ * Each node starts in its own community. During the local moving phase, each
+ * node goes to the community of a neighbour that most increases the
+ * modularity, until the modularity stops increasing. The communities then
+ * become the nodes of a smaller graph and the process starts again, until no
+ * community merges.
+ * </p>
+ * 
+ * <p>
+ * The graph is copied into {@link AdjacencyArrays} by {@link #init(Graph)},
+ * edges being considered undirected. In the local moving phase, the best move
+ * of all nodes is chosen in parallel from the current communities, then all
+ * moves are done at once. To prevent two isolated nodes from swapping their
+ * communities forever, an isolated node only joins another isolated node if
+ * the community of this one has a smaller number.
+ * </p>
+ * 
+ * <p>
+ * With a warm start, the communities stored in the nodes by a previous run
+ * are the starting point instead of one community per node, which is faster
+ * when the graph changed a little. Communities then keep their previous
+ * number as far as possible. The result is written in the community
+ * attribute of the nodes at the end of {@link #compute()}, in one pass, only
+ * for the nodes whose community changed.
+ * </p>
+ * 
+ * <pre>
+ * Louvain louvain = new Louvain(&quot;weight&quot;);
+ * louvain.init(graph);
+ * louvain.compute();
+ * // Each node has a &quot;community&quot; attribute.
+ * </pre>
+ */
+public class Louvain {
+	// Attribute
+
+	/**
+	 * The graph, as given to {@link #init(Graph)}.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Copy of the graph.
+	 */
+	protected AdjacencyArrays arrays;
+
+	/**
+	 * Edge attribute giving the weights, null if all edges weight 1.
+	 */
+	protected String weightAttribute;
+
+	/**
+	 * Node attribute receiving the communities.
+	 */
+	protected String communityAttribute = "community";
+
+	/**
+	 * Start from the communities stored in the nodes?
+	 */
+	protected boolean warmStart;
+
+	/**
+	 * Resolution, weighting the expected number of edges in the modularity.
+	 */
+	protected double resolution = 1;
+
+	/**
+	 * Smallest modularity increase for the local moving phase to go on.
+	 */
+	protected double tolerance = 1e-6;
+
+	/**
+	 * Number of threads.
+	 */
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Community of each node, by node index in the copy.
+	 */
+	protected int[] community;
+
+	protected int communityCount;
+
+	protected double modularity;
+
+	protected int levelCount;
+
+	/**
+	 * Number of community attributes written by the last computation.
+	 */
+	protected int writeCount;
+
+	// The current level, a graph whose nodes are the communities of the
+	// previous level.
+
+	protected int[] first;
+
+	protected int[] target;
+
+	protected double[] weight;
+
+	/**
+	 * Sum of the weights of the entries of each node.
+	 */
+	protected double[] strength;
+
+	/**
+	 * Sum of all weights, that is twice the weight of edges.
+	 */
+	protected double totalWeight;
+
+	/**
+	 * Community of each node of the level.
+	 */
+	protected int[] level;
+
+	/**
+	 * Strength and number of nodes of each community of the level.
+	 */
+	protected double[] communityStrength;
+
+	protected int[] communitySize;
+
+	/**
+	 * Best community of each node of the level.
+	 */
+	protected int[] move;
+
+	/**
+	 * Weight of the entries inside their community, found by each task.
+	 */
+	protected double[] inside;
+
+	// Construction
+
+	/**
+	 * New community detection where all edges weight 1.
+	 */
+	public Louvain() {
+		this(null);
+	}
+
+	/**
+	 * New community detection on a weighted graph.
+	 * 
+	 * @param weightAttribute
+	 *            Edge attribute giving the weights, edges without it weight 1.
+	 *            Weights must be positive.
+	 */
+	public Louvain(String weightAttribute) {
+		this.weightAttribute = weightAttribute;
+	}
+
+	// Access
+
+	/**
+	 * Community of a node.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The community, -1 if the node was not in the graph when
+	 *         {@link #init(Graph)} was called.
+	 */
+	public int getCommunity(String nodeId) {
+		int n = arrays.getNodeIndex(nodeId);
+
+		return n < 0 ? -1 : community[n];
+	}
+
+	/**
+	 * Number of communities.
+	 */
+	public int getCommunityCount() {
+		return communityCount;
+	}
+
+	/**
+	 * Modularity of the communities found.
+	 */
+	public double getModularity() {
+		return modularity;
+	}
+
+	/**
+	 * Number of levels of the last computation.
+	 */
+	public int getLevelCount() {
+		return levelCount;
+	}
+
+	/**
+	 * Number of nodes whose community attribute was written by the last
+	 * computation.
+	 */
+	public int getWriteCount() {
+		return writeCount;
+	}
+
+	// Command
+
+	/**
+	 * Set the node attribute receiving the communities, "community" by
+	 * default. This is also where the previous communities are read with a
+	 * warm start.
+	 */
+	public void setCommunityAttribute(String attribute) {
+		communityAttribute = attribute;
+	}
+
+	/**
+	 * Start from the communities stored in the nodes, false by default. Nodes
+	 * without a numeric community attribute start alone.
+	 */
+	public void setWarmStart(boolean on) {
+		warmStart = on;
+	}
+
+	/**
+	 * Set the resolution, 1 by default. Higher resolutions give smaller
+	 * communities.
+	 */
+	public void setResolution(double resolution) {
+		this.resolution = resolution;
+	}
+
+	/**
+	 * Smallest modularity increase for the local moving phase to go on, 1e-6
+	 * by default.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Number of threads, by default the number of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Copy the structure and the weights of the graph into arrays, then
+	 * {@link #compute()} works on this copy.
+	 * 
+	 * @param graph
+	 *            The graph to work on.
+	 */
+	public void init(Graph graph) {
+		this.graph = graph;
+		arrays = new AdjacencyArrays(graph, weightAttribute, true);
+	}
+
+	/**
+	 * Find the communities and write them in the nodes.
+	 */
+	public void compute() {
+		int n = arrays.getNodeCount();
+		int[] previous = new int[n];
+
+		first = arrays.first;
+		target = arrays.target;
+		weight = new double[target.length];
+		level = new int[n];
+		community = new int[n];
+		levelCount = 0;
+
+		for (int e = 0; e < weight.length; e++)
+			weight[e] = arrays.getWeight(e);
+
+		for (int i = 0; i < n; i++) {
+			level[i] = i;
+			community[i] = i;
+			previous[i] = -1;
+		}
+
+		if (warmStart)
+			readCommunities(previous);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+		try {
+			while (true) {
+				int count = level.length;
+
+				modularity = moveNodes(pool);
+				levelCount++;
+
+				int communities = renumber();
+
+				for (int i = 0; i < n; i++)
+					community[i] = level[community[i]];
+
+				if (communities == count)
+					break;
+
+				aggregate(communities);
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		communityCount = communities();
+		label(previous);
+		writeCommunities();
+
+		first = target = level = move = communitySize = null;
+		weight = strength = communityStrength = null;
+	}
+
+	// Utility
+
+	/**
+	 * Read the previous communities: nodes with the same community attribute
+	 * start in the same community.
+	 * 
+	 * @param previous
+	 *            Receives the previous community of each node, -1 if none.
+	 */
+	protected void readCommunities(int[] previous) {
+		HashMap<Integer, Integer> groups = new HashMap<Integer, Integer>();
+
+		for (int i = 0; i < previous.length; i++) {
+			Node node = graph.getNode(arrays.getNodeId(i));
+			Object value = node == null ? null : node
+					.getAttribute(communityAttribute);
+
+			if (value instanceof Number) {
+				previous[i] = ((Number) value).intValue();
+				Integer group = groups.get(previous[i]);
+
+				if (group == null)
+					groups.put(previous[i], i);
+				else
+					level[i] = group;
+			}
+		}
+	}
+
+	/**
+	 * Local moving phase on the current level. The best community of each
+	 * node is chosen in parallel against the communities of the previous
+	 * pass, then the moves are applied one by one, each only if it still
+	 * increases the modularity given the moves applied before it. The
+	 * modularity therefore never decreases from one pass to the next.
+	 * 
+	 * @return The modularity reached.
+	 */
+	protected double moveNodes(ForkJoinPool pool) {
+		int n = level.length;
+
+		strength = new double[n];
+		communityStrength = new double[n];
+		communitySize = new int[n];
+		move = new int[n];
+		totalWeight = 0;
+
+		for (int i = 0; i < n; i++) {
+			for (int e = first[i]; e < first[i + 1]; e++)
+				strength[i] += weight[e];
+
+			totalWeight += strength[i];
+			communityStrength[level[i]] += strength[i];
+			communitySize[level[i]]++;
+		}
+
+		double q = modularity(pool);
+
+		if (totalWeight <= 0)
+			return q;
+
+		while (true) {
+			pool.invoke(new Pass(true));
+
+			int moved = 0;
+
+			for (int i = 0; i < n; i++) {
+				int from = level[i];
+				int to = move[i];
+
+				if (from != to && improves(i, to)) {
+					communityStrength[from] -= strength[i];
+					communityStrength[to] += strength[i];
+					communitySize[from]--;
+					communitySize[to]++;
+					level[i] = to;
+					moved++;
+				}
+			}
+
+			if (moved == 0)
+				return q;
+
+			double next = modularity(pool);
+
+			if (next - q < tolerance)
+				return next;
+
+			q = next;
+		}
+	}
+
+	/**
+	 * Does moving a node to a community increase the modularity, given the
+	 * current communities?
+	 * 
+	 * @param i
+	 *            The node.
+	 * @param to
+	 *            The community.
+	 */
+	protected boolean improves(int i, int to) {
+		int from = level[i];
+		double k = strength[i] * resolution / totalWeight;
+		double sumFrom = 0, sumTo = 0;
+
+		for (int e = first[i]; e < first[i + 1]; e++) {
+			int j = target[e];
+
+			if (j != i) {
+				if (level[j] == from)
+					sumFrom += weight[e];
+				else if (level[j] == to)
+					sumTo += weight[e];
+			}
+		}
+
+		return sumTo - k * communityStrength[to] > sumFrom - k
+				* (communityStrength[from] - strength[i]);
+	}
+
+	/**
+	 * Modularity of the communities of the current level.
+	 */
+	protected double modularity(ForkJoinPool pool) {
+		if (totalWeight <= 0)
+			return 0;
+
+		pool.invoke(new Pass(false));
+
+		double q = 0;
+
+		for (double in : inside)
+			q += in / totalWeight;
+
+		for (int c = 0; c < communityStrength.length; c++) {
+			double s = communityStrength[c] / totalWeight;
+			q -= resolution * s * s;
+		}
+
+		return q;
+	}
+
+	/**
+	 * Give the communities of the level consecutive numbers from 0.
+	 * 
+	 * @return The number of communities.
+	 */
+	protected int renumber() {
+		int[] number = new int[level.length];
+		int count = 0;
+
+		Arrays.fill(number, -1);
+
+		for (int i = 0; i < level.length; i++) {
+			int c = level[i];
+
+			if (number[c] < 0)
+				number[c] = count++;
+
+			level[i] = number[c];
+		}
+
+		return count;
+	}
+
+	/**
+	 * Make the communities of the level the nodes of the next level. Entries
+	 * between two communities are merged, entries inside a community become
+	 * loops.
+	 * 
+	 * @param communities
+	 *            Number of communities.
+	 */
+	protected void aggregate(int communities) {
+		int n = level.length;
+		int[] start = new int[communities + 1];
+		int[] members = new int[n];
+		int[] nextFirst = new int[communities + 1];
+		int[] nextTarget = new int[target.length];
+		double[] nextWeight = new double[target.length];
+		double[] sum = new double[communities];
+		int[] seen = new int[communities];
+		int[] found = new int[communities];
+		int entries = 0;
+
+		for (int i = 0; i < n; i++)
+			start[level[i] + 1]++;
+
+		for (int c = 0; c < communities; c++)
+			start[c + 1] += start[c];
+
+		int[] fill = Arrays.copyOf(start, communities);
+
+		for (int i = 0; i < n; i++)
+			members[fill[level[i]]++] = i;
+
+		for (int c = 0; c < communities; c++) {
+			int count = 0;
+
+			nextFirst[c] = entries;
+
+			for (int m = start[c]; m < start[c + 1]; m++) {
+				int i = members[m];
+
+				for (int e = first[i]; e < first[i + 1]; e++) {
+					int d = level[target[e]];
+
+					if (seen[d] != c + 1) {
+						seen[d] = c + 1;
+						sum[d] = 0;
+						found[count++] = d;
+					}
+
+					sum[d] += weight[e];
+				}
+			}
+
+			for (int k = 0; k < count; k++) {
+				nextTarget[entries] = found[k];
+				nextWeight[entries++] = sum[found[k]];
+			}
+		}
+
+		nextFirst[communities] = entries;
+		first = nextFirst;
+		target = Arrays.copyOf(nextTarget, entries);
+		weight = Arrays.copyOf(nextWeight, entries);
+		level = new int[communities];
+
+		for (int c = 0; c < communities; c++)
+			level[c] = c;
+	}
+
+	/**
+	 * Number of final communities, numbered from 0.
+	 */
+	protected int communities() {
+		int count = 0;
+
+		for (int c : community)
+			count = Math.max(count, c + 1);
+
+		return count;
+	}
+
+	/**
+	 * Give to each community the previous number of most of its nodes, if not
+	 * taken by a larger group of nodes. Other communities are given new
+	 * numbers.
+	 */
+	protected void label(int[] previous) {
+		if (!warmStart)
+			return;
+
+		HashMap<Long, int[]> counts = new HashMap<Long, int[]>();
+		int fresh = 0;
+
+		for (int i = 0; i < community.length; i++) {
+			if (previous[i] >= 0) {
+				long key = ((long) community[i] << 32) | previous[i];
+				int[] count = counts.get(key);
+
+				if (count == null)
+					counts.put(key, new int[] { 1 });
+				else
+					count[0]++;
+
+				fresh = Math.max(fresh, previous[i] + 1);
+			}
+		}
+
+		final ArrayList<Long> keys = new ArrayList<Long>(counts.keySet());
+		final HashMap<Long, int[]> c = counts;
+		HashMap<Integer, Integer> taken = new HashMap<Integer, Integer>();
+		int[] number = new int[communityCount];
+
+		Collections.sort(keys, new Comparator<Long>() {
+			public int compare(Long a, Long b) {
+				return c.get(b)[0] - c.get(a)[0];
+			}
+		});
+
+		Arrays.fill(number, -1);
+
+		for (long key : keys) {
+			int com = (int) (key >>> 32);
+			int old = (int) key;
+
+			if (number[com] < 0 && !taken.containsKey(old)) {
+				number[com] = old;
+				taken.put(old, com);
+			}
+		}
+
+		for (int com = 0; com < number.length; com++)
+			if (number[com] < 0)
+				number[com] = fresh++;
+
+		for (int i = 0; i < community.length; i++)
+			community[i] = number[community[i]];
+	}
+
+	/**
+	 * Write the communities of nodes whose community changed.
+	 */
+	protected void writeCommunities() {
+		writeCount = 0;
+
+		for (int i = 0; i < community.length; i++) {
+			Node node = graph.getNode(arrays.getNodeId(i));
+
+			if (node != null) {
+				Object value = node.getAttribute(communityAttribute);
+
+				if (!(value instanceof Integer)
+						|| (Integer) value != community[i]) {
+					node.setAttribute(communityAttribute, community[i]);
+					writeCount++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A pass on all nodes of the level, shared between the threads by blocks
+	 * of nodes. It either chooses the best community of each node, or sums
+	 * the weights inside communities.
+	 */
+	protected class Pass extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected static final int BLOCK = 1024;
+
+		protected boolean moves;
+
+		protected int task = -1;
+
+		protected Pass(boolean moves) {
+			this.moves = moves;
+		}
+
+		protected Pass(boolean moves, int task) {
+			this.moves = moves;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			if (task < 0) {
+				Pass[] tasks = new Pass[parallelism];
+				inside = new double[parallelism];
+
+				for (int t = 0; t < parallelism; t++)
+					tasks[t] = new Pass(moves, t);
+
+				invokeAll(tasks);
+				return;
+			}
+
+			int n = level.length;
+			double[] sum = moves ? new double[n] : null;
+			int[] seen = moves ? new int[n] : null;
+			int[] found = moves ? new int[n] : null;
+			double in = 0;
+
+			for (int b = task * BLOCK; b < n; b += parallelism * BLOCK) {
+				int end = Math.min(b + BLOCK, n);
+
+				for (int i = b; i < end; i++) {
+					if (moves)
+						move[i] = best(i, sum, seen, found);
+					else
+						for (int e = first[i]; e < first[i + 1]; e++)
+							if (level[target[e]] == level[i])
+								in += weight[e];
+				}
+			}
+
+			inside[task] = in;
+		}
+	}
+
+	/**
+	 * Community of a neighbour of a node (or its own community) that most
+	 * increases the modularity.
+	 * 
+	 * @param i
+	 *            The node.
+	 * @param sum
+	 *            Weight from the node to each community.
+	 * @param seen
+	 *            Node for which each community was seen, plus one.
+	 * @param found
+	 *            Communities seen.
+	 */
+	protected int best(int i, double[] sum, int[] seen, int[] found) {
+		int own = level[i];
+		int count = 0;
+		double k = strength[i] * resolution / totalWeight;
+
+		for (int e = first[i]; e < first[i + 1]; e++) {
+			int j = target[e];
+
+			if (j == i)
+				continue;
+
+			int c = level[j];
+
+			if (seen[c] != i + 1) {
+				seen[c] = i + 1;
+				sum[c] = 0;
+				found[count++] = c;
+			}
+
+			sum[c] += weight[e];
+		}
+
+		double ownSum = seen[own] == i + 1 ? sum[own] : 0;
+		double bestGain = ownSum - k * (communityStrength[own] - strength[i]);
+		int best = own;
+
+		for (int f = 0; f < count; f++) {
+			int c = found[f];
+
+			if (c != own) {
+				double gain = sum[c] - k * communityStrength[c];
+
+				if (gain > bestGain || (gain == bestGain && c < best)) {
+					bestGain = gain;
+					best = c;
+				}
+			}
+		}
+
+		if (best != own && communitySize[own] == 1 && communitySize[best] == 1
+				&& best > own)
+			return own;
+
+		return best;
+	}
+
+	/**
+	 * Detect the communities of a random graph made of groups of nodes more
+	 * linked inside than between them, then rewire a few edges and detect the
+	 * communities again with and without warm start.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes, the number of edges, the size of the
+	 * groups and the proportion of edges inside the groups (defaults to
+	 * 100000, 1000000, 100 and 0.8).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int edges = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int group = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		double p = args.length > 3 ? Double.parseDouble(args[3]) : 0.8;
+		Random random = new Random(1);
+		Graph graph = new AdjacencyListGraph("bench", false, true);
+
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+
+		int next = 0;
+
+		for (int i = 0; i < edges; i++)
+			next = addRandomEdge(graph, next, group, p, random);
+
+		Louvain louvain = new Louvain();
+		long t = System.nanoTime();
+		louvain.init(graph);
+		louvain.compute();
+		print("cold start", louvain, t);
+
+		for (int i = 0; i < edges / 100; i++) {
+			Edge e = graph.getEdge(random.nextInt(graph.getEdgeCount()));
+			graph.removeEdge(e.getId());
+			next = addRandomEdge(graph, next, group, p, random);
+		}
+
+		Louvain cold = new Louvain();
+		cold.setCommunityAttribute("cold");
+		t = System.nanoTime();
+		cold.init(graph);
+		cold.compute();
+		print("1% rewired, cold start", cold, t);
+
+		louvain.setWarmStart(true);
+		t = System.nanoTime();
+		louvain.init(graph);
+		louvain.compute();
+		print("1% rewired, warm start", louvain, t);
+	}
+
+	protected static void print(String what, Louvain louvain, long start) {
+		System.out.printf("%s: %.1f ms, %d communities, modularity %.4f, "
+				+ "%d levels, %d attributes written%n", what,
+				(System.nanoTime() - start) / 1e6,
+				louvain.getCommunityCount(), louvain.getModularity(),
+				louvain.getLevelCount(), louvain.getWriteCount());
+	}
+
+	protected static int addRandomEdge(Graph graph, int next, int group,
+			double p, Random random) {
+		int n = graph.getNodeCount();
+
+		while (true) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+
+			if (random.nextDouble() < p)
+				to = Math.min(n - 1, from / group * group + random.nextInt(group));
+
+			try {
+				graph.addEdge(Integer.toString(next++), Integer.toString(from),
+						Integer.toString(to));
+				return next;
+			} catch (IdAlreadyInUseException e) {
+				// Already an edge between these nodes, try again.
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+/**
+ * Algorithms on graphs.
+ * 
+ * <p>
+ * Algorithms are initialised with a graph, with an {@code init(Graph)} method,
+ * then computed with {@code compute()}. Algorithms that follow the evolution
+ * of a graph register as a sink of the graph when initialised and update
+ * their results each time the graph changes, until {@code terminate()} is
+ * called. There is no common interface, each algorithm has its own way to
+ * give its results.
+ * </p>
+ * 
+ * <p>
+ * Dynamic algorithms usually keep their own compact copy of the structure of
+ * the graph, a {@link org.graphstream.algorithm.CompactGraph}, updated from
+ * the graph events. This way they do not depend on the order in which the
+ * graph sends events and updates itself.
+ * </p>
+ */
+package org.graphstream.algorithm;
@@ -62,6 +62,24 @@ public interface Element {
 	 */
 	String getId();
 
+	/**
+	 * Position of this element in the graph it belongs to, between 0 and the
+	 * number of nodes (for a node) or edges (for an edge) of the graph, minus
+	 * one. This allows to access nodes and edges with
+	 * {@link Graph#getNode(int)} and {@link Graph#getEdge(int)}, and to store
+	 * data about the elements in arrays.
+	 * 
+	 * <p>
+	 * Indices are kept dense: when an element is removed, the element having
+	 * the last index takes its place. Therefore the index of an element may
+	 * change when another element is removed.
+	 * </p>
+	 * 
+	 * @return The index of this element, or -1 if the element does not belong
+	 *         to a graph or is itself a graph.
+	 */
+	int getIndex();
+
 	/**
 	 * Get the attribute object bound to the given key. The returned value may
 	 * be null to indicate the attribute does not exists or is not supported.
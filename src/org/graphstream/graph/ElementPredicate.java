@@ -0,0 +1,47 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph;
+
+/**
+ * Tell if an element is recognized.
+ * 
+ * <p>
+ * Predicates select the nodes and edges shown by a filtered view of a graph
+ * (see {@link org.graphstream.graph.implementations.FilteredGraph}).
+ * </p>
+ * 
+ * @param <T>
+ *            The type of elements tested.
+ */
+public interface ElementPredicate<T extends Element> {
+	/**
+	 * Tell if an element is recognized or not. The predicate can work on the
+	 * identifier of the element, on its attributes or on both.
+	 * 
+	 * @param element
+	 *            The element to test.
+	 * @return True if the element is recognized.
+	 */
+	boolean matches(T element);
+}
@@ -0,0 +1,805 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.graph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.graphstream.graph.implementations.DefaultGraph;
+
+/**
+ * Path description, designed for algorithms that build a lot of paths.
+ * 
+ * <p>
+ * This class offers the same services as {@link Path}, but:
+ * <ul>
+ * <li>nodes and edges are stored in plain arrays, without synchronisation;</li>
+ * <li>{@link #contains(Node)} and {@link #contains(Edge)} use an identity hash
+ * index, built the first time one of them is called and then maintained as
+ * the path grows or shrinks;</li>
+ * <li>{@link #getPathWeight(String)} returns a primitive double and caches the
+ * partial sums of the weights for each characteristic, so that the weight of a
+ * path growing edge after edge is computed incrementally;</li>
+ * <li>{@link #getACopy()} runs in constant time: the copy shares the arrays
+ * (and the weight caches) of the original. The first of the two paths that
+ * grows keeps the shared arrays, the other one takes a private copy of its
+ * prefix when it grows, so that the common prefix is never modified;</li>
+ * <li>{@link #removeLoops()} runs in linear time.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * The weights are read with {@link Element#getNumber(String)}, once for each
+ * edge. If the weight of an edge of the path changes, call
+ * {@link #clearWeightCache()}. An edge without the characteristic makes the
+ * weight NaN.
+ * </p>
+ * 
+ * <p>
+ * This class is not thread-safe. Since copies share their storage, a path and
+ * its copies must be used by the same thread.
+ * </p>
+ */
+public class FastPath {
+	// Attribute
+
+	/**
+	 * Storage, possibly shared with copies of this path.
+	 */
+	protected Segment segment;
+
+	/**
+	 * Number of nodes of this path.
+	 */
+	protected int size;
+
+	/**
+	 * Number of occurrences of each node and edge of the path, null until
+	 * {@link #contains(Node)} or {@link #contains(Edge)} is called.
+	 */
+	protected IdentityHashMap<Element, int[]> members;
+
+	// Construction
+
+	/**
+	 * New empty path.
+	 */
+	public FastPath() {
+		segment = new Segment(16);
+	}
+
+	/**
+	 * New path made of the nodes and edges of a path.
+	 * 
+	 * @param path
+	 *            The path to copy.
+	 */
+	public FastPath(Path path) {
+		segment = new Segment(Math.max(16, path.size()));
+
+		List<Node> nodes = path.getNodePath();
+		List<Edge> edges = path.getEdgePath();
+
+		for (int i = 0; i < nodes.size(); i++)
+			append(nodes.get(i), i > 0 ? edges.get(i - 1) : null);
+	}
+
+	// Access
+
+	/**
+	 * Get the root (the first node) of the path.
+	 * 
+	 * @return the root of the path, null if the path is empty.
+	 */
+	public Node getRoot() {
+		return size > 0 ? segment.nodes[0] : null;
+	}
+
+	/**
+	 * Says whether the path contains this node or not.
+	 * 
+	 * @param node
+	 *            The node tested for existence in the path.
+	 * @return <code>true</code> if the path contains the node.
+	 */
+	public boolean contains(Node node) {
+		return getMembers().containsKey(node);
+	}
+
+	/**
+	 * Says whether the path contains this edge or not.
+	 * 
+	 * @param edge
+	 *            The edge tested for existence in the path.
+	 * @return <code>true</code> if the path contains the edge.
+	 */
+	public boolean contains(Edge edge) {
+		return getMembers().containsKey(edge);
+	}
+
+	/**
+	 * Returns true if the path is empty.
+	 * 
+	 * @return <code>true</code> if the path is empty.
+	 */
+	public boolean empty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the size of the path, that is its number of nodes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the size of the path. Identical to {@link #size()}.
+	 * 
+	 * @return The size of the path.
+	 */
+	public int getNodeCount() {
+		return size;
+	}
+
+	/**
+	 * Number of edges of the path.
+	 * 
+	 * @return The number of edges, one less than the number of nodes.
+	 */
+	public int getEdgeCount() {
+		return size > 0 ? size - 1 : 0;
+	}
+
+	/**
+	 * The i-th node of the path, starting at the root.
+	 * 
+	 * @param i
+	 *            Index of the node.
+	 * @return The node.
+	 * @throws IndexOutOfBoundsException
+	 *             If i is not a valid index.
+	 */
+	public Node getNode(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("no node " + i + " in path");
+
+		return segment.nodes[i];
+	}
+
+	/**
+	 * The i-th edge of the path, the edge between nodes i and i+1.
+	 * 
+	 * @param i
+	 *            Index of the edge.
+	 * @return The edge.
+	 * @throws IndexOutOfBoundsException
+	 *             If i is not a valid index.
+	 */
+	public Edge getEdge(int i) {
+		if (i < 0 || i >= size - 1)
+			throw new IndexOutOfBoundsException("no edge " + i + " in path");
+
+		return segment.edges[i];
+	}
+
+	/**
+	 * Looks at the last node of the path.
+	 * 
+	 * @return The last node, null if the path is empty.
+	 */
+	public Node peekNode() {
+		return size > 0 ? segment.nodes[size - 1] : null;
+	}
+
+	/**
+	 * Looks at the last edge of the path.
+	 * 
+	 * @return The last edge, null if the path has no edge.
+	 */
+	public Edge peekEdge() {
+		return size > 1 ? segment.edges[size - 2] : null;
+	}
+
+	/**
+	 * Sum of the <code>characteristic</code> given value in the edges of the
+	 * path. Only the edges added since the last call are read.
+	 * 
+	 * @param characteristic
+	 *            The characteristic.
+	 * @return Sum of the characteristics.
+	 */
+	public double getPathWeight(String characteristic) {
+		int edgeCount = getEdgeCount();
+		Segment s = segment;
+
+		if (s.weights == null)
+			s.weights = new HashMap<String, Weights>();
+
+		Weights w = s.weights.get(characteristic);
+
+		if (w == null) {
+			w = new Weights(s.nodes.length);
+			s.weights.put(characteristic, w);
+		}
+
+		if (w.sums.length <= edgeCount)
+			w.sums = Arrays.copyOf(w.sums, s.nodes.length);
+
+		while (w.length <= edgeCount) {
+			w.sums[w.length] = w.sums[w.length - 1]
+					+ s.edges[w.length - 1].getNumber(characteristic);
+			w.length++;
+		}
+
+		return w.sums[edgeCount];
+	}
+
+	/**
+	 * Read-only view of the edges of the path.
+	 * 
+	 * @return The list of edges representing the path.
+	 */
+	public List<Edge> getEdgePath() {
+		return new AbstractList<Edge>() {
+			@Override
+			public Edge get(int index) {
+				return getEdge(index);
+			}
+
+			@Override
+			public int size() {
+				return getEdgeCount();
+			}
+		};
+	}
+
+	/**
+	 * Read-only view of the nodes of the path.
+	 * 
+	 * @return The list of nodes representing the path.
+	 */
+	public List<Node> getNodePath() {
+		return new AbstractList<Node>() {
+			@Override
+			public Node get(int index) {
+				return getNode(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Copy this path into a {@link Path}.
+	 * 
+	 * @return A new path with the same nodes and edges.
+	 */
+	public Path toPath() {
+		Path path = new Path();
+
+		if (size > 0) {
+			path.setRoot(segment.nodes[0]);
+
+			for (int i = 1; i < size; i++)
+				path.add(segment.nodes[i - 1], segment.edges[i - 1]);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Compare the nodes of the current path and the specified path to decide
+	 * weather they are equal or not.
+	 * 
+	 * @param p
+	 *            A path to compare to the current one.
+	 * @return True if both paths are equal.
+	 */
+	public boolean equals(FastPath p) {
+		if (size != p.size)
+			return false;
+
+		if (segment == p.segment)
+			return true;
+
+		for (int i = 0; i < size; i++)
+			if (segment.nodes[i] != p.segment.nodes[i])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns a String description of the path.
+	 * 
+	 * @return A String representation of the path.
+	 */
+	@Override
+	public String toString() {
+		return getNodePath().toString();
+	}
+
+	// Command
+
+	/**
+	 * Set the root (first node) of the path.
+	 * 
+	 * @param root
+	 *            The root of the path.
+	 */
+	public void setRoot(Node root) {
+		if (size == 0)
+			append(root, null);
+		else
+			System.err.printf("FastPath: root is not null. "
+					+ "First use the clear method.%n");
+	}
+
+	/**
+	 * Add an edge to the path. The start node must be the last node of the
+	 * path, or the first one if the path is empty.
+	 * 
+	 * @param from
+	 *            The start node, or null for the last node of the path.
+	 * @param edge
+	 *            The edge used.
+	 */
+	public void add(Node from, Edge edge) {
+		if (size == 0) {
+			if (from == null) {
+				System.err.printf("FastPath: use setRoot() first.%n");
+				return;
+			}
+
+			setRoot(from);
+		}
+
+		Node last = segment.nodes[size - 1];
+
+		if (from == null)
+			from = last;
+
+		if (from == last
+				&& (edge.getSourceNode() == from || edge.getTargetNode() == from))
+			append(edge.getOpposite(from), edge);
+		else
+			System.err.printf("FastPath: cannot add edge '%s', it cannot be "
+					+ "part of the path!%n", edge.getId());
+	}
+
+	/**
+	 * Add an edge at the end of the path.
+	 * 
+	 * @param edge
+	 *            The edge to add to the path.
+	 */
+	public void add(Edge edge) {
+		add(null, edge);
+	}
+
+	/**
+	 * A synonym for {@link #add(Node, Edge)}.
+	 */
+	public void push(Node from, Edge edge) {
+		add(from, edge);
+	}
+
+	/**
+	 * A synonym for {@link #add(Edge)}.
+	 */
+	public void push(Edge edge) {
+		add(edge);
+	}
+
+	/**
+	 * Remove the last node and edge of the path.
+	 * 
+	 * @return The edge that have just been removed.
+	 */
+	public Edge popEdge() {
+		Edge edge = peekEdge();
+		truncate();
+		return edge;
+	}
+
+	/**
+	 * Remove the last node and edge of the path.
+	 * 
+	 * @return The node that have just been removed.
+	 */
+	public Node popNode() {
+		Node node = peekNode();
+		truncate();
+		return node;
+	}
+
+	/**
+	 * Clears the path.
+	 */
+	public void clear() {
+		if (segment.shared) {
+			segment = new Segment(16);
+		} else {
+			Arrays.fill(segment.nodes, 0, size, null);
+			Arrays.fill(segment.edges, 0, Math.max(size - 1, 0), null);
+			segment.used = 0;
+			segment.weights = null;
+		}
+
+		size = 0;
+		members = null;
+	}
+
+	/**
+	 * Forget the weights computed so far, to take into account weights that
+	 * changed.
+	 */
+	public void clearWeightCache() {
+		segment.weights = null;
+	}
+
+	/**
+	 * Get a copy of this path. This runs in constant time, the copy sharing
+	 * the storage of this path.
+	 * 
+	 * @return A copy of this path.
+	 */
+	public FastPath getACopy() {
+		FastPath copy = new FastPath(segment);
+		copy.size = size;
+		segment.shared = true;
+
+		return copy;
+	}
+
+	/**
+	 * Remove all parts of the path that start at a given node and come back
+	 * to this node. For each node, the largest loop is removed.
+	 */
+	public void removeLoops() {
+		if (size < 3)
+			return;
+
+		Node[] nodes = segment.nodes;
+		Edge[] edges = segment.edges;
+		IdentityHashMap<Node, Integer> last = new IdentityHashMap<Node, Integer>(
+				size);
+
+		for (int i = 0; i < size; i++)
+			last.put(nodes[i], i);
+
+		if (last.size() == size)
+			return;
+
+		Segment s = new Segment(Math.max(16, last.size()));
+		int n = 0;
+
+		for (int i = 0; i < size;) {
+			int j = last.get(nodes[i]);
+
+			s.nodes[n] = nodes[i];
+
+			if (j + 1 < size)
+				s.edges[n] = edges[j];
+
+			n++;
+			i = j + 1;
+		}
+
+		s.used = n;
+		segment = s;
+		size = n;
+		members = null;
+	}
+
+	// Utility
+
+	/**
+	 * Constructor used by {@link #getACopy()}.
+	 */
+	protected FastPath(Segment segment) {
+		this.segment = segment;
+	}
+
+	/**
+	 * Append a node, reached by an edge, to the path. If another path sharing
+	 * the storage already wrote after the last node of this path, the prefix
+	 * is copied first.
+	 */
+	protected void append(Node node, Edge edge) {
+		Segment s = segment;
+
+		if (size != s.used)
+			s = segment = s.fork(size);
+		else if (size == s.nodes.length)
+			s.grow();
+
+		s.nodes[size] = node;
+
+		if (size > 0)
+			s.edges[size - 1] = edge;
+
+		size++;
+		s.used = size;
+
+		if (members != null) {
+			count(node, 1);
+
+			if (edge != null)
+				count(edge, 1);
+		}
+	}
+
+	/**
+	 * Remove the last node and edge. The storage is left as is if it is
+	 * shared, so that the copies still see it.
+	 */
+	protected void truncate() {
+		if (size == 0)
+			return;
+
+		Segment s = segment;
+		Node node = s.nodes[size - 1];
+		Edge edge = size > 1 ? s.edges[size - 2] : null;
+
+		size--;
+
+		if (!s.shared) {
+			s.nodes[size] = null;
+
+			if (size > 0)
+				s.edges[size - 1] = null;
+
+			s.used = size;
+
+			if (s.weights != null)
+				for (Weights w : s.weights.values())
+					w.length = Math.max(1, Math.min(w.length, size));
+		}
+
+		if (members != null) {
+			count(node, -1);
+
+			if (edge != null)
+				count(edge, -1);
+		}
+	}
+
+	protected IdentityHashMap<Element, int[]> getMembers() {
+		if (members == null) {
+			members = new IdentityHashMap<Element, int[]>(size * 2);
+
+			for (int i = 0; i < size; i++) {
+				count(segment.nodes[i], 1);
+
+				if (i > 0)
+					count(segment.edges[i - 1], 1);
+			}
+		}
+
+		return members;
+	}
+
+	protected void count(Element element, int delta) {
+		int[] n = members.get(element);
+
+		if (n == null) {
+			n = new int[1];
+			members.put(element, n);
+		}
+
+		n[0] += delta;
+
+		if (n[0] <= 0)
+			members.remove(element);
+	}
+
+	/**
+	 * Nodes and edges of a path, shared by the path and its copies. Only the
+	 * first {@link #used} nodes are meaningful, each path sharing the segment
+	 * sees a prefix of them.
+	 */
+	protected static class Segment {
+		/**
+		 * The nodes.
+		 */
+		protected Node[] nodes;
+
+		/**
+		 * The edges, the edge i links the nodes i and i+1.
+		 */
+		protected Edge[] edges;
+
+		/**
+		 * Number of nodes written.
+		 */
+		protected int used;
+
+		/**
+		 * Set as soon as a copy of a path uses this segment.
+		 */
+		protected boolean shared;
+
+		/**
+		 * Partial sums of the weights, for each characteristic.
+		 */
+		protected HashMap<String, Weights> weights;
+
+		protected Segment(int capacity) {
+			nodes = new Node[capacity];
+			edges = new Edge[capacity];
+		}
+
+		protected void grow() {
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+			edges = Arrays.copyOf(edges, edges.length * 2);
+		}
+
+		/**
+		 * A new segment with the first nodes of this one.
+		 * 
+		 * @param size
+		 *            The number of nodes to keep.
+		 */
+		protected Segment fork(int size) {
+			Segment s = new Segment(Math.max(16, size * 2));
+
+			System.arraycopy(nodes, 0, s.nodes, 0, size);
+
+			if (size > 1)
+				System.arraycopy(edges, 0, s.edges, 0, size - 1);
+
+			s.used = size;
+
+			if (weights != null) {
+				s.weights = new HashMap<String, Weights>();
+
+				for (String key : weights.keySet()) {
+					Weights w = weights.get(key);
+					Weights c = new Weights(s.nodes.length);
+					c.length = Math.max(1, Math.min(w.length, size));
+					System.arraycopy(w.sums, 0, c.sums, 0, c.length);
+					s.weights.put(key, c);
+				}
+			}
+
+			return s;
+		}
+	}
+
+	/**
+	 * Partial sums of the weights of the edges of a segment.
+	 */
+	protected static class Weights {
+		/**
+		 * The sum i is the weight of the i first edges.
+		 */
+		protected double[] sums;
+
+		/**
+		 * Number of sums computed.
+		 */
+		protected int length = 1;
+
+		protected Weights(int capacity) {
+			sums = new double[capacity];
+		}
+	}
+
+	/**
+	 * Benchmark of this class versus {@link Path}: random walks with loop
+	 * removal, weight computation and copies.
+	 * 
+	 * <p>
+	 * Arguments are the number of nodes of the graph, the number of walks and
+	 * the length of each walk (defaults to 1000, 10000 and 200).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int walks = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int length = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+		Graph graph = new DefaultGraph("bench", false, true);
+		Random random = new Random(1);
+
+		for (int i = 0; i < nodes; i++) {
+			graph.addNode(Integer.toString(i));
+
+			for (int j = 0; i > 0 && j < 3; j++) {
+				Edge e = graph.addEdge(i + "_" + j, Integer.toString(i),
+						Integer.toString(random.nextInt(i)));
+
+				if (e != null)
+					e.addAttribute("weight", random.nextDouble());
+			}
+		}
+
+		for (int run = 0; run < 3; run++) {
+			long t = System.nanoTime();
+			double check = 0;
+			random.setSeed(run);
+
+			for (int w = 0; w < walks; w++) {
+				Path path = new Path();
+				path.setRoot(graph.getNode(Integer.toString(random
+						.nextInt(nodes))));
+
+				for (int i = 0; i < length; i++) {
+					Node last = path.peekNode();
+					Edge e = last.getEdge(random.nextInt(last.getDegree()));
+
+					if (!path.contains(e.getOpposite(last)) || i % 2 == 0)
+						path.add(e);
+
+					if (i % 20 == 0)
+						check += path.getPathWeight("weight");
+				}
+
+				Path copy = path.getACopy();
+				copy.removeLoops();
+				check += copy.size();
+			}
+
+			long tPath = System.nanoTime() - t;
+			t = System.nanoTime();
+			double fastCheck = 0;
+			random.setSeed(run);
+
+			for (int w = 0; w < walks; w++) {
+				FastPath path = new FastPath();
+				path.setRoot(graph.getNode(Integer.toString(random
+						.nextInt(nodes))));
+
+				for (int i = 0; i < length; i++) {
+					Node last = path.peekNode();
+					Edge e = last.getEdge(random.nextInt(last.getDegree()));
+
+					if (!path.contains(e.getOpposite(last)) || i % 2 == 0)
+						path.add(e);
+
+					if (i % 20 == 0)
+						fastCheck += path.getPathWeight("weight");
+				}
+
+				FastPath copy = path.getACopy();
+				copy.removeLoops();
+				fastCheck += copy.size();
+			}
+
+			long tFast = System.nanoTime() - t;
+
+			System.out.printf("Path %.1f ms, FastPath %.1f ms (x%.1f) %s%n",
+					tPath / 1e6, tFast / 1e6, (double) tPath / tFast,
+					Math.abs(check - fastCheck) < 1e-6 * Math.abs(check) ? ""
+							: "MISMATCH");
+		}
+	}
+}
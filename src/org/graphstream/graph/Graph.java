@@ -135,6 +135,34 @@ public interface Graph extends Element, Pipe, Iterable<Node> {
 	 */
 	<T extends Edge> T getEdge(String id);
 
+	/**
+	 * Get a node by its index (see {@link Element#getIndex()}). This method is
+	 * implicitly generic and return something which extends Node, like
+	 * {@link #getNode(String)}.
+	 * 
+	 * @param index
+	 *            Index of the node to find, between 0 and the number of nodes
+	 *            minus one.
+	 * @return The node with the given index.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is not valid.
+	 */
+	<T extends Node> T getNode(int index) throws IndexOutOfBoundsException;
+
+	/**
+	 * Get an edge by its index (see {@link Element#getIndex()}). This method is
+	 * implicitly generic and return something which extends Edge, like
+	 * {@link #getEdge(String)}.
+	 * 
+	 * @param index
+	 *            Index of the edge to find, between 0 and the number of edges
+	 *            minus one.
+	 * @return The edge with the given index.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is not valid.
+	 */
+	<T extends Edge> T getEdge(int index) throws IndexOutOfBoundsException;
+
 	/**
 	 * Number of nodes in this graph.
 	 * 
@@ -600,6 +628,49 @@ public interface Graph extends Element, Pipe, Iterable<Node> {
 	 */
 	Iterable<ElementSink> elementSinks();
 
+	// Snapshots
+
+	/**
+	 * An immutable and consistent view of the graph as it is now.
+	 * 
+	 * <p>
+	 * The returned graph never changes, whatever happens to this graph later.
+	 * It can be browsed from another thread without locking while this graph
+	 * continues to evolve. All its methods that would modify it throw an
+	 * {@link UnsupportedOperationException}.
+	 * </p>
+	 * 
+	 * <p>
+	 * Snapshots share their structure with the graph (see
+	 * {@link org.graphstream.graph.implementations.GraphSnapshot}) : taking
+	 * one is done in constant time, and each modification of the graph only
+	 * copies the parts that changed. Old versions are reclaimed by the garbage
+	 * collector once no reader holds them. Attribute values are shared, not
+	 * copied.
+	 * </p>
+	 * 
+	 * <p>
+	 * Snapshots must first be enabled with {@link #enableSnapshots()}.
+	 * </p>
+	 * 
+	 * @return A read-only graph.
+	 * @throws IllegalStateException
+	 *             If snapshots were not enabled.
+	 */
+	Graph snapshot();
+
+	/**
+	 * Start keeping the versions of the graph returned by {@link #snapshot()}.
+	 * The graph is copied once, then each modification costs O(log32(n)) more.
+	 * This must be called by the thread that modifies the graph, or while
+	 * nobody modifies it, after which {@link #snapshot()} can be called from
+	 * any thread. Calling it again has no effect.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If the graph cannot be versioned.
+	 */
+	void enableSnapshots();
+
 	// Utility shortcuts (should be mixins or traits, what are you doing Mr Java
 	// ?)
 	// XXX use a Readable/Writable/Displayable interface for this ?
@@ -55,6 +55,11 @@ public abstract class AbstractConcurrentElement implements Element {
 	 */
 	protected ConcurrentHashMap<String, Object> attributes = null;
 
+	/**
+	 * Position of this element in its graph, -1 if none.
+	 */
+	protected int index = -1;
+
 	// Construction
 
 	/**
@@ -74,6 +79,24 @@ public abstract class AbstractConcurrentElement implements Element {
 		return id;
 	}
 
+	/**
+	 * @complexity Constant.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Set the position of this element in its graph. This is called by the
+	 * graph only.
+	 * 
+	 * @param index
+	 *            The new index, -1 if the element is removed from the graph.
+	 */
+	protected void setIndex(int index) {
+		this.index = index;
+	}
+
 	// XXX UGLY. how to create events in the abstract element ?
 	// XXX The various methods that add and remove attributes will propagate an
 	// event
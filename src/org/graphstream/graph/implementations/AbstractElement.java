@@ -62,6 +62,11 @@ public abstract class AbstractElement implements Element {
 	 */
 	protected HashMap<String, Object> attributes = null;
 
+	/**
+	 * Position of this element in its graph, -1 if none.
+	 */
+	protected int index = -1;
+
 	// Construction
 
 	/**
@@ -81,6 +86,24 @@ public abstract class AbstractElement implements Element {
 		return id;
 	}
 
+	/**
+	 * @complexity Constant.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Set the position of this element in its graph. This is called by the
+	 * graph only.
+	 * 
+	 * @param index
+	 *            The new index, -1 if the element is removed from the graph.
+	 */
+	protected void setIndex(int index) {
+		this.index = index;
+	}
+
 	// XXX UGLY. how to create events in the abstract element ?
 	// XXX The various methods that add and remove attributes will propagate an
 	// event
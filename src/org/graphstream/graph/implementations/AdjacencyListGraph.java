@@ -129,6 +129,21 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 	 */
 	protected HashMap<String, ? extends Edge> edges = new HashMap<String, Edge>();
 
+	/**
+	 * All the nodes, by index.
+	 */
+	protected ElementIndex<Node> nodeIndex = new ElementIndex<Node>();
+
+	/**
+	 * All the edges, by index.
+	 */
+	protected ElementIndex<Edge> edgeIndex = new ElementIndex<Edge>();
+
+	/**
+	 * Immutable versions of this graph, created by {@link #enableSnapshots()}.
+	 */
+	protected volatile SnapshotSupport snapshots;
+
 	/**
 	 * Verify name space conflicts, removal of non-existing elements, use of
 	 * non-existing elements.
@@ -354,6 +369,7 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 						edge = factory.newInstance(edgeId, src, trg, directed);
 
 						((HashMap<String, T>) edges).put(edgeId, edge);
+						edgeIndex.add(edge);
 
 						src.edges.add(edge);
 						trg.edges.add(edge);
@@ -407,6 +423,7 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 				node = factory.newInstance(nodeId, this);
 
 				((HashMap<String, T>) nodes).put(nodeId, node);
+				nodeIndex.add(node);
 				listeners.sendNodeAdded(sourceId, timeId, nodeId);
 			} catch (ClassCastException e) {
 				classCastException(e, "invalid node type required");
@@ -427,6 +444,8 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 		listeners.sendGraphCleared(sourceId, timeId);
 		nodes.clear();
 		edges.clear();
+		nodeIndex.clear();
+		edgeIndex.clear();
 	}
 
 	/**
@@ -451,6 +470,15 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 		return lookForEdge(id);
 	}
 
+	/**
+	 * @complexity constant.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		return (T) edgeIndex.get(index);
+	}
+
 	/**
 	 * @complexity constant.
 	 */
@@ -510,6 +538,15 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 		return lookForNode(id);
 	}
 
+	/**
+	 * @complexity constant.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		return (T) nodeIndex.get(index);
+	}
+
 	/**
 	 * @complexity constant.
 	 */
@@ -558,6 +595,14 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 		return listeners.elementSinks();
 	}
 
+	public Graph snapshot() {
+		return SnapshotSupport.snapshot(snapshots);
+	}
+
+	public void enableSnapshots() {
+		snapshots = SnapshotSupport.enable(this, snapshots);
+	}
+
 	public double getStep() {
 		return step;
 	}
@@ -628,6 +673,7 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 		((AdjacencyListNode) n0).edges.remove(edge);
 		((AdjacencyListNode) n1).edges.remove(edge);
 		edges.remove(edge.getId());
+		edgeIndex.remove(edge);
 
 		return edge;
 	}
@@ -665,6 +711,7 @@ public class AdjacencyListGraph extends AbstractElement implements Graph {
 			listeners.sendNodeRemoved(sourceId, timeId, node.getId());
 			disconnectEdges(node);
 			nodes.remove(node.getId());
+			nodeIndex.remove(node);
 
 			return node;
 		}
@@ -126,6 +126,21 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 	 */
 	protected ConcurrentHashMap<String, ? extends Edge> edges = new ConcurrentHashMap<String, Edge>();
 
+	/**
+	 * All the nodes, by index. Accesses are synchronized on the index.
+	 */
+	protected ElementIndex<Node> nodeIndex = new ElementIndex<Node>();
+
+	/**
+	 * All the edges, by index. Accesses are synchronized on the index.
+	 */
+	protected ElementIndex<Edge> edgeIndex = new ElementIndex<Edge>();
+
+	/**
+	 * Immutable versions of this graph, created by {@link #enableSnapshots()}.
+	 */
+	protected volatile SnapshotSupport snapshots;
+
 	/**
 	 * Verify name space conflicts, removal of non-existing elements, use of
 	 * non-existing elements.
@@ -340,6 +355,10 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 
 					((ConcurrentHashMap<String, T>) edges).put(edgeId, edge);
 
+					synchronized (edgeIndex) {
+						edgeIndex.add(edge);
+					}
+
 					src.edges.add(edge);
 					trg.edges.add(edge);
 
@@ -397,6 +416,11 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 			node = (T) nodeFactory.newInstance(nodeId, this);
 
 			((ConcurrentHashMap<String, T>) nodes).put(nodeId, node);
+
+			synchronized (nodeIndex) {
+				nodeIndex.add(node);
+			}
+
 			listeners.sendNodeAdded(sourceId, timeId, nodeId);
 		}
 
@@ -414,6 +438,14 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 		listeners.sendGraphCleared(sourceId, timeId);
 		nodes.clear();
 		edges.clear();
+
+		synchronized (nodeIndex) {
+			nodeIndex.clear();
+		}
+
+		synchronized (edgeIndex) {
+			edgeIndex.clear();
+		}
 	}
 
 	/**
@@ -439,6 +471,17 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 		return lookForEdge(id);
 	}
 
+	/**
+	 * @complexity Constant, plus overhead due to thread synchronization.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		synchronized (edgeIndex) {
+			return (T) edgeIndex.get(index);
+		}
+	}
+
 	/**
 	 * @complexity Constant.
 	 */
@@ -481,6 +524,17 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 		return lookForNode(id);
 	}
 
+	/**
+	 * @complexity Constant, plus overhead due to thread synchronization.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		synchronized (nodeIndex) {
+			return (T) nodeIndex.get(index);
+		}
+	}
+
 	/**
 	 * @complexity Constant.
 	 */
@@ -523,6 +577,14 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 		return listeners.elementSinks();
 	}
 
+	public Graph snapshot() {
+		return SnapshotSupport.snapshot(snapshots);
+	}
+
+	public void enableSnapshots() {
+		snapshots = SnapshotSupport.enable(this, snapshots);
+	}
+
 	public double getStep() {
 		return step;
 	}
@@ -603,6 +665,10 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 		((ConcurrentNode) n1).edges.remove(edge);
 		edges.remove(edge.getId());
 
+		synchronized (edgeIndex) {
+			edgeIndex.remove(edge);
+		}
+
 		return edge;
 	}
 
@@ -640,6 +706,10 @@ public class ConcurrentGraph extends AbstractConcurrentElement implements Graph
 			disconnectEdges(node);
 			nodes.remove(node.getId());
 
+			synchronized (nodeIndex) {
+				nodeIndex.remove(node);
+			}
+
 			return node;
 		}
 
@@ -113,6 +113,21 @@ public class DefaultGraph extends AbstractElement implements Graph {
 	 */
 	protected HashMap<String, ? extends Edge> edges = new HashMap<String, Edge>();
 
+	/**
+	 * Set of nodes indexed by their index.
+	 */
+	protected ElementIndex<Node> nodeIndex = new ElementIndex<Node>();
+
+	/**
+	 * Set of edges indexed by their index.
+	 */
+	protected ElementIndex<Edge> edgeIndex = new ElementIndex<Edge>();
+
+	/**
+	 * Immutable versions of this graph, created by {@link #enableSnapshots()}.
+	 */
+	protected volatile SnapshotSupport snapshots;
+
 	/**
 	 * Verify name space conflicts, removal of non-existing elements, use of
 	 * non-existing elements.
@@ -283,6 +298,24 @@ public class DefaultGraph extends AbstractElement implements Graph {
 		return null;
 	}
 
+	/**
+	 * @complexity Constant.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		return (T) nodeIndex.get(index);
+	}
+
+	/**
+	 * @complexity Constant.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		return (T) edgeIndex.get(index);
+	}
+
 	/**
 	 * @complexity Constant.
 	 */
@@ -391,6 +424,14 @@ public class DefaultGraph extends AbstractElement implements Graph {
 		return listeners.elementSinks();
 	}
 
+	public Graph snapshot() {
+		return SnapshotSupport.snapshot(snapshots);
+	}
+
+	public void enableSnapshots() {
+		snapshots = SnapshotSupport.enable(this, snapshots);
+	}
+
 	// Commands
 
 	/**
@@ -419,6 +460,8 @@ public class DefaultGraph extends AbstractElement implements Graph {
 		listeners.sendGraphCleared(sourceId, timeId);
 		nodes.clear();
 		edges.clear();
+		nodeIndex.clear();
+		edgeIndex.clear();
 		clearAttributes();
 	}
 
@@ -448,6 +491,7 @@ public class DefaultGraph extends AbstractElement implements Graph {
 			assert (old == null);
 
 			((HashMap<String, T>) nodes).put(nodeId, node);
+			nodeIndex.add(node);
 		} else if (strictChecking) {
 			throw new IdAlreadyInUseException("id '" + nodeId
 					+ "' already used, cannot add node");
@@ -504,6 +548,7 @@ public class DefaultGraph extends AbstractElement implements Graph {
 		{
 			listeners.sendNodeRemoved(sourceId, timeId, nodeId);
 			node.disconnectAllEdges();
+			nodeIndex.remove(node);
 
 			if (!fromNodeIterator)
 				nodes.remove(nodeId);
@@ -566,6 +611,7 @@ public class DefaultGraph extends AbstractElement implements Graph {
 				T edge = (T) src.addEdgeToward(edgeId, (DefaultNode) trg,
 						directed);
 				((HashMap<String, T>) edges).put(edge.getId(), edge);
+				edgeIndex.add(edge);
 				e = edge;
 
 				if (edge.getId().equals(edgeId))
@@ -661,6 +707,7 @@ public class DefaultGraph extends AbstractElement implements Graph {
 
 				((DefaultEdge) edge).unbind(sourceId, timeId);
 				edges.remove(((AbstractElement) edge).getId());
+				edgeIndex.remove(edge);
 
 				return (T) edge;
 			}
@@ -695,6 +742,7 @@ public class DefaultGraph extends AbstractElement implements Graph {
 
 			if (edge != null) {
 				edge.unbind(sourceId, timeId);
+				edgeIndex.remove(edge);
 				if (!fromEdgeIterator)
 					edge = (DefaultEdge) edges.remove(edgeId);
 				return (T) edge;
@@ -0,0 +1,142 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+
+import org.graphstream.graph.Element;
+
+/**
+ * Dense array of the nodes or edges of a graph, giving to each element its
+ * index (see {@link Element#getIndex()}).
+ * 
+ * <p>
+ * When an element is removed, the last element of the array takes its place,
+ * so that adding, removing and accessing an element by its index are done in
+ * constant time. The elements must extend {@link AbstractElement} or
+ * {@link AbstractConcurrentElement} so that their index can be set.
+ * </p>
+ * 
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * 
+ * @param <T>
+ *            The type of the elements.
+ */
+public class ElementIndex<T extends Element> {
+	// Attribute
+
+	/**
+	 * The elements, the element i having index i.
+	 */
+	protected ArrayList<T> elements = new ArrayList<T>();
+
+	// Access
+
+	/**
+	 * The element with the given index.
+	 * 
+	 * @param index
+	 *            The index.
+	 * @return The element.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is not valid.
+	 * @complexity Constant.
+	 */
+	public T get(int index) throws IndexOutOfBoundsException {
+		return elements.get(index);
+	}
+
+	/**
+	 * Number of elements.
+	 * 
+	 * @return The number of elements.
+	 */
+	public int size() {
+		return elements.size();
+	}
+
+	// Command
+
+	/**
+	 * Give the last index to an element. Nothing is done if the element already
+	 * has an index.
+	 * 
+	 * @param element
+	 *            The element to add.
+	 * @complexity Constant (amortised).
+	 */
+	public void add(T element) {
+		if (element.getIndex() >= 0)
+			return;
+
+		setIndex(element, elements.size());
+		elements.add(element);
+	}
+
+	/**
+	 * Remove an element, the last element taking its index. Nothing is done if
+	 * the element is not in this index.
+	 * 
+	 * @param element
+	 *            The element to remove.
+	 * @complexity Constant.
+	 */
+	public void remove(T element) {
+		int i = element.getIndex();
+		int last = elements.size() - 1;
+
+		if (i < 0 || i > last || elements.get(i) != element)
+			return;
+
+		T moved = elements.remove(last);
+
+		if (moved != element) {
+			elements.set(i, moved);
+			setIndex(moved, i);
+		}
+
+		setIndex(element, -1);
+	}
+
+	/**
+	 * Remove all the elements.
+	 */
+	public void clear() {
+		for (T element : elements)
+			setIndex(element, -1);
+
+		elements.clear();
+	}
+
+	protected void setIndex(T element, int index) {
+		if (element instanceof AbstractElement)
+			((AbstractElement) element).setIndex(index);
+		else if (element instanceof AbstractConcurrentElement)
+			((AbstractConcurrentElement) element).setIndex(index);
+		else
+			throw new ClassCastException("cannot index element of class "
+					+ element.getClass().getName());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Node;
+
+/**
+ * An edge of a {@link FilteredGraph}.
+ * 
+ * <p>
+ * This is a light view on an edge of the backing graph, created each time the
+ * edge is accessed. Its nodes are views of the backing nodes. Two views of the
+ * same edge in the same graph are equal.
+ * </p>
+ */
+public class FilteredEdge extends FilteredElement implements Edge {
+	// Attribute
+
+	/**
+	 * The view this edge belongs to.
+	 */
+	protected final FilteredGraph graph;
+
+	/**
+	 * The edge of the backing graph.
+	 */
+	protected final Edge edge;
+
+	// Construction
+
+	protected FilteredEdge(FilteredGraph graph, Edge edge) {
+		this.graph = graph;
+		this.edge = edge;
+	}
+
+	// Access
+
+	@Override
+	protected Element element() {
+		return edge;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getIndex() {
+		return graph.edges.indexOf(edge.getId());
+	}
+
+	public boolean isDirected() {
+		return edge.isDirected();
+	}
+
+	public <T extends Node> T getNode0() {
+		return graph.<T> node(edge.getNode0());
+	}
+
+	public <T extends Node> T getNode1() {
+		return graph.<T> node(edge.getNode1());
+	}
+
+	public <T extends Node> T getSourceNode() {
+		return graph.<T> node(edge.getSourceNode());
+	}
+
+	public <T extends Node> T getTargetNode() {
+		return graph.<T> node(edge.getTargetNode());
+	}
+
+	public <T extends Node> T getOpposite(T node) {
+		if (edge.getSourceNode().getId().equals(node.getId()))
+			return graph.<T> node(edge.getTargetNode());
+
+		return graph.<T> node(edge.getSourceNode());
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof FilteredEdge) {
+			FilteredEdge e = (FilteredEdge) o;
+
+			return e.graph == graph && e.edge == edge;
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return edge.hashCode();
+	}
+
+	// Command
+
+	@Deprecated
+	public void setDirected(boolean on) {
+		edge.setDirected(on);
+	}
+
+	@Deprecated
+	public void switchDirection() {
+		edge.switchDirection();
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.graphstream.graph.Element;
+
+/**
+ * Base of the elements of a {@link FilteredGraph}.
+ * 
+ * <p>
+ * A filtered element is a view on an element of the backing graph. It has no
+ * attributes of its own : all attribute accesses, reads and writes, are
+ * forwarded to the backing element.
+ * </p>
+ */
+abstract class FilteredElement implements Element {
+	// Access
+
+	/**
+	 * The element of the backing graph.
+	 * 
+	 * @return The backing element.
+	 */
+	protected abstract Element element();
+
+	public String getId() {
+		return element().getId();
+	}
+
+	public <T> T getAttribute(String key) {
+		return element().<T> getAttribute(key);
+	}
+
+	public <T> T getFirstAttributeOf(String... keys) {
+		return element().<T> getFirstAttributeOf(keys);
+	}
+
+	public <T> T getAttribute(String key, Class<T> clazz) {
+		return element().getAttribute(key, clazz);
+	}
+
+	public <T> T getFirstAttributeOf(Class<T> clazz, String... keys) {
+		return element().getFirstAttributeOf(clazz, keys);
+	}
+
+	public CharSequence getLabel(String key) {
+		return element().getLabel(key);
+	}
+
+	public double getNumber(String key) {
+		return element().getNumber(key);
+	}
+
+	public ArrayList<? extends Number> getVector(String key) {
+		return element().getVector(key);
+	}
+
+	public Object[] getArray(String key) {
+		return element().getArray(key);
+	}
+
+	public HashMap<?, ?> getHash(String key) {
+		return element().getHash(key);
+	}
+
+	public boolean hasAttribute(String key) {
+		return element().hasAttribute(key);
+	}
+
+	public boolean hasAttribute(String key, Class<?> clazz) {
+		return element().hasAttribute(key, clazz);
+	}
+
+	public boolean hasLabel(String key) {
+		return element().hasLabel(key);
+	}
+
+	public boolean hasNumber(String key) {
+		return element().hasNumber(key);
+	}
+
+	public boolean hasVector(String key) {
+		return element().hasVector(key);
+	}
+
+	public boolean hasArray(String key) {
+		return element().hasArray(key);
+	}
+
+	public boolean hasHash(String key) {
+		return element().hasHash(key);
+	}
+
+	public Iterator<String> getAttributeKeyIterator() {
+		return element().getAttributeKeyIterator();
+	}
+
+	public Iterable<String> getAttributeKeySet() {
+		return element().getAttributeKeySet();
+	}
+
+	public int getAttributeCount() {
+		return element().getAttributeCount();
+	}
+
+	@Override
+	public String toString() {
+		return getId();
+	}
+
+	// Command
+
+	public void clearAttributes() {
+		element().clearAttributes();
+	}
+
+	public void addAttribute(String attribute, Object... values) {
+		element().addAttribute(attribute, values);
+	}
+
+	public void changeAttribute(String attribute, Object... values) {
+		element().changeAttribute(attribute, values);
+	}
+
+	public void setAttribute(String attribute, Object... values) {
+		element().setAttribute(attribute, values);
+	}
+
+	public void addAttributes(Map<String, Object> attributes) {
+		element().addAttributes(attributes);
+	}
+
+	public void removeAttribute(String attribute) {
+		element().removeAttribute(attribute);
+	}
+
+	// Utility
+
+	protected static void readOnly() {
+		throw new UnsupportedOperationException(
+				"the structure of a filtered graph is read-only");
+	}
+}
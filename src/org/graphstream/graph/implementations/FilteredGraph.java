@@ -0,0 +1,1049 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.EdgeFactory;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.ElementPredicate;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.NodeFactory;
+import org.graphstream.stream.AttributeSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSinkFactory;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.ui.layout.Layout;
+import org.graphstream.ui.layout.Layouts;
+import org.graphstream.ui.swingViewer.GraphRenderer;
+import org.graphstream.ui.swingViewer.Viewer;
+
+/**
+ * A subgraph view of another graph.
+ * 
+ * <p>
+ * The view shows the nodes of the backing graph recognized by a node
+ * predicate, and the edges recognized by an edge predicate whose two nodes are
+ * shown (this is the subgraph induced by the nodes, filtered by the edges). A
+ * null predicate recognizes all the elements. Nothing is copied : the nodes
+ * and edges of the view are light wrappers created on demand around the
+ * elements of the backing graph, and degrees, neighbours and iterations are
+ * computed on the fly. The view only remembers the identifiers of the
+ * elements it shows, which gives the counts and index accesses in constant
+ * time and tells which elements appear or disappear at each event.
+ * </p>
+ * 
+ * <p>
+ * The view is lazy : it does nothing until first used. It then evaluates the
+ * predicates once on all the elements and listens to the backing graph. An
+ * element is tested again each time one of its attributes changes, and the
+ * edges of a node follow it when it appears or disappears. The view is a
+ * {@link org.graphstream.stream.Source} : its sinks see a consistent stream,
+ * where an element that starts to match is added with all its attributes and
+ * an element that stops matching is removed. If the predicates depend on
+ * something else (the attributes of the nodes of an edge, a value outside
+ * the graph), call {@link #refresh()} when it changes.
+ * </p>
+ * 
+ * <p>
+ * The structure of the view is read-only, adding or removing elements throws
+ * an {@link UnsupportedOperationException}. Attributes are those of the
+ * backing elements and writing them through the view modifies the backing
+ * graph, so algorithms can store their results. Call {@link #release()} to
+ * detach a view that is no longer used from the backing graph.
+ * </p>
+ * 
+ * <p>
+ * For example, the edges of weight greater than 0.8 between the nodes of
+ * class "X" :
+ * 
+ * <pre>
+ * Graph view = new FilteredGraph(&quot;view&quot;, graph,
+ * 		new ElementPredicate&lt;Node&gt;() {
+ * 			public boolean matches(Node node) {
+ * 				return &quot;X&quot;.equals(node.getAttribute(&quot;ui.class&quot;));
+ * 			}
+ * 		}, new ElementPredicate&lt;Edge&gt;() {
+ * 			public boolean matches(Edge edge) {
+ * 				return edge.getNumber(&quot;weight&quot;) &gt; 0.8;
+ * 			}
+ * 		});
+ * </pre>
+ * 
+ * </p>
+ */
+public class FilteredGraph extends FilteredElement implements Graph {
+	// Attribute
+
+	/**
+	 * Identifier of the view.
+	 */
+	protected String id;
+
+	/**
+	 * The backing graph.
+	 */
+	protected Graph graph;
+
+	/**
+	 * Predicate on nodes, null to show all nodes.
+	 */
+	protected ElementPredicate<Node> nodePredicate;
+
+	/**
+	 * Predicate on edges, null to show all edges between shown nodes.
+	 */
+	protected ElementPredicate<Edge> edgePredicate;
+
+	/**
+	 * Identifiers of the shown nodes, null until the view is first used.
+	 */
+	protected Members nodes;
+
+	/**
+	 * Identifiers of the shown edges, null until the view is first used.
+	 */
+	protected Members edges;
+
+	/**
+	 * Listens to the backing graph and sends the events of the view.
+	 */
+	protected ViewListeners listeners;
+
+	/**
+	 * Immutable versions of this view, created by {@link #enableSnapshots()}.
+	 */
+	protected volatile SnapshotSupport snapshots;
+
+	// Construction
+
+	/**
+	 * New view on a graph.
+	 * 
+	 * @param id
+	 *            Identifier of the view.
+	 * @param graph
+	 *            The backing graph.
+	 * @param nodePredicate
+	 *            The nodes to show, null for all.
+	 * @param edgePredicate
+	 *            The edges to show between shown nodes, null for all.
+	 */
+	public FilteredGraph(String id, Graph graph,
+			ElementPredicate<Node> nodePredicate,
+			ElementPredicate<Edge> edgePredicate) {
+		this.id = id;
+		this.graph = graph;
+		this.nodePredicate = nodePredicate;
+		this.edgePredicate = edgePredicate;
+		this.listeners = new ViewListeners();
+	}
+
+	/**
+	 * New view on a graph, with the identifier of the graph.
+	 * 
+	 * @param graph
+	 *            The backing graph.
+	 * @param nodePredicate
+	 *            The nodes to show, null for all.
+	 * @param edgePredicate
+	 *            The edges to show between shown nodes, null for all.
+	 */
+	public FilteredGraph(Graph graph, ElementPredicate<Node> nodePredicate,
+			ElementPredicate<Edge> edgePredicate) {
+		this(graph.getId(), graph, nodePredicate, edgePredicate);
+	}
+
+	// Access
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	public int getIndex() {
+		return graph.getIndex();
+	}
+
+	@Override
+	protected Element element() {
+		return graph;
+	}
+
+	/**
+	 * The graph this view filters.
+	 * 
+	 * @return The backing graph.
+	 */
+	public Graph getBackingGraph() {
+		return graph;
+	}
+
+	/**
+	 * The predicate on nodes.
+	 * 
+	 * @return The predicate, null if all nodes are shown.
+	 */
+	public ElementPredicate<Node> getNodePredicate() {
+		return nodePredicate;
+	}
+
+	/**
+	 * The predicate on edges.
+	 * 
+	 * @return The predicate, null if all edges between shown nodes are shown.
+	 */
+	public ElementPredicate<Edge> getEdgePredicate() {
+		return edgePredicate;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Node> T getNode(String id) {
+		build();
+
+		if (nodes.contains(id))
+			return node(graph.getNode(id));
+
+		return null;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Edge> T getEdge(String id) {
+		build();
+
+		if (edges.contains(id))
+			return edge(graph.getEdge(id));
+
+		return null;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		build();
+		return node(graph.getNode(nodes.get(index)));
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		build();
+		return edge(graph.getEdge(edges.get(index)));
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getNodeCount() {
+		build();
+		return nodes.size();
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getEdgeCount() {
+		build();
+		return edges.size();
+	}
+
+	public <T extends Node> Iterator<T> getNodeIterator() {
+		build();
+		return new NodeIterator<T>();
+	}
+
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		build();
+		return new EdgeIterator<T>();
+	}
+
+	public Iterator<Node> iterator() {
+		return getNodeIterator();
+	}
+
+	public <T extends Node> Iterable<? extends T> getEachNode() {
+		return this.<T> getNodeSet();
+	}
+
+	public <T extends Edge> Iterable<? extends T> getEachEdge() {
+		return this.<T> getEdgeSet();
+	}
+
+	public <T extends Node> Collection<T> getNodeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return getNodeIterator();
+			}
+
+			@Override
+			public int size() {
+				return getNodeCount();
+			}
+		};
+	}
+
+	public <T extends Edge> Collection<T> getEdgeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return getEdgeIterator();
+			}
+
+			@Override
+			public int size() {
+				return getEdgeCount();
+			}
+		};
+	}
+
+	/**
+	 * A view does not create elements.
+	 * 
+	 * @return null.
+	 */
+	public NodeFactory<? extends Node> nodeFactory() {
+		return null;
+	}
+
+	/**
+	 * A view does not create elements.
+	 * 
+	 * @return null.
+	 */
+	public EdgeFactory<? extends Edge> edgeFactory() {
+		return null;
+	}
+
+	public boolean isStrict() {
+		return graph.isStrict();
+	}
+
+	public boolean isAutoCreationEnabled() {
+		return graph.isAutoCreationEnabled();
+	}
+
+	public double getStep() {
+		return graph.getStep();
+	}
+
+	public Iterable<AttributeSink> attributeSinks() {
+		return listeners.attributeSinks();
+	}
+
+	public Iterable<ElementSink> elementSinks() {
+		return listeners.elementSinks();
+	}
+
+	public Graph snapshot() {
+		return SnapshotSupport.snapshot(snapshots);
+	}
+
+	public void enableSnapshots() {
+		snapshots = SnapshotSupport.enable(this, snapshots);
+	}
+
+	// Command
+
+	/**
+	 * Change the predicate on nodes. The nodes are tested again if the view
+	 * is in use, and the sinks of the view receive the differences.
+	 * 
+	 * @param predicate
+	 *            The nodes to show, null for all.
+	 */
+	public void setNodePredicate(ElementPredicate<Node> predicate) {
+		nodePredicate = predicate;
+		refresh();
+	}
+
+	/**
+	 * Change the predicate on edges. The edges are tested again if the view
+	 * is in use, and the sinks of the view receive the differences.
+	 * 
+	 * @param predicate
+	 *            The edges to show between shown nodes, null for all.
+	 */
+	public void setEdgePredicate(ElementPredicate<Edge> predicate) {
+		edgePredicate = predicate;
+		refresh();
+	}
+
+	/**
+	 * Test again all the elements of the backing graph, for predicates that
+	 * depend on something else than the attributes of the element tested. The
+	 * sinks of the view receive the elements that appear or disappear.
+	 * 
+	 * @complexity O(n+m) with n and m the number of nodes and edges of the
+	 *             backing graph.
+	 */
+	public void refresh() {
+		if (nodes == null)
+			return;
+
+		for (String e : edges.toArray()) {
+			Edge edge = graph.getEdge(e);
+
+			if (edge == null || !acceptEdge(edge))
+				listeners.hideEdge(e);
+		}
+
+		for (String n : nodes.toArray()) {
+			Node node = graph.getNode(n);
+
+			if (node == null || !acceptNode(node))
+				listeners.hideNode(n);
+		}
+
+		for (Node node : graph.getEachNode())
+			if (!nodes.contains(node.getId()) && acceptNode(node))
+				listeners.showNode(node);
+
+		for (Edge edge : graph.getEachEdge())
+			if (!edges.contains(edge.getId()) && acceptEdge(edge))
+				listeners.showEdge(edge);
+	}
+
+	/**
+	 * Detach the view from the backing graph and forget the shown elements.
+	 * The sinks of the view receive no more events. The view can still be
+	 * used, it will evaluate the predicates again.
+	 */
+	public void release() {
+		if (nodes != null) {
+			graph.removeSink(listeners);
+			nodes = null;
+			edges = null;
+		}
+	}
+
+	public void setNodeFactory(NodeFactory<? extends Node> nf) {
+		readOnly();
+	}
+
+	public void setEdgeFactory(EdgeFactory<? extends Edge> ef) {
+		readOnly();
+	}
+
+	public void setStrict(boolean on) {
+		readOnly();
+	}
+
+	public void setAutoCreate(boolean on) {
+		readOnly();
+	}
+
+	public void clear() {
+		readOnly();
+	}
+
+	public <T extends Node> T addNode(String id) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Node> T removeNode(String id) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T addEdge(String id, String node1, String node2) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T addEdge(String id, String from, String to,
+			boolean directed) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T removeEdge(String from, String to) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T removeEdge(String id) {
+		readOnly();
+		return null;
+	}
+
+	public void stepBegins(double time) {
+		readOnly();
+	}
+
+	// Commands -- Utility
+
+	public void read(String filename) {
+		readOnly();
+	}
+
+	public void read(FileSource input, String filename) {
+		readOnly();
+	}
+
+	public void write(FileSink output, String filename) throws IOException {
+		output.writeAll(this, filename);
+	}
+
+	public void write(String filename) throws IOException {
+		FileSink output = FileSinkFactory.sinkFor(filename);
+		write(output, filename);
+	}
+
+	public Viewer display() {
+		return display(true);
+	}
+
+	public Viewer display(boolean autoLayout) {
+		Viewer viewer = new Viewer(this,
+				Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD);
+		GraphRenderer renderer = Viewer.newGraphRenderer();
+
+		viewer.addView(
+				String.format("defaultView_%d", (long) (Math.random() * 10000)),
+				renderer);
+
+		if (autoLayout) {
+			Layout layout = Layouts.newLayoutAlgorithm();
+			viewer.enableAutoLayout(layout);
+		}
+
+		return viewer;
+	}
+
+	// Source
+
+	public void addSink(Sink sink) {
+		build();
+		listeners.addSink(sink);
+	}
+
+	public void removeSink(Sink sink) {
+		listeners.removeSink(sink);
+	}
+
+	public void addAttributeSink(AttributeSink sink) {
+		build();
+		listeners.addAttributeSink(sink);
+	}
+
+	public void removeAttributeSink(AttributeSink sink) {
+		listeners.removeAttributeSink(sink);
+	}
+
+	public void addElementSink(ElementSink sink) {
+		build();
+		listeners.addElementSink(sink);
+	}
+
+	public void removeElementSink(ElementSink sink) {
+		listeners.removeElementSink(sink);
+	}
+
+	public void clearElementSinks() {
+		listeners.clearElementSinks();
+	}
+
+	public void clearAttributeSinks() {
+		listeners.clearAttributeSinks();
+	}
+
+	public void clearSinks() {
+		listeners.clearSinks();
+	}
+
+	// Sink
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		readOnly();
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		readOnly();
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		readOnly();
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		readOnly();
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		readOnly();
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		readOnly();
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		readOnly();
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		readOnly();
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		readOnly();
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		readOnly();
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		readOnly();
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		readOnly();
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		readOnly();
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		readOnly();
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		readOnly();
+	}
+
+	// Utility
+
+	/**
+	 * Evaluate the predicates on the whole backing graph and start listening
+	 * to it, if not already done.
+	 */
+	protected void build() {
+		if (nodes != null)
+			return;
+
+		nodes = new Members();
+		edges = new Members();
+
+		for (Node node : graph.getEachNode())
+			if (acceptNode(node))
+				nodes.add(node.getId());
+
+		for (Edge edge : graph.getEachEdge())
+			if (acceptEdge(edge))
+				edges.add(edge.getId());
+
+		graph.addSink(listeners);
+	}
+
+	protected boolean acceptNode(Node node) {
+		return nodePredicate == null || nodePredicate.matches(node);
+	}
+
+	/**
+	 * An edge is shown if its two nodes are shown and it matches the edge
+	 * predicate.
+	 */
+	protected boolean acceptEdge(Edge edge) {
+		return nodes.contains(edge.getSourceNode().getId())
+				&& nodes.contains(edge.getTargetNode().getId())
+				&& (edgePredicate == null || edgePredicate.matches(edge));
+	}
+
+	/**
+	 * Is the edge with the given identifier shown ?
+	 */
+	protected boolean shows(Edge edge) {
+		return edges.contains(edge.getId());
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <T extends Node> T node(Node node) {
+		if (node == null)
+			return null;
+
+		return (T) new FilteredNode(this, node);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <T extends Edge> T edge(Edge edge) {
+		if (edge == null)
+			return null;
+
+		return (T) new FilteredEdge(this, edge);
+	}
+
+	/**
+	 * Dense set of identifiers. Removing an identifier moves the last one in
+	 * its place, so that adding, removing, testing and accessing by index are
+	 * done in constant time.
+	 */
+	protected static class Members {
+		protected HashMap<String, Integer> positions = new HashMap<String, Integer>();
+
+		protected ArrayList<String> ids = new ArrayList<String>();
+
+		public boolean contains(String id) {
+			return positions.containsKey(id);
+		}
+
+		public int indexOf(String id) {
+			Integer i = positions.get(id);
+
+			return i == null ? -1 : i;
+		}
+
+		public String get(int index) {
+			return ids.get(index);
+		}
+
+		public int size() {
+			return ids.size();
+		}
+
+		public String[] toArray() {
+			return ids.toArray(new String[ids.size()]);
+		}
+
+		public void add(String id) {
+			if (!positions.containsKey(id)) {
+				positions.put(id, ids.size());
+				ids.add(id);
+			}
+		}
+
+		public void remove(String id) {
+			Integer i = positions.remove(id);
+
+			if (i != null) {
+				String last = ids.remove(ids.size() - 1);
+
+				if (i < ids.size()) {
+					ids.set(i, last);
+					positions.put(last, i);
+				}
+			}
+		}
+
+		public void clear() {
+			positions.clear();
+			ids.clear();
+		}
+	}
+
+	protected class NodeIterator<T extends Node> implements Iterator<T> {
+		protected int index = 0;
+
+		public boolean hasNext() {
+			return nodes != null && index < nodes.size();
+		}
+
+		public T next() {
+			return node(graph.getNode(nodes.get(index++)));
+		}
+
+		public void remove() {
+			readOnly();
+		}
+	}
+
+	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
+		protected int index = 0;
+
+		public boolean hasNext() {
+			return edges != null && index < edges.size();
+		}
+
+		public T next() {
+			return edge(graph.getEdge(edges.get(index++)));
+		}
+
+		public void remove() {
+			readOnly();
+		}
+	}
+
+	// Handling the listeners -- We use the IO2 InputBase for this.
+
+	/**
+	 * Sink of the backing graph that updates the shown elements and source of
+	 * the events of the view. Events on shown elements are forwarded as is,
+	 * appearing and disappearing elements produce new events.
+	 */
+	class ViewListeners extends SourceBase implements Sink {
+		public ViewListeners() {
+			super(id);
+		}
+
+		/**
+		 * Show a node, its attributes and its shown edges.
+		 */
+		protected void showNode(Node node) {
+			showNode(sourceId, sourceTime.newEvent(), node);
+		}
+
+		protected void showNode(String sourceId, long timeId, Node node) {
+			String nodeId = node.getId();
+
+			nodes.add(nodeId);
+			sendNodeAdded(sourceId, timeId, nodeId);
+
+			for (String key : keys(node))
+				sendNodeAttributeAdded(this.sourceId, nodeId, key, node
+						.getAttribute(key));
+
+			for (Edge edge : node.getEachEdge())
+				if (!shows(edge) && acceptEdge(edge))
+					showEdge(edge);
+		}
+
+		/**
+		 * Hide the shown edges of a node, then the node.
+		 */
+		protected void hideNode(String nodeId) {
+			hideEdgesOf(nodeId);
+			nodes.remove(nodeId);
+			sendNodeRemoved(sourceId, nodeId);
+		}
+
+		protected void hideNode(String sourceId, long timeId, String nodeId) {
+			hideEdgesOf(nodeId);
+			nodes.remove(nodeId);
+			sendNodeRemoved(sourceId, timeId, nodeId);
+		}
+
+		protected void hideEdgesOf(String nodeId) {
+			Node node = graph.getNode(nodeId);
+
+			if (node != null) {
+				for (Edge edge : node.getEachEdge())
+					if (shows(edge))
+						hideEdge(edge.getId());
+			} else {
+				for (String e : edges.toArray()) {
+					Edge edge = graph.getEdge(e);
+
+					if (edge == null
+							|| edge.getSourceNode().getId().equals(nodeId)
+							|| edge.getTargetNode().getId().equals(nodeId))
+						hideEdge(e);
+				}
+			}
+		}
+
+		protected void showEdge(Edge edge) {
+			showEdge(sourceId, sourceTime.newEvent(), edge);
+		}
+
+		protected void showEdge(String sourceId, long timeId, Edge edge) {
+			String edgeId = edge.getId();
+
+			edges.add(edgeId);
+			sendEdgeAdded(sourceId, timeId, edgeId, edge.getSourceNode()
+					.getId(), edge.getTargetNode().getId(), edge.isDirected());
+
+			for (String key : keys(edge))
+				sendEdgeAttributeAdded(this.sourceId, edgeId, key, edge
+						.getAttribute(key));
+		}
+
+		protected void hideEdge(String edgeId) {
+			edges.remove(edgeId);
+			sendEdgeRemoved(sourceId, edgeId);
+		}
+
+		/**
+		 * Test again a node whose attributes changed. Returns true if it was
+		 * and is still shown, in which case the event must be forwarded.
+		 */
+		protected boolean nodeChanged(String nodeId) {
+			Node node = graph.getNode(nodeId);
+
+			if (node == null)
+				return false;
+
+			boolean was = nodes.contains(nodeId);
+			boolean now = acceptNode(node);
+
+			if (was && !now)
+				hideNode(nodeId);
+			else if (!was && now)
+				showNode(node);
+
+			return was && now;
+		}
+
+		protected boolean edgeChanged(String edgeId) {
+			Edge edge = graph.getEdge(edgeId);
+
+			if (edge == null)
+				return false;
+
+			boolean was = edges.contains(edgeId);
+			boolean now = acceptEdge(edge);
+
+			if (was && !now)
+				hideEdge(edgeId);
+			else if (!was && now)
+				showEdge(edge);
+
+			return was && now;
+		}
+
+		protected Iterable<String> keys(Element element) {
+			Iterable<String> keys = element.getAttributeKeySet();
+
+			if (keys == null)
+				return new ArrayList<String>();
+
+			return keys;
+		}
+
+		public void graphAttributeAdded(String sourceId, long timeId,
+				String attribute, Object value) {
+			sendGraphAttributeAdded(sourceId, timeId, attribute, value);
+		}
+
+		public void graphAttributeChanged(String sourceId, long timeId,
+				String attribute, Object oldValue, Object newValue) {
+			sendGraphAttributeChanged(sourceId, timeId, attribute, oldValue,
+					newValue);
+		}
+
+		public void graphAttributeRemoved(String sourceId, long timeId,
+				String attribute) {
+			sendGraphAttributeRemoved(sourceId, timeId, attribute);
+		}
+
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			if (nodeChanged(nodeId))
+				sendNodeAttributeAdded(sourceId, timeId, nodeId, attribute,
+						value);
+		}
+
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			if (nodeChanged(nodeId))
+				sendNodeAttributeChanged(sourceId, timeId, nodeId, attribute,
+						oldValue, newValue);
+		}
+
+		public void nodeAttributeRemoved(String sourceId, long timeId,
+				String nodeId, String attribute) {
+			if (nodeChanged(nodeId))
+				sendNodeAttributeRemoved(sourceId, timeId, nodeId, attribute);
+		}
+
+		public void edgeAttributeAdded(String sourceId, long timeId,
+				String edgeId, String attribute, Object value) {
+			if (edgeChanged(edgeId))
+				sendEdgeAttributeAdded(sourceId, timeId, edgeId, attribute,
+						value);
+		}
+
+		public void edgeAttributeChanged(String sourceId, long timeId,
+				String edgeId, String attribute, Object oldValue,
+				Object newValue) {
+			if (edgeChanged(edgeId))
+				sendEdgeAttributeChanged(sourceId, timeId, edgeId, attribute,
+						oldValue, newValue);
+		}
+
+		public void edgeAttributeRemoved(String sourceId, long timeId,
+				String edgeId, String attribute) {
+			if (edgeChanged(edgeId))
+				sendEdgeAttributeRemoved(sourceId, timeId, edgeId, attribute);
+		}
+
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			Node node = graph.getNode(nodeId);
+
+			if (node != null && !nodes.contains(nodeId) && acceptNode(node))
+				showNode(sourceId, timeId, node);
+		}
+
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			if (nodes.contains(nodeId))
+				hideNode(sourceId, timeId, nodeId);
+		}
+
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			Edge edge = graph.getEdge(edgeId);
+
+			if (edge != null && !edges.contains(edgeId) && acceptEdge(edge))
+				showEdge(sourceId, timeId, edge);
+		}
+
+		public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+			if (edges.contains(edgeId)) {
+				edges.remove(edgeId);
+				sendEdgeRemoved(sourceId, timeId, edgeId);
+			}
+		}
+
+		public void graphCleared(String sourceId, long timeId) {
+			nodes.clear();
+			edges.clear();
+			sendGraphCleared(sourceId, timeId);
+		}
+
+		public void stepBegins(String sourceId, long timeId, double step) {
+			sendStepBegins(sourceId, timeId, step);
+		}
+	}
+}
@@ -0,0 +1,325 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.graphstream.graph.BreadthFirstIterator;
+import org.graphstream.graph.DepthFirstIterator;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * A node of a {@link FilteredGraph}.
+ * 
+ * <p>
+ * This is a light view on a node of the backing graph, created each time the
+ * node is accessed. Its edges are the edges of the backing node shown by the
+ * view, the degrees and iterations being computed on the fly. Two views of
+ * the same node in the same graph are equal.
+ * </p>
+ */
+public class FilteredNode extends FilteredElement implements Node {
+	// Attribute
+
+	/**
+	 * The view this node belongs to.
+	 */
+	protected final FilteredGraph graph;
+
+	/**
+	 * The node of the backing graph.
+	 */
+	protected final Node node;
+
+	// Construction
+
+	protected FilteredNode(FilteredGraph graph, Node node) {
+		this.graph = graph;
+		this.node = node;
+	}
+
+	// Access
+
+	@Override
+	protected Element element() {
+		return node;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getIndex() {
+		return graph.nodes.indexOf(node.getId());
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node in the backing graph.
+	 */
+	public int getDegree() {
+		return count(node.getEdgeIterator());
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node in the backing graph.
+	 */
+	public int getOutDegree() {
+		return count(node.getLeavingEdgeIterator());
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node in the backing graph.
+	 */
+	public int getInDegree() {
+		return count(node.getEnteringEdgeIterator());
+	}
+
+	public boolean hasEdgeToward(String id) {
+		return getEdgeToward(id) != null;
+	}
+
+	public boolean hasEdgeFrom(String id) {
+		return getEdgeFrom(id) != null;
+	}
+
+	public boolean hasEdgeBetween(String id) {
+		return hasEdgeToward(id) || hasEdgeFrom(id);
+	}
+
+	public <T extends Edge> T getEdgeToward(String id) {
+		return find(node.getLeavingEdgeIterator(), id);
+	}
+
+	public <T extends Edge> T getEdgeFrom(String id) {
+		return find(node.getEnteringEdgeIterator(), id);
+	}
+
+	public <T extends Edge> T getEdgeBetween(String id) {
+		T edge = getEdgeToward(id);
+
+		if (edge == null)
+			edge = getEdgeFrom(id);
+
+		return edge;
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node in the backing graph.
+	 */
+	public <T extends Edge> T getEdge(int i) {
+		Iterator<T> it = new EdgeIterator<T>(node.getEdgeIterator());
+
+		while (i-- > 0)
+			it.next();
+
+		return it.next();
+	}
+
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new EdgeIterator<T>(node.getEdgeIterator());
+	}
+
+	public <T extends Edge> Iterator<T> getEnteringEdgeIterator() {
+		return new EdgeIterator<T>(node.getEnteringEdgeIterator());
+	}
+
+	public <T extends Edge> Iterator<T> getLeavingEdgeIterator() {
+		return new EdgeIterator<T>(node.getLeavingEdgeIterator());
+	}
+
+	public Iterator<Edge> iterator() {
+		return getEdgeIterator();
+	}
+
+	public <T extends Node> Iterator<T> getNeighborNodeIterator() {
+		final Iterator<Edge> edges = getEdgeIterator();
+
+		return new Iterator<T>() {
+			public boolean hasNext() {
+				return edges.hasNext();
+			}
+
+			@SuppressWarnings("unchecked")
+			public T next() {
+				Node self = FilteredNode.this;
+
+				return (T) edges.next().getOpposite(self);
+			}
+
+			public void remove() {
+				readOnly();
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getBreadthFirstIterator() {
+		return new BreadthFirstIterator<T>((T) this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getBreadthFirstIterator(boolean directed) {
+		return new BreadthFirstIterator<T>((T) this, directed);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getDepthFirstIterator() {
+		return new DepthFirstIterator<T>((T) this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getDepthFirstIterator(boolean directed) {
+		return new DepthFirstIterator<T>((T) this, directed);
+	}
+
+	public <T extends Edge> Iterable<T> getEachEdge() {
+		return this.<T> getEdgeSet();
+	}
+
+	public <T extends Edge> Iterable<T> getEachLeavingEdge() {
+		return this.<T> getLeavingEdgeSet();
+	}
+
+	public <T extends Edge> Iterable<T> getEachEnteringEdge() {
+		return this.<T> getEnteringEdgeSet();
+	}
+
+	public <T extends Edge> Collection<T> getEdgeSet() {
+		return collect(new EdgeIterator<T>(node.getEdgeIterator()));
+	}
+
+	public <T extends Edge> Collection<T> getLeavingEdgeSet() {
+		return collect(new EdgeIterator<T>(node.getLeavingEdgeIterator()));
+	}
+
+	public <T extends Edge> Collection<T> getEnteringEdgeSet() {
+		return collect(new EdgeIterator<T>(node.getEnteringEdgeIterator()));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof FilteredNode) {
+			FilteredNode n = (FilteredNode) o;
+
+			return n.graph == graph && n.node == node;
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return node.hashCode();
+	}
+
+	// Utility
+
+	protected int count(Iterator<? extends Edge> it) {
+		int n = 0;
+
+		while (it.hasNext())
+			if (graph.shows(it.next()))
+				n++;
+
+		return n;
+	}
+
+	/**
+	 * The first shown edge of the iterator whose opposite is the given node.
+	 */
+	protected <T extends Edge> T find(Iterator<? extends Edge> it, String id) {
+		if (!graph.nodes.contains(id))
+			return null;
+
+		while (it.hasNext()) {
+			Edge edge = it.next();
+
+			if (graph.shows(edge) && edge.getOpposite(node).getId().equals(id))
+				return graph.<T> edge(edge);
+		}
+
+		return null;
+	}
+
+	protected <T extends Edge> Collection<T> collect(Iterator<T> it) {
+		ArrayList<T> list = new ArrayList<T>();
+
+		while (it.hasNext())
+			list.add(it.next());
+
+		return list;
+	}
+
+	/**
+	 * Iterator on the edges of the backing node shown by the view.
+	 */
+	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
+		protected Iterator<? extends Edge> edges;
+
+		protected Edge next;
+
+		public EdgeIterator(Iterator<? extends Edge> edges) {
+			this.edges = edges;
+			findNext();
+		}
+
+		protected void findNext() {
+			next = null;
+
+			while (next == null && edges.hasNext()) {
+				Edge edge = edges.next();
+
+				if (graph.shows(edge))
+					next = edge;
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public T next() {
+			if (next == null)
+				throw new NoSuchElementException();
+
+			T edge = graph.<T> edge(next);
+			findNext();
+
+			return edge;
+		}
+
+		public void remove() {
+			readOnly();
+		}
+	}
+}
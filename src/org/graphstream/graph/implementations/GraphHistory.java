@@ -0,0 +1,1087 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.Sink;
+
+/**
+ * Records the evolution of a graph, step by step, to answer questions about
+ * its past.
+ * 
+ * <p>
+ * This sink follows the events of a graph and keeps, for each node and edge,
+ * the list of the intervals of steps during which it existed, and for each
+ * attribute the list of its successive values. {@link #asOf(double)} rebuilds
+ * the graph as it was at the end of a step, as an immutable
+ * {@link GraphSnapshot}, and the range queries give the elements that existed
+ * during an interval of steps or the changes of an attribute during this
+ * interval, without having to replay the events.
+ * </p>
+ * 
+ * <p>
+ * The history is organized by step, as given by
+ * {@link Graph#stepBegins(double)} : only the state at the end of each step is
+ * kept, an element added and removed during the same step, or an attribute
+ * changed several times in the same step, leave no more than their last state.
+ * A graph that never calls {@link Graph#stepBegins(double)} therefore only
+ * costs its current state. Steps are expected to increase, the events that
+ * follow a step smaller than the current one are recorded in the current
+ * step.
+ * </p>
+ * 
+ * <p>
+ * Attribute histories are delta compressed (see {@link ValueHistory}) : a
+ * numeric attribute updated at each step, like a position, costs a few bytes
+ * per step. The memory is bounded by the retention, the number of steps kept
+ * before the current one. When it is set, the changes that precede the
+ * retention are forgotten as the history grows, at a cost proportional to the
+ * size of the history each time it doubles. The history can then only be
+ * queried from {@link #getFirstStep()}. Attribute values are shared with the
+ * graph, not copied.
+ * </p>
+ * 
+ * <p>
+ * The history must be used from the thread that modifies the graph. The
+ * graphs returned by {@link #asOf(double)} are immutable and can be given to
+ * any thread.
+ * </p>
+ */
+public class GraphHistory implements Sink {
+	// Attribute
+
+	/**
+	 * Smallest growth of the history between two compactions.
+	 */
+	protected static final int COMPACTION = 4096;
+
+	/**
+	 * Identifier of the graph.
+	 */
+	protected String id;
+
+	/**
+	 * History of the nodes by identifier.
+	 */
+	protected HashMap<String, ElementHistory> nodes = new HashMap<String, ElementHistory>();
+
+	/**
+	 * History of the edges by identifier.
+	 */
+	protected HashMap<String, EdgeHistory> edges = new HashMap<String, EdgeHistory>();
+
+	/**
+	 * History of the graph attributes.
+	 */
+	protected ElementHistory graph = new ElementHistory(null);
+
+	/**
+	 * The current step.
+	 */
+	protected double step;
+
+	/**
+	 * The first step that can be queried.
+	 */
+	protected double first;
+
+	/**
+	 * Number of steps kept before the current one.
+	 */
+	protected double retention = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Number of changes recorded since the last compaction.
+	 */
+	protected int recorded;
+
+	/**
+	 * Number of changes kept by the last compaction.
+	 */
+	protected int retained;
+
+	/**
+	 * The last past state built, since past states do not change.
+	 */
+	protected GraphSnapshot cached;
+
+	// Construction
+
+	/**
+	 * New history that starts with the current state of the given graph and
+	 * registers as one of its sinks.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public GraphHistory(Graph graph) {
+		id = graph.getId();
+		step = graph.getStep();
+		first = step;
+
+		for (Node node : graph.getEachNode()) {
+			ElementHistory history = new ElementHistory(node.getId());
+			history.born(step);
+			copyAttributes(node, history);
+			nodes.put(node.getId(), history);
+		}
+
+		for (Edge edge : graph.getEachEdge()) {
+			EdgeHistory history = new EdgeHistory(edge.getId());
+			history.born(step, edge.getSourceNode().getId(), edge
+					.getTargetNode().getId(), edge.isDirected());
+			copyAttributes(edge, history);
+			edges.put(edge.getId(), history);
+		}
+
+		copyAttributes(graph, this.graph);
+		graph.addSink(this);
+	}
+
+	// Access
+
+	/**
+	 * The current step.
+	 */
+	public double getStep() {
+		return step;
+	}
+
+	/**
+	 * The first step that can be queried, the step of the graph when the
+	 * history started or the first step kept by the retention.
+	 */
+	public double getFirstStep() {
+		return first;
+	}
+
+	/**
+	 * Number of steps kept before the current one, infinite by default.
+	 */
+	public double getRetention() {
+		return retention;
+	}
+
+	/**
+	 * The graph as it was at the end of a step.
+	 * 
+	 * @param s
+	 *            The step.
+	 * @return An immutable graph.
+	 * @throws IllegalArgumentException
+	 *             If the step precedes the first step kept.
+	 * @complexity O(n + m + c) with n and m being the number of nodes and
+	 *             edges known by the history, and c the number of attribute
+	 *             changes kept.
+	 */
+	public GraphSnapshot asOf(double s) {
+		checkStep(s);
+
+		GraphSnapshot g = cached;
+
+		if (g != null && g.step == s)
+			return g;
+
+		PersistentMap<String, GraphSnapshot.NodeState> nodeStates = PersistentMap
+				.empty();
+		PersistentMap<String, GraphSnapshot.EdgeState> edgeStates = PersistentMap
+				.empty();
+		HashMap<String, ArrayList<String>> adjacency = new HashMap<String, ArrayList<String>>();
+
+		for (ElementHistory node : nodes.values())
+			if (node.lifetimeAt(s) >= 0)
+				adjacency.put(node.id, new ArrayList<String>(2));
+
+		for (EdgeHistory edge : edges.values()) {
+			int i = edge.lifetimeAt(s);
+
+			if (i >= 0) {
+				ArrayList<String> src = adjacency.get(edge.ends[i * 2]);
+				ArrayList<String> trg = adjacency.get(edge.ends[i * 2 + 1]);
+
+				if (src != null && trg != null) {
+					src.add(edge.id);
+
+					if (trg != src)
+						trg.add(edge.id);
+
+					edgeStates = edgeStates.put(edge.id,
+							new GraphSnapshot.EdgeState(edge.id,
+									edge.ends[i * 2], edge.ends[i * 2 + 1],
+									edge.directed[i], edge.attributesAt(s)));
+				}
+			}
+		}
+
+		for (Map.Entry<String, ArrayList<String>> entry : adjacency.entrySet()) {
+			ArrayList<String> adjacent = entry.getValue();
+
+			nodeStates = nodeStates.put(entry.getKey(),
+					new GraphSnapshot.NodeState(entry.getKey(), nodes.get(
+							entry.getKey()).attributesAt(s), adjacent
+							.toArray(new String[adjacent.size()])));
+		}
+
+		g = new GraphSnapshot(id, nodeStates, edgeStates,
+				graph.attributesAt(s), s);
+
+		if (s < step)
+			cached = g;
+
+		return g;
+	}
+
+	/**
+	 * Tells if a node existed at the end of a step.
+	 * 
+	 * @param nodeId
+	 *            Identifier of the node.
+	 * @param s
+	 *            The step.
+	 * @complexity O(k) with k being the number of lifetimes of the node.
+	 */
+	public boolean existsNode(String nodeId, double s) {
+		checkStep(s);
+
+		ElementHistory node = nodes.get(nodeId);
+
+		return node != null && node.lifetimeAt(s) >= 0;
+	}
+
+	/**
+	 * Tells if an edge existed at the end of a step.
+	 * 
+	 * @param edgeId
+	 *            Identifier of the edge.
+	 * @param s
+	 *            The step.
+	 * @complexity O(k) with k being the number of lifetimes of the edge.
+	 */
+	public boolean existsEdge(String edgeId, double s) {
+		checkStep(s);
+
+		EdgeHistory edge = edges.get(edgeId);
+
+		return edge != null && edge.lifetimeAt(s) >= 0;
+	}
+
+	/**
+	 * The lifetimes of a node, as pairs of steps : the step where the node was
+	 * added, then the step where it was removed, infinite if the node still
+	 * exists. The node exists at the end of the steps s such that
+	 * {@code added <= s < removed}.
+	 * 
+	 * @param nodeId
+	 *            Identifier of the node.
+	 * @return A new array, empty if the node is unknown.
+	 */
+	public double[] getNodeLifetimes(String nodeId) {
+		ElementHistory node = nodes.get(nodeId);
+
+		return node == null ? new double[0] : Arrays.copyOf(node.lifetimes,
+				node.size);
+	}
+
+	/**
+	 * The lifetimes of an edge, as pairs of steps. See
+	 * {@link #getNodeLifetimes(String)}.
+	 * 
+	 * @param edgeId
+	 *            Identifier of the edge.
+	 * @return A new array, empty if the edge is unknown.
+	 */
+	public double[] getEdgeLifetimes(String edgeId) {
+		EdgeHistory edge = edges.get(edgeId);
+
+		return edge == null ? new double[0] : Arrays.copyOf(edge.lifetimes,
+				edge.size);
+	}
+
+	/**
+	 * The nodes that existed at the end of at least one step of an interval.
+	 * 
+	 * @param from
+	 *            First step of the interval.
+	 * @param to
+	 *            Last step of the interval.
+	 * @return The identifiers of the nodes.
+	 * @complexity O(n) with n being the number of nodes known by the history.
+	 */
+	public Collection<String> getNodesBetween(double from, double to) {
+		checkStep(from);
+
+		ArrayList<String> ids = new ArrayList<String>();
+
+		for (ElementHistory node : nodes.values())
+			if (node.existsBetween(from, to))
+				ids.add(node.id);
+
+		return ids;
+	}
+
+	/**
+	 * The edges that existed at the end of at least one step of an interval.
+	 * 
+	 * @param from
+	 *            First step of the interval.
+	 * @param to
+	 *            Last step of the interval.
+	 * @return The identifiers of the edges.
+	 * @complexity O(m) with m being the number of edges known by the history.
+	 */
+	public Collection<String> getEdgesBetween(double from, double to) {
+		checkStep(from);
+
+		ArrayList<String> ids = new ArrayList<String>();
+
+		for (EdgeHistory edge : edges.values())
+			if (edge.existsBetween(from, to))
+				ids.add(edge.id);
+
+		return ids;
+	}
+
+	/**
+	 * The values of a node attribute during an interval of steps : the value
+	 * at the end of the first step, stamped with the step where it was set,
+	 * then the changes until the end of the last step. A change whose value
+	 * is null is a removal.
+	 * 
+	 * @param nodeId
+	 *            Identifier of the node.
+	 * @param attribute
+	 *            Name of the attribute.
+	 * @param from
+	 *            First step of the interval.
+	 * @param to
+	 *            Last step of the interval.
+	 * @return The changes, in the order of the steps.
+	 */
+	public List<Change> getNodeAttributeChanges(String nodeId,
+			String attribute, double from, double to) {
+		return changes(nodes.get(nodeId), attribute, from, to);
+	}
+
+	/**
+	 * The values of an edge attribute during an interval of steps. See
+	 * {@link #getNodeAttributeChanges(String, String, double, double)}.
+	 */
+	public List<Change> getEdgeAttributeChanges(String edgeId,
+			String attribute, double from, double to) {
+		return changes(edges.get(edgeId), attribute, from, to);
+	}
+
+	/**
+	 * The values of a graph attribute during an interval of steps. See
+	 * {@link #getNodeAttributeChanges(String, String, double, double)}.
+	 */
+	public List<Change> getGraphAttributeChanges(String attribute,
+			double from, double to) {
+		return changes(graph, attribute, from, to);
+	}
+
+	// Command
+
+	/**
+	 * Number of steps kept before the current one. The history can still be
+	 * queried at the end of the step {@code getStep() - retention}, the
+	 * changes that precede it are forgotten as the history grows.
+	 * 
+	 * @param retention
+	 *            A positive number of steps, infinite to keep everything.
+	 */
+	public void setRetention(double retention) {
+		this.retention = retention;
+	}
+
+	/**
+	 * Forget now the changes that precede the retention.
+	 * 
+	 * @complexity O(n + m + c) with n and m being the number of nodes and
+	 *             edges known by the history, and c the number of attribute
+	 *             changes kept.
+	 */
+	public void compact() {
+		double horizon = step - retention;
+
+		if (!(horizon > first))
+			return;
+
+		retained = graph.compact(horizon);
+
+		Iterator<ElementHistory> n = nodes.values().iterator();
+
+		while (n.hasNext()) {
+			int kept = n.next().compact(horizon);
+
+			if (kept == 0)
+				n.remove();
+
+			retained += kept;
+		}
+
+		Iterator<EdgeHistory> e = edges.values().iterator();
+
+		while (e.hasNext()) {
+			int kept = e.next().compact(horizon);
+
+			if (kept == 0)
+				e.remove();
+
+			retained += kept;
+		}
+
+		first = horizon;
+		recorded = 0;
+
+		if (cached != null && cached.step < first)
+			cached = null;
+	}
+
+	// Sink
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		set(graph, attribute, value);
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		set(graph, attribute, newValue);
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		set(graph, attribute, ValueHistory.REMOVED);
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		set(nodes.get(nodeId), attribute, value);
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		set(nodes.get(nodeId), attribute, newValue);
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		set(nodes.get(nodeId), attribute, ValueHistory.REMOVED);
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		set(edges.get(edgeId), attribute, value);
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		set(edges.get(edgeId), attribute, newValue);
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		set(edges.get(edgeId), attribute, ValueHistory.REMOVED);
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		ElementHistory node = nodes.get(nodeId);
+
+		if (node == null) {
+			node = new ElementHistory(nodeId);
+			nodes.put(nodeId, node);
+		}
+
+		if (!node.exists()) {
+			node.born(step);
+			recorded++;
+		}
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		ElementHistory node = nodes.get(nodeId);
+
+		if (node != null && node.exists()) {
+			recorded += node.died(step);
+		}
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		EdgeHistory edge = edges.get(edgeId);
+
+		if (edge == null) {
+			edge = new EdgeHistory(edgeId);
+			edges.put(edgeId, edge);
+		}
+
+		if (!edge.exists()) {
+			edge.born(step, fromNodeId, toNodeId, directed);
+			recorded++;
+		}
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		EdgeHistory edge = edges.get(edgeId);
+
+		if (edge != null && edge.exists())
+			recorded += edge.died(step);
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		for (ElementHistory node : nodes.values())
+			if (node.exists())
+				recorded += node.died(step);
+
+		for (EdgeHistory edge : edges.values())
+			if (edge.exists())
+				recorded += edge.died(step);
+
+		recorded += graph.clearAttributes(step);
+	}
+
+	/**
+	 * Starts a new step, and forgets the changes that precede the retention
+	 * once the history has doubled since the last compaction.
+	 */
+	public void stepBegins(String sourceId, long timeId, double time) {
+		if (time > step) {
+			step = time;
+
+			if (retention < Double.POSITIVE_INFINITY
+					&& recorded > Math.max(COMPACTION, retained))
+				compact();
+		}
+	}
+
+	// Utility
+
+	protected void checkStep(double s) {
+		if (s < first)
+			throw new IllegalArgumentException(String.format(
+					"step %f precedes the history, that starts at step %f", s,
+					first));
+	}
+
+	protected void set(ElementHistory element, String attribute, Object value) {
+		if (element != null && (element == graph || element.exists())) {
+			element.set(attribute, step, value);
+			recorded++;
+		}
+	}
+
+	protected List<Change> changes(ElementHistory element, String attribute,
+			double from, double to) {
+		checkStep(from);
+
+		ArrayList<Change> changes = new ArrayList<Change>();
+
+		if (element != null && element.attributes != null) {
+			ValueHistory values = element.attributes.get(attribute);
+
+			if (values != null)
+				values.changes(from, to, changes);
+		}
+
+		return changes;
+	}
+
+	protected void copyAttributes(Element element, ElementHistory history) {
+		Iterable<String> keys = element.getAttributeKeySet();
+
+		if (keys != null)
+			for (String key : keys)
+				history.set(key, step, element.getAttribute(key));
+	}
+
+	/**
+	 * Number of changes and approximate size in bytes of the history, for the
+	 * benchmark.
+	 */
+	protected long[] usage() {
+		long usage[] = new long[2];
+
+		graph.usage(usage);
+
+		for (ElementHistory node : nodes.values())
+			node.usage(usage);
+
+		for (EdgeHistory edge : edges.values())
+			edge.usage(usage);
+
+		return usage;
+	}
+
+	/**
+	 * Run a random dynamic graph, check the past states rebuilt by the history
+	 * against snapshots of the graph taken at the time, and measure the
+	 * history with and without retention. The first argument is the number of
+	 * steps.
+	 */
+	public static void main(String args[]) {
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		Random random = new Random(1);
+		Graph graph = new MultiGraph("history");
+		GraphHistory history = new GraphHistory(graph);
+		HashMap<Double, Graph> samples = new HashMap<Double, Graph>();
+		ArrayList<String> alive = new ArrayList<String>();
+
+		graph.enableSnapshots();
+
+		long t = System.currentTimeMillis();
+		simulate(graph, random, alive, samples, 1, steps);
+		long[] usage = history.usage();
+
+		System.out.printf("%d steps recorded in %d ms, %d nodes and %d "
+				+ "edges now%n", steps, System.currentTimeMillis() - t,
+				graph.getNodeCount(), graph.getEdgeCount());
+		System.out.printf("%d changes kept in %d KB, %.1f bytes per change%n",
+				usage[0], usage[1] / 1024, usage[1] / (double) usage[0]);
+
+		t = System.currentTimeMillis();
+		int failures = check(history, samples);
+		System.out.printf("%d past states rebuilt in %d ms, %d differ%n",
+				samples.size(), System.currentTimeMillis() - t, failures);
+
+		t = System.currentTimeMillis();
+		int changes = 0;
+
+		for (int i = 0; i < 1000; i++) {
+			String node = alive.get(random.nextInt(alive.size()));
+			changes += history.getNodeAttributeChanges(node, "x", steps / 2,
+					steps).size();
+		}
+
+		System.out.printf("1000 attribute ranges (%d changes) in %d ms, %d "
+				+ "nodes over the last tenth%n", changes, System
+				.currentTimeMillis()
+				- t, history.getNodesBetween(steps - steps / 10, steps).size());
+
+		history.setRetention(steps / 10);
+		samples.clear();
+		t = System.currentTimeMillis();
+		simulate(graph, random, alive, samples, steps + 1, steps + steps / 2);
+		usage = history.usage();
+
+		System.out.printf("%d more steps with a retention of %d steps in %d "
+				+ "ms, history starts at step %.0f%n", steps / 2, steps / 10,
+				System.currentTimeMillis() - t, history.getFirstStep());
+		System.out.printf("%d changes kept in %d KB, %d past states differ%n",
+				usage[0], usage[1] / 1024, check(history, samples));
+	}
+
+	/**
+	 * Random evolution of a graph during some steps : nodes with a position
+	 * that moves a little at each step, a few labels, edges with a weight, and
+	 * a population of about one thousand nodes.
+	 */
+	protected static void simulate(Graph graph, Random random,
+			ArrayList<String> alive, HashMap<Double, Graph> samples, int from,
+			int to) {
+		for (int s = from; s <= to; s++) {
+			graph.stepBegins(s);
+
+			String id = "n" + s;
+			Node node = graph.addNode(id);
+			node.addAttribute("x", random.nextDouble());
+			node.addAttribute("y", random.nextDouble());
+			alive.add(id);
+
+			if (s % 7 == 0)
+				node.addAttribute("label", "node " + s);
+
+			if (s % 11 == 0)
+				graph.removeNode(graph.addNode("t" + s).getId());
+
+			for (int i = 0; i < 2 && alive.size() > 1; i++) {
+				Edge edge = graph.addEdge("e" + s + "_" + i, id, alive
+						.get(random.nextInt(alive.size() - 1)), i == 0);
+				edge.addAttribute("weight", random.nextInt(10));
+			}
+
+			while (alive.size() > 1000) {
+				int i = random.nextInt(alive.size());
+				graph.removeNode(alive.get(i));
+				alive.set(i, alive.get(alive.size() - 1));
+				alive.remove(alive.size() - 1);
+			}
+
+			for (int i = 0; i < 50; i++) {
+				Node moved = graph.getNode(alive.get(random.nextInt(alive
+						.size())));
+				double x = moved.getNumber("x");
+				moved.setAttribute("x", x + random.nextGaussian() * 0.001);
+				moved.setAttribute("x", x + random.nextGaussian() * 0.001);
+			}
+
+			if (s % 1000 == 0)
+				graph.setAttribute("phase", s / 1000);
+
+			if (s % 500 == 0)
+				samples.put((double) s, graph.snapshot());
+		}
+	}
+
+	protected static int check(GraphHistory history,
+			HashMap<Double, Graph> samples) {
+		int failures = 0;
+
+		for (Map.Entry<Double, Graph> sample : samples.entrySet())
+			if (sample.getKey() >= history.getFirstStep()
+					&& !same(history.asOf(sample.getKey()), sample.getValue()))
+				failures++;
+
+		return failures;
+	}
+
+	protected static boolean same(Graph a, Graph b) {
+		if (a.getNodeCount() != b.getNodeCount()
+				|| a.getEdgeCount() != b.getEdgeCount()
+				|| !sameAttributes(a, b))
+			return false;
+
+		for (Node node : a.getEachNode()) {
+			Node other = b.getNode(node.getId());
+
+			if (other == null || other.getDegree() != node.getDegree()
+					|| !sameAttributes(node, other))
+				return false;
+		}
+
+		for (Edge edge : a.getEachEdge()) {
+			Edge other = b.getEdge(edge.getId());
+
+			if (other == null
+					|| edge.isDirected() != other.isDirected()
+					|| !edge.getSourceNode().getId().equals(
+							other.getSourceNode().getId())
+					|| !edge.getTargetNode().getId().equals(
+							other.getTargetNode().getId())
+					|| !sameAttributes(edge, other))
+				return false;
+		}
+
+		return true;
+	}
+
+	protected static boolean sameAttributes(Element a, Element b) {
+		if (a.getAttributeCount() != b.getAttributeCount())
+			return false;
+
+		if (a.getAttributeCount() > 0)
+			for (String key : a.getAttributeKeySet())
+				if (!a.getAttribute(key).equals(b.getAttribute(key)))
+					return false;
+
+		return true;
+	}
+
+	/**
+	 * A change of an attribute.
+	 */
+	public static class Change {
+		protected final double step;
+
+		protected final Object value;
+
+		protected Change(double step, Object value) {
+			this.step = step;
+			this.value = value;
+		}
+
+		/**
+		 * The step of the change.
+		 */
+		public double getStep() {
+			return step;
+		}
+
+		/**
+		 * The new value, null if the attribute was removed.
+		 */
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s@%s", value, step);
+		}
+	}
+
+	/**
+	 * Lifetimes and attributes of a node, or attributes of the graph.
+	 */
+	protected static class ElementHistory {
+		protected final String id;
+
+		/**
+		 * Pairs of steps, the step where the element was added and the step
+		 * where it was removed, infinite while it exists.
+		 */
+		protected double[] lifetimes = new double[2];
+
+		protected int size;
+
+		protected HashMap<String, ValueHistory> attributes;
+
+		protected ElementHistory(String id) {
+			this.id = id;
+		}
+
+		protected boolean exists() {
+			return size > 0 && lifetimes[size - 1] == Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * Index of the lifetime that contains a step, -1 if the element did
+		 * not exist at the end of the step.
+		 */
+		protected int lifetimeAt(double s) {
+			for (int i = size - 2; i >= 0; i -= 2)
+				if (lifetimes[i] <= s)
+					return lifetimes[i + 1] > s ? i / 2 : -1;
+
+			return -1;
+		}
+
+		protected boolean existsBetween(double from, double to) {
+			for (int i = size - 2; i >= 0; i -= 2)
+				if (lifetimes[i] <= to && lifetimes[i + 1] > from)
+					return true;
+
+			return false;
+		}
+
+		/**
+		 * Start a new lifetime, or continue the last one if it ended in the
+		 * same step.
+		 */
+		protected void born(double s) {
+			if (size > 0 && lifetimes[size - 1] == s) {
+				lifetimes[size - 1] = Double.POSITIVE_INFINITY;
+				return;
+			}
+
+			if (size == lifetimes.length)
+				lifetimes = Arrays.copyOf(lifetimes, size * 2);
+
+			lifetimes[size++] = s;
+			lifetimes[size++] = Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * End the current lifetime, or cancel it if it started in the same
+		 * step, and remove the attributes.
+		 * 
+		 * @return The number of changes recorded.
+		 */
+		protected int died(double s) {
+			if (lifetimes[size - 2] == s)
+				size -= 2;
+			else
+				lifetimes[size - 1] = s;
+
+			return 1 + clearAttributes(s);
+		}
+
+		protected void set(String attribute, double s, Object value) {
+			if (attributes == null)
+				attributes = new HashMap<String, ValueHistory>(4);
+
+			ValueHistory values = attributes.get(attribute);
+
+			if (values == null) {
+				if (value == ValueHistory.REMOVED)
+					return;
+
+				values = new ValueHistory();
+				attributes.put(attribute, values);
+			}
+
+			values.set(s, value);
+		}
+
+		protected int clearAttributes(double s) {
+			int n = 0;
+
+			if (attributes != null) {
+				for (ValueHistory values : attributes.values()) {
+					if (values.last() != ValueHistory.REMOVED) {
+						values.set(s, ValueHistory.REMOVED);
+						n++;
+					}
+				}
+			}
+
+			return n;
+		}
+
+		protected PersistentMap<String, Object> attributesAt(double s) {
+			PersistentMap<String, Object> map = PersistentMap.empty();
+
+			if (attributes != null) {
+				for (Map.Entry<String, ValueHistory> entry : attributes
+						.entrySet()) {
+					Object value = entry.getValue().at(s);
+
+					if (value != ValueHistory.REMOVED)
+						map = map.put(entry.getKey(), value);
+				}
+			}
+
+			return map;
+		}
+
+		/**
+		 * Forget the lifetimes and changes that precede a step.
+		 * 
+		 * @return The number of lifetimes and changes kept.
+		 */
+		protected int compact(double horizon) {
+			int ended = 0;
+
+			while (ended < size && lifetimes[ended + 1] <= horizon)
+				ended += 2;
+
+			if (ended > 0)
+				forget(ended);
+
+			int kept = size / 2;
+
+			if (attributes != null) {
+				Iterator<ValueHistory> i = attributes.values().iterator();
+
+				while (i.hasNext()) {
+					int n = i.next().compact(horizon);
+
+					if (n == 0)
+						i.remove();
+
+					kept += n;
+				}
+
+				if (attributes.isEmpty())
+					attributes = null;
+			}
+
+			return kept;
+		}
+
+		/**
+		 * Remove the first lifetimes.
+		 * 
+		 * @param n
+		 *            Number of steps to remove, twice the number of lifetimes.
+		 */
+		protected void forget(int n) {
+			System.arraycopy(lifetimes, n, lifetimes, 0, size - n);
+			size -= n;
+		}
+
+		protected void usage(long[] usage) {
+			usage[0] += size / 2;
+			usage[1] += 32 + 8 * lifetimes.length;
+
+			if (attributes != null) {
+				usage[1] += 48 + 32 * attributes.size();
+
+				for (ValueHistory values : attributes.values()) {
+					usage[0] += values.size();
+					usage[1] += values.bytes();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lifetimes and attributes of an edge, with the ends of the edge during
+	 * each lifetime.
+	 */
+	protected static class EdgeHistory extends ElementHistory {
+		/**
+		 * Source and target of each lifetime.
+		 */
+		protected String[] ends = new String[2];
+
+		protected boolean[] directed = new boolean[1];
+
+		protected EdgeHistory(String id) {
+			super(id);
+		}
+
+		protected void born(double s, String source, String target,
+				boolean directed) {
+			int i = size / 2;
+
+			if (i > 0 && lifetimes[size - 1] == s
+					&& ends[i * 2 - 2].equals(source)
+					&& ends[i * 2 - 1].equals(target)
+					&& this.directed[i - 1] == directed) {
+				lifetimes[size - 1] = Double.POSITIVE_INFINITY;
+				return;
+			}
+
+			if (size == lifetimes.length) {
+				lifetimes = Arrays.copyOf(lifetimes, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+				this.directed = Arrays.copyOf(this.directed, size);
+			}
+
+			lifetimes[size++] = s;
+			lifetimes[size++] = Double.POSITIVE_INFINITY;
+
+			ends[i * 2] = source;
+			ends[i * 2 + 1] = target;
+			this.directed[i] = directed;
+		}
+
+		@Override
+		protected void forget(int n) {
+			System.arraycopy(ends, n, ends, 0, size - n);
+			System.arraycopy(directed, n / 2, directed, 0, (size - n) / 2);
+			Arrays.fill(ends, size - n, size, null);
+			super.forget(n);
+		}
+
+		@Override
+		protected void usage(long[] usage) {
+			super.usage(usage);
+			usage[1] += 32 + 4 * ends.length + directed.length;
+		}
+	}
+}
@@ -0,0 +1,674 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.EdgeFactory;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.NodeFactory;
+import org.graphstream.stream.AttributeSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSinkFactory;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.ui.layout.Layout;
+import org.graphstream.ui.layout.Layouts;
+import org.graphstream.ui.swingViewer.GraphRenderer;
+import org.graphstream.ui.swingViewer.Viewer;
+
+/**
+ * An immutable version of a graph.
+ * 
+ * <p>
+ * Snapshots are returned by {@link Graph#snapshot()} and built by a
+ * {@link SnapshotSupport} that follows the events of the graph. A snapshot
+ * never changes : it can be browsed by any thread, without locks, while the
+ * graph continues to evolve, and it always shows the graph as it was between
+ * two events. Past versions of the graph are also rebuilt as snapshots by
+ * {@link GraphHistory#asOf(double)}. All the methods that would modify the
+ * graph throw an {@link UnsupportedOperationException}, as do the methods of
+ * its nodes and edges.
+ * </p>
+ * 
+ * <p>
+ * Nodes, edges and attributes are stored in {@link PersistentMap}s shared
+ * with the previous and next versions of the graph, so that a new version only
+ * costs the few trie nodes on the path of the element that changed. A version
+ * is reclaimed by the garbage collector as soon as no reader references it
+ * anymore. Attribute values themselves are shared with the graph, not copied :
+ * a mutable value (an array for example) modified in place will show the
+ * modification in the snapshot too.
+ * </p>
+ * 
+ * <p>
+ * Nodes and edges are created on demand when accessed, and compare equal when
+ * they have the same identifier in the same snapshot. The first call to
+ * {@link #getNode(int)}, {@link #getEdge(int)} or {@link Node#getIndex()}
+ * builds an index of the snapshot in O(n) time.
+ * </p>
+ * 
+ * <p>
+ * As a snapshot never emits events, registering sinks on it has no effect,
+ * and sending events to it is an error.
+ * </p>
+ */
+public class GraphSnapshot extends SnapshotElement implements Graph {
+	// Attribute
+
+	/**
+	 * Identifier of the graph.
+	 */
+	protected final String id;
+
+	/**
+	 * Nodes by identifier.
+	 */
+	protected final PersistentMap<String, NodeState> nodes;
+
+	/**
+	 * Edges by identifier.
+	 */
+	protected final PersistentMap<String, EdgeState> edges;
+
+	/**
+	 * Graph attributes.
+	 */
+	protected final PersistentMap<String, Object> attributes;
+
+	/**
+	 * Last step of the graph.
+	 */
+	protected final double step;
+
+	/**
+	 * Dense index of the nodes and edges, built at first use.
+	 */
+	protected volatile Index index;
+
+	// Construction
+
+	protected GraphSnapshot(String id, PersistentMap<String, NodeState> nodes,
+			PersistentMap<String, EdgeState> edges,
+			PersistentMap<String, Object> attributes, double step) {
+		this.id = id;
+		this.nodes = nodes;
+		this.edges = edges;
+		this.attributes = attributes;
+		this.step = step;
+	}
+
+	/**
+	 * An empty snapshot.
+	 * 
+	 * @param id
+	 *            Identifier of the graph.
+	 */
+	protected GraphSnapshot(String id) {
+		this(id, PersistentMap.<String, NodeState> empty(), PersistentMap
+				.<String, EdgeState> empty(), PersistentMap
+				.<String, Object> empty(), 0);
+	}
+
+	// Access
+
+	public String getId() {
+		return id;
+	}
+
+	public int getIndex() {
+		return -1;
+	}
+
+	@Override
+	protected PersistentMap<String, Object> attributes() {
+		return attributes;
+	}
+
+	/**
+	 * @complexity O(log32(n)) with n being the number of nodes in the graph.
+	 */
+	public <T extends Node> T getNode(String id) {
+		return node(nodes.get(id));
+	}
+
+	/**
+	 * @complexity O(log32(m)) with m being the number of edges in the graph.
+	 */
+	public <T extends Edge> T getEdge(String id) {
+		return edge(edges.get(id));
+	}
+
+	/**
+	 * @complexity constant, once the index is built.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		return (T) index().nodes[index];
+	}
+
+	/**
+	 * @complexity constant, once the index is built.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		return (T) index().edges[index];
+	}
+
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	public int getEdgeCount() {
+		return edges.size();
+	}
+
+	public <T extends Node> Iterator<T> getNodeIterator() {
+		final Iterator<NodeState> states = nodes.valueIterator();
+
+		return new ReadOnlyIterator<T>() {
+			public boolean hasNext() {
+				return states.hasNext();
+			}
+
+			public T next() {
+				return node(states.next());
+			}
+		};
+	}
+
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		final Iterator<EdgeState> states = edges.valueIterator();
+
+		return new ReadOnlyIterator<T>() {
+			public boolean hasNext() {
+				return states.hasNext();
+			}
+
+			public T next() {
+				return edge(states.next());
+			}
+		};
+	}
+
+	public Iterator<Node> iterator() {
+		return getNodeIterator();
+	}
+
+	public <T extends Node> Iterable<? extends T> getEachNode() {
+		return this.<T> getNodeSet();
+	}
+
+	public <T extends Edge> Iterable<? extends T> getEachEdge() {
+		return this.<T> getEdgeSet();
+	}
+
+	public <T extends Node> Collection<T> getNodeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return getNodeIterator();
+			}
+
+			@Override
+			public int size() {
+				return nodes.size();
+			}
+		};
+	}
+
+	public <T extends Edge> Collection<T> getEdgeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return getEdgeIterator();
+			}
+
+			@Override
+			public int size() {
+				return edges.size();
+			}
+		};
+	}
+
+	/**
+	 * A snapshot does not create elements.
+	 * 
+	 * @return null.
+	 */
+	public NodeFactory<? extends Node> nodeFactory() {
+		return null;
+	}
+
+	/**
+	 * A snapshot does not create elements.
+	 * 
+	 * @return null.
+	 */
+	public EdgeFactory<? extends Edge> edgeFactory() {
+		return null;
+	}
+
+	public boolean isStrict() {
+		return true;
+	}
+
+	public boolean isAutoCreationEnabled() {
+		return false;
+	}
+
+	public double getStep() {
+		return step;
+	}
+
+	public Iterable<AttributeSink> attributeSinks() {
+		return Collections.emptyList();
+	}
+
+	public Iterable<ElementSink> elementSinks() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * A snapshot is already immutable.
+	 * 
+	 * @return This snapshot.
+	 */
+	public Graph snapshot() {
+		return this;
+	}
+
+	/**
+	 * A snapshot is already immutable, this does nothing.
+	 */
+	public void enableSnapshots() {
+	}
+
+	// Command
+
+	public void setNodeFactory(NodeFactory<? extends Node> nf) {
+		readOnly();
+	}
+
+	public void setEdgeFactory(EdgeFactory<? extends Edge> ef) {
+		readOnly();
+	}
+
+	public void setStrict(boolean on) {
+		readOnly();
+	}
+
+	public void setAutoCreate(boolean on) {
+		readOnly();
+	}
+
+	public void clear() {
+		readOnly();
+	}
+
+	public <T extends Node> T addNode(String id) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Node> T removeNode(String id) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T addEdge(String id, String node1, String node2) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T addEdge(String id, String from, String to,
+			boolean directed) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T removeEdge(String from, String to) {
+		readOnly();
+		return null;
+	}
+
+	public <T extends Edge> T removeEdge(String id) {
+		readOnly();
+		return null;
+	}
+
+	public void stepBegins(double time) {
+		readOnly();
+	}
+
+	// Commands -- Utility
+
+	public void read(String filename) {
+		readOnly();
+	}
+
+	public void read(FileSource input, String filename) {
+		readOnly();
+	}
+
+	public void write(FileSink output, String filename) throws IOException {
+		output.writeAll(this, filename);
+	}
+
+	public void write(String filename) throws IOException {
+		FileSink output = FileSinkFactory.sinkFor(filename);
+		write(output, filename);
+	}
+
+	public Viewer display() {
+		return display(true);
+	}
+
+	public Viewer display(boolean autoLayout) {
+		Viewer viewer = new Viewer(this,
+				Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD);
+		GraphRenderer renderer = Viewer.newGraphRenderer();
+
+		viewer.addView(
+				String.format("defaultView_%d", (long) (Math.random() * 10000)),
+				renderer);
+
+		if (autoLayout) {
+			Layout layout = Layouts.newLayoutAlgorithm();
+			viewer.enableAutoLayout(layout);
+		}
+
+		return viewer;
+	}
+
+	// Source
+
+	public void addSink(Sink sink) {
+	}
+
+	public void removeSink(Sink sink) {
+	}
+
+	public void addAttributeSink(AttributeSink sink) {
+	}
+
+	public void removeAttributeSink(AttributeSink sink) {
+	}
+
+	public void addElementSink(ElementSink sink) {
+	}
+
+	public void removeElementSink(ElementSink sink) {
+	}
+
+	public void clearElementSinks() {
+	}
+
+	public void clearAttributeSinks() {
+	}
+
+	public void clearSinks() {
+	}
+
+	// Sink
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		readOnly();
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		readOnly();
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		readOnly();
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		readOnly();
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		readOnly();
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		readOnly();
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		readOnly();
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		readOnly();
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		readOnly();
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		readOnly();
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		readOnly();
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		readOnly();
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		readOnly();
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		readOnly();
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		readOnly();
+	}
+
+	// Utility
+
+	@SuppressWarnings("unchecked")
+	protected <T extends Node> T node(NodeState state) {
+		if (state == null)
+			return null;
+
+		return (T) new SnapshotNode(this, state);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <T extends Edge> T edge(EdgeState state) {
+		if (state == null)
+			return null;
+
+		return (T) new SnapshotEdge(this, state);
+	}
+
+	/**
+	 * The index of the snapshot, built at first call.
+	 */
+	protected Index index() {
+		Index i = index;
+
+		if (i == null) {
+			i = new Index();
+			index = i;
+		}
+
+		return i;
+	}
+
+	/**
+	 * State of a node in a version of the graph. The identifiers of its edges
+	 * are kept in an array copied at each change, the degree of most nodes
+	 * being small.
+	 */
+	protected static final class NodeState {
+		protected final String id;
+
+		protected final PersistentMap<String, Object> attributes;
+
+		protected final String[] edges;
+
+		protected NodeState(String id, PersistentMap<String, Object> attributes,
+				String[] edges) {
+			this.id = id;
+			this.attributes = attributes;
+			this.edges = edges;
+		}
+
+		protected NodeState withAttributes(
+				PersistentMap<String, Object> attributes) {
+			if (attributes == this.attributes)
+				return this;
+
+			return new NodeState(id, attributes, edges);
+		}
+
+		protected NodeState withEdge(String edgeId) {
+			String[] e = new String[edges.length + 1];
+
+			System.arraycopy(edges, 0, e, 0, edges.length);
+			e[edges.length] = edgeId;
+
+			return new NodeState(id, attributes, e);
+		}
+
+		protected NodeState withoutEdge(String edgeId) {
+			for (int i = 0; i < edges.length; i++) {
+				if (edges[i].equals(edgeId)) {
+					String[] e = new String[edges.length - 1];
+
+					System.arraycopy(edges, 0, e, 0, i);
+					System.arraycopy(edges, i + 1, e, i, e.length - i);
+
+					return new NodeState(id, attributes, e);
+				}
+			}
+
+			return this;
+		}
+	}
+
+	/**
+	 * State of an edge in a version of the graph.
+	 */
+	protected static final class EdgeState {
+		protected final String id;
+
+		protected final String source;
+
+		protected final String target;
+
+		protected final boolean directed;
+
+		protected final PersistentMap<String, Object> attributes;
+
+		protected EdgeState(String id, String source, String target,
+				boolean directed, PersistentMap<String, Object> attributes) {
+			this.id = id;
+			this.source = source;
+			this.target = target;
+			this.directed = directed;
+			this.attributes = attributes;
+		}
+
+		protected EdgeState withAttributes(
+				PersistentMap<String, Object> attributes) {
+			if (attributes == this.attributes)
+				return this;
+
+			return new EdgeState(id, source, target, directed, attributes);
+		}
+	}
+
+	/**
+	 * Nodes and edges of the snapshot in dense arrays, and the position of
+	 * each identifier in these arrays.
+	 */
+	protected class Index {
+		protected final Node[] nodes;
+
+		protected final Edge[] edges;
+
+		protected final HashMap<String, Integer> nodeIndex;
+
+		protected final HashMap<String, Integer> edgeIndex;
+
+		protected Index() {
+			nodes = new Node[getNodeCount()];
+			edges = new Edge[getEdgeCount()];
+			nodeIndex = new HashMap<String, Integer>(nodes.length * 2);
+			edgeIndex = new HashMap<String, Integer>(edges.length * 2);
+
+			Iterator<Node> n = getNodeIterator();
+			Iterator<Edge> e = getEdgeIterator();
+
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = n.next();
+				nodeIndex.put(nodes[i].getId(), i);
+			}
+
+			for (int i = 0; i < edges.length; i++) {
+				edges[i] = e.next();
+				edgeIndex.put(edges[i].getId(), i);
+			}
+		}
+	}
+
+	/**
+	 * Iterator that refuses removals.
+	 */
+	protected static abstract class ReadOnlyIterator<T> implements Iterator<T> {
+		public void remove() {
+			readOnly();
+		}
+	}
+}
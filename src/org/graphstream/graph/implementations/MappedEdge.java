@@ -0,0 +1,141 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AbstractElement.AttributeChangeEvent;
+import org.graphstream.stream.SourceBase.ElementType;
+
+/**
+ * An edge of a {@link MappedGraph}.
+ * 
+ * <p>
+ * The edge is a handle on a record of the edge table, created on demand. The
+ * record holds the indices of the source and target nodes and the links to
+ * the next edges of these two nodes.
+ * </p>
+ */
+public class MappedEdge extends MappedElement implements Edge {
+	// Construction
+
+	protected MappedEdge(MappedGraph graph, int index) {
+		super(graph, index);
+	}
+
+	// Access
+
+	@Override
+	protected MappedTable table() {
+		return graph.edges;
+	}
+
+	public boolean isDirected() {
+		int flags = graph.edges.getInt(index(), MappedGraph.FLAGS);
+
+		return (flags & MappedGraph.DIRECTED) != 0;
+	}
+
+	public <T extends Node> T getNode0() {
+		return getSourceNode();
+	}
+
+	public <T extends Node> T getNode1() {
+		return getTargetNode();
+	}
+
+	public <T extends Node> T getSourceNode() {
+		return graph.<T> node(graph.edges.getInt(index(), MappedGraph.SOURCE));
+	}
+
+	public <T extends Node> T getTargetNode() {
+		return graph.<T> node(graph.edges.getInt(index(), MappedGraph.TARGET));
+	}
+
+	public <T extends Node> T getOpposite(T node) {
+		int n;
+
+		if (node instanceof MappedNode && ((MappedNode) node).graph == graph)
+			n = ((MappedNode) node).index();
+		else
+			n = graph.nodes.find(node.getId());
+
+		int e = index();
+		int source = graph.edges.getInt(e, MappedGraph.SOURCE);
+		int target = graph.edges.getInt(e, MappedGraph.TARGET);
+
+		if (n == source)
+			return graph.<T> node(target);
+		else if (n == target)
+			return graph.<T> node(source);
+
+		return null;
+	}
+
+	// Command
+
+	@Deprecated
+	public void setDirected(boolean on) {
+		String sourceId = graph.getId();
+		graph.listeners.sendEdgeRemoved(sourceId, graph.newEvent(), getId());
+		graph.setDirected(index(), on);
+		graph.listeners.sendEdgeAdded(sourceId, graph.newEvent(), getId(),
+				getSourceNode().getId(), getTargetNode().getId(), on);
+		sendAttributes(sourceId);
+	}
+
+	@Deprecated
+	public void switchDirection() {
+		String sourceId = graph.getId();
+		int e = index();
+
+		graph.listeners.sendEdgeRemoved(sourceId, graph.newEvent(), getId());
+		graph.switchDirection(e);
+		graph.listeners.sendEdgeAdded(sourceId, graph.newEvent(), getId(),
+				getSourceNode().getId(), getTargetNode().getId(), isDirected());
+		sendAttributes(sourceId);
+	}
+
+	/**
+	 * Send again the attributes of the edge, after it has been removed and
+	 * added again in the event stream.
+	 */
+	protected void sendAttributes(String sourceId) {
+		int e = index();
+
+		for (String key : graph.edges.keys(e, ref))
+			graph.listeners.sendAttributeChangedEvent(sourceId, graph
+					.newEvent(), getId(), ElementType.EDGE, key,
+					AttributeChangeEvent.ADD, null, graph.edges.get(e, ref,
+							key));
+	}
+
+	@Override
+	protected void attributeChanged(String sourceId, long timeId,
+			String attribute, AttributeChangeEvent event, Object oldValue,
+			Object newValue) {
+		graph.listeners.sendAttributeChangedEvent(sourceId, timeId, getId(),
+				ElementType.EDGE, attribute, event, oldValue, newValue);
+	}
+}
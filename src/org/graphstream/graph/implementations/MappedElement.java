@@ -0,0 +1,363 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.graphstream.graph.CompoundAttribute;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.implementations.AbstractElement.AttributeChangeEvent;
+
+/**
+ * Base of the nodes and edges of a {@link MappedGraph}.
+ * 
+ * <p>
+ * Such an element holds no data, it is a handle on a record of a
+ * {@link MappedTable}, created each time the element is accessed. The record
+ * moves when another element is removed, the handle therefore remembers the
+ * position of the identifier of the element, that never changes, and finds
+ * the record again after removals. Two handles on the same element are
+ * equal.
+ * </p>
+ */
+abstract class MappedElement implements Element {
+	// Attribute
+
+	/**
+	 * The graph of the element.
+	 */
+	protected final MappedGraph graph;
+
+	/**
+	 * Position of the identifier in the heap of the table.
+	 */
+	protected final long ref;
+
+	/**
+	 * Hash of the identifier.
+	 */
+	protected final int hash;
+
+	/**
+	 * Last known index of the record.
+	 */
+	protected int index;
+
+	/**
+	 * Number of removals in the graph when the index was known.
+	 */
+	protected int version;
+
+	/**
+	 * The identifier, read when first needed.
+	 */
+	protected String id;
+
+	// Construction
+
+	protected MappedElement(MappedGraph graph, int index) {
+		this.graph = graph;
+		this.index = index;
+		this.version = graph.removals;
+		this.ref = table().ref(index);
+		this.hash = table().hash(index);
+	}
+
+	// Access
+
+	/**
+	 * The table storing the element.
+	 */
+	protected abstract MappedTable table();
+
+	/**
+	 * Index of the record of the element, or -1 if the element has been
+	 * removed.
+	 */
+	protected int index() {
+		if (version != graph.removals) {
+			index = table().find(ref, hash);
+			version = graph.removals;
+		}
+
+		return index;
+	}
+
+	public String getId() {
+		if (id == null)
+			id = table().string(ref);
+
+		return id;
+	}
+
+	public int getIndex() {
+		return index();
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getAttribute(String key) {
+		return (T) table().get(index(), ref, key);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getFirstAttributeOf(String... keys) {
+		Object o = null;
+
+		for (String key : keys) {
+			o = getAttribute(key);
+
+			if (o != null)
+				return (T) o;
+		}
+
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getAttribute(String key, Class<T> clazz) {
+		Object o = getAttribute(key);
+
+		if (o != null && clazz.isInstance(o))
+			return (T) o;
+
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getFirstAttributeOf(Class<T> clazz, String... keys) {
+		for (String key : keys) {
+			Object o = getAttribute(key);
+
+			if (o != null && clazz.isInstance(o))
+				return (T) o;
+		}
+
+		return null;
+	}
+
+	public CharSequence getLabel(String key) {
+		Object o = getAttribute(key);
+
+		if (o instanceof CharSequence)
+			return (CharSequence) o;
+
+		return null;
+	}
+
+	/**
+	 * @complexity constant, without allocation when the value is in a column.
+	 */
+	public double getNumber(String key) {
+		return table().getNumber(index(), ref, key);
+	}
+
+	@SuppressWarnings("unchecked")
+	public ArrayList<? extends Number> getVector(String key) {
+		Object o = getAttribute(key);
+
+		if (o instanceof ArrayList)
+			return (ArrayList<? extends Number>) o;
+
+		return null;
+	}
+
+	public Object[] getArray(String key) {
+		Object o = getAttribute(key);
+
+		if (o instanceof Object[])
+			return (Object[]) o;
+
+		return null;
+	}
+
+	public HashMap<?, ?> getHash(String key) {
+		Object o = getAttribute(key);
+
+		if (o instanceof HashMap<?, ?>)
+			return (HashMap<?, ?>) o;
+		if (o instanceof CompoundAttribute)
+			return ((CompoundAttribute) o).toHashMap();
+
+		return null;
+	}
+
+	public boolean hasAttribute(String key) {
+		return table().has(index(), ref, key);
+	}
+
+	public boolean hasAttribute(String key, Class<?> clazz) {
+		return clazz.isInstance(getAttribute(key));
+	}
+
+	public boolean hasLabel(String key) {
+		return getAttribute(key) instanceof CharSequence;
+	}
+
+	public boolean hasNumber(String key) {
+		return getAttribute(key) instanceof Number;
+	}
+
+	public boolean hasVector(String key) {
+		return getAttribute(key) instanceof ArrayList<?>;
+	}
+
+	public boolean hasArray(String key) {
+		return getAttribute(key) instanceof Object[];
+	}
+
+	public boolean hasHash(String key) {
+		Object o = getAttribute(key);
+
+		return o instanceof HashMap<?, ?> || o instanceof CompoundAttribute;
+	}
+
+	public Iterator<String> getAttributeKeyIterator() {
+		return getAttributeKeySet().iterator();
+	}
+
+	public Collection<String> getAttributeKeySet() {
+		return table().keys(index(), ref);
+	}
+
+	public int getAttributeCount() {
+		return table().keys(index(), ref).size();
+	}
+
+	@Override
+	public String toString() {
+		return getId();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o != null && o.getClass() == getClass()) {
+			MappedElement e = (MappedElement) o;
+
+			return e.graph == graph && e.ref == ref;
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	// Command
+
+	public void clearAttributes() {
+		clearAttributes_(graph.getId(), graph.newEvent());
+	}
+
+	protected void clearAttributes_(String sourceId, long timeId) {
+		int i = index();
+
+		for (String key : table().keys(i, ref)) {
+			Object old = table().get(i, ref, key);
+
+			table().remove(i, ref, key);
+			attributeChanged(sourceId, timeId, key,
+					AttributeChangeEvent.REMOVE, old, null);
+		}
+	}
+
+	public void addAttribute(String attribute, Object... values) {
+		addAttribute_(graph.getId(), graph.newEvent(), attribute, values);
+	}
+
+	protected void addAttribute_(String sourceId, long timeId,
+			String attribute, Object... values) {
+		int i = index();
+		Object old = table().get(i, ref, attribute);
+		Object value;
+
+		if (values.length == 0)
+			value = true;
+		else if (values.length == 1)
+			value = values[0];
+		else
+			value = values;
+
+		AttributeChangeEvent event = AttributeChangeEvent.ADD;
+
+		if (table().has(i, ref, attribute))
+			event = AttributeChangeEvent.CHANGE;
+
+		try {
+			table().put(i, ref, attribute, value);
+		} catch (IOException e) {
+			graph.failed(e);
+		}
+
+		attributeChanged(sourceId, timeId, attribute, event, old, value);
+	}
+
+	public void changeAttribute(String attribute, Object... values) {
+		addAttribute_(graph.getId(), graph.newEvent(), attribute, values);
+	}
+
+	protected void changeAttribute_(String sourceId, long timeId,
+			String attribute, Object... values) {
+		addAttribute_(sourceId, timeId, attribute, values);
+	}
+
+	public void setAttribute(String attribute, Object... values) {
+		addAttribute_(graph.getId(), graph.newEvent(), attribute, values);
+	}
+
+	public void addAttributes(Map<String, Object> attributes) {
+		String sourceId = graph.getId();
+		long timeId = graph.newEvent();
+
+		for (Map.Entry<String, Object> entry : attributes.entrySet())
+			addAttribute_(sourceId, timeId, entry.getKey(), entry.getValue());
+	}
+
+	public void removeAttribute(String attribute) {
+		removeAttribute_(graph.getId(), graph.newEvent(), attribute);
+	}
+
+	protected void removeAttribute_(String sourceId, long timeId,
+			String attribute) {
+		int i = index();
+		Object old = table().get(i, ref, attribute);
+
+		if (table().remove(i, ref, attribute))
+			attributeChanged(sourceId, timeId, attribute,
+					AttributeChangeEvent.REMOVE, old, null);
+	}
+
+	/**
+	 * Send the event of an attribute change.
+	 */
+	protected abstract void attributeChanged(String sourceId, long timeId,
+			String attribute, AttributeChangeEvent event, Object oldValue,
+			Object newValue);
+}
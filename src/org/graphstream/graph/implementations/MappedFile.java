@@ -0,0 +1,265 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * A file mapped in memory by chunks, that grows on demand.
+ * 
+ * <p>
+ * A single {@link MappedByteBuffer} cannot exceed two gigabytes, the file is
+ * therefore mapped in chunks of {@link #CHUNK} bytes, addressed with long
+ * positions. Values of 4 or 8 bytes must be aligned on their size so that
+ * they never cross two chunks, byte arrays can. The file grows by whole
+ * chunks ; on most systems the unused part of the last chunk does not use
+ * disk space until written.
+ * </p>
+ * 
+ * <p>
+ * The content lives outside of the Java heap, in the page cache of the
+ * system, which loads and evicts it as needed. This class is not
+ * thread-safe.
+ * </p>
+ */
+class MappedFile {
+	// Attribute
+
+	/**
+	 * Size of a chunk as a power of two.
+	 */
+	protected static final int CHUNK_BITS = 24;
+
+	/**
+	 * Size of a chunk in bytes.
+	 */
+	protected static final int CHUNK = 1 << CHUNK_BITS;
+
+	protected static final int MASK = CHUNK - 1;
+
+	/**
+	 * The file.
+	 */
+	protected File file;
+
+	protected RandomAccessFile raf;
+
+	protected FileChannel channel;
+
+	/**
+	 * The mapped chunks, in order.
+	 */
+	protected ArrayList<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+
+	// Construction
+
+	/**
+	 * Open or create a file and map its current content.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @throws IOException
+	 *             If the file cannot be opened or mapped.
+	 */
+	public MappedFile(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+
+		ensure(channel.size());
+	}
+
+	// Access
+
+	/**
+	 * The file.
+	 * 
+	 * @return The file mapped.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Number of bytes currently mapped.
+	 * 
+	 * @return The capacity, a multiple of {@link #CHUNK}.
+	 */
+	public long capacity() {
+		return ((long) chunks.size()) << CHUNK_BITS;
+	}
+
+	public byte get(long position) {
+		return chunk(position).get((int) (position & MASK));
+	}
+
+	public int getInt(long position) {
+		return chunk(position).getInt((int) (position & MASK));
+	}
+
+	public long getLong(long position) {
+		return chunk(position).getLong((int) (position & MASK));
+	}
+
+	public double getDouble(long position) {
+		return chunk(position).getDouble((int) (position & MASK));
+	}
+
+	/**
+	 * Copy bytes of the file into an array, across chunks if needed.
+	 * 
+	 * @param position
+	 *            Position of the first byte in the file.
+	 * @param bytes
+	 *            The destination, filled entirely.
+	 */
+	public void get(long position, byte[] bytes) {
+		int done = 0;
+
+		while (done < bytes.length) {
+			MappedByteBuffer chunk = chunk(position + done);
+			int offset = (int) ((position + done) & MASK);
+			int n = Math.min(bytes.length - done, CHUNK - offset);
+
+			for (int i = 0; i < n; i++)
+				bytes[done + i] = chunk.get(offset + i);
+
+			done += n;
+		}
+	}
+
+	// Command
+
+	/**
+	 * Map enough chunks to access the given number of bytes.
+	 * 
+	 * @param size
+	 *            The minimal capacity.
+	 * @throws IOException
+	 *             If mapping fails.
+	 */
+	public void ensure(long size) throws IOException {
+		while (capacity() < size) {
+			MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE,
+					capacity(), CHUNK);
+			chunks.add(chunk);
+		}
+	}
+
+	public void put(long position, byte value) {
+		chunk(position).put((int) (position & MASK), value);
+	}
+
+	public void putInt(long position, int value) {
+		chunk(position).putInt((int) (position & MASK), value);
+	}
+
+	public void putLong(long position, long value) {
+		chunk(position).putLong((int) (position & MASK), value);
+	}
+
+	public void putDouble(long position, double value) {
+		chunk(position).putDouble((int) (position & MASK), value);
+	}
+
+	/**
+	 * Copy an array into the file, across chunks if needed. The file must
+	 * already have the capacity.
+	 * 
+	 * @param position
+	 *            Position of the first byte in the file.
+	 * @param bytes
+	 *            The source.
+	 */
+	public void put(long position, byte[] bytes) {
+		int done = 0;
+
+		while (done < bytes.length) {
+			MappedByteBuffer chunk = chunk(position + done);
+			int offset = (int) ((position + done) & MASK);
+			int n = Math.min(bytes.length - done, CHUNK - offset);
+
+			for (int i = 0; i < n; i++)
+				chunk.put(offset + i, bytes[done + i]);
+
+			done += n;
+		}
+	}
+
+	/**
+	 * Set a range of bytes to zero.
+	 * 
+	 * @param position
+	 *            Start of the range.
+	 * @param length
+	 *            Number of bytes.
+	 */
+	public void clear(long position, long length) {
+		long end = position + length;
+
+		while (position < end && (position & 7) != 0)
+			put(position++, (byte) 0);
+
+		while (position + 8 <= end) {
+			putLong(position, 0);
+			position += 8;
+		}
+
+		while (position < end)
+			put(position++, (byte) 0);
+	}
+
+	/**
+	 * Write the modified pages to the disk.
+	 */
+	public void force() {
+		for (MappedByteBuffer chunk : chunks)
+			chunk.force();
+	}
+
+	/**
+	 * Release the file. The mappings stay valid until garbage collected, but
+	 * must not be used anymore.
+	 * 
+	 * @throws IOException
+	 *             If the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		force();
+		chunks.clear();
+		channel.close();
+		raf.close();
+	}
+
+	// Utility
+
+	protected MappedByteBuffer chunk(long position) {
+		return chunks.get((int) (position >>> CHUNK_BITS));
+	}
+}
@@ -0,0 +1,1329 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.EdgeFactory;
+import org.graphstream.graph.ElementNotFoundException;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.NodeFactory;
+import org.graphstream.stream.AttributeSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.GraphParseException;
+import org.graphstream.stream.Pipe;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.SourceBase.ElementType;
+import org.graphstream.stream.file.FileSink;
+import org.graphstream.stream.file.FileSinkFactory;
+import org.graphstream.stream.file.FileSource;
+import org.graphstream.stream.file.FileSourceFactory;
+import org.graphstream.stream.sync.SinkTime;
+import org.graphstream.ui.layout.Layout;
+import org.graphstream.ui.layout.Layouts;
+import org.graphstream.ui.swingViewer.GraphRenderer;
+import org.graphstream.ui.swingViewer.Viewer;
+
+/**
+ * A graph stored outside of the Java heap, in memory-mapped files.
+ * 
+ * <p>
+ * The nodes and the edges are fixed size records in two {@link MappedTable}s,
+ * in a directory given at construction. A node record holds the index of its
+ * first edge and its degrees, an edge record holds the indices of its two
+ * nodes and of the next edge of each of them, so that the adjacency lists are
+ * chains through the edge records. The identifiers are found with hash
+ * indices also stored in files, and the numeric attributes of nodes and edges
+ * are stored in columns of doubles, one file per attribute name. Opening a
+ * directory that already contains a graph gives it back as it was last
+ * written, without reading it.
+ * </p>
+ * 
+ * <p>
+ * The system loads the pages of these files when they are accessed and
+ * writes the modified ones back, the heap only holds the elements currently
+ * used. The graph is therefore made for graphs larger than the memory given
+ * to the Java virtual machine, read mostly, and built by appending elements :
+ * <ul>
+ * <li>adding a node or an edge is done in constant time, at the end of the
+ * tables and at the head of the adjacency chains ;</li>
+ * <li>accessing an element by identifier costs a hash, by index nothing, and
+ * iterating on the edges of a node follows the chain without allocation but
+ * for the returned edges ;</li>
+ * <li>removing an edge costs O(d) with d the degree of its nodes, the last
+ * edge being moved in its place to keep the tables dense, and removing a node
+ * removes its edges first.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * Nodes and edges are handles created on demand, do not compare them with
+ * <code>==</code> but with {@link Object#equals(Object)}. Numeric attributes
+ * read back as {@link Double}. Other attributes, as well as the attributes of
+ * the graph itself, are kept in the heap and are not saved. Several edges may
+ * connect the same nodes. The graph uses no factories. Like other graphs it
+ * is a {@link org.graphstream.stream.Source} and a
+ * {@link org.graphstream.stream.Sink}, and it is not thread-safe. It does not
+ * support snapshots. Call
+ * {@link #flush()} to force the files to the disk and {@link #close()} when
+ * done.
+ * </p>
+ */
+public class MappedGraph extends AbstractElement implements Graph {
+	// Attribute
+
+	/**
+	 * Position in a node record of the index of the first edge, -1 if none.
+	 */
+	protected static final int FIRST = 0;
+
+	/**
+	 * Position in a node record of the degree.
+	 */
+	protected static final int DEGREE = 4;
+
+	/**
+	 * Position in a node record of the number of entering edges.
+	 */
+	protected static final int IN = 8;
+
+	/**
+	 * Position in a node record of the number of leaving edges.
+	 */
+	protected static final int OUT = 12;
+
+	/**
+	 * Position in an edge record of the index of the source node.
+	 */
+	protected static final int SOURCE = 0;
+
+	/**
+	 * Position in an edge record of the index of the target node.
+	 */
+	protected static final int TARGET = 4;
+
+	/**
+	 * Position in an edge record of the next edge of the source node.
+	 */
+	protected static final int NEXT_SOURCE = 8;
+
+	/**
+	 * Position in an edge record of the next edge of the target node.
+	 */
+	protected static final int NEXT_TARGET = 12;
+
+	/**
+	 * Position in an edge record of the flags.
+	 */
+	protected static final int FLAGS = 28;
+
+	/**
+	 * Flag of directed edges.
+	 */
+	protected static final int DIRECTED = 1;
+
+	/**
+	 * Position in the header of the node table of the current step.
+	 */
+	protected static final int STEP = MappedTable.USER;
+
+	protected static final int ALL = 0;
+
+	protected static final int LEAVING = 1;
+
+	protected static final int ENTERING = 2;
+
+	/**
+	 * Directory of the files.
+	 */
+	protected File directory;
+
+	/**
+	 * The nodes.
+	 */
+	protected MappedTable nodes;
+
+	/**
+	 * The edges.
+	 */
+	protected MappedTable edges;
+
+	/**
+	 * Number of removals, used by the elements to know if their record may
+	 * have moved.
+	 */
+	protected int removals;
+
+	/**
+	 * Verify name space conflicts, removal of non-existing elements, use of
+	 * non-existing elements.
+	 */
+	protected boolean strictChecking = true;
+
+	/**
+	 * Automatically create missing elements. For example, if an edge is created
+	 * between two non-existing nodes, create the nodes.
+	 */
+	protected boolean autoCreate = false;
+
+	/**
+	 * The current step.
+	 */
+	protected double step;
+
+	/**
+	 * The set of listeners.
+	 */
+	protected GraphListeners listeners;
+
+	// Construction
+
+	/**
+	 * Open the graph stored in a directory, or create an empty one if the
+	 * directory does not contain a graph.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 * @param directory
+	 *            The directory of the files, created if needed.
+	 * @throws IOException
+	 *             If the files cannot be created or mapped.
+	 */
+	public MappedGraph(String id, File directory) throws IOException {
+		this(id, directory, true, false);
+	}
+
+	/**
+	 * Open the graph stored in a directory, or create an empty one if the
+	 * directory does not contain a graph.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 * @param directory
+	 *            The directory of the files, created if needed.
+	 * @param strictChecking
+	 *            If true any non-fatal error throws an exception.
+	 * @param autoCreate
+	 *            If true (and strict checking is false), nodes are
+	 *            automatically created when referenced when creating a edge,
+	 *            even if not yet inserted in the graph.
+	 * @throws IOException
+	 *             If the files cannot be created or mapped.
+	 */
+	public MappedGraph(String id, File directory, boolean strictChecking,
+			boolean autoCreate) throws IOException {
+		super(id);
+		setStrict(strictChecking);
+		setAutoCreate(autoCreate);
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException(String.format("cannot create %s",
+					directory));
+
+		this.directory = directory;
+		this.nodes = new MappedTable(directory, "nodes");
+		this.edges = new MappedTable(directory, "edges");
+		this.step = nodes.records.getDouble(STEP);
+		this.listeners = new GraphListeners();
+	}
+
+	@Override
+	protected String myGraphId() {
+		return getId();
+	}
+
+	@Override
+	protected long newEvent() {
+		return listeners.newEvent();
+	}
+
+	// Access
+
+	/**
+	 * The directory of the files.
+	 * 
+	 * @return The directory.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Node> T getNode(String id) {
+		return node(nodes.find(id));
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Edge> T getEdge(String id) {
+		return edge(edges.find(id));
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		if (index < 0 || index >= nodes.size())
+			throw new IndexOutOfBoundsException(String.format(
+					"node index %d out of [0, %d[", index, nodes.size()));
+
+		return node(index);
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		if (index < 0 || index >= edges.size())
+			throw new IndexOutOfBoundsException(String.format(
+					"edge index %d out of [0, %d[", index, edges.size()));
+
+		return edge(index);
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getEdgeCount() {
+		return edges.size();
+	}
+
+	public <T extends Node> Iterator<T> getNodeIterator() {
+		return new NodeIterator<T>();
+	}
+
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new EdgeIterator<T>();
+	}
+
+	public Iterator<Node> iterator() {
+		return new NodeIterator<Node>();
+	}
+
+	public <T extends Node> Iterable<? extends T> getEachNode() {
+		return this.<T> getNodeSet();
+	}
+
+	public <T extends Edge> Iterable<? extends T> getEachEdge() {
+		return this.<T> getEdgeSet();
+	}
+
+	public <T extends Node> Collection<T> getNodeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return getNodeIterator();
+			}
+
+			@Override
+			public int size() {
+				return getNodeCount();
+			}
+		};
+	}
+
+	public <T extends Edge> Collection<T> getEdgeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return getEdgeIterator();
+			}
+
+			@Override
+			public int size() {
+				return getEdgeCount();
+			}
+		};
+	}
+
+	/**
+	 * The elements of this graph are records, it uses no factory.
+	 * 
+	 * @return null.
+	 */
+	public NodeFactory<? extends Node> nodeFactory() {
+		return null;
+	}
+
+	/**
+	 * The elements of this graph are records, it uses no factory.
+	 * 
+	 * @return null.
+	 */
+	public EdgeFactory<? extends Edge> edgeFactory() {
+		return null;
+	}
+
+	public boolean isStrict() {
+		return strictChecking;
+	}
+
+	public boolean isAutoCreationEnabled() {
+		return autoCreate;
+	}
+
+	public double getStep() {
+		return step;
+	}
+
+	public Iterable<AttributeSink> attributeSinks() {
+		return listeners.attributeSinks();
+	}
+
+	public Iterable<ElementSink> elementSinks() {
+		return listeners.elementSinks();
+	}
+
+	/**
+	 * Snapshots are not supported, see {@link #enableSnapshots()}.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             Always.
+	 */
+	public Graph snapshot() {
+		throw new UnsupportedOperationException(
+				"a mapped graph cannot be versioned");
+	}
+
+	/**
+	 * Snapshots are not supported : they are kept in the heap, and enabling
+	 * them would copy the whole graph there, which this graph is made to
+	 * avoid.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             Always.
+	 */
+	public void enableSnapshots() {
+		throw new UnsupportedOperationException(
+				"a mapped graph cannot be versioned");
+	}
+
+	// Command
+
+	public void setNodeFactory(NodeFactory<? extends Node> nf) {
+		throw new UnsupportedOperationException(
+				"the nodes of a mapped graph cannot be created by a factory");
+	}
+
+	public void setEdgeFactory(EdgeFactory<? extends Edge> ef) {
+		throw new UnsupportedOperationException(
+				"the edges of a mapped graph cannot be created by a factory");
+	}
+
+	public void setAutoCreate(boolean on) {
+		autoCreate = on;
+	}
+
+	public void setStrict(boolean on) {
+		strictChecking = on;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Node> T addNode(String id) throws IdAlreadyInUseException {
+		return addNode_(getId(), newEvent(), id);
+	}
+
+	protected <T extends Node> T addNode_(String sourceId, long timeId,
+			String nodeId) throws IdAlreadyInUseException {
+		int n = nodes.find(nodeId);
+
+		if (n >= 0) {
+			if (strictChecking)
+				throw new IdAlreadyInUseException("id '" + nodeId
+						+ "' already used, cannot add node");
+
+			return node(n);
+		}
+
+		try {
+			n = nodes.add(nodeId);
+		} catch (IOException e) {
+			failed(e);
+		}
+
+		nodes.putInt(n, FIRST, -1);
+		listeners.sendNodeAdded(sourceId, timeId, nodeId);
+
+		return node(n);
+	}
+
+	public <T extends Edge> T addEdge(String id, String node1, String node2)
+			throws IdAlreadyInUseException, ElementNotFoundException {
+		return addEdge(id, node1, node2, false);
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public <T extends Edge> T addEdge(String id, String from, String to,
+			boolean directed) throws IdAlreadyInUseException,
+			ElementNotFoundException {
+		createNodes(from, to);
+
+		return addEdge_(getId(), newEvent(), id, from, to, directed);
+	}
+
+	protected <T extends Edge> T addEdge_(String sourceId, long timeId,
+			String edgeId, String from, String to, boolean directed)
+			throws IdAlreadyInUseException, ElementNotFoundException {
+		int src = nodes.find(from);
+		int trg = nodes.find(to);
+
+		if (src < 0 || trg < 0) {
+			if (strictChecking)
+				throw new ElementNotFoundException("cannot make edge from '"
+						+ from + "' to '" + to + "' since node '"
+						+ (src < 0 ? from : to)
+						+ "' is not part of this graph");
+
+			return null;
+		}
+
+		int e = edges.find(edgeId);
+
+		if (e >= 0) {
+			if (strictChecking)
+				throw new IdAlreadyInUseException("id '" + edgeId
+						+ "' already used, cannot add edge");
+
+			return edge(e);
+		}
+
+		try {
+			e = edges.add(edgeId);
+		} catch (IOException ex) {
+			failed(ex);
+		}
+
+		edges.putInt(e, SOURCE, src);
+		edges.putInt(e, TARGET, trg);
+		edges.putInt(e, FLAGS, directed ? DIRECTED : 0);
+		edges.putInt(e, NEXT_SOURCE, nodes.getInt(src, FIRST));
+		nodes.putInt(src, FIRST, e);
+		increment(src, DEGREE, 1);
+
+		if (trg != src) {
+			edges.putInt(e, NEXT_TARGET, nodes.getInt(trg, FIRST));
+			nodes.putInt(trg, FIRST, e);
+			increment(trg, DEGREE, 1);
+		} else {
+			edges.putInt(e, NEXT_TARGET, -1);
+		}
+
+		countDirections(e, 1);
+		listeners.sendEdgeAdded(sourceId, timeId, edgeId, from, to, directed);
+
+		return edge(e);
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node.
+	 */
+	public <T extends Node> T removeNode(String id)
+			throws ElementNotFoundException {
+		int n = nodes.find(id);
+
+		if (n < 0)
+			return null;
+
+		disconnectEdges(n);
+
+		return removeNode_(getId(), newEvent(), n);
+	}
+
+	/**
+	 * Remove a node that has no more edges.
+	 */
+	protected <T extends Node> T removeNode_(String sourceId, long timeId,
+			int n) {
+		T node = node(n);
+		String nodeId = node.getId();
+
+		listeners.sendNodeRemoved(sourceId, timeId, nodeId);
+
+		int moved = nodes.remove(n);
+
+		if (moved >= 0) {
+			int e = nodes.getInt(n, FIRST);
+
+			while (e >= 0) {
+				int s = edges.getInt(e, SOURCE);
+				int next = edges.getInt(e, s == moved ? NEXT_SOURCE
+						: NEXT_TARGET);
+
+				if (s == moved)
+					edges.putInt(e, SOURCE, n);
+				if (edges.getInt(e, TARGET) == moved)
+					edges.putInt(e, TARGET, n);
+
+				e = next;
+			}
+		}
+
+		removals++;
+
+		return node;
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node from.
+	 */
+	public <T extends Edge> T removeEdge(String from, String to)
+			throws ElementNotFoundException {
+		Node node = getNode(from);
+
+		if (node != null) {
+			Edge edge = node.getEdgeToward(to);
+
+			if (edge != null)
+				return removeEdge_(getId(), newEvent(), edge.getIndex());
+		}
+
+		return null;
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the nodes of the edge.
+	 */
+	public <T extends Edge> T removeEdge(String id)
+			throws ElementNotFoundException {
+		int e = edges.find(id);
+
+		if (e < 0)
+			return null;
+
+		return removeEdge_(getId(), newEvent(), e);
+	}
+
+	protected <T extends Edge> T removeEdge_(String sourceId, long timeId,
+			int e) {
+		T edge = edge(e);
+		String edgeId = edge.getId();
+
+		listeners.sendEdgeRemoved(sourceId, timeId, edgeId);
+
+		int src = edges.getInt(e, SOURCE);
+		int trg = edges.getInt(e, TARGET);
+
+		countDirections(e, -1);
+		unlink(e, src);
+		increment(src, DEGREE, -1);
+
+		if (trg != src) {
+			unlink(e, trg);
+			increment(trg, DEGREE, -1);
+		}
+
+		int moved = edges.remove(e);
+
+		if (moved >= 0) {
+			src = edges.getInt(e, SOURCE);
+			trg = edges.getInt(e, TARGET);
+
+			relink(src, moved, e);
+
+			if (trg != src)
+				relink(trg, moved, e);
+		}
+
+		removals++;
+
+		return edge;
+	}
+
+	/**
+	 * Remove all the edges of a node.
+	 */
+	protected void disconnectEdges(int n) {
+		int e;
+
+		while ((e = nodes.getInt(n, FIRST)) >= 0)
+			removeEdge_(getId(), newEvent(), e);
+	}
+
+	/**
+	 * @complexity O(n+m) with n and m the number of nodes and edges, to clear
+	 *             the files.
+	 */
+	public void clear() {
+		clear_(getId(), newEvent());
+	}
+
+	protected void clear_(String sourceId, long timeId) {
+		listeners.sendGraphCleared(sourceId, timeId);
+
+		try {
+			edges.clear();
+			nodes.clear();
+		} catch (IOException e) {
+			failed(e);
+		}
+
+		removals++;
+	}
+
+	public void stepBegins(double step) {
+		stepBegins_(getId(), newEvent(), step);
+	}
+
+	protected void stepBegins_(String sourceId, long timeId, double step) {
+		this.step = step;
+		nodes.records.putDouble(STEP, step);
+
+		listeners.sendStepBegins(sourceId, timeId, step);
+	}
+
+	/**
+	 * Write the modified pages of all the files to the disk. Without this, the
+	 * system writes them when it decides to, which is enough to survive the
+	 * end of the program but not a crash of the system.
+	 */
+	public void flush() {
+		nodes.force();
+		edges.force();
+	}
+
+	/**
+	 * Flush and release the files. The graph must not be used afterward.
+	 * 
+	 * @throws IOException
+	 *             If a file cannot be closed.
+	 */
+	public void close() throws IOException {
+		nodes.close();
+		edges.close();
+	}
+
+	// Utility
+
+	@SuppressWarnings("unchecked")
+	protected <T extends Node> T node(int n) {
+		if (n < 0)
+			return null;
+
+		return (T) new MappedNode(this, n);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <T extends Edge> T edge(int e) {
+		if (e < 0)
+			return null;
+
+		return (T) new MappedEdge(this, e);
+	}
+
+	/**
+	 * Create the missing nodes of an edge, if automatic creation is enabled.
+	 */
+	protected void createNodes(String from, String to) {
+		if (!strictChecking && autoCreate) {
+			if (nodes.find(from) < 0)
+				addNode(from);
+			if (nodes.find(to) < 0)
+				addNode(to);
+		}
+	}
+
+	/**
+	 * The edge following an edge in the chain of a node.
+	 */
+	protected int nextEdge(int e, int n) {
+		if (edges.getInt(e, SOURCE) == n)
+			return edges.getInt(e, NEXT_SOURCE);
+
+		return edges.getInt(e, NEXT_TARGET);
+	}
+
+	protected void setNextEdge(int e, int n, int next) {
+		if (edges.getInt(e, SOURCE) == n)
+			edges.putInt(e, NEXT_SOURCE, next);
+		else
+			edges.putInt(e, NEXT_TARGET, next);
+	}
+
+	/**
+	 * The other node of an edge.
+	 */
+	protected int opposite(int e, int n) {
+		int source = edges.getInt(e, SOURCE);
+
+		return source == n ? edges.getInt(e, TARGET) : source;
+	}
+
+	/**
+	 * Is the edge in the given direction from the node ?
+	 */
+	protected boolean follows(int e, int n, int mode) {
+		if (mode == ALL || (edges.getInt(e, FLAGS) & DIRECTED) == 0)
+			return true;
+
+		if (mode == LEAVING)
+			return edges.getInt(e, SOURCE) == n;
+
+		return edges.getInt(e, TARGET) == n;
+	}
+
+	protected void increment(int n, int field, int delta) {
+		nodes.putInt(n, field, nodes.getInt(n, field) + delta);
+	}
+
+	/**
+	 * Add or remove an edge from the entering and leaving degrees of its
+	 * nodes. An undirected edge is both entering and leaving.
+	 */
+	protected void countDirections(int e, int delta) {
+		int src = edges.getInt(e, SOURCE);
+		int trg = edges.getInt(e, TARGET);
+
+		increment(src, OUT, delta);
+		increment(trg, IN, delta);
+
+		if ((edges.getInt(e, FLAGS) & DIRECTED) == 0) {
+			increment(src, IN, delta);
+			increment(trg, OUT, delta);
+		}
+	}
+
+	/**
+	 * Remove an edge from the chain of a node.
+	 */
+	protected void unlink(int e, int n) {
+		int previous = -1;
+		int current = nodes.getInt(n, FIRST);
+
+		while (current != e) {
+			previous = current;
+			current = nextEdge(current, n);
+		}
+
+		int next = nextEdge(e, n);
+
+		if (previous < 0)
+			nodes.putInt(n, FIRST, next);
+		else
+			setNextEdge(previous, n, next);
+	}
+
+	/**
+	 * Replace in the chain of a node an edge that moved.
+	 */
+	protected void relink(int n, int from, int to) {
+		if (nodes.getInt(n, FIRST) == from) {
+			nodes.putInt(n, FIRST, to);
+			return;
+		}
+
+		for (int e = nodes.getInt(n, FIRST); e >= 0;) {
+			int next = nextEdge(e, n);
+
+			if (next == from) {
+				setNextEdge(e, n, to);
+				return;
+			}
+
+			e = next;
+		}
+	}
+
+	protected void setDirected(int e, boolean on) {
+		countDirections(e, -1);
+		edges.putInt(e, FLAGS, on ? DIRECTED : 0);
+		countDirections(e, 1);
+	}
+
+	/**
+	 * Swap the nodes of an edge, with their links.
+	 */
+	protected void switchDirection(int e) {
+		countDirections(e, -1);
+
+		int src = edges.getInt(e, SOURCE);
+		int next = edges.getInt(e, NEXT_SOURCE);
+
+		if (src != edges.getInt(e, TARGET)) {
+			edges.putInt(e, SOURCE, edges.getInt(e, TARGET));
+			edges.putInt(e, NEXT_SOURCE, edges.getInt(e, NEXT_TARGET));
+			edges.putInt(e, TARGET, src);
+			edges.putInt(e, NEXT_TARGET, next);
+		}
+
+		countDirections(e, 1);
+	}
+
+	/**
+	 * A file could not grow, the graph cannot go on.
+	 */
+	protected void failed(IOException e) {
+		throw new RuntimeException(String.format(
+				"cannot write the graph in %s", directory), e);
+	}
+
+	protected class NodeIterator<T extends Node> implements Iterator<T> {
+		protected int index = 0;
+
+		public boolean hasNext() {
+			return index < nodes.size();
+		}
+
+		public T next() {
+			if (index >= nodes.size())
+				throw new NoSuchElementException();
+
+			return node(index++);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"this iterator does not allow removing");
+		}
+	}
+
+	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
+		protected int index = 0;
+
+		public boolean hasNext() {
+			return index < edges.size();
+		}
+
+		public T next() {
+			if (index >= edges.size())
+				throw new NoSuchElementException();
+
+			return edge(index++);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"this iterator does not allow removing");
+		}
+	}
+
+	// Events
+
+	public void addSink(Sink listener) {
+		listeners.addSink(listener);
+	}
+
+	public void addAttributeSink(AttributeSink listener) {
+		listeners.addAttributeSink(listener);
+	}
+
+	public void addElementSink(ElementSink listener) {
+		listeners.addElementSink(listener);
+	}
+
+	public void removeSink(Sink listener) {
+		listeners.removeSink(listener);
+	}
+
+	public void removeAttributeSink(AttributeSink listener) {
+		listeners.removeAttributeSink(listener);
+	}
+
+	public void removeElementSink(ElementSink listener) {
+		listeners.removeElementSink(listener);
+	}
+
+	public void clearSinks() {
+		listeners.clearSinks();
+	}
+
+	public void clearAttributeSinks() {
+		listeners.clearAttributeSinks();
+	}
+
+	public void clearElementSinks() {
+		listeners.clearElementSinks();
+	}
+
+	@Override
+	protected void attributeChanged(String sourceId, long timeId,
+			String attribute, AttributeChangeEvent event, Object oldValue,
+			Object newValue) {
+		listeners.sendAttributeChangedEvent(sourceId, timeId, getId(),
+				ElementType.GRAPH, attribute, event, oldValue, newValue);
+	}
+
+	// Commands -- Utility
+
+	public void read(FileSource input, String filename) throws IOException,
+			GraphParseException {
+		input.readAll(filename);
+	}
+
+	public void read(String filename) throws IOException, GraphParseException,
+			ElementNotFoundException {
+		FileSource input = FileSourceFactory.sourceFor(filename);
+		input.addSink(this);
+		read(input, filename);
+	}
+
+	public void write(FileSink output, String filename) throws IOException {
+		output.writeAll(this, filename);
+	}
+
+	public void write(String filename) throws IOException {
+		FileSink output = FileSinkFactory.sinkFor(filename);
+		write(output, filename);
+	}
+
+	public Viewer display() {
+		return display(true);
+	}
+
+	public Viewer display(boolean autoLayout) {
+		Viewer viewer = new Viewer(this,
+				Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD);
+		GraphRenderer renderer = Viewer.newGraphRenderer();
+
+		viewer.addView(
+				String.format("defaultView_%d", (long) (Math.random() * 10000)),
+				renderer);
+
+		if (autoLayout) {
+			Layout layout = Layouts.newLayoutAlgorithm();
+			viewer.enableAutoLayout(layout);
+		}
+
+		return viewer;
+	}
+
+	// Sink
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		listeners.edgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId,
+				directed);
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		listeners.edgeRemoved(sourceId, timeId, edgeId);
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		listeners.graphCleared(sourceId, timeId);
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		listeners.nodeAdded(sourceId, timeId, nodeId);
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		listeners.nodeRemoved(sourceId, timeId, nodeId);
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		listeners.stepBegins(sourceId, timeId, step);
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		listeners
+				.edgeAttributeAdded(sourceId, timeId, edgeId, attribute, value);
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		listeners.edgeAttributeChanged(sourceId, timeId, edgeId, attribute,
+				oldValue, newValue);
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		listeners.edgeAttributeRemoved(sourceId, timeId, edgeId, attribute);
+	}
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		listeners.graphAttributeAdded(sourceId, timeId, attribute, value);
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		listeners.graphAttributeChanged(sourceId, timeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		listeners.graphAttributeRemoved(sourceId, timeId, attribute);
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		listeners
+				.nodeAttributeAdded(sourceId, timeId, nodeId, attribute, value);
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		listeners.nodeAttributeChanged(sourceId, timeId, nodeId, attribute,
+				oldValue, newValue);
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		listeners.nodeAttributeRemoved(sourceId, timeId, nodeId, attribute);
+	}
+
+	/**
+	 * Build a random graph in a temporary directory, reopen it and walk it.
+	 * The first argument is the number of nodes, each node having four edges
+	 * toward previous nodes.
+	 */
+	public static void main(String args[]) throws IOException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		Random random = new Random(1);
+
+		File directory = File.createTempFile("graph", ".mapped");
+		directory.delete();
+
+		MappedGraph graph = new MappedGraph("bench", directory);
+		long t = System.currentTimeMillis();
+
+		for (int i = 0; i < n; i++) {
+			Node node = graph.addNode("n" + i);
+			node.addAttribute("x", random.nextDouble());
+
+			for (int j = 0; i > 0 && j < 4; j++)
+				graph.addEdge(i + "_" + j, "n" + i, "n" + random.nextInt(i));
+		}
+
+		System.out.printf("added %d nodes and %d edges in %d ms%n", graph
+				.getNodeCount(), graph.getEdgeCount(), System
+				.currentTimeMillis() - t);
+
+		t = System.currentTimeMillis();
+		graph.close();
+		graph = new MappedGraph("bench", directory);
+		System.out.printf("flushed and reopened in %d ms%n", System
+				.currentTimeMillis() - t);
+
+		t = System.currentTimeMillis();
+		double sum = 0;
+
+		for (int i = 0; i < n; i++) {
+			Node node = graph.getNode("n" + random.nextInt(n));
+
+			for (Edge edge : node.getEachEdge())
+				sum += edge.getOpposite(node).getNumber("x");
+		}
+
+		System.out.printf("%d random neighbourhoods in %d ms (%f)%n", n,
+				System.currentTimeMillis() - t, sum);
+
+		t = System.currentTimeMillis();
+
+		for (int i = 0; i < n / 10; i++)
+			graph.removeNode("n" + random.nextInt(n));
+
+		System.out.printf("removed up to %d nodes in %d ms, %d left%n",
+				n / 10, System.currentTimeMillis() - t, graph
+						.getNodeCount());
+
+		Runtime runtime = Runtime.getRuntime();
+		System.out.printf("heap used %d KB%n",
+				(runtime.totalMemory() - runtime.freeMemory()) / 1024);
+
+		graph.close();
+
+		for (File file : directory.listFiles())
+			file.delete();
+
+		directory.delete();
+	}
+
+	// Handling the listeners -- We use the IO2 InputBase for this.
+
+	class GraphListeners extends SourceBase implements Pipe {
+		SinkTime sinkTime;
+
+		public GraphListeners() {
+			super(getId());
+
+			sinkTime = new SinkTime();
+			sourceTime.setSinkTime(sinkTime);
+		}
+
+		protected long newEvent() {
+			return sourceTime.newEvent();
+		}
+
+		public void edgeAttributeAdded(String sourceId, long timeId,
+				String edgeId, String attribute, Object value) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				MappedEdge edge = getEdge(edgeId);
+
+				if (edge != null)
+					edge.addAttribute_(sourceId, timeId, attribute, value);
+			}
+		}
+
+		public void edgeAttributeChanged(String sourceId, long timeId,
+				String edgeId, String attribute, Object oldValue,
+				Object newValue) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				MappedEdge edge = getEdge(edgeId);
+
+				if (edge != null)
+					edge.changeAttribute_(sourceId, timeId, attribute,
+							newValue);
+			}
+		}
+
+		public void edgeAttributeRemoved(String sourceId, long timeId,
+				String edgeId, String attribute) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				MappedEdge edge = getEdge(edgeId);
+
+				if (edge != null)
+					edge.removeAttribute_(sourceId, timeId, attribute);
+			}
+		}
+
+		public void graphAttributeAdded(String sourceId, long timeId,
+				String attribute, Object value) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				addAttribute_(sourceId, timeId, attribute, value);
+			}
+		}
+
+		public void graphAttributeChanged(String sourceId, long timeId,
+				String attribute, Object oldValue, Object newValue) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				changeAttribute_(sourceId, timeId, attribute, newValue);
+			}
+		}
+
+		public void graphAttributeRemoved(String sourceId, long timeId,
+				String attribute) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				removeAttribute_(sourceId, timeId, attribute);
+			}
+		}
+
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				MappedNode node = getNode(nodeId);
+
+				if (node != null)
+					node.addAttribute_(sourceId, timeId, attribute, value);
+			}
+		}
+
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				MappedNode node = getNode(nodeId);
+
+				if (node != null)
+					node.changeAttribute_(sourceId, timeId, attribute,
+							newValue);
+			}
+		}
+
+		public void nodeAttributeRemoved(String sourceId, long timeId,
+				String nodeId, String attribute) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				MappedNode node = getNode(nodeId);
+
+				if (node != null)
+					node.removeAttribute_(sourceId, timeId, attribute);
+			}
+		}
+
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				createNodes(fromNodeId, toNodeId);
+				addEdge_(sourceId, timeId, edgeId, fromNodeId, toNodeId,
+						directed);
+			}
+		}
+
+		public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				int e = edges.find(edgeId);
+
+				if (e >= 0)
+					removeEdge_(sourceId, timeId, e);
+			}
+		}
+
+		public void graphCleared(String sourceId, long timeId) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				clear_(sourceId, timeId);
+			}
+		}
+
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				addNode_(sourceId, timeId, nodeId);
+			}
+		}
+
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				int n = nodes.find(nodeId);
+
+				if (n >= 0) {
+					disconnectEdges(n);
+					removeNode_(sourceId, timeId, n);
+				}
+			}
+		}
+
+		public void stepBegins(String sourceId, long timeId, double step) {
+			if (sinkTime.isNewEvent(sourceId, timeId)) {
+				stepBegins_(sourceId, timeId, step);
+			}
+		}
+	}
+}
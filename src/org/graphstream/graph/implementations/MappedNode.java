@@ -0,0 +1,301 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.graphstream.graph.BreadthFirstIterator;
+import org.graphstream.graph.DepthFirstIterator;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AbstractElement.AttributeChangeEvent;
+import org.graphstream.stream.SourceBase.ElementType;
+
+/**
+ * A node of a {@link MappedGraph}.
+ * 
+ * <p>
+ * The node is a handle on a record of the node table, created on demand. The
+ * record holds the first edge of the node and its degrees, the edges of the
+ * node are chained through the edge records, so that iterating on them reads
+ * the files without creating anything but the returned edges.
+ * </p>
+ */
+public class MappedNode extends MappedElement implements Node {
+	// Construction
+
+	protected MappedNode(MappedGraph graph, int index) {
+		super(graph, index);
+	}
+
+	// Access
+
+	@Override
+	protected MappedTable table() {
+		return graph.nodes;
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getDegree() {
+		return graph.nodes.getInt(index(), MappedGraph.DEGREE);
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getOutDegree() {
+		return graph.nodes.getInt(index(), MappedGraph.OUT);
+	}
+
+	/**
+	 * @complexity constant.
+	 */
+	public int getInDegree() {
+		return graph.nodes.getInt(index(), MappedGraph.IN);
+	}
+
+	public boolean hasEdgeToward(String id) {
+		return getEdgeToward(id) != null;
+	}
+
+	public boolean hasEdgeFrom(String id) {
+		return getEdgeFrom(id) != null;
+	}
+
+	public boolean hasEdgeBetween(String id) {
+		return getEdgeBetween(id) != null;
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node.
+	 */
+	public <T extends Edge> T getEdgeToward(String id) {
+		return find(id, MappedGraph.LEAVING);
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node.
+	 */
+	public <T extends Edge> T getEdgeFrom(String id) {
+		return find(id, MappedGraph.ENTERING);
+	}
+
+	/**
+	 * @complexity O(d) with d the degree of the node.
+	 */
+	public <T extends Edge> T getEdgeBetween(String id) {
+		return find(id, MappedGraph.ALL);
+	}
+
+	/**
+	 * @complexity O(i).
+	 */
+	public <T extends Edge> T getEdge(int i) {
+		Iterator<T> it = getEdgeIterator();
+
+		while (i-- > 0)
+			it.next();
+
+		return it.next();
+	}
+
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new EdgeIterator<T>(MappedGraph.ALL);
+	}
+
+	public <T extends Edge> Iterator<T> getEnteringEdgeIterator() {
+		return new EdgeIterator<T>(MappedGraph.ENTERING);
+	}
+
+	public <T extends Edge> Iterator<T> getLeavingEdgeIterator() {
+		return new EdgeIterator<T>(MappedGraph.LEAVING);
+	}
+
+	public Iterator<Edge> iterator() {
+		return getEdgeIterator();
+	}
+
+	public <T extends Node> Iterator<T> getNeighborNodeIterator() {
+		final Iterator<Edge> edges = getEdgeIterator();
+
+		return new Iterator<T>() {
+			public boolean hasNext() {
+				return edges.hasNext();
+			}
+
+			@SuppressWarnings("unchecked")
+			public T next() {
+				Node self = MappedNode.this;
+
+				return (T) edges.next().getOpposite(self);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"this iterator does not allow removing");
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getBreadthFirstIterator() {
+		return new BreadthFirstIterator<T>((T) this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getBreadthFirstIterator(boolean directed) {
+		return new BreadthFirstIterator<T>((T) this, directed);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getDepthFirstIterator() {
+		return new DepthFirstIterator<T>((T) this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getDepthFirstIterator(boolean directed) {
+		return new DepthFirstIterator<T>((T) this, directed);
+	}
+
+	public <T extends Edge> Iterable<T> getEachEdge() {
+		return this.<T> getEdgeSet();
+	}
+
+	public <T extends Edge> Iterable<T> getEachLeavingEdge() {
+		return this.<T> getLeavingEdgeSet();
+	}
+
+	public <T extends Edge> Iterable<T> getEachEnteringEdge() {
+		return this.<T> getEnteringEdgeSet();
+	}
+
+	public <T extends Edge> Collection<T> getEdgeSet() {
+		return collect(new EdgeIterator<T>(MappedGraph.ALL));
+	}
+
+	public <T extends Edge> Collection<T> getLeavingEdgeSet() {
+		return collect(new EdgeIterator<T>(MappedGraph.LEAVING));
+	}
+
+	public <T extends Edge> Collection<T> getEnteringEdgeSet() {
+		return collect(new EdgeIterator<T>(MappedGraph.ENTERING));
+	}
+
+	// Command
+
+	@Override
+	protected void attributeChanged(String sourceId, long timeId,
+			String attribute, AttributeChangeEvent event, Object oldValue,
+			Object newValue) {
+		graph.listeners.sendAttributeChangedEvent(sourceId, timeId, getId(),
+				ElementType.NODE, attribute, event, oldValue, newValue);
+	}
+
+	// Utility
+
+	/**
+	 * The first edge in the given direction whose opposite node has the given
+	 * identifier.
+	 */
+	protected <T extends Edge> T find(String id, int mode) {
+		int other = graph.nodes.find(id);
+
+		if (other < 0)
+			return null;
+
+		int n = index();
+
+		for (int e = graph.nodes.getInt(n, MappedGraph.FIRST); e >= 0; e = graph
+				.nextEdge(e, n)) {
+			if (graph.opposite(e, n) == other && graph.follows(e, n, mode))
+				return graph.<T> edge(e);
+		}
+
+		return null;
+	}
+
+	protected <T extends Edge> Collection<T> collect(Iterator<T> it) {
+		ArrayList<T> list = new ArrayList<T>(getDegree());
+
+		while (it.hasNext())
+			list.add(it.next());
+
+		return list;
+	}
+
+	/**
+	 * Iterator following the chain of the edges of the node, and keeping those
+	 * in the given direction.
+	 */
+	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
+		protected int node;
+
+		protected int mode;
+
+		protected int next;
+
+		public EdgeIterator(int mode) {
+			this.node = index();
+			this.mode = mode;
+			this.next = graph.nodes.getInt(node, MappedGraph.FIRST);
+
+			skip();
+		}
+
+		protected void skip() {
+			while (next >= 0 && !graph.follows(next, node, mode))
+				next = graph.nextEdge(next, node);
+		}
+
+		public boolean hasNext() {
+			return next >= 0;
+		}
+
+		public T next() {
+			if (next < 0)
+				throw new NoSuchElementException();
+
+			T edge = graph.<T> edge(next);
+			next = graph.nextEdge(next, node);
+			skip();
+
+			return edge;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"this iterator does not allow removing");
+		}
+	}
+}
@@ -0,0 +1,764 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Storage of the nodes or of the edges of a {@link MappedGraph}.
+ * 
+ * <p>
+ * A table is a set of memory-mapped files in a directory, all prefixed by the
+ * name of the table :
+ * <dl>
+ * <dt>name.records</dt>
+ * <dd>A header of {@link #HEADER} bytes followed by one record of
+ * {@link #RECORD} bytes per element, in index order. The first 16 bytes and
+ * the last 4 bytes of a record belong to the graph (adjacency, flags), the
+ * table keeps in the other bytes the position of the identifier and its
+ * hash.</dd>
+ * <dt>name.ids</dt>
+ * <dd>The identifiers, each one stored as its length and its UTF-8 bytes.
+ * This heap only grows, the identifiers of removed elements are not
+ * reclaimed.</dd>
+ * <dt>name.index</dt>
+ * <dd>An open addressing hash table with linear probing, whose slots hold
+ * the hash of an identifier and the index of its record. It is rebuilt twice
+ * larger when half full.</dd>
+ * <dt>name.columns, name.N.column</dt>
+ * <dd>The list of numeric attributes, and for each one the values of all the
+ * elements, stored as doubles at the index of the element.</dd>
+ * </dl>
+ * </p>
+ * 
+ * <p>
+ * Elements are added at the end of the table and removed by moving the last
+ * record in place of the removed one, the table staying dense. Attributes
+ * whose value is not a number are kept in the heap, by element, and are not
+ * saved.
+ * </p>
+ */
+class MappedTable {
+	// Attribute
+
+	/**
+	 * Size of the header of the record file.
+	 */
+	protected static final int HEADER = 64;
+
+	/**
+	 * Size of a record.
+	 */
+	protected static final int RECORD = 32;
+
+	/**
+	 * Position in a record of the position of the identifier in the heap.
+	 */
+	protected static final int REF = 16;
+
+	/**
+	 * Position in a record of the hash of the identifier.
+	 */
+	protected static final int HASH = 24;
+
+	protected static final long MAGIC = 0x47534D4150504544L;
+
+	protected static final int VERSION = 1;
+
+	/**
+	 * Position in the header of the number of records.
+	 */
+	protected static final int COUNT = 12;
+
+	/**
+	 * Position in the header of the size of the identifier heap.
+	 */
+	protected static final int HEAP = 16;
+
+	/**
+	 * Position in the header of the capacity of the hash index.
+	 */
+	protected static final int CAPACITY = 24;
+
+	/**
+	 * First position of the header free for the user of the table.
+	 */
+	protected static final int USER = 32;
+
+	/**
+	 * Encoding of a missing value in a column, the bits of the values are
+	 * exclusive-or'ed with it so that never written bytes, that are zero,
+	 * read as missing.
+	 */
+	protected static final long MISSING = Double.doubleToLongBits(Double.NaN);
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Directory of the files.
+	 */
+	protected File directory;
+
+	/**
+	 * Prefix of the files.
+	 */
+	protected String name;
+
+	/**
+	 * The header and the records.
+	 */
+	protected MappedFile records;
+
+	/**
+	 * The identifiers.
+	 */
+	protected MappedFile ids;
+
+	/**
+	 * The hash index on identifiers.
+	 */
+	protected MappedFile index;
+
+	/**
+	 * Number of records, copy of the header.
+	 */
+	protected int count;
+
+	/**
+	 * Size of the identifier heap, copy of the header.
+	 */
+	protected long heap;
+
+	/**
+	 * Number of slots of the hash index, a power of two, copy of the header.
+	 */
+	protected int capacity;
+
+	/**
+	 * The numeric columns, in creation order.
+	 */
+	protected ArrayList<Column> columns = new ArrayList<Column>();
+
+	/**
+	 * The numeric columns by attribute name.
+	 */
+	protected HashMap<String, Column> columnByName = new HashMap<String, Column>();
+
+	/**
+	 * The attributes that are not numbers, by position of the identifier of
+	 * the element.
+	 */
+	protected HashMap<Long, HashMap<String, Object>> extras = new HashMap<Long, HashMap<String, Object>>();
+
+	// Construction
+
+	/**
+	 * Open a table, or create it if its files do not exist.
+	 * 
+	 * @param directory
+	 *            The directory of the files.
+	 * @param name
+	 *            The prefix of the files.
+	 * @throws IOException
+	 *             If the files cannot be mapped or do not contain a table.
+	 */
+	public MappedTable(File directory, String name) throws IOException {
+		this.directory = directory;
+		this.name = name;
+
+		records = new MappedFile(new File(directory, name + ".records"));
+		ids = new MappedFile(new File(directory, name + ".ids"));
+		index = new MappedFile(new File(directory, name + ".index"));
+
+		records.ensure(HEADER);
+
+		if (records.getLong(0) == 0) {
+			records.putLong(0, MAGIC);
+			records.putInt(8, VERSION);
+			setCount(0);
+			setHeap(0);
+			rebuild(1024);
+		} else if (records.getLong(0) != MAGIC
+				|| records.getInt(8) != VERSION) {
+			throw new IOException(String.format("%s is not a graph table",
+					records.getFile()));
+		} else {
+			count = records.getInt(COUNT);
+			heap = records.getLong(HEAP);
+			capacity = records.getInt(CAPACITY);
+		}
+
+		readColumns();
+	}
+
+	// Access
+
+	/**
+	 * Number of elements.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Position of a field of a record in the record file.
+	 */
+	protected long position(int i, int field) {
+		return HEADER + ((long) i) * RECORD + field;
+	}
+
+	public int getInt(int i, int field) {
+		return records.getInt(position(i, field));
+	}
+
+	/**
+	 * Position of the identifier of an element in the heap. It does not change
+	 * when the element moves and is never reused, so it identifies the
+	 * element.
+	 */
+	public long ref(int i) {
+		return records.getLong(position(i, REF));
+	}
+
+	public int hash(int i) {
+		return records.getInt(position(i, HASH));
+	}
+
+	/**
+	 * Identifier of an element.
+	 */
+	public String id(int i) {
+		return string(ref(i));
+	}
+
+	/**
+	 * Index of the element with the given identifier.
+	 * 
+	 * @return The index or -1 if there is no such element.
+	 */
+	public int find(String id) {
+		byte[] bytes = id.getBytes(UTF8);
+		int hash = hash(id);
+		int mask = capacity - 1;
+
+		for (int s = hash & mask;; s = (s + 1) & mask) {
+			long slot = index.getLong(((long) s) << 3);
+
+			if (slot == 0)
+				return -1;
+
+			if ((int) (slot >>> 32) == hash) {
+				int i = (int) slot - 1;
+
+				if (matches(ref(i), bytes))
+					return i;
+			}
+		}
+	}
+
+	/**
+	 * Index of an element known by the position and hash of its identifier.
+	 * 
+	 * @return The index or -1 if the element has been removed.
+	 */
+	public int find(long ref, int hash) {
+		int mask = capacity - 1;
+
+		for (int s = hash & mask;; s = (s + 1) & mask) {
+			long slot = index.getLong(((long) s) << 3);
+
+			if (slot == 0)
+				return -1;
+
+			if ((int) (slot >>> 32) == hash && ref((int) slot - 1) == ref)
+				return (int) slot - 1;
+		}
+	}
+
+	/**
+	 * Value of an attribute of an element.
+	 * 
+	 * @return The value or null if the element does not have the attribute.
+	 */
+	public Object get(int i, long ref, String key) {
+		Column column = columnByName.get(key);
+
+		if (column != null) {
+			double value = column.get(i);
+
+			if (!Double.isNaN(value))
+				return value;
+		}
+
+		HashMap<String, Object> map = extras.get(ref);
+
+		if (map != null)
+			return map.get(key);
+
+		return null;
+	}
+
+	/**
+	 * Numeric value of an attribute, without creating an object if it is
+	 * stored in a column.
+	 * 
+	 * @return The value or NaN if the attribute is not a number.
+	 */
+	public double getNumber(int i, long ref, String key) {
+		Column column = columnByName.get(key);
+
+		if (column != null) {
+			double value = column.get(i);
+
+			if (!Double.isNaN(value))
+				return value;
+		}
+
+		HashMap<String, Object> map = extras.get(ref);
+
+		if (map != null) {
+			Object o = map.get(key);
+
+			if (o instanceof Number)
+				return ((Number) o).doubleValue();
+		}
+
+		return Double.NaN;
+	}
+
+	public boolean has(int i, long ref, String key) {
+		Column column = columnByName.get(key);
+
+		if (column != null && column.has(i))
+			return true;
+
+		HashMap<String, Object> map = extras.get(ref);
+
+		return map != null && map.containsKey(key);
+	}
+
+	/**
+	 * Names of the attributes of an element.
+	 */
+	public ArrayList<String> keys(int i, long ref) {
+		ArrayList<String> keys = new ArrayList<String>();
+
+		for (Column column : columns)
+			if (column.has(i))
+				keys.add(column.name);
+
+		HashMap<String, Object> map = extras.get(ref);
+
+		if (map != null)
+			keys.addAll(map.keySet());
+
+		return keys;
+	}
+
+	// Command
+
+	/**
+	 * Add an element at the end of the table. The identifier must not be
+	 * used.
+	 * 
+	 * @return The index of the new element.
+	 */
+	public int add(String id) throws IOException {
+		if ((count + 1) * 2L > capacity)
+			rebuild(capacity * 2);
+
+		byte[] bytes = id.getBytes(UTF8);
+		long ref = heap;
+		int hash = hash(id);
+		int i = count;
+
+		ids.ensure(ref + 4 + bytes.length);
+		ids.putInt(ref, bytes.length);
+		ids.put(ref + 4, bytes);
+		setHeap((ref + 4 + bytes.length + 3) & ~3L);
+
+		records.ensure(position(i + 1, 0));
+		records.clear(position(i, 0), RECORD);
+		records.putLong(position(i, REF), ref);
+		records.putInt(position(i, HASH), hash);
+		insert(hash, i);
+		setCount(i + 1);
+
+		return i;
+	}
+
+	public void putInt(int i, int field, int value) {
+		records.putInt(position(i, field), value);
+	}
+
+	/**
+	 * Remove an element by moving the last one in its place.
+	 * 
+	 * @return The former index of the element moved at the given index, or -1
+	 *         if the removed element was the last one.
+	 */
+	public int remove(int i) {
+		int last = count - 1;
+
+		extras.remove(ref(i));
+		delete(hash(i), i);
+
+		if (i != last) {
+			for (int f = 0; f < RECORD; f += 4)
+				records.putInt(position(i, f), records
+						.getInt(position(last, f)));
+
+			for (Column column : columns)
+				column.move(last, i);
+
+			relocate(hash(i), last, i);
+		}
+
+		records.clear(position(last, 0), RECORD);
+
+		for (Column column : columns)
+			column.clear(last);
+
+		setCount(last);
+
+		return i != last ? last : -1;
+	}
+
+	/**
+	 * Set an attribute of an element. Numbers go to a column, created if
+	 * needed, other values to the heap.
+	 */
+	public void put(int i, long ref, String key, Object value)
+			throws IOException {
+		Column column = columnByName.get(key);
+
+		if (value instanceof Number
+				&& !Double.isNaN(((Number) value).doubleValue())) {
+			if (column == null)
+				column = addColumn(key);
+
+			column.set(i, ((Number) value).doubleValue());
+			removeExtra(ref, key);
+		} else {
+			if (column != null)
+				column.clear(i);
+
+			HashMap<String, Object> map = extras.get(ref);
+
+			if (map == null) {
+				map = new HashMap<String, Object>(1);
+				extras.put(ref, map);
+			}
+
+			map.put(key, value);
+		}
+	}
+
+	/**
+	 * Remove an attribute of an element.
+	 * 
+	 * @return True if the element had the attribute.
+	 */
+	public boolean remove(int i, long ref, String key) {
+		Column column = columnByName.get(key);
+
+		if (column != null && column.has(i)) {
+			column.clear(i);
+			return true;
+		}
+
+		return removeExtra(ref, key);
+	}
+
+	/**
+	 * Remove all the elements and the identifiers. The columns stay.
+	 */
+	public void clear() throws IOException {
+		for (Column column : columns)
+			column.file.clear(0, Math.min(((long) count) << 3, column.file
+					.capacity()));
+
+		records.clear(position(0, 0), ((long) count) * RECORD);
+		extras.clear();
+		setCount(0);
+		setHeap(0);
+		rebuild(capacity);
+	}
+
+	/**
+	 * Write the modified pages of all the files to the disk.
+	 */
+	public void force() {
+		records.force();
+		ids.force();
+		index.force();
+
+		for (Column column : columns)
+			column.file.force();
+	}
+
+	public void close() throws IOException {
+		records.close();
+		ids.close();
+		index.close();
+
+		for (Column column : columns)
+			column.file.close();
+	}
+
+	// Utility
+
+	protected void setCount(int count) {
+		this.count = count;
+		records.putInt(COUNT, count);
+	}
+
+	protected void setHeap(long heap) {
+		this.heap = heap;
+		records.putLong(HEAP, heap);
+	}
+
+	protected static int hash(String id) {
+		int h = id.hashCode();
+
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+
+		return h;
+	}
+
+	protected String string(long ref) {
+		byte[] bytes = new byte[ids.getInt(ref)];
+		ids.get(ref + 4, bytes);
+
+		return new String(bytes, UTF8);
+	}
+
+	protected boolean matches(long ref, byte[] bytes) {
+		if (ids.getInt(ref) != bytes.length)
+			return false;
+
+		for (int i = 0; i < bytes.length; i++)
+			if (ids.get(ref + 4 + i) != bytes[i])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Empty the hash index, resize it and insert all the records again.
+	 */
+	protected void rebuild(int capacity) throws IOException {
+		index.ensure(((long) capacity) << 3);
+		index.clear(0, ((long) capacity) << 3);
+		this.capacity = capacity;
+		records.putInt(CAPACITY, capacity);
+
+		for (int i = 0; i < count; i++)
+			insert(hash(i), i);
+	}
+
+	protected void insert(int hash, int i) {
+		int mask = capacity - 1;
+		int s = hash & mask;
+
+		while (index.getLong(((long) s) << 3) != 0)
+			s = (s + 1) & mask;
+
+		index.putLong(((long) s) << 3, (((long) hash) << 32) | (i + 1));
+	}
+
+	protected int slotOf(int hash, int i) {
+		int mask = capacity - 1;
+		long value = (((long) hash) << 32) | (i + 1);
+		int s = hash & mask;
+
+		while (index.getLong(((long) s) << 3) != value)
+			s = (s + 1) & mask;
+
+		return s;
+	}
+
+	/**
+	 * Point the slot of a moved record to its new index.
+	 */
+	protected void relocate(int hash, int from, int to) {
+		index.putLong(((long) slotOf(hash, from)) << 3,
+				(((long) hash) << 32) | (to + 1));
+	}
+
+	/**
+	 * Remove the slot of a record, shifting back the following slots of the
+	 * cluster so that no probe sequence is broken.
+	 */
+	protected void delete(int hash, int i) {
+		int mask = capacity - 1;
+		int hole = slotOf(hash, i);
+		int s = hole;
+
+		while (true) {
+			s = (s + 1) & mask;
+			long slot = index.getLong(((long) s) << 3);
+
+			if (slot == 0)
+				break;
+
+			int home = ((int) (slot >>> 32)) & mask;
+
+			if (((s - home) & mask) >= ((s - hole) & mask)) {
+				index.putLong(((long) hole) << 3, slot);
+				hole = s;
+			}
+		}
+
+		index.putLong(((long) hole) << 3, 0);
+	}
+
+	protected boolean removeExtra(long ref, String key) {
+		HashMap<String, Object> map = extras.get(ref);
+
+		if (map != null && map.containsKey(key)) {
+			map.remove(key);
+
+			if (map.isEmpty())
+				extras.remove(ref);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	protected Column addColumn(String key) throws IOException {
+		Column column = new Column(key, columns.size());
+
+		columns.add(column);
+		columnByName.put(key, column);
+		writeColumns();
+
+		return column;
+	}
+
+	protected void readColumns() throws IOException {
+		File file = new File(directory, name + ".columns");
+
+		if (file.exists()) {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+
+			try {
+				int n = in.readInt();
+
+				for (int i = 0; i < n; i++) {
+					Column column = new Column(in.readUTF(), i);
+					columns.add(column);
+					columnByName.put(column.name, column);
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	protected void writeColumns() throws IOException {
+		File file = new File(directory, name + ".columns");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+
+		try {
+			out.writeInt(columns.size());
+
+			for (Column column : columns)
+				out.writeUTF(column.name);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * The values of a numeric attribute for all the elements.
+	 */
+	protected class Column {
+		protected String name;
+
+		protected MappedFile file;
+
+		public Column(String name, int number) throws IOException {
+			this.name = name;
+			this.file = new MappedFile(new File(directory, String.format(
+					"%s.%d.column", MappedTable.this.name, number)));
+		}
+
+		public double get(int i) {
+			long position = ((long) i) << 3;
+
+			if (position >= file.capacity())
+				return Double.NaN;
+
+			return Double.longBitsToDouble(file.getLong(position) ^ MISSING);
+		}
+
+		public boolean has(int i) {
+			long position = ((long) i) << 3;
+
+			return position < file.capacity() && file.getLong(position) != 0;
+		}
+
+		public void set(int i, double value) throws IOException {
+			long position = ((long) i) << 3;
+
+			file.ensure(position + 8);
+			file.putLong(position, Double.doubleToRawLongBits(value) ^ MISSING);
+		}
+
+		public void clear(int i) {
+			long position = ((long) i) << 3;
+
+			if (position < file.capacity())
+				file.putLong(position, 0);
+		}
+
+		public void move(int from, int to) {
+			long position = ((long) from) << 3;
+
+			if (position < file.capacity()) {
+				long bits = file.getLong(position);
+
+				if (bits != 0 || has(to))
+					file.putLong(((long) to) << 3, bits);
+			} else {
+				clear(to);
+			}
+		}
+	}
+}
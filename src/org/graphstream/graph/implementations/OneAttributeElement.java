@@ -71,6 +71,15 @@ public abstract class OneAttributeElement implements Element {
 		return id;
 	}
 
+	/**
+	 * This element is not indexed by a graph.
+	 * 
+	 * @return Always -1.
+	 */
+	public int getIndex() {
+		return -1;
+	}
+
 	@SuppressWarnings("all")
 	public <T> T getAttribute(String key) {
 		return (T) attribute;
@@ -0,0 +1,542 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable hash map with structural sharing.
+ * 
+ * <p>
+ * This is a hash array mapped trie : each level of the tree consumes five bits
+ * of the key hash, and only the nodes on the path of a key are copied when it
+ * is added or removed. Therefore {@link #put(Object, Object)} and
+ * {@link #remove(Object)} return a new map in O(log32(n)) time and memory, the
+ * original map being left unchanged and sharing all its other nodes with the
+ * new one. A map is never modified once built, it can be read by any number of
+ * threads without synchronisation.
+ * </p>
+ * 
+ * <p>
+ * Keys must not be null.
+ * </p>
+ * 
+ * @param <K>
+ *            The type of the keys.
+ * @param <V>
+ *            The type of the values.
+ */
+class PersistentMap<K, V> implements Iterable<Map.Entry<K, V>> {
+	// Attribute
+
+	@SuppressWarnings("rawtypes")
+	protected static final PersistentMap EMPTY = new PersistentMap(null, 0);
+
+	/**
+	 * The root of the trie, null if the map is empty.
+	 */
+	protected final Trie root;
+
+	/**
+	 * Number of keys.
+	 */
+	protected final int size;
+
+	// Construction
+
+	protected PersistentMap(Trie root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * The empty map.
+	 * 
+	 * @return A map without keys.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> empty() {
+		return (PersistentMap<K, V>) EMPTY;
+	}
+
+	// Access
+
+	/**
+	 * Number of keys in this map.
+	 * 
+	 * @return The size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The value associated with a key.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @return The value or null if the key is not in this map.
+	 * @complexity O(log32(n)).
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (root == null)
+			return null;
+
+		return (V) root.find(0, hash(key), key);
+	}
+
+	/**
+	 * True if the key is in this map.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @return True if the key has a value.
+	 */
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Iterator on the entries of this map, in no particular order.
+	 */
+	public Iterator<Map.Entry<K, V>> iterator() {
+		return new EntryIterator();
+	}
+
+	/**
+	 * Iterator on the keys of this map, in no particular order.
+	 * 
+	 * @return An iterator.
+	 */
+	public Iterator<K> keyIterator() {
+		final EntryIterator entries = new EntryIterator();
+
+		return new Iterator<K>() {
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@SuppressWarnings("unchecked")
+			public K next() {
+				entries.advance();
+				return (K) entries.key;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"this iterator does not allow removing");
+			}
+		};
+	}
+
+	/**
+	 * Iterator on the values of this map, in no particular order.
+	 * 
+	 * @return An iterator.
+	 */
+	public Iterator<V> valueIterator() {
+		final EntryIterator entries = new EntryIterator();
+
+		return new Iterator<V>() {
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@SuppressWarnings("unchecked")
+			public V next() {
+				entries.advance();
+				return (V) entries.value;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"this iterator does not allow removing");
+			}
+		};
+	}
+
+	// Command
+
+	/**
+	 * A map with the given key associated to the given value, this map being
+	 * unchanged. Values must not be null, use {@link #remove(Object)} instead.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @param value
+	 *            The new value.
+	 * @return The new map, or this map if the key already had this value.
+	 * @complexity O(log32(n)).
+	 */
+	public PersistentMap<K, V> put(K key, V value) {
+		boolean added[] = new boolean[1];
+		int h = hash(key);
+		Trie r;
+
+		if (root == null)
+			r = BitmapTrie.EMPTY.put(0, h, key, value, added);
+		else
+			r = root.put(0, h, key, value, added);
+
+		if (r == root)
+			return this;
+
+		return new PersistentMap<K, V>(r, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * A map without the given key, this map being unchanged.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @return The new map, or this map if the key was not present.
+	 * @complexity O(log32(n)).
+	 */
+	public PersistentMap<K, V> remove(Object key) {
+		if (root == null)
+			return this;
+
+		Trie r = root.remove(0, hash(key), key);
+
+		if (r == root)
+			return this;
+		if (r == null)
+			return empty();
+
+		return new PersistentMap<K, V>(r, size - 1);
+	}
+
+	// Utility
+
+	protected static int hash(Object key) {
+		int h = key.hashCode();
+
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Node of the trie. Its array stores pairs, either (key, value) or (null,
+	 * sub-trie).
+	 */
+	protected static abstract class Trie {
+		protected final Object[] array;
+
+		protected Trie(Object[] array) {
+			this.array = array;
+		}
+
+		protected abstract Object find(int shift, int hash, Object key);
+
+		protected abstract Trie put(int shift, int hash, Object key,
+				Object value, boolean added[]);
+
+		/**
+		 * The trie without the key, this if the key is absent or null if the
+		 * trie becomes empty.
+		 */
+		protected abstract Trie remove(int shift, int hash, Object key);
+
+		protected static Object[] removePair(Object[] array, int i) {
+			Object[] a = new Object[array.length - 2];
+
+			System.arraycopy(array, 0, a, 0, i);
+			System.arraycopy(array, i + 2, a, i, a.length - i);
+
+			return a;
+		}
+
+		protected static Object[] set(Object[] array, int i, Object value) {
+			Object[] a = array.clone();
+
+			a[i] = value;
+
+			return a;
+		}
+	}
+
+	/**
+	 * Trie node with up to 32 children, only the present ones being stored in
+	 * the array. The bitmap tells which of the 32 slots are used.
+	 */
+	protected static class BitmapTrie extends Trie {
+		protected static final BitmapTrie EMPTY = new BitmapTrie(0,
+				new Object[0]);
+
+		protected final int bitmap;
+
+		protected BitmapTrie(int bitmap, Object[] array) {
+			super(array);
+			this.bitmap = bitmap;
+		}
+
+		@Override
+		protected Object find(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & 31);
+
+			if ((bitmap & bit) == 0)
+				return null;
+
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object k = array[i];
+
+			if (k == null)
+				return ((Trie) array[i + 1]).find(shift + 5, hash, key);
+			if (key.equals(k))
+				return array[i + 1];
+
+			return null;
+		}
+
+		@Override
+		protected Trie put(int shift, int hash, Object key, Object value,
+				boolean added[]) {
+			int bit = 1 << ((hash >>> shift) & 31);
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+			if ((bitmap & bit) != 0) {
+				Object k = array[i];
+				Object v = array[i + 1];
+
+				if (k == null) {
+					Trie t = ((Trie) v).put(shift + 5, hash, key, value, added);
+
+					if (t == v)
+						return this;
+
+					return new BitmapTrie(bitmap, set(array, i + 1, t));
+				}
+
+				if (key.equals(k)) {
+					if (v == value)
+						return this;
+
+					return new BitmapTrie(bitmap, set(array, i + 1, value));
+				}
+
+				added[0] = true;
+				Object[] a = set(array, i, null);
+				a[i + 1] = pair(shift + 5, k, v, hash, key, value);
+
+				return new BitmapTrie(bitmap, a);
+			}
+
+			Object[] a = new Object[array.length + 2];
+
+			System.arraycopy(array, 0, a, 0, i);
+			System.arraycopy(array, i, a, i + 2, array.length - i);
+			a[i] = key;
+			a[i + 1] = value;
+			added[0] = true;
+
+			return new BitmapTrie(bitmap | bit, a);
+		}
+
+		@Override
+		protected Trie remove(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & 31);
+
+			if ((bitmap & bit) == 0)
+				return this;
+
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object k = array[i];
+			Object v = array[i + 1];
+
+			if (k == null) {
+				Trie t = ((Trie) v).remove(shift + 5, hash, key);
+
+				if (t == v)
+					return this;
+				if (t != null)
+					return new BitmapTrie(bitmap, set(array, i + 1, t));
+			} else if (!key.equals(k)) {
+				return this;
+			}
+
+			if (bitmap == bit)
+				return null;
+
+			return new BitmapTrie(bitmap ^ bit, removePair(array, i));
+		}
+
+		/**
+		 * The smallest trie holding two keys that fell in the same slot.
+		 */
+		protected static Trie pair(int shift, Object k1, Object v1, int h2,
+				Object k2, Object v2) {
+			int h1 = hash(k1);
+			boolean added[] = new boolean[1];
+
+			if (h1 == h2)
+				return new CollisionTrie(h1, new Object[] { k1, v1, k2, v2 });
+
+			return EMPTY.put(shift, h1, k1, v1, added).put(shift, h2, k2, v2,
+					added);
+		}
+	}
+
+	/**
+	 * Leaf of the trie holding keys that have the same hash.
+	 */
+	protected static class CollisionTrie extends Trie {
+		protected final int hash;
+
+		protected CollisionTrie(int hash, Object[] array) {
+			super(array);
+			this.hash = hash;
+		}
+
+		protected int indexOf(Object key) {
+			for (int i = 0; i < array.length; i += 2)
+				if (key.equals(array[i]))
+					return i;
+
+			return -1;
+		}
+
+		@Override
+		protected Object find(int shift, int hash, Object key) {
+			int i = indexOf(key);
+
+			return i < 0 ? null : array[i + 1];
+		}
+
+		@Override
+		protected Trie put(int shift, int hash, Object key, Object value,
+				boolean added[]) {
+			if (hash != this.hash) {
+				BitmapTrie t = new BitmapTrie(1 << ((this.hash >>> shift) & 31),
+						new Object[] { null, this });
+
+				return t.put(shift, hash, key, value, added);
+			}
+
+			int i = indexOf(key);
+
+			if (i >= 0) {
+				if (array[i + 1] == value)
+					return this;
+
+				return new CollisionTrie(hash, set(array, i + 1, value));
+			}
+
+			Object[] a = new Object[array.length + 2];
+
+			System.arraycopy(array, 0, a, 0, array.length);
+			a[array.length] = key;
+			a[array.length + 1] = value;
+			added[0] = true;
+
+			return new CollisionTrie(hash, a);
+		}
+
+		@Override
+		protected Trie remove(int shift, int hash, Object key) {
+			int i = indexOf(key);
+
+			if (i < 0)
+				return this;
+			if (array.length == 2)
+				return null;
+
+			return new CollisionTrie(hash, removePair(array, i));
+		}
+	}
+
+	/**
+	 * Depth first walk of the trie. The depth is at most seven bitmap levels
+	 * plus a collision leaf.
+	 */
+	protected class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		protected Object[][] stack = new Object[8][];
+
+		protected int[] position = new int[8];
+
+		protected int depth = -1;
+
+		protected Object key, value;
+
+		protected boolean ready = false;
+
+		public EntryIterator() {
+			if (root != null) {
+				stack[0] = root.array;
+				depth = 0;
+			}
+		}
+
+		public boolean hasNext() {
+			if (ready)
+				return true;
+
+			while (depth >= 0) {
+				Object[] a = stack[depth];
+				int p = position[depth];
+
+				if (p >= a.length) {
+					stack[depth--] = null;
+				} else {
+					position[depth] = p + 2;
+
+					if (a[p] != null) {
+						key = a[p];
+						value = a[p + 1];
+						ready = true;
+						return true;
+					}
+
+					depth++;
+					stack[depth] = ((Trie) a[p + 1]).array;
+					position[depth] = 0;
+				}
+			}
+
+			return false;
+		}
+
+		protected void advance() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			ready = false;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<K, V> next() {
+			advance();
+
+			return new AbstractMap.SimpleImmutableEntry<K, V>((K) key,
+					(V) value);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"this iterator does not allow removing");
+		}
+	}
+}
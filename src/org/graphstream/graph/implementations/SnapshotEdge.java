@@ -0,0 +1,130 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+
+/**
+ * An edge of a {@link GraphSnapshot}.
+ * 
+ * <p>
+ * This is a light view on the state of the edge in the snapshot, created each
+ * time the edge is accessed. Two views of the same edge in the same snapshot
+ * are equal.
+ * </p>
+ */
+public class SnapshotEdge extends SnapshotElement implements Edge {
+	// Attribute
+
+	/**
+	 * The snapshot this edge belongs to.
+	 */
+	protected final GraphSnapshot graph;
+
+	/**
+	 * The state of the edge in the snapshot.
+	 */
+	protected final GraphSnapshot.EdgeState state;
+
+	// Construction
+
+	protected SnapshotEdge(GraphSnapshot graph, GraphSnapshot.EdgeState state) {
+		this.graph = graph;
+		this.state = state;
+	}
+
+	// Access
+
+	public String getId() {
+		return state.id;
+	}
+
+	/**
+	 * @complexity constant, once the index of the snapshot is built.
+	 */
+	public int getIndex() {
+		return graph.index().edgeIndex.get(state.id);
+	}
+
+	@Override
+	protected PersistentMap<String, Object> attributes() {
+		return state.attributes;
+	}
+
+	public boolean isDirected() {
+		return state.directed;
+	}
+
+	public <T extends Node> T getNode0() {
+		return graph.<T> getNode(state.source);
+	}
+
+	public <T extends Node> T getNode1() {
+		return graph.<T> getNode(state.target);
+	}
+
+	public <T extends Node> T getSourceNode() {
+		return graph.<T> getNode(state.source);
+	}
+
+	public <T extends Node> T getTargetNode() {
+		return graph.<T> getNode(state.target);
+	}
+
+	public <T extends Node> T getOpposite(T node) {
+		if (state.source.equals(node.getId()))
+			return graph.<T> getNode(state.target);
+
+		return graph.<T> getNode(state.source);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof SnapshotEdge) {
+			SnapshotEdge e = (SnapshotEdge) o;
+
+			return e.graph == graph && e.state.id.equals(state.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return state.id.hashCode();
+	}
+
+	// Command
+
+	@Deprecated
+	public void setDirected(boolean on) {
+		readOnly();
+	}
+
+	@Deprecated
+	public void switchDirection() {
+		readOnly();
+	}
+}
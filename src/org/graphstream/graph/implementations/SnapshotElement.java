@@ -0,0 +1,235 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.graphstream.graph.CompoundAttribute;
+import org.graphstream.graph.Element;
+
+/**
+ * Base of the elements of a {@link GraphSnapshot}.
+ * 
+ * <p>
+ * The attributes are read from an immutable {@link PersistentMap}. All the
+ * methods that would modify the element throw an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ */
+abstract class SnapshotElement implements Element {
+	// Access
+
+	/**
+	 * The attributes of this element in the snapshot.
+	 * 
+	 * @return An immutable map.
+	 */
+	protected abstract PersistentMap<String, Object> attributes();
+
+	@SuppressWarnings("all")
+	public <T> T getAttribute(String key) {
+		return (T) attributes().get(key);
+	}
+
+	@SuppressWarnings("all")
+	public <T> T getFirstAttributeOf(String... keys) {
+		PersistentMap<String, Object> map = attributes();
+
+		for (String key : keys) {
+			Object o = map.get(key);
+
+			if (o != null)
+				return (T) o;
+		}
+
+		return null;
+	}
+
+	@SuppressWarnings("all")
+	public <T> T getAttribute(String key, Class<T> clazz) {
+		Object o = attributes().get(key);
+
+		if (o != null && clazz.isInstance(o))
+			return (T) o;
+
+		return null;
+	}
+
+	@SuppressWarnings("all")
+	public <T> T getFirstAttributeOf(Class<T> clazz, String... keys) {
+		PersistentMap<String, Object> map = attributes();
+
+		for (String key : keys) {
+			Object o = map.get(key);
+
+			if (o != null && clazz.isInstance(o))
+				return (T) o;
+		}
+
+		return null;
+	}
+
+	public CharSequence getLabel(String key) {
+		Object o = attributes().get(key);
+
+		if (o instanceof CharSequence)
+			return (CharSequence) o;
+
+		return null;
+	}
+
+	public double getNumber(String key) {
+		Object o = attributes().get(key);
+
+		if (o instanceof Number)
+			return ((Number) o).doubleValue();
+
+		return Double.NaN;
+	}
+
+	@SuppressWarnings("unchecked")
+	public ArrayList<? extends Number> getVector(String key) {
+		Object o = attributes().get(key);
+
+		if (o instanceof ArrayList)
+			return (ArrayList<? extends Number>) o;
+
+		return null;
+	}
+
+	public Object[] getArray(String key) {
+		Object o = attributes().get(key);
+
+		if (o instanceof Object[])
+			return (Object[]) o;
+
+		return null;
+	}
+
+	public HashMap<?, ?> getHash(String key) {
+		Object o = attributes().get(key);
+
+		if (o instanceof HashMap<?, ?>)
+			return (HashMap<?, ?>) o;
+		if (o instanceof CompoundAttribute)
+			return ((CompoundAttribute) o).toHashMap();
+
+		return null;
+	}
+
+	public boolean hasAttribute(String key) {
+		return attributes().containsKey(key);
+	}
+
+	public boolean hasAttribute(String key, Class<?> clazz) {
+		return clazz.isInstance(attributes().get(key));
+	}
+
+	public boolean hasLabel(String key) {
+		return attributes().get(key) instanceof CharSequence;
+	}
+
+	public boolean hasNumber(String key) {
+		return attributes().get(key) instanceof Number;
+	}
+
+	public boolean hasVector(String key) {
+		return attributes().get(key) instanceof ArrayList<?>;
+	}
+
+	public boolean hasArray(String key) {
+		return attributes().get(key) instanceof Object[];
+	}
+
+	public boolean hasHash(String key) {
+		Object o = attributes().get(key);
+
+		return o instanceof HashMap<?, ?> || o instanceof CompoundAttribute;
+	}
+
+	public Iterator<String> getAttributeKeyIterator() {
+		return attributes().keyIterator();
+	}
+
+	public Iterable<String> getAttributeKeySet() {
+		final PersistentMap<String, Object> map = attributes();
+
+		return new AbstractCollection<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return map.keyIterator();
+			}
+
+			@Override
+			public int size() {
+				return map.size();
+			}
+		};
+	}
+
+	public int getAttributeCount() {
+		return attributes().size();
+	}
+
+	@Override
+	public String toString() {
+		return getId();
+	}
+
+	// Command
+
+	public void clearAttributes() {
+		readOnly();
+	}
+
+	public void addAttribute(String attribute, Object... values) {
+		readOnly();
+	}
+
+	public void changeAttribute(String attribute, Object... values) {
+		readOnly();
+	}
+
+	public void setAttribute(String attribute, Object... values) {
+		readOnly();
+	}
+
+	public void addAttributes(Map<String, Object> attributes) {
+		readOnly();
+	}
+
+	public void removeAttribute(String attribute) {
+		readOnly();
+	}
+
+	// Utility
+
+	protected static void readOnly() {
+		throw new UnsupportedOperationException("graph snapshots are read-only");
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.graphstream.graph.BreadthFirstIterator;
+import org.graphstream.graph.DepthFirstIterator;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * A node of a {@link GraphSnapshot}.
+ * 
+ * <p>
+ * This is a light view on the state of the node in the snapshot, created each
+ * time the node is accessed. Two views of the same node in the same snapshot
+ * are equal.
+ * </p>
+ */
+public class SnapshotNode extends SnapshotElement implements Node {
+	// Attribute
+
+	/**
+	 * All the edges.
+	 */
+	protected static final int ALL = 0;
+
+	/**
+	 * Edges leaving the node, undirected edges included.
+	 */
+	protected static final int LEAVING = 1;
+
+	/**
+	 * Edges entering the node, undirected edges included.
+	 */
+	protected static final int ENTERING = 2;
+
+	/**
+	 * The snapshot this node belongs to.
+	 */
+	protected final GraphSnapshot graph;
+
+	/**
+	 * The state of the node in the snapshot.
+	 */
+	protected final GraphSnapshot.NodeState state;
+
+	// Construction
+
+	protected SnapshotNode(GraphSnapshot graph, GraphSnapshot.NodeState state) {
+		this.graph = graph;
+		this.state = state;
+	}
+
+	// Access
+
+	public String getId() {
+		return state.id;
+	}
+
+	/**
+	 * @complexity constant, once the index of the snapshot is built.
+	 */
+	public int getIndex() {
+		return graph.index().nodeIndex.get(state.id);
+	}
+
+	@Override
+	protected PersistentMap<String, Object> attributes() {
+		return state.attributes;
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	public int getDegree() {
+		return state.edges.length;
+	}
+
+	public int getOutDegree() {
+		return count(LEAVING);
+	}
+
+	public int getInDegree() {
+		return count(ENTERING);
+	}
+
+	public boolean hasEdgeToward(String id) {
+		return getEdgeToward(id) != null;
+	}
+
+	public boolean hasEdgeFrom(String id) {
+		return getEdgeFrom(id) != null;
+	}
+
+	public boolean hasEdgeBetween(String id) {
+		return hasEdgeToward(id) || hasEdgeFrom(id);
+	}
+
+	/**
+	 * @complexity O(d) with d being the degree of the node.
+	 */
+	public <T extends Edge> T getEdgeToward(String id) {
+		for (String e : state.edges) {
+			GraphSnapshot.EdgeState edge = graph.edges.get(e);
+
+			if (edge.target.equals(id)
+					|| (!edge.directed && edge.source.equals(id)))
+				return graph.<T> edge(edge);
+		}
+
+		return null;
+	}
+
+	/**
+	 * @complexity O(d) with d being the degree of the node.
+	 */
+	public <T extends Edge> T getEdgeFrom(String id) {
+		for (String e : state.edges) {
+			GraphSnapshot.EdgeState edge = graph.edges.get(e);
+
+			if (edge.source.equals(id)
+					|| (!edge.directed && edge.target.equals(id)))
+				return graph.<T> edge(edge);
+		}
+
+		return null;
+	}
+
+	public <T extends Edge> T getEdgeBetween(String id) {
+		T edge = getEdgeToward(id);
+
+		if (edge == null)
+			edge = getEdgeFrom(id);
+
+		return edge;
+	}
+
+	public <T extends Edge> T getEdge(int i) {
+		return graph.<T> getEdge(state.edges[i]);
+	}
+
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new EdgeIterator<T>(ALL);
+	}
+
+	public <T extends Edge> Iterator<T> getEnteringEdgeIterator() {
+		return new EdgeIterator<T>(ENTERING);
+	}
+
+	public <T extends Edge> Iterator<T> getLeavingEdgeIterator() {
+		return new EdgeIterator<T>(LEAVING);
+	}
+
+	public Iterator<Edge> iterator() {
+		return new EdgeIterator<Edge>(ALL);
+	}
+
+	public <T extends Node> Iterator<T> getNeighborNodeIterator() {
+		final Iterator<Edge> edges = new EdgeIterator<Edge>(ALL);
+
+		return new GraphSnapshot.ReadOnlyIterator<T>() {
+			public boolean hasNext() {
+				return edges.hasNext();
+			}
+
+			@SuppressWarnings("unchecked")
+			public T next() {
+				Node self = SnapshotNode.this;
+
+				return (T) edges.next().getOpposite(self);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getBreadthFirstIterator() {
+		return new BreadthFirstIterator<T>((T) this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getBreadthFirstIterator(boolean directed) {
+		return new BreadthFirstIterator<T>((T) this, directed);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getDepthFirstIterator() {
+		return new DepthFirstIterator<T>((T) this);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Node> Iterator<T> getDepthFirstIterator(boolean directed) {
+		return new DepthFirstIterator<T>((T) this, directed);
+	}
+
+	public <T extends Edge> Iterable<T> getEachEdge() {
+		return this.<T> getEdgeSet();
+	}
+
+	public <T extends Edge> Iterable<T> getEachLeavingEdge() {
+		return this.<T> getLeavingEdgeSet();
+	}
+
+	public <T extends Edge> Iterable<T> getEachEnteringEdge() {
+		return this.<T> getEnteringEdgeSet();
+	}
+
+	public <T extends Edge> Collection<T> getEdgeSet() {
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return new EdgeIterator<T>(ALL);
+			}
+
+			@Override
+			public int size() {
+				return state.edges.length;
+			}
+		};
+	}
+
+	public <T extends Edge> Collection<T> getLeavingEdgeSet() {
+		return collect(new EdgeIterator<T>(LEAVING));
+	}
+
+	public <T extends Edge> Collection<T> getEnteringEdgeSet() {
+		return collect(new EdgeIterator<T>(ENTERING));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof SnapshotNode) {
+			SnapshotNode n = (SnapshotNode) o;
+
+			return n.graph == graph && n.state.id.equals(state.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return state.id.hashCode();
+	}
+
+	// Utility
+
+	protected int count(int mode) {
+		int n = 0;
+
+		for (String e : state.edges)
+			if (accept(graph.edges.get(e), mode))
+				n++;
+
+		return n;
+	}
+
+	protected boolean accept(GraphSnapshot.EdgeState edge, int mode) {
+		if (mode == ALL || !edge.directed)
+			return true;
+		if (mode == LEAVING)
+			return edge.source.equals(state.id);
+
+		return edge.target.equals(state.id);
+	}
+
+	protected <T extends Edge> Collection<T> collect(Iterator<T> it) {
+		ArrayList<T> list = new ArrayList<T>();
+
+		while (it.hasNext())
+			list.add(it.next());
+
+		return list;
+	}
+
+	/**
+	 * Iterator on the edges of the node, filtered by direction.
+	 */
+	protected class EdgeIterator<T extends Edge> extends
+			GraphSnapshot.ReadOnlyIterator<T> {
+		protected int mode;
+
+		protected int index = 0;
+
+		protected GraphSnapshot.EdgeState next;
+
+		public EdgeIterator(int mode) {
+			this.mode = mode;
+			findNext();
+		}
+
+		protected void findNext() {
+			next = null;
+
+			while (next == null && index < state.edges.length) {
+				GraphSnapshot.EdgeState edge = graph.edges
+						.get(state.edges[index++]);
+
+				if (accept(edge, mode))
+					next = edge;
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public T next() {
+			if (next == null)
+				throw new NoSuchElementException();
+
+			T edge = graph.<T> edge(next);
+			findNext();
+
+			return edge;
+		}
+	}
+}
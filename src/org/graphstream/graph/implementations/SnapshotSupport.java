@@ -0,0 +1,337 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.Sink;
+
+/**
+ * Maintains the successive immutable versions of a graph.
+ * 
+ * <p>
+ * This sink follows the events of a graph and builds, for each event, a new
+ * {@link GraphSnapshot} that shares all the unchanged parts of the previous
+ * one. Taking a snapshot is therefore a simple read of the current version,
+ * in constant time, from any thread. The writer pays only for what it
+ * changes, O(log32(n)) for each event, and nothing at all as long as
+ * snapshots are not enabled, since the graph implementations only create
+ * their support in {@link Graph#enableSnapshots()}.
+ * </p>
+ * 
+ * <p>
+ * The support copies the graph when created, it must be created by the thread
+ * that modifies the graph, or while nobody modifies it. Afterward, events
+ * must come from that single thread. The static methods
+ * {@link #enable(Graph, SnapshotSupport)} and
+ * {@link #snapshot(SnapshotSupport)} implement
+ * {@link Graph#enableSnapshots()} and {@link Graph#snapshot()} for a graph
+ * that keeps its support in a volatile field :
+ * 
+ * <pre>
+ * public void enableSnapshots() {
+ * 	snapshots = SnapshotSupport.enable(this, snapshots);
+ * }
+ * 
+ * public Graph snapshot() {
+ * 	return SnapshotSupport.snapshot(snapshots);
+ * }
+ * </pre>
+ * 
+ * </p>
+ */
+public class SnapshotSupport implements Sink {
+	// Attribute
+
+	/**
+	 * The last version of the graph.
+	 */
+	protected volatile GraphSnapshot current;
+
+	// Construction
+
+	/**
+	 * New support that copies the given graph and registers as one of its
+	 * sinks.
+	 * 
+	 * @param graph
+	 *            The graph to follow.
+	 */
+	public SnapshotSupport(Graph graph) {
+		PersistentMap<String, GraphSnapshot.NodeState> nodes = PersistentMap
+				.empty();
+		PersistentMap<String, GraphSnapshot.EdgeState> edges = PersistentMap
+				.empty();
+
+		for (Node node : graph.getEachNode())
+			nodes = nodes.put(node.getId(), new GraphSnapshot.NodeState(node
+					.getId(), attributesOf(node), new String[0]));
+
+		for (Edge edge : graph.getEachEdge()) {
+			String src = edge.getSourceNode().getId();
+			String trg = edge.getTargetNode().getId();
+
+			edges = edges.put(edge.getId(), new GraphSnapshot.EdgeState(edge
+					.getId(), src, trg, edge.isDirected(), attributesOf(edge)));
+			nodes = nodes.put(src, nodes.get(src).withEdge(edge.getId()));
+
+			if (!trg.equals(src))
+				nodes = nodes.put(trg, nodes.get(trg).withEdge(edge.getId()));
+		}
+
+		current = new GraphSnapshot(graph.getId(), nodes, edges,
+				attributesOf(graph), graph.getStep());
+
+		graph.addSink(this);
+	}
+
+	// Access
+
+	/**
+	 * The current version of the graph.
+	 * 
+	 * @return An immutable graph.
+	 * @complexity constant.
+	 */
+	public GraphSnapshot snapshot() {
+		return current;
+	}
+
+	/**
+	 * The support of a graph, created if needed. This must be called by the
+	 * thread that modifies the graph.
+	 * 
+	 * @param graph
+	 *            The graph.
+	 * @param support
+	 *            The current support of the graph, or null if none.
+	 * @return The given support if not null, else a new support following the
+	 *         graph.
+	 */
+	public static SnapshotSupport enable(Graph graph, SnapshotSupport support) {
+		return support != null ? support : new SnapshotSupport(graph);
+	}
+
+	/**
+	 * The current version of a graph.
+	 * 
+	 * @param support
+	 *            The support of the graph.
+	 * @return An immutable graph.
+	 * @throws IllegalStateException
+	 *             If the support is null, because snapshots were not enabled.
+	 * @complexity constant.
+	 */
+	public static GraphSnapshot snapshot(SnapshotSupport support) {
+		if (support == null)
+			throw new IllegalStateException(
+					"snapshots are not enabled, see Graph.enableSnapshots()");
+
+		return support.snapshot();
+	}
+
+	// Sink
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		GraphSnapshot g = current;
+
+		update(g.nodes, g.edges, g.attributes.put(attribute, value), g.step);
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		graphAttributeAdded(sourceId, timeId, attribute, newValue);
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		GraphSnapshot g = current;
+
+		update(g.nodes, g.edges, g.attributes.remove(attribute), g.step);
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		GraphSnapshot g = current;
+		GraphSnapshot.NodeState node = g.nodes.get(nodeId);
+
+		if (node != null)
+			update(g.nodes.put(nodeId, node.withAttributes(node.attributes
+					.put(attribute, value))), g.edges, g.attributes, g.step);
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		nodeAttributeAdded(sourceId, timeId, nodeId, attribute, newValue);
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		GraphSnapshot g = current;
+		GraphSnapshot.NodeState node = g.nodes.get(nodeId);
+
+		if (node != null)
+			update(g.nodes.put(nodeId, node.withAttributes(node.attributes
+					.remove(attribute))), g.edges, g.attributes, g.step);
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		GraphSnapshot g = current;
+		GraphSnapshot.EdgeState edge = g.edges.get(edgeId);
+
+		if (edge != null)
+			update(g.nodes, g.edges.put(edgeId, edge
+					.withAttributes(edge.attributes.put(attribute, value))),
+					g.attributes, g.step);
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		edgeAttributeAdded(sourceId, timeId, edgeId, attribute, newValue);
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		GraphSnapshot g = current;
+		GraphSnapshot.EdgeState edge = g.edges.get(edgeId);
+
+		if (edge != null)
+			update(g.nodes, g.edges.put(edgeId, edge
+					.withAttributes(edge.attributes.remove(attribute))),
+					g.attributes, g.step);
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		GraphSnapshot g = current;
+
+		if (!g.nodes.containsKey(nodeId))
+			update(g.nodes.put(nodeId, new GraphSnapshot.NodeState(nodeId,
+					PersistentMap.<String, Object> empty(), new String[0])),
+					g.edges, g.attributes, g.step);
+	}
+
+	/**
+	 * Removes the node and the edges still connected to it, since some graphs
+	 * send the removal of the node before the removals of its edges.
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		GraphSnapshot g = current;
+		GraphSnapshot.NodeState node = g.nodes.get(nodeId);
+
+		if (node != null) {
+			PersistentMap<String, GraphSnapshot.NodeState> nodes = g.nodes;
+			PersistentMap<String, GraphSnapshot.EdgeState> edges = g.edges;
+
+			for (String e : node.edges) {
+				GraphSnapshot.EdgeState edge = edges.get(e);
+				String other = edge.source.equals(nodeId) ? edge.target
+						: edge.source;
+
+				if (!other.equals(nodeId))
+					nodes = nodes.put(other, nodes.get(other).withoutEdge(e));
+
+				edges = edges.remove(e);
+			}
+
+			update(nodes.remove(nodeId), edges, g.attributes, g.step);
+		}
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		GraphSnapshot g = current;
+		GraphSnapshot.NodeState src = g.nodes.get(fromNodeId);
+		GraphSnapshot.NodeState trg = g.nodes.get(toNodeId);
+
+		if (src != null && trg != null && !g.edges.containsKey(edgeId)) {
+			PersistentMap<String, GraphSnapshot.NodeState> nodes = g.nodes
+					.put(fromNodeId, src.withEdge(edgeId));
+
+			if (trg != src)
+				nodes = nodes.put(toNodeId, trg.withEdge(edgeId));
+
+			update(nodes, g.edges.put(edgeId, new GraphSnapshot.EdgeState(
+					edgeId, fromNodeId, toNodeId, directed, PersistentMap
+							.<String, Object> empty())), g.attributes, g.step);
+		}
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		GraphSnapshot g = current;
+		GraphSnapshot.EdgeState edge = g.edges.get(edgeId);
+
+		if (edge != null) {
+			PersistentMap<String, GraphSnapshot.NodeState> nodes = g.nodes;
+
+			nodes = nodes.put(edge.source, nodes.get(edge.source).withoutEdge(
+					edgeId));
+
+			if (!edge.target.equals(edge.source))
+				nodes = nodes.put(edge.target, nodes.get(edge.target)
+						.withoutEdge(edgeId));
+
+			update(nodes, g.edges.remove(edgeId), g.attributes, g.step);
+		}
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		current = new GraphSnapshot(current.id);
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		GraphSnapshot g = current;
+
+		update(g.nodes, g.edges, g.attributes, step);
+	}
+
+	// Utility
+
+	/**
+	 * Publish a new version of the graph, unless nothing changed.
+	 */
+	protected void update(PersistentMap<String, GraphSnapshot.NodeState> nodes,
+			PersistentMap<String, GraphSnapshot.EdgeState> edges,
+			PersistentMap<String, Object> attributes, double step) {
+		GraphSnapshot g = current;
+
+		if (nodes != g.nodes || edges != g.edges || attributes != g.attributes
+				|| step != g.step)
+			current = new GraphSnapshot(g.id, nodes, edges, attributes, step);
+	}
+
+	protected static PersistentMap<String, Object> attributesOf(Element element) {
+		PersistentMap<String, Object> attributes = PersistentMap.empty();
+		Iterable<String> keys = element.getAttributeKeySet();
+
+		if (keys != null)
+			for (String key : keys)
+				attributes = attributes.put(key, element.getAttribute(key));
+
+		return attributes;
+	}
+}
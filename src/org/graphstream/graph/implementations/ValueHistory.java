@@ -0,0 +1,407 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+
+package org.graphstream.graph.implementations;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The successive values of one attribute, in a compact form.
+ * 
+ * <p>
+ * Each change is stored as the step where it happened and the new value.
+ * Steps and numbers are delta compressed : each one is stored as the bits
+ * that differ from the previous one, without their trailing zeros, in a
+ * variable number of bytes. Successive steps and slowly changing values share
+ * most of their bits and take from two to five bytes instead of sixteen for a
+ * double and its boxed copy. As long as all the values are doubles, the
+ * history holds no object at all. The first value of another type switches
+ * the history to an array of values, the steps remaining compressed.
+ * </p>
+ * 
+ * <p>
+ * Only the last value of a step is kept : a change occurring at the same step
+ * as the previous one replaces it, and a value equal to the previous one is
+ * not stored.
+ * </p>
+ */
+class ValueHistory {
+	// Attribute
+
+	/**
+	 * Value of the attribute while it is not set.
+	 */
+	static final Object REMOVED = new Object();
+
+	/**
+	 * Flag of the header byte of a step, telling the attribute was removed.
+	 */
+	protected static final int REMOVAL = 0x80;
+
+	/**
+	 * Compressed steps and numeric values.
+	 */
+	protected byte[] data = new byte[8];
+
+	/**
+	 * Used part of the data.
+	 */
+	protected int length;
+
+	/**
+	 * The values when they are not all doubles, null otherwise.
+	 */
+	protected Object[] objects;
+
+	/**
+	 * Number of changes.
+	 */
+	protected int count;
+
+	/**
+	 * Step of the last change.
+	 */
+	protected double step;
+
+	/**
+	 * Value of the last change.
+	 */
+	protected Object value = REMOVED;
+
+	/**
+	 * Bits of the last step, reference of the next one.
+	 */
+	protected long stepBits;
+
+	/**
+	 * Bits of the last numeric value, reference of the next one.
+	 */
+	protected long valueBits;
+
+	/**
+	 * State before the last change, to replace it by another change at the
+	 * same step.
+	 */
+	protected int mark;
+
+	protected double markStep;
+
+	protected Object markValue;
+
+	protected long markStepBits;
+
+	protected long markValueBits;
+
+	// Access
+
+	/**
+	 * Number of changes stored.
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * Approximate size of the history in bytes, not counting the values that
+	 * are not doubles.
+	 */
+	int bytes() {
+		return 48 + data.length + (objects == null ? 0 : 4 * objects.length);
+	}
+
+	/**
+	 * The last value.
+	 * 
+	 * @return The value, or {@link #REMOVED}.
+	 */
+	Object last() {
+		return value;
+	}
+
+	/**
+	 * The value at the end of a step.
+	 * 
+	 * @param s
+	 *            The step.
+	 * @return The value, or {@link #REMOVED}.
+	 * @complexity O(n) with n being the number of changes.
+	 */
+	Object at(double s) {
+		Cursor cursor = new Cursor();
+		Object result = REMOVED;
+
+		while (cursor.next() && cursor.step <= s)
+			result = cursor.value;
+
+		return result;
+	}
+
+	/**
+	 * Add to a list the value at the start of a range and the changes that
+	 * follow, until the end of the range.
+	 * 
+	 * @param from
+	 *            First step of the range.
+	 * @param to
+	 *            Last step of the range.
+	 * @param changes
+	 *            Where to add the changes.
+	 */
+	void changes(double from, double to, List<GraphHistory.Change> changes) {
+		Cursor cursor = new Cursor();
+		double start = 0;
+		Object initial = REMOVED;
+
+		while (cursor.next() && cursor.step <= to) {
+			if (cursor.step <= from) {
+				start = cursor.step;
+				initial = cursor.value;
+			} else {
+				if (initial != REMOVED) {
+					changes.add(new GraphHistory.Change(start, initial));
+					initial = REMOVED;
+				}
+
+				changes.add(new GraphHistory.Change(cursor.step,
+						cursor.value == REMOVED ? null : cursor.value));
+			}
+		}
+
+		if (initial != REMOVED)
+			changes.add(new GraphHistory.Change(start, initial));
+	}
+
+	// Command
+
+	/**
+	 * Record a change.
+	 * 
+	 * @param s
+	 *            The step of the change, greater or equal to the previous
+	 *            one.
+	 * @param v
+	 *            The new value, or {@link #REMOVED}.
+	 */
+	void set(double s, Object v) {
+		if (count > 0 && s == step)
+			undo();
+
+		if (v == value || (v != null && value != REMOVED && v.equals(value)))
+			return;
+
+		if (objects == null && v != REMOVED && !(v instanceof Double))
+			toObjects();
+
+		mark = length;
+		markStep = step;
+		markValue = value;
+		markStepBits = stepBits;
+		markValueBits = valueBits;
+
+		long bits = Double.doubleToLongBits(s);
+		write(bits ^ stepBits, v == REMOVED ? REMOVAL : 0);
+		stepBits = bits;
+
+		if (objects != null) {
+			if (count == objects.length)
+				objects = Arrays.copyOf(objects, count * 2);
+
+			objects[count] = v;
+		} else if (v != REMOVED) {
+			bits = Double.doubleToLongBits((Double) v);
+			write(bits ^ valueBits, 0);
+			valueBits = bits;
+		}
+
+		step = s;
+		value = v;
+		count++;
+	}
+
+	/**
+	 * Forget the changes that are not needed to know the value at the end of
+	 * a step and after.
+	 * 
+	 * @param horizon
+	 *            The step.
+	 * @return The number of changes kept.
+	 */
+	int compact(double horizon) {
+		double steps[] = new double[count];
+		Object values[] = new Object[count];
+		int first = -1;
+		int n = count;
+
+		Cursor cursor = new Cursor();
+
+		for (int i = 0; cursor.next(); i++) {
+			steps[i] = cursor.step;
+			values[i] = cursor.value;
+
+			if (cursor.step <= horizon)
+				first = i;
+		}
+
+		if (first >= 0 && values[first] == REMOVED)
+			first++;
+
+		if (first > 0) {
+			reset();
+
+			for (int i = first; i < n; i++)
+				set(steps[i], values[i]);
+		}
+
+		return count;
+	}
+
+	// Utility
+
+	protected void reset() {
+		length = 0;
+		count = 0;
+		objects = null;
+		value = REMOVED;
+		stepBits = 0;
+		valueBits = 0;
+	}
+
+	/**
+	 * Cancel the last change.
+	 */
+	protected void undo() {
+		length = mark;
+		count--;
+		step = markStep;
+		value = markValue;
+		stepBits = markStepBits;
+		valueBits = markValueBits;
+
+		if (objects != null)
+			objects[count] = null;
+	}
+
+	/**
+	 * Store the values as objects from now on.
+	 */
+	protected void toObjects() {
+		double steps[] = new double[count];
+		Object values[] = new Object[count];
+		int n = count;
+
+		Cursor cursor = new Cursor();
+
+		for (int i = 0; cursor.next(); i++) {
+			steps[i] = cursor.step;
+			values[i] = cursor.value;
+		}
+
+		reset();
+		objects = new Object[Math.max(4, n * 2)];
+
+		for (int i = 0; i < n; i++)
+			set(steps[i], values[i]);
+	}
+
+	/**
+	 * Write the bits that differ from a reference : a header byte with the
+	 * number of trailing zeros and the flags, then the remaining bits by
+	 * groups of seven.
+	 */
+	protected void write(long xor, int flags) {
+		int zeros = Long.numberOfTrailingZeros(xor);
+
+		if (length + 11 > data.length)
+			data = Arrays.copyOf(data, Math.max(length + 11,
+					data.length + (data.length >> 1)));
+
+		data[length++] = (byte) (zeros | flags);
+
+		if (zeros < 64) {
+			long v = xor >>> zeros;
+
+			while ((v & ~0x7FL) != 0) {
+				data[length++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+
+			data[length++] = (byte) v;
+		}
+	}
+
+	/**
+	 * Decodes the changes from the first one.
+	 */
+	protected class Cursor {
+		protected int position;
+
+		protected int index;
+
+		protected long stepBits;
+
+		protected long valueBits;
+
+		protected double step;
+
+		protected Object value;
+
+		protected boolean next() {
+			if (index >= count)
+				return false;
+
+			int header = data[position++] & 0xFF;
+			stepBits ^= read(header & 0x7F);
+			step = Double.longBitsToDouble(stepBits);
+
+			if (objects != null) {
+				value = objects[index];
+			} else if ((header & REMOVAL) != 0) {
+				value = REMOVED;
+			} else {
+				valueBits ^= read(data[position++] & 0x7F);
+				value = Double.longBitsToDouble(valueBits);
+			}
+
+			index++;
+			return true;
+		}
+
+		protected long read(int zeros) {
+			if (zeros == 64)
+				return 0;
+
+			long v = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+				b = data[position++];
+				v |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			return v << zeros;
+		}
+	}
+}
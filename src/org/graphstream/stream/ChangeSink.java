@@ -0,0 +1,126 @@
+/*
+ * This file is part of GraphStream.
+ * 
+ * GraphStream is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GraphStream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GraphStream.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream;
+
+/**
+ * A sink that runs an action each time the graph changes.
+ * 
+ * <p>
+ * The action is run, in the thread sending the events, when an element is
+ * added or removed, when an attribute of the graph or of an element is added,
+ * changed or removed, and when the graph is cleared. Steps are not changes.
+ * This is useful to invalidate a cache or to schedule a redraw, without
+ * writing fourteen identical methods.
+ * </p>
+ */
+public class ChangeSink implements Sink {
+	// Attribute
+
+	/**
+	 * The action run at each change.
+	 */
+	protected Runnable action;
+
+	// Construction
+
+	/**
+	 * New sink running the given action at each change.
+	 * 
+	 * @param action
+	 *            The action.
+	 */
+	public ChangeSink(Runnable action) {
+		this.action = action;
+	}
+
+	// Sink
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId,
+			String attribute, Object value) {
+		action.run();
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		action.run();
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		action.run();
+	}
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		action.run();
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		action.run();
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		action.run();
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId,
+			String attribute, Object value) {
+		action.run();
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		action.run();
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		action.run();
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		action.run();
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		action.run();
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		action.run();
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		action.run();
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		action.run();
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+	}
+}
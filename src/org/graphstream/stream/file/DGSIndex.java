@@ -0,0 +1,324 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.file;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Index of a DGS file, allowing to seek to any step.
+ * 
+ * <p>
+ * The index is written by {@link FileSinkDGS} when indexing is enabled, in a
+ * side-car file whose name is the DGS file name followed by
+ * {@link #INDEX_EXTENSION}. It is a binary file, starting with a magic number
+ * and a version, followed by a sequence of entries:
+ * <ul>
+ * <li>{@link #HEADER} followed by the byte offset of the end of the DGS header
+ * (long);</li>
+ * <li>{@link #STEP} followed by the step time stamp (double) and the byte
+ * offset of the "st" line in the DGS file (long);</li>
+ * <li>{@link #CHECKPOINT} followed by the index of the step it precedes (int),
+ * and the byte offset (long) and length (long) of a snapshot of the whole graph
+ * in the checkpoint file, whose name is the DGS file name followed by
+ * {@link #CHECKPOINT_EXTENSION}. The snapshot is a sequence of DGS events that
+ * rebuilds the graph as it was just before the step.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * An index may be truncated if the writer did not finish. In this case, the
+ * entries read are usable and the remaining steps can still be reached by
+ * reading forward.
+ * </p>
+ */
+public class DGSIndex {
+	// Constants
+
+	/**
+	 * Extension of the index file.
+	 */
+	public static final String INDEX_EXTENSION = ".idx";
+
+	/**
+	 * Extension of the checkpoint file.
+	 */
+	public static final String CHECKPOINT_EXTENSION = ".ckp";
+
+	/**
+	 * Magic number at the start of the index ("DGSI").
+	 */
+	public static final int MAGIC = 0x44475349;
+
+	/**
+	 * Version of the index format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Entry types.
+	 */
+	public static final byte HEADER = 'H', STEP = 'S', CHECKPOINT = 'C';
+
+	// Attribute
+
+	/**
+	 * Offset of the first event after the header.
+	 */
+	protected long headerEnd;
+
+	/**
+	 * Number of steps.
+	 */
+	protected int stepCount;
+
+	/**
+	 * Time stamp of each step.
+	 */
+	protected double[] steps = new double[1024];
+
+	/**
+	 * Offset of each step.
+	 */
+	protected long[] offsets = new long[1024];
+
+	/**
+	 * Number of checkpoints.
+	 */
+	protected int checkpointCount;
+
+	/**
+	 * Index of the step following each checkpoint, in increasing order.
+	 */
+	protected int[] checkpointSteps = new int[16];
+
+	/**
+	 * Offset of each checkpoint in the checkpoint file.
+	 */
+	protected long[] checkpointOffsets = new long[16];
+
+	/**
+	 * Length of each checkpoint in the checkpoint file.
+	 */
+	protected long[] checkpointLengths = new long[16];
+
+	// Construction
+
+	/**
+	 * Read the index of a DGS file.
+	 * 
+	 * @param dgsFileName
+	 *            The name of the DGS file (not of the index).
+	 * @throws IOException
+	 *             If the index cannot be read or is not an index.
+	 */
+	public DGSIndex(String dgsFileName) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(dgsFileName + INDEX_EXTENSION)));
+
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("not a DGS index");
+
+			if (in.readInt() != VERSION)
+				throw new IOException("unknown DGS index version");
+
+			read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	// Access
+
+	/**
+	 * Offset of the first event after the DGS header.
+	 * 
+	 * @return The byte offset.
+	 */
+	public long getHeaderEnd() {
+		return headerEnd;
+	}
+
+	/**
+	 * Number of steps indexed.
+	 * 
+	 * @return The step count.
+	 */
+	public int getStepCount() {
+		return stepCount;
+	}
+
+	/**
+	 * Time stamp of a step.
+	 * 
+	 * @param i
+	 *            The step index.
+	 * @return The time stamp given to the "st" event.
+	 */
+	public double getStep(int i) {
+		return steps[i];
+	}
+
+	/**
+	 * Offset of the "st" line of a step in the DGS file.
+	 * 
+	 * @param i
+	 *            The step index.
+	 * @return The byte offset.
+	 */
+	public long getStepOffset(int i) {
+		return offsets[i];
+	}
+
+	/**
+	 * Number of checkpoints.
+	 * 
+	 * @return The checkpoint count.
+	 */
+	public int getCheckpointCount() {
+		return checkpointCount;
+	}
+
+	/**
+	 * Index of the step preceded by a checkpoint.
+	 * 
+	 * @param c
+	 *            The checkpoint index.
+	 * @return The step index.
+	 */
+	public int getCheckpointStep(int c) {
+		return checkpointSteps[c];
+	}
+
+	/**
+	 * Offset of a checkpoint in the checkpoint file.
+	 * 
+	 * @param c
+	 *            The checkpoint index.
+	 * @return The byte offset.
+	 */
+	public long getCheckpointOffset(int c) {
+		return checkpointOffsets[c];
+	}
+
+	/**
+	 * Length in bytes of a checkpoint in the checkpoint file.
+	 * 
+	 * @param c
+	 *            The checkpoint index.
+	 * @return The length.
+	 */
+	public long getCheckpointLength(int c) {
+		return checkpointLengths[c];
+	}
+
+	/**
+	 * The last checkpoint preceding or at the given step.
+	 * 
+	 * @param step
+	 *            The step index.
+	 * @return The checkpoint index, or -1 if no checkpoint precedes the step.
+	 */
+	public int findCheckpoint(int step) {
+		int c = Arrays.binarySearch(checkpointSteps, 0, checkpointCount, step);
+
+		return c >= 0 ? c : -c - 2;
+	}
+
+	/**
+	 * The last step whose time stamp is lower or equal to the given time. The
+	 * time stamps must be increasing.
+	 * 
+	 * @param time
+	 *            The time stamp.
+	 * @return The step index, or -1 if all the steps are after the given time.
+	 */
+	public int findStep(double time) {
+		int i = Arrays.binarySearch(steps, 0, stepCount, time);
+
+		if (i >= 0) {
+			while (i + 1 < stepCount && steps[i + 1] == time)
+				i++;
+
+			return i;
+		}
+
+		return -i - 2;
+	}
+
+	// Command
+
+	protected void read(DataInputStream in) throws IOException {
+		try {
+			while (true) {
+				byte type = in.readByte();
+
+				if (type == HEADER) {
+					headerEnd = in.readLong();
+				} else if (type == STEP) {
+					double step = in.readDouble();
+					long offset = in.readLong();
+
+					if (stepCount == steps.length) {
+						steps = Arrays.copyOf(steps, stepCount * 2);
+						offsets = Arrays.copyOf(offsets, stepCount * 2);
+					}
+
+					steps[stepCount] = step;
+					offsets[stepCount] = offset;
+					stepCount++;
+				} else if (type == CHECKPOINT) {
+					int step = in.readInt();
+					long offset = in.readLong();
+					long length = in.readLong();
+
+					if (checkpointCount == checkpointSteps.length) {
+						int n = checkpointCount * 2;
+						checkpointSteps = Arrays.copyOf(checkpointSteps, n);
+						checkpointOffsets = Arrays.copyOf(checkpointOffsets, n);
+						checkpointLengths = Arrays.copyOf(checkpointLengths, n);
+					}
+
+					checkpointSteps[checkpointCount] = step;
+					checkpointOffsets[checkpointCount] = offset;
+					checkpointLengths[checkpointCount] = length;
+					checkpointCount++;
+				} else {
+					throw new IOException("corrupted DGS index");
+				}
+			}
+		} catch (EOFException e) {
+			// End of the index, possibly truncated.
+		}
+
+		// A checkpoint whose step was not written is unusable.
+
+		while (checkpointCount > 0
+				&& checkpointSteps[checkpointCount - 1] >= stepCount)
+			checkpointCount--;
+	}
+}
@@ -22,9 +22,14 @@
 
 package org.graphstream.stream.file;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.Graph;
@@ -66,8 +71,46 @@ import org.graphstream.graph.Node;
  * will be textual.</li>
  * </ul>
  * </p>
+ * 
+ * <p>
+ * The output can be compressed on the fly (see
+ * {@link #setCompression(Compression)}). The compression is applied by the
+ * default {@link #createOutputStream(String)} and
+ * {@link #createOutputStream(OutputStream)} methods, under the print stream,
+ * so that implementations do not have to care about it. File sources detect
+ * compressed files by themselves.
+ * </p>
  */
 public abstract class FileSinkBase implements FileSink {
+	/**
+	 * Compression applied to the output.
+	 */
+	public static enum Compression {
+		/**
+		 * No compression.
+		 */
+		NONE,
+		/**
+		 * The gzip format, with the default compression level.
+		 */
+		GZIP,
+		/**
+		 * The gzip format, with the fastest compression level. Files are
+		 * larger but writing costs far less CPU time, which suits long
+		 * recordings.
+		 */
+		GZIP_FAST,
+		/**
+		 * The zlib (deflate) format, without the gzip header.
+		 */
+		DEFLATE
+	}
+
+	/**
+	 * Size of the buffers put around the compressor.
+	 */
+	protected static final int BUFFER_SIZE = 65536;
+
 	// Attribute
 
 	/**
@@ -75,8 +118,44 @@ public abstract class FileSinkBase implements FileSink {
 	 */
 	protected OutputStream output;
 
+	/**
+	 * Compression of the output.
+	 */
+	protected Compression compression = Compression.NONE;
+
+	// Access
+
+	/**
+	 * Compression applied to the output.
+	 * 
+	 * @return The compression, {@link Compression#NONE} by default.
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
 	// Command
 
+	/**
+	 * Set the compression applied to the output the next time one of the
+	 * begin() or writeAll() methods is called.
+	 * 
+	 * <p>
+	 * The compressed stream is flushed each time {@link #flush()} is called,
+	 * so that the data already written can be read back while the output is
+	 * still open. Flushing often therefore degrades the compression ratio.
+	 * </p>
+	 * 
+	 * @param compression
+	 *            The compression, {@link Compression#NONE} to disable it.
+	 */
+	public void setCompression(Compression compression) {
+		if (compression == null)
+			compression = Compression.NONE;
+
+		this.compression = compression;
+	}
+
 	public void writeAll(Graph graph, String fileName) throws IOException {
 		begin(fileName);
 		exportGraph(graph);
@@ -186,7 +265,8 @@ public abstract class FileSinkBase implements FileSink {
 	 */
 	protected OutputStream createOutputStream(String fileName)
 			throws IOException {
-		return new PrintStream(fileName);
+		return new PrintStream(compress(new BufferedOutputStream(
+				new FileOutputStream(fileName), BUFFER_SIZE)));
 	}
 
 	/**
@@ -194,7 +274,8 @@ public abstract class FileSinkBase implements FileSink {
 	 * method if the default PrintStream does not suits your needs. This method
 	 * is called by {@link #begin(OutputStream)} and
 	 * {@link #writeAll(Graph, OutputStream)}. This method does not create an
-	 * output stream if the given stream is already instance of PrintStream.
+	 * output stream if the given stream is already instance of PrintStream and
+	 * the output is not compressed.
 	 * 
 	 * @param stream
 	 *            An already existing output stream.
@@ -204,9 +285,45 @@ public abstract class FileSinkBase implements FileSink {
 	 */
 	protected OutputStream createOutputStream(OutputStream stream)
 			throws IOException {
-		if (stream instanceof PrintStream)
+		if (stream instanceof PrintStream && compression == Compression.NONE)
 			return stream;
 
-		return new PrintStream(stream);
+		return new PrintStream(compress(stream));
+	}
+
+	/**
+	 * Wrap a stream in a compressor according to the current compression. The
+	 * compressor is itself buffered, since compressing small writes is
+	 * expensive.
+	 * 
+	 * @param stream
+	 *            The stream receiving the compressed data.
+	 * @return The stream to write to, the given stream if there is no
+	 *         compression.
+	 * @throws IOException
+	 *             If any I/O error occurs.
+	 */
+	protected OutputStream compress(OutputStream stream) throws IOException {
+		OutputStream compressor;
+
+		switch (compression) {
+		case GZIP:
+			compressor = new GZIPOutputStream(stream, BUFFER_SIZE, true);
+			break;
+		case GZIP_FAST:
+			compressor = new GZIPOutputStream(stream, BUFFER_SIZE, true) {
+				{
+					def.setLevel(Deflater.BEST_SPEED);
+				}
+			};
+			break;
+		case DEFLATE:
+			compressor = new DeflaterOutputStream(stream, true);
+			break;
+		default:
+			return stream;
+		}
+
+		return new BufferedOutputStream(compressor, BUFFER_SIZE);
 	}
 }
\ No newline at end of file
@@ -22,17 +22,55 @@
 
 package org.graphstream.stream.file;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.HashMap;
 import java.util.Locale;
 
 import org.graphstream.graph.CompoundAttribute;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.DefaultGraph;
 
 /**
  * File output for the DGS (Dynamic Graph Stream) file format.
+ * 
+ * <p>
+ * When writing to a file, this sink can also write an index of the file
+ * allowing {@link FileSourceDGSIndexed} to jump directly to any step (see
+ * {@link #setIndexed(boolean)}). The index is made of two side-car files, the
+ * file name followed by {@link DGSIndex#INDEX_EXTENSION} that stores the byte
+ * offset of each step, and the file name followed by
+ * {@link DGSIndex#CHECKPOINT_EXTENSION} that stores periodic snapshots of the
+ * whole graph (see {@link #setCheckpointInterval(int)}). To produce these
+ * snapshots, the sink maintains its own copy of the graph. Offsets in a
+ * compressed file are meaningless, therefore the index is not written when
+ * the output is compressed.
+ * </p>
+ * 
+ * <p>
+ * Each event is formatted in a line buffer reused from one event to the other
+ * and encoded directly into the output, so that writing an event does not
+ * create temporary strings (excepted for the values of attributes that are
+ * neither strings, numbers nor arrays or maps of these).
+ * </p>
  */
 public class FileSinkDGS extends FileSinkBase {
+	/**
+	 * End of line, the same as the one of the "%n" format.
+	 */
+	protected static final String EOL = System.getProperty("line.separator");
+
 	// Attribute
 
 	/**
@@ -40,10 +78,161 @@ public class FileSinkDGS extends FileSinkBase {
 	 */
 	protected PrintStream out;
 
+	/**
+	 * The event being formatted.
+	 */
+	protected StringBuilder line = new StringBuilder(256);
+
+	/**
+	 * Characters of the event, given to the encoder.
+	 */
+	protected char[] chars = new char[256];
+
+	/**
+	 * View of {@link #chars} for the encoder.
+	 */
+	protected CharBuffer charBuffer = CharBuffer.wrap(chars);
+
+	/**
+	 * Bytes produced by the encoder.
+	 */
+	protected ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
+
+	/**
+	 * Encoder using the same charset as the print stream.
+	 */
+	protected CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
 	protected String graphName = "";
 
+	/**
+	 * Write the side-car index when writing to a file?
+	 */
+	protected boolean indexed = false;
+
+	/**
+	 * Number of steps between two checkpoints, zero for no checkpoint.
+	 */
+	protected int checkpointInterval = 1000;
+
+	/**
+	 * Counts the bytes written in the DGS file, null if not indexed.
+	 */
+	protected CountingOutputStream counter;
+
+	/**
+	 * Output of the index, null if not indexed.
+	 */
+	protected DataOutputStream index;
+
+	/**
+	 * Writes the checkpoints, null if no checkpoint.
+	 */
+	protected FileSinkDGS checkpoints;
+
+	/**
+	 * Counts the bytes written in the checkpoint file.
+	 */
+	protected CountingOutputStream checkpointCounter;
+
+	/**
+	 * Copy of the graph used to write the checkpoints.
+	 */
+	protected Graph mirror;
+
+	/**
+	 * Time of the events sent to the mirror. The events received may not be
+	 * ordered in time (for example, edges removed with their node), so the
+	 * mirror is given its own time to accept all of them.
+	 */
+	protected long mirrorTime;
+
+	/**
+	 * Number of steps written.
+	 */
+	protected int stepCount;
+
+	/**
+	 * The error met while writing the index, after which the index is no more
+	 * written. It is thrown by the next {@link #flush()} or {@link #end()}.
+	 */
+	protected IOException indexFailure;
+
+	// Access
+
+	/**
+	 * Is the side-car index written when writing to a file?
+	 * 
+	 * @return True if indexed.
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * Number of steps between two snapshots of the whole graph in the index.
+	 * 
+	 * @return The checkpoint interval, zero if there is no checkpoint.
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
 	// Command
 
+	/**
+	 * Write or not the side-car index the next time {@link #begin(String)} or
+	 * {@link #writeAll(Graph, String)} is called. The index is never written
+	 * when writing to a stream or when the output is compressed.
+	 * 
+	 * @param on
+	 *            If true, write the index.
+	 */
+	public void setIndexed(boolean on) {
+		indexed = on;
+	}
+
+	/**
+	 * Set the number of steps between two snapshots of the whole graph. A
+	 * small interval makes seeking faster but the checkpoint file larger.
+	 * 
+	 * @param steps
+	 *            The interval, zero to write no checkpoint.
+	 */
+	public void setCheckpointInterval(int steps) {
+		checkpointInterval = steps;
+	}
+
+	@Override
+	protected OutputStream createOutputStream(String fileName)
+			throws IOException {
+		if (!indexed || compression != Compression.NONE)
+			return super.createOutputStream(fileName);
+
+		counter = new CountingOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName)));
+		index = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName + DGSIndex.INDEX_EXTENSION)));
+		stepCount = 0;
+		indexFailure = null;
+
+		index.writeInt(DGSIndex.MAGIC);
+		index.writeInt(DGSIndex.VERSION);
+
+		if (checkpointInterval > 0) {
+			checkpointCounter = new CountingOutputStream(
+					new BufferedOutputStream(new FileOutputStream(fileName
+							+ DGSIndex.CHECKPOINT_EXTENSION)));
+			checkpoints = new FileSinkDGS();
+			checkpoints.begin(checkpointCounter);
+			mirror = new DefaultGraph("checkpoints", false, true);
+		}
+
+		return new PrintStream(counter);
+	}
+
 	@Override
 	protected void outputHeader() throws IOException {
 		out = (PrintStream) output;
@@ -54,11 +243,93 @@ public class FileSinkDGS extends FileSinkBase {
 			out.printf("null 0 0%n");
 		else
 			out.printf("\"%s\" 0 0%n", graphName);
+
+		if (index != null) {
+			index.writeByte(DGSIndex.HEADER);
+			index.writeLong(counter.getCount());
+		}
 	}
 
 	@Override
 	protected void outputEndOfFile() throws IOException {
-		// NOP
+		if (index != null) {
+			try {
+				index.close();
+			} catch (IOException e) {
+				if (indexFailure == null)
+					indexFailure = e;
+			}
+
+			index = null;
+			counter = null;
+		}
+
+		if (checkpoints != null) {
+			checkpoints.end();
+			checkpoints = null;
+			checkpointCounter = null;
+			mirror = null;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+
+		if (indexFailure != null)
+			throw indexFailure;
+
+		if (index != null)
+			index.flush();
+
+		if (checkpoints != null)
+			checkpoints.flush();
+	}
+
+	/**
+	 * Close the file, its index and its checkpoints.
+	 * 
+	 * @throws IOException
+	 *             If the file could not be written, or if the index could not
+	 *             be written during the events, in which case the file is
+	 *             closed but cannot be used to seek.
+	 */
+	@Override
+	public void end() throws IOException {
+		super.end();
+
+		IOException failure = indexFailure;
+
+		indexFailure = null;
+
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Add the current step to the index, and write a checkpoint if needed.
+	 * This is called before the step is written. As events cannot throw
+	 * errors, an error stops the index and is kept in {@link #indexFailure}.
+	 */
+	protected void indexStep(double step) {
+		try {
+			if (checkpoints != null && stepCount % checkpointInterval == 0) {
+				long start = checkpointCounter.getCount();
+				checkpoints.exportGraph(mirror);
+
+				index.writeByte(DGSIndex.CHECKPOINT);
+				index.writeInt(stepCount);
+				index.writeLong(start);
+				index.writeLong(checkpointCounter.getCount() - start);
+			}
+
+			index.writeByte(DGSIndex.STEP);
+			index.writeDouble(step);
+			index.writeLong(counter.getCount());
+			stepCount++;
+		} catch (IOException e) {
+			indexFailure = e;
+		}
 	}
 
 	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
@@ -68,14 +339,26 @@ public class FileSinkDGS extends FileSinkBase {
 
 	public void edgeAttributeChanged(String graphId, long timeId,
 			String edgeId, String attribute, Object oldValue, Object newValue) {
-		out.printf("ce \"%s\" %s%n", edgeId,
-				attributeString(attribute, newValue, false));
+		if (mirror != null)
+			mirror.edgeAttributeChanged(graphId, mirrorTime++, edgeId,
+					attribute, oldValue, newValue);
+
+		line.append("ce ");
+		appendString(edgeId);
+		appendAttribute(attribute, newValue, false);
+		writeLine();
 	}
 
 	public void edgeAttributeRemoved(String graphId, long timeId,
 			String edgeId, String attribute) {
-		out.printf("ce \"%s\" %s%n", edgeId,
-				attributeString(attribute, null, true));
+		if (mirror != null)
+			mirror.edgeAttributeRemoved(graphId, mirrorTime++, edgeId,
+					attribute);
+
+		line.append("ce ");
+		appendString(edgeId);
+		appendAttribute(attribute, null, true);
+		writeLine();
 	}
 
 	public void graphAttributeAdded(String graphId, long timeId,
@@ -85,12 +368,23 @@ public class FileSinkDGS extends FileSinkBase {
 
 	public void graphAttributeChanged(String graphId, long timeId,
 			String attribute, Object oldValue, Object newValue) {
-		out.printf("cg %s%n", attributeString(attribute, newValue, false));
+		if (mirror != null)
+			mirror.graphAttributeChanged(graphId, mirrorTime++, attribute,
+					oldValue, newValue);
+
+		line.append("cg");
+		appendAttribute(attribute, newValue, false);
+		writeLine();
 	}
 
 	public void graphAttributeRemoved(String graphId, long timeId,
 			String attribute) {
-		out.printf("cg %s%n", attributeString(attribute, null, true));
+		if (mirror != null)
+			mirror.graphAttributeRemoved(graphId, mirrorTime++, attribute);
+
+		line.append("cg");
+		appendAttribute(attribute, null, true);
+		writeLine();
 	}
 
 	public void nodeAttributeAdded(String graphId, long timeId, String nodeId,
@@ -100,134 +394,269 @@ public class FileSinkDGS extends FileSinkBase {
 
 	public void nodeAttributeChanged(String graphId, long timeId,
 			String nodeId, String attribute, Object oldValue, Object newValue) {
-		out.printf("cn \"%s\" %s%n", nodeId,
-				attributeString(attribute, newValue, false));
+		if (mirror != null)
+			mirror.nodeAttributeChanged(graphId, mirrorTime++, nodeId,
+					attribute, oldValue, newValue);
+
+		line.append("cn ");
+		appendString(nodeId);
+		appendAttribute(attribute, newValue, false);
+		writeLine();
 	}
 
 	public void nodeAttributeRemoved(String graphId, long timeId,
 			String nodeId, String attribute) {
-		out.printf("cn \"%s\" %s%n", nodeId,
-				attributeString(attribute, null, true));
+		if (mirror != null)
+			mirror.nodeAttributeRemoved(graphId, mirrorTime++, nodeId,
+					attribute);
+
+		line.append("cn ");
+		appendString(nodeId);
+		appendAttribute(attribute, null, true);
+		writeLine();
 	}
 
 	public void edgeAdded(String graphId, long timeId, String edgeId,
 			String fromNodeId, String toNodeId, boolean directed) {
-		out.printf("ae \"%s\" \"%s\" %s \"%s\"%n", edgeId, fromNodeId,
-				directed ? ">" : "", toNodeId);
+		if (mirror != null)
+			mirror.edgeAdded(graphId, mirrorTime++, edgeId, fromNodeId,
+					toNodeId, directed);
+
+		line.append("ae ");
+		appendString(edgeId);
+		line.append(' ');
+		appendString(fromNodeId);
+		line.append(directed ? " > " : " ");
+		appendString(toNodeId);
+		writeLine();
 	}
 
 	public void edgeRemoved(String graphId, long timeId, String edgeId) {
-		out.printf("de \"%s\"%n", edgeId);
+		if (mirror != null)
+			mirror.edgeRemoved(graphId, mirrorTime++, edgeId);
+
+		line.append("de ");
+		appendString(edgeId);
+		writeLine();
 	}
 
 	public void graphCleared(String graphId, long timeId) {
-		out.printf("clear%n");
+		if (mirror != null)
+			mirror.graphCleared(graphId, mirrorTime++);
+
+		line.append("clear");
+		writeLine();
 	}
 
 	public void nodeAdded(String graphId, long timeId, String nodeId) {
-		out.printf("an \"%s\"%n", nodeId);
+		if (mirror != null)
+			mirror.nodeAdded(graphId, mirrorTime++, nodeId);
+
+		line.append("an ");
+		appendString(nodeId);
+		writeLine();
 	}
 
 	public void nodeRemoved(String graphId, long timeId, String nodeId) {
-		out.printf("dn \"%s\"%n", nodeId);
+		if (mirror != null)
+			mirror.nodeRemoved(graphId, mirrorTime++, nodeId);
+
+		line.append("dn ");
+		appendString(nodeId);
+		writeLine();
 	}
 
 	public void stepBegins(String graphId, long timeId, double step) {
-		out.printf(Locale.US, "st %f%n", step);
+		if (index != null && indexFailure == null)
+			indexStep(step);
+
+		if (mirror != null)
+			mirror.stepBegins(graphId, mirrorTime++, step);
+
+		line.append("st ");
+		appendNumber(step);
+		writeLine();
 	}
 
 	// Utility
 
-	protected String attributeString(String key, Object value, boolean remove) {
-		if (key == null || key.length() == 0)
-			return null;
+	/**
+	 * Encode the current line, followed by an end of line, into the output
+	 * and empty it for the next event.
+	 */
+	protected void writeLine() {
+		line.append(EOL);
 
-		if (remove) {
-			return String.format(" -\"%s\"", key);
-		} else {
-			if (value != null && value.getClass().isArray()) {
-				Object[] values = (Object[]) value;
-				StringBuffer sb = new StringBuffer();
+		int n = line.length();
+
+		if (n > chars.length) {
+			chars = new char[Math.max(n, chars.length * 2)];
+			charBuffer = CharBuffer.wrap(chars);
+		}
 
-				sb.append(String.format(" \"%s\":", key));
+		line.getChars(0, n, chars, 0);
+		line.setLength(0);
+		charBuffer.clear();
+		charBuffer.limit(n);
+		encoder.reset();
 
-				if (values.length > 0)
-					sb.append(valueString(values[0]));
-				else
-					sb.append("\"\"");
+		CoderResult result;
 
-				for (int i = 1; i < values.length; ++i)
-					sb.append(String.format(",%s", valueString(values[i])));
+		do {
+			result = encoder.encode(charBuffer, byteBuffer, true);
+			writeBytes();
+		} while (result.isOverflow());
 
-				return sb.toString();
-			} else {
-				return String.format(" \"%s\":%s", key, valueString(value));
-			}
+		while (encoder.flush(byteBuffer).isOverflow())
+			writeBytes();
+
+		writeBytes();
+	}
+
+	/**
+	 * Write the bytes encoded so far and empty the byte buffer.
+	 */
+	protected void writeBytes() {
+		if (byteBuffer.position() > 0) {
+			out.write(byteBuffer.array(), 0, byteBuffer.position());
+			byteBuffer.clear();
+		}
+	}
+
+	/**
+	 * Append a quoted string to the current line.
+	 */
+	protected void appendString(CharSequence string) {
+		line.append('"').append(string).append('"');
+	}
+
+	/**
+	 * Append a real number to the current line, with six decimals, like the
+	 * "%f" format does, but without creating any string.
+	 */
+	protected void appendNumber(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)
+				|| Math.abs(value) >= 1e12) {
+			line.append(String.format(Locale.US, "%f", value));
+			return;
 		}
+
+		if (value < 0 || (value == 0 && 1 / value < 0)) {
+			line.append('-');
+			value = -value;
+		}
+
+		long scaled = Math.round(value * 1e6);
+		int decimals = (int) (scaled % 1000000);
+
+		line.append(scaled / 1000000).append('.');
+
+		for (int d = 100000; d > decimals && d > 1; d /= 10)
+			line.append('0');
+
+		line.append(decimals);
 	}
 
-	protected String valueString(Object value) {
+	/**
+	 * Append an attribute, preceded by a space, to the current line. Nothing is
+	 * appended if the key is empty.
+	 */
+	protected void appendAttribute(String key, Object value, boolean remove) {
+		if (key == null || key.length() == 0)
+			return;
+
+		line.append(' ');
+
+		if (remove) {
+			line.append('-');
+			appendString(key);
+		} else {
+			appendString(key);
+			line.append(':');
+
+			if (value instanceof Object[] && ((Object[]) value).length == 0)
+				line.append("\"\"");
+			else
+				appendValue(value);
+		}
+	}
+
+	/**
+	 * Append a value to the current line. Arrays are written as a comma
+	 * separated list of values.
+	 */
+	protected void appendValue(Object value) {
 		if (value instanceof CharSequence) {
-			return String.format("\"%s\"", (CharSequence) value);
+			appendString((CharSequence) value);
 		} else if (value instanceof Number) {
 			if (value instanceof Integer || value instanceof Short
-					|| value instanceof Byte || value instanceof Long) {
-				return String.format(Locale.US, "%d",
-						((Number) value).longValue());
-			} else if (value instanceof Float || value instanceof Double) {
-				return String.format(Locale.US, "%f",
-						((Number) value).doubleValue());
-			} else if (value instanceof Character) {
-				return String.format("\"%c\"", ((Character) value).charValue());
-			} else if (value instanceof Boolean) {
-				return String.format(Locale.US, "\"%b\"", ((Boolean) value));
-			} else {
-				return String.format(Locale.US, " %f",
-						((Number) value).doubleValue());
-			}
+					|| value instanceof Byte || value instanceof Long)
+				line.append(((Number) value).longValue());
+			else
+				appendNumber(((Number) value).doubleValue());
+		} else if (value instanceof Character) {
+			line.append('"').append(((Character) value).charValue())
+					.append('"');
+		} else if (value instanceof Boolean) {
+			line.append('"').append(((Boolean) value).booleanValue())
+					.append('"');
 		} else if (value == null) {
-			return "\"\"";
+			line.append("\"\"");
 		} else if (value instanceof Object[]) {
 			Object array[] = (Object[]) value;
-			int n = array.length;
-			StringBuffer sb = new StringBuffer();
 
-			if (array.length > 0)
-				sb.append(valueString(array[0]));
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0)
+					line.append(',');
 
-			for (int i = 1; i < n; i++) {
-				sb.append(",");
-				sb.append(valueString(array[i]));
+				appendValue(array[i]);
 			}
+		} else if (value instanceof HashMap<?, ?>) {
+			appendHash((HashMap<?, ?>) value);
+		} else if (value instanceof CompoundAttribute) {
+			appendHash(((CompoundAttribute) value).toHashMap());
+		} else {
+			appendString(value.toString());
+		}
+	}
 
-			return sb.toString();
-		} else if (value instanceof HashMap<?, ?>
-				|| value instanceof CompoundAttribute) {
-			HashMap<?, ?> hash;
+	/**
+	 * Append a set of attributes between brackets to the current line.
+	 */
+	protected void appendHash(HashMap<?, ?> hash) {
+		line.append('[');
 
-			if (value instanceof CompoundAttribute)
-				hash = ((CompoundAttribute) value).toHashMap();
-			else
-				hash = (HashMap<?, ?>) value;
+		for (Object key : hash.keySet())
+			appendAttribute(key.toString(), hash.get(key), false);
 
-			return hashToString(hash);
-		} else {
-			return String.format("\"%s\"", value.toString());
-		}
+		line.append(" ]");
 	}
 
-	protected String hashToString(HashMap<?, ?> hash) {
-		StringBuffer sb = new StringBuffer();
+	/**
+	 * Output stream that counts the bytes written, to know the offset of each
+	 * step in the file.
+	 */
+	protected static class CountingOutputStream extends FilterOutputStream {
+		protected long count = 0;
 
-		sb.append("[ ");
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
 
-		for (Object key : hash.keySet()) {
-			sb.append(attributeString(key.toString(), hash.get(key), false));
-			sb.append(" ");
+		public long getCount() {
+			return count;
 		}
 
-		sb.append(']');
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
 
-		return sb.toString();
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
 	}
 }
\ No newline at end of file
@@ -30,6 +30,12 @@ package org.graphstream.stream.file;
  * tries to analyze the extension and propose the writer according to this
  * extension.
  * </p>
+ * 
+ * <p>
+ * A ".gz" or ".z" extension following the format extension selects the gzip or
+ * zlib compression of the output (see
+ * {@link FileSinkBase#setCompression(FileSinkBase.Compression)}).
+ * </p>
  */
 public class FileSinkFactory {
 	/**
@@ -42,20 +48,30 @@ public class FileSinkFactory {
 	 */
 	public static FileSink sinkFor(String filename) {
 		// String fc = new String( filename );
+		FileSinkBase.Compression compression = FileSinkBase.Compression.NONE;
+		FileSinkBase sink = null;
 		filename = filename.toLowerCase();
 
-		if (filename.endsWith(".dgs"))
-			return new FileSinkDGS();
-
-		if (filename.endsWith(".gml"))
-			return new FileSinkGML();
+		if (filename.endsWith(".gz")) {
+			compression = FileSinkBase.Compression.GZIP;
+			filename = filename.substring(0, filename.length() - 3);
+		} else if (filename.endsWith(".z")) {
+			compression = FileSinkBase.Compression.DEFLATE;
+			filename = filename.substring(0, filename.length() - 2);
+		}
 
-		if (filename.endsWith(".dot"))
-			return new FileSinkDOT();
+		if (filename.endsWith(".dgs"))
+			sink = new FileSinkDGS();
+		else if (filename.endsWith(".gml"))
+			sink = new FileSinkGML();
+		else if (filename.endsWith(".dot"))
+			sink = new FileSinkDOT();
+		else if (filename.endsWith(".svg"))
+			sink = new FileSinkSVG();
 
-		if (filename.endsWith(".svg"))
-			return new FileSinkSVG();
+		if (sink != null)
+			sink.setCompression(compression);
 
-		return null;
+		return sink;
 	}
 }
\ No newline at end of file
@@ -22,9 +22,10 @@
 
 package org.graphstream.stream.file;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -33,6 +34,10 @@ import java.io.StreamTokenizer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.graphstream.stream.SourceBase;
 import org.graphstream.ui.geom.Bounds3;
@@ -62,6 +67,12 @@ import org.graphstream.ui.geom.Point3;
 abstract class FileSourceBase extends SourceBase implements FileSource {
 	// Attributes
 
+	/**
+	 * Number of bytes inflated to check that a stream starting with a zlib
+	 * signature is really compressed, see {@link #decompress(InputStream)}.
+	 */
+	static final int PROBE = 512;
+
 	/**
 	 * The quote character. Can be changed in descendants.
 	 */
@@ -345,7 +356,8 @@ abstract class FileSourceBase extends SourceBase implements FileSource {
 	 */
 	protected StreamTokenizer createTokenizerFrom(String file)
 			throws IOException {
-		return new StreamTokenizer(new BufferedReader(new FileReader(file)));
+		return new StreamTokenizer(new BufferedReader(new InputStreamReader(
+				decompress(new FileInputStream(file)))));
 	}
 
 	/**
@@ -360,7 +372,7 @@ abstract class FileSourceBase extends SourceBase implements FileSource {
 	protected StreamTokenizer createTokenizerFrom(InputStream stream)
 			throws IOException {
 		return new StreamTokenizer(new BufferedReader(new InputStreamReader(
-				stream)));
+				decompress(stream))));
 	}
 
 	/**
@@ -377,6 +389,83 @@ abstract class FileSourceBase extends SourceBase implements FileSource {
 		return new StreamTokenizer(new BufferedReader(reader));
 	}
 
+	/**
+	 * Look at the first bytes of a stream and, if they are the signature of a
+	 * gzip or zlib (deflate) stream, as written by {@link FileSinkBase} when
+	 * compression is enabled, return a stream that uncompresses it. Else the
+	 * stream is returned as is. The stream is buffered if it does not support
+	 * marks, since the signature has to be read without consuming it.
+	 * 
+	 * <p>
+	 * A zlib signature is only two bytes, and some of them are also text, for
+	 * example "x^". A stream starting with a zlib signature is therefore only
+	 * uncompressed if its first {@link #PROBE} bytes also inflate without
+	 * error, else it is read as text.
+	 * </p>
+	 * 
+	 * @param stream
+	 *            The stream, compressed or not.
+	 * @return A stream giving the uncompressed data.
+	 * @throws IOException
+	 *             If any I/O error occurs.
+	 */
+	static InputStream decompress(InputStream stream) throws IOException {
+		if (!stream.markSupported())
+			stream = new BufferedInputStream(stream);
+
+		stream.mark(2);
+		int b0 = stream.read();
+		int b1 = stream.read();
+		stream.reset();
+
+		if (b0 == 0x1F && b1 == 0x8B)
+			return new GZIPInputStream(stream, 65536);
+
+		if (b0 == 0x78
+				&& (b1 == 0x01 || b1 == 0x5E || b1 == 0x9C || b1 == 0xDA)
+				&& inflates(stream))
+			return new InflaterInputStream(stream);
+
+		return stream;
+	}
+
+	/**
+	 * Do the first bytes of a stream inflate without error, and does the
+	 * stream end where the compressed data ends if it is shorter than
+	 * {@link #PROBE} ? The stream must support marks, it is reset to its
+	 * start.
+	 */
+	static boolean inflates(InputStream stream) throws IOException {
+		byte in[] = new byte[PROBE];
+		byte out[] = new byte[PROBE * 4];
+		Inflater inflater = new Inflater();
+		int n = 0;
+		int r;
+
+		stream.mark(PROBE);
+
+		while (n < PROBE && (r = stream.read(in, n, PROBE - n)) > 0)
+			n += r;
+
+		stream.reset();
+		inflater.setInput(in, 0, n);
+
+		try {
+			while (!inflater.finished() && !inflater.needsInput()
+					&& !inflater.needsDictionary())
+				inflater.inflate(out);
+
+			// A stream shorter than the probe must be complete.
+
+			return inflater.finished()
+					|| (inflater.needsInput() && n == PROBE);
+		} catch (DataFormatException e) {
+			return false;
+		} finally {
+			inflater.end();
+		}
+	}
+
 	/**
 	 * Method to override to configure the tokenizer behaviour. It is called
 	 * each time a tokenizer is created (for the parsed file and all included
@@ -22,17 +22,13 @@
 
 package org.graphstream.stream.file;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Class responsible for parsing files in the DGS format.
@@ -463,28 +459,6 @@ public class FileSourceDGS extends FileSourceBase {
 	protected void continueParsingInInclude() throws IOException {
 	}
 
-	@Override
-	protected StreamTokenizer createTokenizerFrom(String file)
-			throws IOException {
-		InputStream is = null;
-
-		try {
-			is = new GZIPInputStream(new FileInputStream(file));
-		} catch (IOException e) {
-			is = new FileInputStream(file);
-		}
-
-		return new StreamTokenizer(
-				new BufferedReader(new InputStreamReader(is)));
-	}
-
-	@Override
-	protected StreamTokenizer createTokenizerFrom(InputStream stream)
-			throws IOException {
-		return new StreamTokenizer(new BufferedReader(new InputStreamReader(
-				stream)));
-	}
-
 	@Override
 	protected void configureTokenizer(StreamTokenizer tok) throws IOException {
 		if (COMMENT_CHAR > 0)
@@ -0,0 +1,343 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A DGS file source that can jump to any step.
+ * 
+ * <p>
+ * This source reads a DGS file written by {@link FileSinkDGS} with indexing
+ * enabled. In addition to the usual forward reading with
+ * {@link #nextEvents()} and {@link #nextStep()}, it allows to jump to any step
+ * with {@link #seek(int)} or {@link #seekTime(double)}. To do so, the sinks
+ * are sent a "graph cleared" event, then the nearest checkpoint preceding the
+ * requested step is replayed, and the file is read forward from this
+ * checkpoint up to the requested step. Seeking backward and forward is
+ * therefore possible for interactive scrubbing in long traces, and the cost
+ * of a seek is bounded by the checkpoint interval.
+ * </p>
+ * 
+ * <p>
+ * The DGS and checkpoint files are read with positional reads on a
+ * {@link FileChannel}. Such reads do not modify the channel position, so
+ * several sources can share the same channels and index, see
+ * {@link #FileSourceDGSIndexed(FileChannel, FileChannel, DGSIndex)}.
+ * </p>
+ */
+public class FileSourceDGSIndexed extends FileSourceDGS {
+	// Attribute
+
+	/**
+	 * The index of the file.
+	 */
+	protected DGSIndex index;
+
+	/**
+	 * The DGS file.
+	 */
+	protected FileChannel channel;
+
+	/**
+	 * The checkpoint file, null if there are no checkpoints.
+	 */
+	protected FileChannel checkpointChannel;
+
+	/**
+	 * True if the channels where opened by this source and must be closed at
+	 * the end.
+	 */
+	protected boolean ownChannels = false;
+
+	/**
+	 * Index of the last step read, -1 if no step was read.
+	 */
+	protected int currentStep = -1;
+
+	// Construction
+
+	/**
+	 * New seekable source. The file, index and checkpoints are opened by
+	 * {@link #begin(String)}.
+	 */
+	public FileSourceDGSIndexed() {
+	}
+
+	/**
+	 * New seekable source sharing already opened channels and index with other
+	 * sources. The channels are not closed by {@link #end()}. Call
+	 * {@link #begin()} to start reading.
+	 * 
+	 * @param channel
+	 *            The DGS file.
+	 * @param checkpointChannel
+	 *            The checkpoint file, or null if not available.
+	 * @param index
+	 *            The index of the DGS file.
+	 */
+	public FileSourceDGSIndexed(FileChannel channel,
+			FileChannel checkpointChannel, DGSIndex index) {
+		this.channel = channel;
+		this.checkpointChannel = checkpointChannel;
+		this.index = index;
+	}
+
+	// Access
+
+	/**
+	 * The index of the file.
+	 * 
+	 * @return The index.
+	 */
+	public DGSIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Number of steps in the file.
+	 * 
+	 * @return The step count.
+	 */
+	public int getStepCount() {
+		return index.getStepCount();
+	}
+
+	/**
+	 * Index of the last step read.
+	 * 
+	 * @return The step index, -1 if no step was read.
+	 */
+	public int getCurrentStep() {
+		return currentStep;
+	}
+
+	// Command
+
+	/**
+	 * Open the DGS file, its index and its checkpoints, and start reading.
+	 * 
+	 * @param filename
+	 *            The DGS file name.
+	 */
+	@Override
+	public void begin(String filename) throws IOException {
+		index = new DGSIndex(filename);
+		channel = new RandomAccessFile(filename, "r").getChannel();
+		ownChannels = true;
+
+		try {
+			checkpointChannel = new RandomAccessFile(filename
+					+ DGSIndex.CHECKPOINT_EXTENSION, "r").getChannel();
+		} catch (IOException e) {
+			checkpointChannel = null;
+		}
+
+		pushTokenizer(new ChannelInputStream(channel, 0, Long.MAX_VALUE),
+				filename);
+		begin();
+	}
+
+	/**
+	 * Start reading when the channels where given at construction.
+	 */
+	@Override
+	public void begin() throws IOException {
+		if (tok_stack.isEmpty())
+			pushTokenizer(new ChannelInputStream(channel, 0, Long.MAX_VALUE),
+					"<?channel?>");
+
+		super.begin();
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+
+		if (ownChannels) {
+			channel.close();
+
+			if (checkpointChannel != null)
+				checkpointChannel.close();
+
+			channel = null;
+			checkpointChannel = null;
+		}
+	}
+
+	/**
+	 * Restore the graph as it was at the end of the given step. The sinks
+	 * receive a "graph cleared" event followed by the events that rebuild the
+	 * graph at this step, and the next call to {@link #nextStep()} reads the
+	 * following step.
+	 * 
+	 * @param step
+	 *            The step index, between 0 and {@link #getStepCount()}-1.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public void seek(int step) throws IOException {
+		if (step < 0 || step >= index.getStepCount())
+			throw new IOException(String.format(
+					"step %d out of the indexed steps [0,%d[", step,
+					index.getStepCount()));
+
+		int c = checkpointChannel != null ? index.findCheckpoint(step) : -1;
+
+		sendGraphCleared(graphName);
+
+		if (c >= 0) {
+			long offset = index.getCheckpointOffset(c);
+			long length = index.getCheckpointLength(c);
+			int from = index.getCheckpointStep(c);
+
+			pushTokenizer(new ChannelInputStream(checkpointChannel, offset,
+					offset + length), "<?checkpoint?>");
+
+			while (next(false, false))
+				;
+
+			popTokenizer();
+			reposition(index.getStepOffset(from));
+			currentStep = from - 1;
+		} else {
+			reposition(index.getHeaderEnd());
+			currentStep = -1;
+		}
+
+		finished = false;
+
+		while (currentStep < step && nextStep())
+			;
+	}
+
+	/**
+	 * Restore the graph as it was at the end of the last step whose time stamp
+	 * is lower or equal to the given time. See {@link #seek(int)}.
+	 * 
+	 * @param time
+	 *            The time stamp.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public void seekTime(double time) throws IOException {
+		int step = index.findStep(time);
+
+		if (step < 0) {
+			sendGraphCleared(graphName);
+			reposition(index.getHeaderEnd());
+			currentStep = -1;
+			finished = false;
+		} else {
+			seek(step);
+		}
+	}
+
+	/**
+	 * Replace the current tokenizer by one reading the DGS file at the given
+	 * offset.
+	 */
+	protected void reposition(long offset) throws IOException {
+		popTokenizer();
+		pushTokenizer(new ChannelInputStream(channel, offset, Long.MAX_VALUE),
+				filename);
+	}
+
+	@Override
+	protected void readST() throws IOException {
+		currentStep++;
+		super.readST();
+	}
+
+	/**
+	 * Input stream on a part of a file channel using positional reads, so that
+	 * the channel position is never modified.
+	 */
+	protected static class ChannelInputStream extends InputStream {
+		protected FileChannel channel;
+
+		protected long position;
+
+		protected long end;
+
+		protected ByteBuffer buffer = ByteBuffer.allocate(65536);
+
+		public ChannelInputStream(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+
+			buffer.limit(0);
+		}
+
+		protected boolean fill() throws IOException {
+			if (position >= end)
+				return false;
+
+			buffer.clear();
+
+			if (end - position < buffer.capacity())
+				buffer.limit((int) (end - position));
+
+			int n = channel.read(buffer, position);
+			buffer.flip();
+
+			if (n <= 0)
+				return false;
+
+			position += n;
+
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!buffer.hasRemaining() && !fill())
+				return -1;
+
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+
+			if (!buffer.hasRemaining() && !fill())
+				return -1;
+
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
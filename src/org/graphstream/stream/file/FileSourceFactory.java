@@ -23,8 +23,9 @@
 package org.graphstream.stream.file;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 
 /**
  * File source factory.
@@ -35,6 +36,13 @@ import java.io.RandomAccessFile;
  * file formats with a magic cookie or header), and if it fails it tries to look
  * at the file name extension.
  * </p>
+ * 
+ * <p>
+ * Files compressed with gzip or zlib are recognised too: the start of the
+ * uncompressed content is used to infer the type, and the ".gz" or ".z"
+ * extension is ignored when looking at the file name. The file sources
+ * uncompress such files transparently.
+ * </p>
  */
 public class FileSourceFactory {
 	/**
@@ -71,10 +79,24 @@ public class FileSourceFactory {
 
 		// Try to read the beginning of the file.
 
-		RandomAccessFile in = new RandomAccessFile(fileName, "r");
+		InputStream in = FileSourceBase.decompress(new FileInputStream(
+				fileName));
 
 		byte b[] = new byte[10];
-		int n = in.read(b, 0, 10);
+		int n = 0;
+
+		try {
+			int r = 0;
+
+			while (n < 10 && r >= 0) {
+				r = in.read(b, n, 10 - n);
+
+				if (r > 0)
+					n += r;
+			}
+		} catch (IOException e) {
+			// Truncated or corrupted compressed data, rely on the extension.
+		}
 
 		// System.err.printf( "[" );
 		// for( int i=0; i<n; ++i )
@@ -111,6 +133,11 @@ public class FileSourceFactory {
 
 		String flc = fileName.toLowerCase();
 
+		if (flc.endsWith(".gz"))
+			flc = flc.substring(0, flc.length() - 3);
+		else if (flc.endsWith(".z"))
+			flc = flc.substring(0, flc.length() - 2);
+
 		if (flc.endsWith(".html") || flc.endsWith(".htm")) {
 			// TODO
 		}
@@ -0,0 +1,1290 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.stream.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.file.FileSinkDGS;
+import org.graphstream.stream.file.FileSourceDGS;
+
+/**
+ * Durable persistence of a graph in a write-ahead log.
+ * 
+ * <p>
+ * The journal is a sink of a graph that appends each event it receives to a
+ * log in a directory, and regularly writes a checkpoint of the whole graph.
+ * When created on a directory that already contains a journal, it first
+ * restores the graph from the last checkpoint and the events logged after
+ * it, so that a program can restart where it stopped without replaying all
+ * the history of the graph :
+ * 
+ * <pre>
+ * Graph graph = new AdjacencyListGraph(&quot;g&quot;);
+ * Journal journal = new Journal(new File(&quot;journal&quot;), graph);
+ * // The graph is restored and its events are now journaled.
+ * ...
+ * journal.close();
+ * </pre>
+ * 
+ * </p>
+ * 
+ * <p>
+ * The log is cut in segments of bounded size. Each record holds the number of
+ * the event and a CRC32 checksum, so that after a crash the log is read until
+ * the last complete record, then truncated there before new events are
+ * appended. A checkpoint is a compact binary image of the graph, written in a
+ * temporary file and renamed once on disk. Segments are deleted when all
+ * their events are included in the oldest of the last two checkpoints, the
+ * previous checkpoint being kept in case the last one is damaged.
+ * </p>
+ * 
+ * <p>
+ * Events are encoded in memory and written in batches. When they are forced
+ * to the disk depends on the {@link SyncPolicy} :
+ * <ul>
+ * <li>{@link SyncPolicy#ALWAYS} forces each event, no event is ever lost but
+ * the graph runs at the speed of the disk ;</li>
+ * <li>{@link SyncPolicy#GROUP} (the default) forces the log at a regular
+ * interval from a background thread, and {@link #commit()} waits for the
+ * next force. Threads committing at the same time share it. A crash loses at
+ * most the events of the last interval ;</li>
+ * <li>{@link SyncPolicy#NEVER} leaves the system write the log when it
+ * wants, until {@link #commit()} or the end of a segment. This survives the
+ * end or the crash of the program, but not of the system.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * Checkpoints are taken automatically every
+ * {@link #setCheckpointInterval(long)} events, after an event that leaves the
+ * graph in a stable state (element added, attribute changed, step). Removal
+ * events are sent by graphs before the removal is done, a checkpoint is never
+ * taken on them. Checkpoints can also be taken explicitly with
+ * {@link #checkpoint()}, outside of event handling, which is the only safe
+ * way when some sinks of the graph modify it in reaction to its events.
+ * Attribute values are saved with their type for numbers, strings, booleans,
+ * arrays, lists and maps, using serialization for other serializable values.
+ * Values that cannot be serialized are saved as strings, and counted by
+ * {@link #getStringifiedValues()}.
+ * </p>
+ * 
+ * <p>
+ * Problems are not printed. The files repaired at opening are given by
+ * {@link #getRepairedFiles()}, and a write error is kept by
+ * {@link #getFailure()} and thrown by the next {@link #commit()},
+ * {@link #checkpoint()} or {@link #close()}.
+ * </p>
+ */
+public class Journal implements Sink {
+	// Attribute
+
+	/**
+	 * When the log is forced to the disk.
+	 */
+	public static enum SyncPolicy {
+		NEVER, GROUP, ALWAYS
+	}
+
+	/**
+	 * Size of the buffer of encoded events written at once.
+	 */
+	protected static final int BUFFER = 65536;
+
+	/**
+	 * The journal directory.
+	 */
+	protected File directory;
+
+	/**
+	 * The graph journaled.
+	 */
+	protected Graph graph;
+
+	/**
+	 * When the log is forced to the disk.
+	 */
+	protected SyncPolicy policy;
+
+	/**
+	 * Interval between two forces of the log, in milliseconds, for the group
+	 * policy.
+	 */
+	protected long groupInterval = 10;
+
+	/**
+	 * Size at which a segment is closed and another one started.
+	 */
+	protected long segmentSize = 64 * 1024 * 1024;
+
+	/**
+	 * Number of events between automatic checkpoints, 0 to disable them.
+	 */
+	protected long checkpointInterval = 1000000;
+
+	/**
+	 * Number of checkpoints kept.
+	 */
+	protected int keptCheckpoints = 2;
+
+	/**
+	 * Encoding of the current record.
+	 */
+	protected JournalFormat.Output record = new JournalFormat.Output();
+
+	/**
+	 * Encoded records not yet written.
+	 */
+	protected JournalFormat.Output pending = new JournalFormat.Output();
+
+	protected CRC32 crc = new CRC32();
+
+	/**
+	 * The current segment.
+	 */
+	protected RandomAccessFile segment;
+
+	protected FileChannel channel;
+
+	/**
+	 * Number of bytes written in the current segment.
+	 */
+	protected long segmentLength;
+
+	/**
+	 * Number of the first event of the current segment.
+	 */
+	protected long segmentFirst;
+
+	/**
+	 * Number of the next event.
+	 */
+	protected long next;
+
+	/**
+	 * Number of the first event not included in the last checkpoint, -1 if
+	 * none.
+	 */
+	protected long lastCheckpoint;
+
+	/**
+	 * Number of the first event not yet forced to the disk.
+	 */
+	protected volatile long durable;
+
+	/**
+	 * Taken by threads forcing the log, so that those arriving during a force
+	 * wait for it and maybe do not have to force again.
+	 */
+	protected final Object syncLock = new Object();
+
+	/**
+	 * Forces the log with the group policy.
+	 */
+	protected Thread flusher;
+
+	/**
+	 * The flusher waits on this between two forces, and is notified when the
+	 * journal is closed. It is never interrupted, since an interrupt during a
+	 * force would close the segment.
+	 */
+	protected final Object flusherLock = new Object();
+
+	protected volatile boolean closed = false;
+
+	/**
+	 * The first error met, after which nothing more is written.
+	 */
+	protected IOException failure;
+
+	/**
+	 * Number of events replayed from the log at creation.
+	 */
+	protected long recovered;
+
+	/**
+	 * Files truncated, deleted or renamed at creation.
+	 */
+	protected ArrayList<File> repaired = new ArrayList<File>();
+
+	/**
+	 * Number of values saved as strings by the checkpoints.
+	 */
+	protected long stringified;
+
+	// Construction
+
+	/**
+	 * Restore a graph from a journal and journal it, with the group policy.
+	 * 
+	 * @param directory
+	 *            The directory of the journal, created if needed.
+	 * @param graph
+	 *            The graph, that should be empty.
+	 * @throws IOException
+	 *             If the journal cannot be read or created.
+	 * @see #Journal(File, Graph, SyncPolicy)
+	 */
+	public Journal(File directory, Graph graph) throws IOException {
+		this(directory, graph, SyncPolicy.GROUP);
+	}
+
+	/**
+	 * Restore a graph from a journal and journal it. If the directory contains
+	 * a journal, its content is sent to the graph, and the damaged end of the
+	 * log, if any, is removed. The journal is then registered as a sink of the
+	 * graph.
+	 * 
+	 * @param directory
+	 *            The directory of the journal, created if needed.
+	 * @param graph
+	 *            The graph, that should be empty.
+	 * @param policy
+	 *            When the log is forced to the disk.
+	 * @throws IOException
+	 *             If the journal cannot be read or created.
+	 */
+	public Journal(File directory, Graph graph, SyncPolicy policy)
+			throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException(String.format("cannot create %s",
+					directory));
+
+		this.directory = directory;
+		this.graph = graph;
+		this.policy = policy;
+
+		JournalSource source = new JournalSource(directory);
+
+		source.addSink(graph);
+		next = source.replay();
+		source.removeSink(graph);
+		repair(source);
+
+		lastCheckpoint = source.getCheckpoint();
+		recovered = source.getReplayedEvents();
+		durable = next;
+
+		open(next);
+		graph.addSink(this);
+
+		if (policy == SyncPolicy.GROUP) {
+			flusher = new Thread(new Runnable() {
+				public void run() {
+					while (!closed) {
+						try {
+							synchronized (flusherLock) {
+								if (!closed)
+									flusherLock.wait(groupInterval);
+							}
+
+							sync();
+						} catch (InterruptedException e) {
+						} catch (IOException e) {
+							failed(e);
+						}
+					}
+				}
+			}, String.format("journal %s", directory.getName()));
+			flusher.setDaemon(true);
+			flusher.start();
+		}
+	}
+
+	// Access
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public SyncPolicy getSyncPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Number of the next event, that is the number of events journaled since
+	 * the creation of the journal directory.
+	 * 
+	 * @return The number of the next event.
+	 */
+	public synchronized long getNextEvent() {
+		return next;
+	}
+
+	/**
+	 * Number of the first event that may not be on the disk yet.
+	 * 
+	 * @return All the events before are on the disk.
+	 */
+	public long getDurableEvent() {
+		return durable;
+	}
+
+	/**
+	 * Number of the first event not included in the last checkpoint.
+	 * 
+	 * @return The number, or -1 if there is no checkpoint.
+	 */
+	public synchronized long getLastCheckpoint() {
+		return lastCheckpoint;
+	}
+
+	/**
+	 * Number of events replayed from the log when the journal was opened,
+	 * after the checkpoint.
+	 * 
+	 * @return The number of events.
+	 */
+	public long getRecoveredEvents() {
+		return recovered;
+	}
+
+	/**
+	 * Files repaired when the journal was opened after a crash: the segment
+	 * truncated at its last complete record, or deleted if nothing in it was
+	 * usable, and the damaged checkpoints and unreachable segments renamed
+	 * with the ".damaged" suffix.
+	 * 
+	 * @return The files, in their location before the repair, empty if the
+	 *         journal was intact.
+	 */
+	public List<File> getRepairedFiles() {
+		return Collections.unmodifiableList(repaired);
+	}
+
+	/**
+	 * Number of attribute values that were not serializable and were saved as
+	 * strings, in the log and in the checkpoints.
+	 * 
+	 * @return The number of values.
+	 */
+	public synchronized long getStringifiedValues() {
+		return stringified + record.stringified;
+	}
+
+	/**
+	 * The first error met, after which no more events are saved.
+	 * 
+	 * @return The error, or null if the journal works.
+	 */
+	public synchronized IOException getFailure() {
+		return failure;
+	}
+
+	// Command
+
+	/**
+	 * Set the size at which a segment is closed and a new one started.
+	 * 
+	 * @param bytes
+	 *            The size of the segments.
+	 */
+	public synchronized void setSegmentSize(long bytes) {
+		segmentSize = bytes;
+	}
+
+	/**
+	 * Set the number of events between automatic checkpoints.
+	 * 
+	 * @param events
+	 *            The number of events, 0 to only take checkpoints with
+	 *            {@link #checkpoint()}.
+	 */
+	public synchronized void setCheckpointInterval(long events) {
+		checkpointInterval = events;
+	}
+
+	/**
+	 * Set the interval between two forces of the log, for the group policy.
+	 * 
+	 * @param ms
+	 *            The interval in milliseconds.
+	 */
+	public void setGroupCommitInterval(long ms) {
+		groupInterval = ms;
+	}
+
+	/**
+	 * Wait until all the events received are on the disk.
+	 * 
+	 * @throws IOException
+	 *             If the log could not be written.
+	 */
+	public void commit() throws IOException {
+		sync();
+
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Write a checkpoint of the graph now. This must be called from the thread
+	 * modifying the graph, or when it is not modified.
+	 * 
+	 * @throws IOException
+	 *             If the checkpoint could not be written.
+	 */
+	public synchronized void checkpoint() throws IOException {
+		if (failure != null)
+			throw failure;
+
+		checkpoint_();
+	}
+
+	/**
+	 * Stop journaling the graph, and force the log to the disk.
+	 * 
+	 * @throws IOException
+	 *             If the log could not be written.
+	 */
+	public void close() throws IOException {
+		graph.removeSink(this);
+		closed = true;
+
+		if (flusher != null) {
+			boolean interrupted = false;
+
+			synchronized (flusherLock) {
+				flusherLock.notify();
+			}
+
+			while (flusher.isAlive()) {
+				try {
+					flusher.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		synchronized (this) {
+			if (failure == null) {
+				write();
+				channel.force(false);
+				durable = next;
+			}
+
+			segment.close();
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	// Utility
+
+	/**
+	 * Remove the damaged end of the log found by the replay, and put aside the
+	 * segments that cannot be replayed. The files modified are added to
+	 * {@link #repaired}.
+	 */
+	protected void repair(JournalSource source) throws IOException {
+		String[] names = directory.list();
+
+		for (String name : names)
+			if (name.endsWith(JournalFormat.CHECKPOINT_SUFFIX + ".tmp"))
+				new File(directory, name).delete();
+
+		if (source.damaged != null) {
+			repaired.add(source.damaged);
+
+			if (source.damagedLength <= JournalFormat.SEGMENT_HEADER) {
+				source.damaged.delete();
+			} else {
+				RandomAccessFile file = new RandomAccessFile(source.damaged,
+						"rw");
+				file.setLength(source.damagedLength);
+				file.getChannel().force(true);
+				file.close();
+			}
+		}
+
+		for (File file : source.ignored) {
+			repaired.add(file);
+			file.renameTo(new File(directory, file.getName() + ".damaged"));
+		}
+
+		for (File file : source.unreachable) {
+			repaired.add(file);
+			file.renameTo(new File(directory, file.getName() + ".damaged"));
+		}
+	}
+
+	/**
+	 * Start a new segment.
+	 */
+	protected void open(long first) throws IOException {
+		File file = new File(directory, JournalFormat.segmentName(first));
+
+		if (file.exists() && !file.delete())
+			throw new IOException(String.format("cannot replace %s", file));
+
+		segment = new RandomAccessFile(file, "rw");
+		channel = segment.getChannel();
+		segmentFirst = first;
+		segmentLength = 0;
+
+		pending.writeInt(JournalFormat.SEGMENT_MAGIC);
+		pending.writeInt(JournalFormat.VERSION);
+		pending.writeLong(first);
+		write();
+	}
+
+	/**
+	 * Close the current segment and start a new one.
+	 */
+	protected void roll() throws IOException {
+		write();
+		channel.force(false);
+		durable = next;
+		segment.close();
+		open(next);
+	}
+
+	/**
+	 * Write the pending records in the current segment.
+	 */
+	protected void write() throws IOException {
+		int size = pending.size();
+
+		if (size > 0) {
+			ByteBuffer buffer = ByteBuffer.wrap(pending.buffer(), 0, size);
+
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+
+			segmentLength += size;
+			pending.reset();
+		}
+	}
+
+	/**
+	 * Force to the disk all the events received before the call. A thread
+	 * arriving while another one forces the log waits for it, and returns
+	 * without forcing if its events were included.
+	 */
+	protected void sync() throws IOException {
+		long target;
+
+		synchronized (this) {
+			if (failure != null)
+				return;
+
+			target = next;
+		}
+
+		synchronized (syncLock) {
+			if (durable >= target)
+				return;
+
+			FileChannel forced;
+			long upTo;
+
+			synchronized (this) {
+				if (failure != null)
+					return;
+
+				write();
+				forced = channel;
+				upTo = next;
+			}
+
+			try {
+				forced.force(false);
+			} catch (ClosedByInterruptException e) {
+				failed(e);
+				throw e;
+			} catch (ClosedChannelException e) {
+				// The segment was closed, hence forced, meanwhile.
+			}
+
+			if (upTo > durable)
+				durable = upTo;
+		}
+	}
+
+	/**
+	 * Start the record of an event.
+	 */
+	protected JournalFormat.Output begin(byte type) throws IOException {
+		record.reset();
+		record.writeLong(next);
+		record.writeByte(type);
+
+		return record;
+	}
+
+	/**
+	 * Append the current record to the log.
+	 * 
+	 * @param stable
+	 *            True if the graph is in a stable state, where a checkpoint
+	 *            can be taken.
+	 */
+	protected void end(boolean stable) throws IOException {
+		if (failure != null)
+			return;
+
+		int length = record.size();
+
+		crc.reset();
+		crc.update(record.buffer(), 0, length);
+		pending.writeInt(length);
+		pending.writeInt((int) crc.getValue());
+		pending.write(record.buffer(), 0, length);
+		next++;
+
+		if (policy == SyncPolicy.ALWAYS) {
+			write();
+			channel.force(false);
+			durable = next;
+		} else if (pending.size() >= BUFFER) {
+			write();
+		}
+
+		if (segmentLength + pending.size() >= segmentSize)
+			roll();
+
+		if (stable && checkpointInterval > 0
+				&& next - Math.max(lastCheckpoint, 0) >= checkpointInterval)
+			checkpoint_();
+	}
+
+	/**
+	 * Write a checkpoint, start a new segment after it and remove the files
+	 * no longer needed.
+	 */
+	protected void checkpoint_() throws IOException {
+		File file = new File(directory, JournalFormat.checkpointName(next));
+		File tmp = new File(directory, file.getName() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(tmp);
+		BufferedOutputStream buffered = new BufferedOutputStream(stream,
+				BUFFER);
+		CheckedOutputStream checked = new CheckedOutputStream(buffered,
+				new CRC32());
+		JournalFormat.Output out = new JournalFormat.Output(checked);
+
+		try {
+			out.writeInt(JournalFormat.CHECKPOINT_MAGIC);
+			out.writeInt(JournalFormat.VERSION);
+			out.writeLong(next);
+			out.writeDouble(graph.getStep());
+			attributes(out, graph);
+
+			int n = graph.getNodeCount();
+			out.varInt(n);
+
+			for (int i = 0; i < n; i++) {
+				Node node = graph.getNode(i);
+
+				out.string(node.getId());
+				attributes(out, node);
+			}
+
+			int m = graph.getEdgeCount();
+			out.varInt(m);
+
+			for (int i = 0; i < m; i++) {
+				Edge edge = graph.getEdge(i);
+
+				out.string(edge.getId());
+				out.varInt(edge.getSourceNode().getIndex());
+				out.varInt(edge.getTargetNode().getIndex());
+				out.writeBoolean(edge.isDirected());
+				attributes(out, edge);
+			}
+
+			out.flush();
+			stringified += out.stringified;
+			new DataOutputStream(buffered).writeLong(checked.getChecksum()
+					.getValue());
+			buffered.flush();
+			stream.getChannel().force(true);
+		} finally {
+			out.close();
+		}
+
+		if (file.exists())
+			file.delete();
+
+		if (!tmp.renameTo(file))
+			throw new IOException(String.format("cannot rename %s", tmp));
+
+		lastCheckpoint = next;
+
+		if (segmentFirst < next)
+			roll();
+
+		prune();
+	}
+
+	protected void attributes(JournalFormat.Output out, Element element)
+			throws IOException {
+		ArrayList<String> keys = new ArrayList<String>();
+		Iterable<String> set = element.getAttributeKeySet();
+
+		if (set != null)
+			for (String key : set)
+				keys.add(key);
+
+		out.varInt(keys.size());
+
+		for (String key : keys) {
+			out.string(key);
+			out.value(element.getAttribute(key));
+		}
+	}
+
+	/**
+	 * Delete the checkpoints beyond the ones kept, and the segments whose
+	 * events are all in the oldest checkpoint kept.
+	 */
+	protected void prune() {
+		File[] checkpoints = JournalFormat.list(directory,
+				JournalFormat.CHECKPOINT_SUFFIX);
+		int old = Math.max(0, checkpoints.length - keptCheckpoints);
+
+		for (int i = 0; i < old; i++)
+			checkpoints[i].delete();
+
+		long oldest = JournalFormat.number(checkpoints[old].getName(),
+				JournalFormat.CHECKPOINT_SUFFIX);
+		File[] segments = JournalFormat.list(directory,
+				JournalFormat.SEGMENT_SUFFIX);
+
+		for (int i = 0; i + 1 < segments.length; i++)
+			if (JournalFormat.first(segments[i + 1]) <= oldest)
+				segments[i].delete();
+	}
+
+	/**
+	 * Stop writing after an error, that will be thrown by the next call to
+	 * {@link #commit()}, {@link #checkpoint()} or {@link #close()}.
+	 */
+	protected synchronized void failed(IOException e) {
+		if (failure == null)
+			failure = e;
+	}
+
+	/**
+	 * Measure the throughput of the sync policies, the time to restore a
+	 * graph, and check the recovery of logs truncated at random positions as
+	 * a crash would leave them, and of a log whose writer was killed. The
+	 * first argument is the number of operations on the graph.
+	 */
+	public static void main(String args[]) throws IOException,
+			InterruptedException {
+		if (args.length > 2 && args[0].equals("-child")) {
+			child(new File(args[1]), Integer.parseInt(args[2]));
+			return;
+		}
+
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		File root = File.createTempFile("journal", "");
+		root.delete();
+
+		for (SyncPolicy policy : SyncPolicy.values()) {
+			int ops = policy == SyncPolicy.ALWAYS ? n / 50 : n;
+			File directory = new File(root, policy.toString());
+			Graph graph = new AdjacencyListGraph("g");
+			Journal journal = new Journal(directory, graph, policy);
+			long t = System.nanoTime();
+
+			journal.setCheckpointInterval(ops / 3);
+
+			build(graph, new Random(1), ops);
+			journal.commit();
+			t = System.nanoTime() - t;
+			System.out.printf("%-6s %8d events in %6d ms, %9.0f events/s%n",
+					policy, journal.getNextEvent(), t / 1000000, journal
+							.getNextEvent()
+							* 1e9 / t);
+			journal.close();
+
+			if (policy == SyncPolicy.GROUP) {
+				Graph restored = new AdjacencyListGraph("g");
+
+				t = System.currentTimeMillis();
+				journal = new Journal(directory, restored);
+				System.out.printf("restored %d nodes and %d edges in %d ms "
+						+ "(checkpoint %d, %d events replayed), "
+						+ "identical %b%n", restored.getNodeCount(), restored
+						.getEdgeCount(), System.currentTimeMillis() - t,
+						journal.getLastCheckpoint(), journal
+								.getRecoveredEvents(), same(graph, restored));
+				journal.close();
+			}
+		}
+
+		File directory = new File(root, "crash");
+		Graph graph = new AdjacencyListGraph("g");
+		Journal journal = new Journal(directory, graph, SyncPolicy.NEVER);
+
+		journal.setSegmentSize(65536);
+		journal.setCheckpointInterval(n / 10);
+
+		String lines[] = dgs(graph, new Random(2), n);
+
+		journal.close();
+
+		File trial = new File(root, "trial");
+		Random random = new Random(3);
+		int failures = 0;
+		int repairs = 0;
+
+		for (int i = 0; i < 20; i++) {
+			copy(directory, trial);
+
+			File[] segments = JournalFormat.list(trial,
+					JournalFormat.SEGMENT_SUFFIX);
+			RandomAccessFile last = new RandomAccessFile(
+					segments[segments.length - 1], "rw");
+			long length = (long) (random.nextDouble() * last.length());
+
+			if (i % 4 == 3) {
+				last.seek(length);
+				last.write(last.read() ^ 0x5A);
+			} else {
+				last.setLength(length);
+			}
+
+			last.close();
+
+			Graph recovered = new AdjacencyListGraph("r");
+			Journal reopened = new Journal(trial, recovered, SyncPolicy.NEVER);
+			long events = reopened.getNextEvent();
+
+			repairs += reopened.getRepairedFiles().size();
+			reopened.close();
+
+			if (!same(replay(lines, events), recovered)) {
+				System.out.printf("recovery failed at %d bytes%n", length);
+				failures++;
+			}
+		}
+
+		System.out.printf(
+				"20 truncated logs recovered, %d files repaired, %d failures%n",
+				repairs, failures);
+
+		kill(new File(root, "killed"), n);
+	}
+
+	/**
+	 * Journal a graph in another process, kill it while it writes, and check
+	 * that the journal reopens with at least the events the process saw
+	 * forced, and exactly the graph built by the events kept.
+	 */
+	protected static void kill(File directory, int n) throws IOException,
+			InterruptedException {
+		int ops = n * 4;
+		ProcessBuilder builder = new ProcessBuilder(new File(System
+				.getProperty("java.home"), "bin/java").getPath(), "-cp",
+				System.getProperty("java.class.path"), Journal.class
+						.getName(), "-child", directory.getPath(), Integer
+						.toString(ops));
+		Process process = builder.start();
+		BufferedReader in = new BufferedReader(new InputStreamReader(process
+				.getInputStream()));
+		long durable = 0;
+		String line;
+
+		while (durable < n && (line = in.readLine()) != null)
+			durable = Long.parseLong(line);
+
+		process.destroyForcibly();
+		process.waitFor();
+		in.close();
+
+		Graph recovered = new AdjacencyListGraph("r");
+		Journal reopened = new Journal(directory, recovered);
+		long events = reopened.getNextEvent();
+		int repairs = reopened.getRepairedFiles().size();
+
+		reopened.close();
+
+		String lines[] = dgs(new AdjacencyListGraph("g"), new Random(4), ops);
+
+		System.out.printf("killed after %d durable events, %d recovered, "
+				+ "%d files repaired, durable kept %b, identical %b%n",
+				durable, events, repairs, events >= durable, same(replay(
+						lines, events), recovered));
+	}
+
+	/**
+	 * The process killed by {@link #kill(File, int)}. It prints the number of
+	 * the first event not forced yet as the journal advances, and waits to be
+	 * killed once the operations are done.
+	 */
+	protected static void child(File directory, int ops) throws IOException {
+		Graph graph = new AdjacencyListGraph("g");
+		final Journal journal = new Journal(directory, graph);
+		Thread reporter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						System.out.println(journal.getDurableEvent());
+						Thread.sleep(1);
+					}
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+
+		journal.setSegmentSize(1 << 20);
+		journal.setCheckpointInterval(ops / 10);
+		reporter.setDaemon(true);
+		reporter.start();
+		build(graph, new Random(4), ops);
+		journal.commit();
+		System.in.read();
+	}
+
+	/**
+	 * Apply random operations to a graph and return the events they produce,
+	 * one per line in the DGS format after two header lines.
+	 */
+	protected static String[] dgs(Graph graph, Random random, int ops)
+			throws IOException {
+		ByteArrayOutputStream dgs = new ByteArrayOutputStream();
+		FileSinkDGS sink = new FileSinkDGS();
+
+		sink.begin(dgs);
+		graph.addSink(sink);
+		build(graph, random, ops);
+		graph.removeSink(sink);
+		sink.end();
+
+		return dgs.toString().split("\\n");
+	}
+
+	/**
+	 * The graph built by the first events of a list returned by
+	 * {@link #dgs(Graph, Random, int)}.
+	 */
+	protected static Graph replay(String lines[], long events)
+			throws IOException {
+		StringBuilder prefix = new StringBuilder();
+		Graph graph = new AdjacencyListGraph("e");
+		FileSourceDGS source = new FileSourceDGS();
+
+		for (int l = 0; l < events + 2; l++)
+			prefix.append(lines[l]).append('\n');
+
+		source.addSink(graph);
+		source.readAll(new StringReader(prefix.toString()));
+
+		return graph;
+	}
+
+	/**
+	 * Replace the content of a directory by a copy of another one.
+	 */
+	protected static void copy(File from, File to) throws IOException {
+		if (to.isDirectory())
+			for (File file : to.listFiles())
+				file.delete();
+		else
+			to.mkdirs();
+
+		byte[] buffer = new byte[65536];
+
+		for (File file : from.listFiles()) {
+			FileInputStream in = new FileInputStream(file);
+			FileOutputStream out = new FileOutputStream(new File(to, file
+					.getName()));
+			int n;
+
+			while ((n = in.read(buffer)) > 0)
+				out.write(buffer, 0, n);
+
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Random operations on a graph.
+	 */
+	protected static void build(Graph graph, Random random, int ops) {
+		int id = 0;
+
+		for (int i = 0; i < ops; i++) {
+			int n = graph.getNodeCount();
+			int m = graph.getEdgeCount();
+			int op = random.nextInt(100);
+
+			if (op < 30 || n < 2) {
+				graph.addNode(String.format("n%d", id++));
+			} else if (op < 60) {
+				Node a = graph.getNode(random.nextInt(n));
+				Node b = graph.getNode(random.nextInt(n));
+
+				if (a != b && !a.hasEdgeBetween(b.getId()))
+					graph.addEdge(String.format("e%d", id++), a.getId(), b
+							.getId(), random.nextBoolean());
+			} else if (op < 80) {
+				graph.getNode(random.nextInt(n)).setAttribute("x",
+						random.nextDouble());
+			} else if (op < 88) {
+				graph.getNode(random.nextInt(n)).setAttribute("label",
+						String.format("l%d", random.nextInt(100)));
+			} else if (op < 93 && m > 0) {
+				graph.removeEdge(graph.getEdge(random.nextInt(m)).getId());
+			} else if (op < 96) {
+				graph.removeNode(graph.getNode(random.nextInt(n)).getId());
+			} else {
+				graph.stepBegins(i);
+			}
+		}
+	}
+
+	/**
+	 * Do two graphs have the same elements and the same "x" and "label"
+	 * attributes ? The DGS format only keeps six decimals.
+	 */
+	protected static boolean same(Graph g1, Graph g2) {
+		if (g1.getNodeCount() != g2.getNodeCount()
+				|| g1.getEdgeCount() != g2.getEdgeCount())
+			return false;
+
+		for (Node n1 : g1.getEachNode()) {
+			Node n2 = g2.getNode(n1.getId());
+
+			if (n2 == null
+					|| !close(n1.getNumber("x"), n2.getNumber("x"))
+					|| !String.valueOf(n1.getLabel("label")).equals(
+							String.valueOf(n2.getLabel("label"))))
+				return false;
+		}
+
+		for (Edge e1 : g1.getEachEdge()) {
+			Edge e2 = g2.getEdge(e1.getId());
+
+			if (e2 == null
+					|| e1.isDirected() != e2.isDirected()
+					|| !e1.getSourceNode().getId().equals(
+							e2.getSourceNode().getId())
+					|| !e1.getTargetNode().getId().equals(
+							e2.getTargetNode().getId()))
+				return false;
+		}
+
+		return true;
+	}
+
+	protected static boolean close(double x1, double x2) {
+		return (Double.isNaN(x1) && Double.isNaN(x2))
+				|| Math.abs(x1 - x2) < 1e-5;
+	}
+
+	// Sink
+
+	public synchronized void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		try {
+			begin(JournalFormat.GRAPH_ATTRIBUTE_ADDED).string(attribute).value(
+					value);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void graphAttributeChanged(String sourceId,
+			long timeId, String attribute, Object oldValue, Object newValue) {
+		try {
+			begin(JournalFormat.GRAPH_ATTRIBUTE_CHANGED).string(attribute)
+					.value(newValue);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void graphAttributeRemoved(String sourceId,
+			long timeId, String attribute) {
+		try {
+			begin(JournalFormat.GRAPH_ATTRIBUTE_REMOVED).string(attribute);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		try {
+			begin(JournalFormat.NODE_ATTRIBUTE_ADDED).string(nodeId).string(
+					attribute).value(value);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void nodeAttributeChanged(String sourceId,
+			long timeId, String nodeId, String attribute, Object oldValue,
+			Object newValue) {
+		try {
+			begin(JournalFormat.NODE_ATTRIBUTE_CHANGED).string(nodeId).string(
+					attribute).value(newValue);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void nodeAttributeRemoved(String sourceId,
+			long timeId, String nodeId, String attribute) {
+		try {
+			begin(JournalFormat.NODE_ATTRIBUTE_REMOVED).string(nodeId).string(
+					attribute);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		try {
+			begin(JournalFormat.EDGE_ATTRIBUTE_ADDED).string(edgeId).string(
+					attribute).value(value);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void edgeAttributeChanged(String sourceId,
+			long timeId, String edgeId, String attribute, Object oldValue,
+			Object newValue) {
+		try {
+			begin(JournalFormat.EDGE_ATTRIBUTE_CHANGED).string(edgeId).string(
+					attribute).value(newValue);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void edgeAttributeRemoved(String sourceId,
+			long timeId, String edgeId, String attribute) {
+		try {
+			begin(JournalFormat.EDGE_ATTRIBUTE_REMOVED).string(edgeId).string(
+					attribute);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void nodeAdded(String sourceId, long timeId,
+			String nodeId) {
+		try {
+			begin(JournalFormat.NODE_ADDED).string(nodeId);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void nodeRemoved(String sourceId, long timeId,
+			String nodeId) {
+		try {
+			begin(JournalFormat.NODE_REMOVED).string(nodeId);
+			end(false);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void edgeAdded(String sourceId, long timeId,
+			String edgeId, String fromNodeId, String toNodeId, boolean directed) {
+		try {
+			begin(JournalFormat.EDGE_ADDED).string(edgeId).string(fromNodeId)
+					.string(toNodeId).writeBoolean(directed);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void edgeRemoved(String sourceId, long timeId,
+			String edgeId) {
+		try {
+			begin(JournalFormat.EDGE_REMOVED).string(edgeId);
+			end(false);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void graphCleared(String sourceId, long timeId) {
+		try {
+			begin(JournalFormat.GRAPH_CLEARED);
+			end(false);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public synchronized void stepBegins(String sourceId, long timeId,
+			double step) {
+		try {
+			begin(JournalFormat.STEP_BEGINS).writeDouble(step);
+			end(true);
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+}
@@ -0,0 +1,475 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.stream.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary encoding of the journal files.
+ * 
+ * <p>
+ * A log segment starts with a header of {@link #SEGMENT_HEADER} bytes (magic
+ * number, version and number of its first event), followed by records. A
+ * record is the length of its payload, the CRC32 of the payload, and the
+ * payload : the number of the event, its type and its fields. Identifiers and
+ * attribute names are strings, attribute values are tagged with their type.
+ * A record that is incomplete or whose checksum is wrong marks the end of the
+ * usable log.
+ * </p>
+ * 
+ * <p>
+ * A checkpoint holds a header (magic number, version, number of the first
+ * event not included, step), the attributes of the graph, the nodes with
+ * their attributes, the edges with the positions of their nodes in the
+ * checkpoint and their attributes, and ends with the CRC32 of all that
+ * precedes.
+ * </p>
+ */
+class JournalFormat {
+	// Attribute
+
+	protected static final int SEGMENT_MAGIC = 0x47534A4C;
+
+	protected static final int CHECKPOINT_MAGIC = 0x4753434B;
+
+	protected static final int VERSION = 1;
+
+	/**
+	 * Size of the header of a segment.
+	 */
+	protected static final int SEGMENT_HEADER = 16;
+
+	/**
+	 * Size of the length and checksum before each record.
+	 */
+	protected static final int RECORD_HEADER = 8;
+
+	/**
+	 * Largest accepted payload, anything larger is considered as garbage.
+	 */
+	protected static final int MAX_RECORD = 1 << 26;
+
+	protected static final String SEGMENT_SUFFIX = ".log";
+
+	protected static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+	// Event types.
+
+	protected static final byte GRAPH_ATTRIBUTE_ADDED = 1;
+	protected static final byte GRAPH_ATTRIBUTE_CHANGED = 2;
+	protected static final byte GRAPH_ATTRIBUTE_REMOVED = 3;
+	protected static final byte NODE_ATTRIBUTE_ADDED = 4;
+	protected static final byte NODE_ATTRIBUTE_CHANGED = 5;
+	protected static final byte NODE_ATTRIBUTE_REMOVED = 6;
+	protected static final byte EDGE_ATTRIBUTE_ADDED = 7;
+	protected static final byte EDGE_ATTRIBUTE_CHANGED = 8;
+	protected static final byte EDGE_ATTRIBUTE_REMOVED = 9;
+	protected static final byte NODE_ADDED = 10;
+	protected static final byte NODE_REMOVED = 11;
+	protected static final byte EDGE_ADDED = 12;
+	protected static final byte EDGE_REMOVED = 13;
+	protected static final byte GRAPH_CLEARED = 14;
+	protected static final byte STEP_BEGINS = 15;
+
+	// Value tags.
+
+	protected static final byte NULL = 0;
+	protected static final byte TRUE = 1;
+	protected static final byte FALSE = 2;
+	protected static final byte BYTE = 3;
+	protected static final byte SHORT = 4;
+	protected static final byte INTEGER = 5;
+	protected static final byte LONG = 6;
+	protected static final byte FLOAT = 7;
+	protected static final byte DOUBLE = 8;
+	protected static final byte CHARACTER = 9;
+	protected static final byte STRING = 10;
+	protected static final byte ARRAY = 11;
+	protected static final byte LIST = 12;
+	protected static final byte MAP = 13;
+	protected static final byte DOUBLES = 14;
+	protected static final byte FLOATS = 15;
+	protected static final byte INTS = 16;
+	protected static final byte SERIALIZED = 17;
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Command
+
+	/**
+	 * File name of the segment whose first event has the given number.
+	 */
+	protected static String segmentName(long lsn) {
+		return String.format("%016x%s", lsn, SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * File name of the checkpoint including the events before the given
+	 * number.
+	 */
+	protected static String checkpointName(long lsn) {
+		return String.format("%016x%s", lsn, CHECKPOINT_SUFFIX);
+	}
+
+	/**
+	 * Number of an event encoded in a file name, -1 if the name is not a
+	 * journal file with the given suffix.
+	 */
+	protected static long number(String name, String suffix) {
+		if (name.length() != 16 + suffix.length() || !name.endsWith(suffix))
+			return -1;
+
+		try {
+			return Long.parseLong(name.substring(0, 16), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Number of the first event of a segment.
+	 */
+	protected static long first(File segment) {
+		return number(segment.getName(), SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * The journal files of a directory with a suffix, by increasing event
+	 * number.
+	 */
+	protected static File[] list(File directory, String suffix) {
+		ArrayList<File> files = new ArrayList<File>();
+		String[] names = directory.list();
+
+		if (names != null) {
+			Arrays.sort(names);
+
+			for (String name : names)
+				if (number(name, suffix) >= 0)
+					files.add(new File(directory, name));
+		}
+
+		return files.toArray(new File[files.size()]);
+	}
+
+	/**
+	 * A buffer to encode records or checkpoints, whose content can be read
+	 * without copy.
+	 */
+	protected static class Output extends DataOutputStream {
+		/**
+		 * Number of values that were not serializable and were saved as
+		 * strings.
+		 */
+		protected int stringified;
+
+		public Output() {
+			super(new Bytes());
+		}
+
+		public Output(OutputStream out) {
+			super(out);
+		}
+
+		public byte[] buffer() {
+			return ((Bytes) out).buffer();
+		}
+
+		public void reset() {
+			((Bytes) out).reset();
+			written = 0;
+		}
+
+		public Output string(String s) throws IOException {
+			byte[] bytes = s.getBytes(UTF8);
+
+			varInt(bytes.length);
+			write(bytes);
+
+			return this;
+		}
+
+		public Output varInt(int v) throws IOException {
+			while ((v & ~0x7F) != 0) {
+				writeByte((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+
+			writeByte(v);
+
+			return this;
+		}
+
+		public Output value(Object o) throws IOException {
+			if (o == null) {
+				writeByte(NULL);
+			} else if (o instanceof Boolean) {
+				writeByte(((Boolean) o) ? TRUE : FALSE);
+			} else if (o instanceof Double) {
+				writeByte(DOUBLE);
+				writeDouble((Double) o);
+			} else if (o instanceof Integer) {
+				writeByte(INTEGER);
+				writeInt((Integer) o);
+			} else if (o instanceof String) {
+				writeByte(STRING);
+				string((String) o);
+			} else if (o instanceof Float) {
+				writeByte(FLOAT);
+				writeFloat((Float) o);
+			} else if (o instanceof Long) {
+				writeByte(LONG);
+				writeLong((Long) o);
+			} else if (o instanceof Short) {
+				writeByte(SHORT);
+				writeShort((Short) o);
+			} else if (o instanceof Byte) {
+				writeByte(BYTE);
+				writeByte((Byte) o);
+			} else if (o instanceof Character) {
+				writeByte(CHARACTER);
+				writeChar((Character) o);
+			} else if (o instanceof Object[]) {
+				Object[] array = (Object[]) o;
+
+				writeByte(ARRAY);
+				varInt(array.length);
+
+				for (Object e : array)
+					value(e);
+			} else if (o instanceof ArrayList<?>) {
+				ArrayList<?> list = (ArrayList<?>) o;
+
+				writeByte(LIST);
+				varInt(list.size());
+
+				for (Object e : list)
+					value(e);
+			} else if (o instanceof HashMap<?, ?>) {
+				HashMap<?, ?> map = (HashMap<?, ?>) o;
+
+				writeByte(MAP);
+				varInt(map.size());
+
+				for (Map.Entry<?, ?> e : map.entrySet()) {
+					value(e.getKey());
+					value(e.getValue());
+				}
+			} else if (o instanceof double[]) {
+				double[] array = (double[]) o;
+
+				writeByte(DOUBLES);
+				varInt(array.length);
+
+				for (double e : array)
+					writeDouble(e);
+			} else if (o instanceof float[]) {
+				float[] array = (float[]) o;
+
+				writeByte(FLOATS);
+				varInt(array.length);
+
+				for (float e : array)
+					writeFloat(e);
+			} else if (o instanceof int[]) {
+				int[] array = (int[]) o;
+
+				writeByte(INTS);
+				varInt(array.length);
+
+				for (int e : array)
+					writeInt(e);
+			} else if (o instanceof CharSequence) {
+				writeByte(STRING);
+				string(o.toString());
+			} else if (o instanceof Serializable) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+				out.writeObject(o);
+				out.close();
+				writeByte(SERIALIZED);
+				varInt(bytes.size());
+				write(bytes.toByteArray());
+			} else {
+				stringified++;
+				writeByte(STRING);
+				string(o.toString());
+			}
+
+			return this;
+		}
+	}
+
+	/**
+	 * Decoding of the content written by an {@link Output}.
+	 */
+	protected static class Input extends DataInputStream {
+		public Input(byte[] bytes, int offset, int length) {
+			super(new ByteArrayInputStream(bytes, offset, length));
+		}
+
+		public Input(InputStream in) {
+			super(in);
+		}
+
+		public String string() throws IOException {
+			byte[] bytes = new byte[varInt()];
+
+			readFully(bytes);
+
+			return new String(bytes, UTF8);
+		}
+
+		public int varInt() throws IOException {
+			int v = 0;
+
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = readByte();
+
+				v |= (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0)
+					return v;
+			}
+
+			throw new IOException("malformed integer");
+		}
+
+		public Object value() throws IOException {
+			byte tag = readByte();
+			int n;
+
+			switch (tag) {
+			case NULL:
+				return null;
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case BYTE:
+				return readByte();
+			case SHORT:
+				return readShort();
+			case INTEGER:
+				return readInt();
+			case LONG:
+				return readLong();
+			case FLOAT:
+				return readFloat();
+			case DOUBLE:
+				return readDouble();
+			case CHARACTER:
+				return readChar();
+			case STRING:
+				return string();
+			case ARRAY:
+				Object[] array = new Object[varInt()];
+
+				for (int i = 0; i < array.length; i++)
+					array[i] = value();
+
+				return array;
+			case LIST:
+				n = varInt();
+				ArrayList<Object> list = new ArrayList<Object>(n);
+
+				for (int i = 0; i < n; i++)
+					list.add(value());
+
+				return list;
+			case MAP:
+				n = varInt();
+				HashMap<Object, Object> map = new HashMap<Object, Object>();
+
+				for (int i = 0; i < n; i++)
+					map.put(value(), value());
+
+				return map;
+			case DOUBLES:
+				double[] doubles = new double[varInt()];
+
+				for (int i = 0; i < doubles.length; i++)
+					doubles[i] = readDouble();
+
+				return doubles;
+			case FLOATS:
+				float[] floats = new float[varInt()];
+
+				for (int i = 0; i < floats.length; i++)
+					floats[i] = readFloat();
+
+				return floats;
+			case INTS:
+				int[] ints = new int[varInt()];
+
+				for (int i = 0; i < ints.length; i++)
+					ints[i] = readInt();
+
+				return ints;
+			case SERIALIZED:
+				byte[] bytes = new byte[varInt()];
+
+				readFully(bytes);
+
+				try {
+					return new ObjectInputStream(new ByteArrayInputStream(
+							bytes)).readObject();
+				} catch (ClassNotFoundException e) {
+					throw new IOException("cannot read a value of class "
+							+ e.getMessage());
+				}
+			default:
+				throw new IOException("unknown value type " + tag);
+			}
+		}
+	}
+
+	/**
+	 * A byte array output stream giving access to its buffer.
+	 */
+	protected static class Bytes extends ByteArrayOutputStream {
+		public Bytes() {
+			super(4096);
+		}
+
+		public byte[] buffer() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,459 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.stream.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.graphstream.stream.SourceBase;
+
+/**
+ * Source replaying the content of a journal directory.
+ * 
+ * <p>
+ * The source sends the most recent valid checkpoint as a sequence of events
+ * creating the graph, then the events of the log that follow it. A damaged
+ * checkpoint is skipped in favour of the previous one. The log is read until
+ * its end or until the first incomplete or corrupted record, which is the
+ * expected state of the last segment after a crash. Nothing is modified in
+ * the directory, the position of the damage is available after
+ * {@link #replay()} so that a {@link Journal} can repair the log before
+ * appending to it.
+ * </p>
+ * 
+ * <p>
+ * For example, to load the state of a journal in a graph without journaling
+ * it further :
+ * 
+ * <pre>
+ * JournalSource source = new JournalSource(new File(&quot;journal&quot;));
+ * source.addSink(graph);
+ * source.replay();
+ * </pre>
+ * 
+ * </p>
+ */
+public class JournalSource extends SourceBase {
+	// Attribute
+
+	/**
+	 * The journal directory.
+	 */
+	protected File directory;
+
+	/**
+	 * Number of the first event after the checkpoint used, -1 if none.
+	 */
+	protected long checkpoint = -1;
+
+	/**
+	 * Number of the event following the last one replayed.
+	 */
+	protected long next = 0;
+
+	/**
+	 * Number of events replayed from the log.
+	 */
+	protected long replayed = 0;
+
+	/**
+	 * The segment where the log stopped being usable, null if the log is
+	 * intact.
+	 */
+	protected File damaged;
+
+	/**
+	 * Length of the usable part of the damaged segment.
+	 */
+	protected long damagedLength;
+
+	/**
+	 * Segments following the damage, that cannot be replayed.
+	 */
+	protected ArrayList<File> unreachable = new ArrayList<File>();
+
+	/**
+	 * Checkpoints skipped because their checksum does not match.
+	 */
+	protected ArrayList<File> ignored = new ArrayList<File>();
+
+	// Construction
+
+	/**
+	 * New source on a journal directory.
+	 * 
+	 * @param directory
+	 *            The directory of the journal.
+	 */
+	public JournalSource(File directory) {
+		super(String.format("journal:%s", directory.getName()));
+		this.directory = directory;
+	}
+
+	// Access
+
+	/**
+	 * Number of the first event not included in the checkpoint that was
+	 * replayed.
+	 * 
+	 * @return The number, or -1 if no checkpoint was used.
+	 */
+	public long getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Number of the event following the last event replayed, which is the
+	 * number of the next event to journal.
+	 * 
+	 * @return The number of the next event.
+	 */
+	public long getNextEvent() {
+		return next;
+	}
+
+	/**
+	 * Number of events replayed from the log, after the checkpoint.
+	 * 
+	 * @return The number of events.
+	 */
+	public long getReplayedEvents() {
+		return replayed;
+	}
+
+	/**
+	 * Is the log damaged ? It is after a crash, when the last records were
+	 * not entirely written.
+	 * 
+	 * @return True if the replay stopped before the end of the log.
+	 */
+	public boolean isDamaged() {
+		return damaged != null;
+	}
+
+	// Command
+
+	/**
+	 * Send the content of the journal to the sinks.
+	 * 
+	 * @return The number of the next event.
+	 * @throws IOException
+	 *             If a file cannot be read, or if the log cannot be replayed
+	 *             because no checkpoint precedes it.
+	 */
+	public long replay() throws IOException {
+		File[] checkpoints = JournalFormat.list(directory,
+				JournalFormat.CHECKPOINT_SUFFIX);
+		File[] segments = JournalFormat.list(directory,
+				JournalFormat.SEGMENT_SUFFIX);
+
+		checkpoint = -1;
+		damaged = null;
+		replayed = 0;
+		unreachable.clear();
+		ignored.clear();
+
+		for (int i = checkpoints.length - 1; i >= 0 && checkpoint < 0; i--) {
+			if (isValid(checkpoints[i]))
+				checkpoint = load(checkpoints[i]);
+			else
+				ignored.add(checkpoints[i]);
+		}
+
+		next = checkpoint < 0 ? 0 : checkpoint;
+
+		for (int i = 0; i < segments.length; i++) {
+			long first = JournalFormat.first(segments[i]);
+			long following = i + 1 < segments.length ? JournalFormat
+					.first(segments[i + 1])
+					: Long.MAX_VALUE;
+
+			if (following <= next)
+				continue;
+
+			if (damaged != null) {
+				unreachable.add(segments[i]);
+			} else if (first > next) {
+				throw new IOException(String.format(
+						"journal: events %d to %d are missing", next,
+						first - 1));
+			} else {
+				read(segments[i]);
+			}
+		}
+
+		return next;
+	}
+
+	// Utility
+
+	/**
+	 * Check the checksum of a checkpoint.
+	 */
+	protected boolean isValid(File file) throws IOException {
+		long length = file.length() - 8;
+
+		if (length < 0)
+			return false;
+
+		CheckedInputStream in = new CheckedInputStream(new BufferedInputStream(
+				new FileInputStream(file), 65536), new CRC32());
+		DataInputStream data = new DataInputStream(in);
+
+		try {
+			byte[] buffer = new byte[65536];
+
+			while (length > 0) {
+				int n = in.read(buffer, 0, (int) Math.min(buffer.length,
+						length));
+
+				if (n < 0)
+					return false;
+
+				length -= n;
+			}
+
+			long crc = in.getChecksum().getValue();
+
+			return data.readLong() == crc;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Send the content of a valid checkpoint.
+	 * 
+	 * @return The number of the first event not included.
+	 */
+	protected long load(File file) throws IOException {
+		JournalFormat.Input in = new JournalFormat.Input(
+				new BufferedInputStream(new FileInputStream(file), 65536));
+
+		try {
+			if (in.readInt() != JournalFormat.CHECKPOINT_MAGIC
+					|| in.readInt() != JournalFormat.VERSION)
+				throw new IOException(String.format(
+						"%s is not a graph checkpoint", file));
+
+			long lsn = in.readLong();
+			double step = in.readDouble();
+
+			sendStepBegins(sourceId, step);
+
+			for (int i = in.varInt(); i > 0; i--)
+				sendGraphAttributeAdded(sourceId, in.string(), in.value());
+
+			String ids[] = new String[in.varInt()];
+
+			for (int n = 0; n < ids.length; n++) {
+				ids[n] = in.string();
+				sendNodeAdded(sourceId, ids[n]);
+
+				for (int i = in.varInt(); i > 0; i--)
+					sendNodeAttributeAdded(sourceId, ids[n], in.string(), in
+							.value());
+			}
+
+			for (int e = in.varInt(); e > 0; e--) {
+				String id = in.string();
+				String source = ids[in.varInt()];
+				String target = ids[in.varInt()];
+
+				sendEdgeAdded(sourceId, id, source, target, in.readBoolean());
+
+				for (int i = in.varInt(); i > 0; i--)
+					sendEdgeAttributeAdded(sourceId, id, in.string(), in
+							.value());
+			}
+
+			return lsn;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Replay the records of a segment that follow the current event, and stop
+	 * at the first damaged one.
+	 */
+	protected void read(File segment) throws IOException {
+		InputStream stream = new BufferedInputStream(new FileInputStream(
+				segment), 65536);
+		DataInputStream in = new DataInputStream(stream);
+		CRC32 crc = new CRC32();
+		byte[] payload = new byte[4096];
+		long position = 0;
+
+		try {
+			try {
+				if (in.readInt() != JournalFormat.SEGMENT_MAGIC
+						|| in.readInt() != JournalFormat.VERSION
+						|| in.readLong() != JournalFormat.first(segment)) {
+					damage(segment, 0);
+					return;
+				}
+			} catch (EOFException e) {
+				damage(segment, 0);
+				return;
+			}
+
+			position = JournalFormat.SEGMENT_HEADER;
+
+			while (true) {
+				int length;
+				int checksum;
+
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+
+				try {
+					checksum = in.readInt();
+
+					if (length < 9 || length > JournalFormat.MAX_RECORD) {
+						damage(segment, position);
+						return;
+					}
+
+					if (payload.length < length)
+						payload = new byte[Math.max(length, payload.length * 2)];
+
+					in.readFully(payload, 0, length);
+				} catch (EOFException e) {
+					damage(segment, position);
+					return;
+				}
+
+				crc.reset();
+				crc.update(payload, 0, length);
+
+				if ((int) crc.getValue() != checksum) {
+					damage(segment, position);
+					return;
+				}
+
+				JournalFormat.Input record = new JournalFormat.Input(payload,
+						0, length);
+				long lsn = record.readLong();
+
+				if (lsn >= next) {
+					if (lsn != next) {
+						damage(segment, position);
+						return;
+					}
+
+					apply(record.readByte(), record);
+					next++;
+					replayed++;
+				}
+
+				position += JournalFormat.RECORD_HEADER + length;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	protected void damage(File segment, long length) {
+		damaged = segment;
+		damagedLength = length;
+	}
+
+	/**
+	 * Send the event of a record.
+	 */
+	protected void apply(byte type, JournalFormat.Input in) throws IOException {
+		String id;
+
+		switch (type) {
+		case JournalFormat.GRAPH_ATTRIBUTE_ADDED:
+			sendGraphAttributeAdded(sourceId, in.string(), in.value());
+			break;
+		case JournalFormat.GRAPH_ATTRIBUTE_CHANGED:
+			sendGraphAttributeChanged(sourceId, in.string(), null, in.value());
+			break;
+		case JournalFormat.GRAPH_ATTRIBUTE_REMOVED:
+			sendGraphAttributeRemoved(sourceId, in.string());
+			break;
+		case JournalFormat.NODE_ATTRIBUTE_ADDED:
+			id = in.string();
+			sendNodeAttributeAdded(sourceId, id, in.string(), in.value());
+			break;
+		case JournalFormat.NODE_ATTRIBUTE_CHANGED:
+			id = in.string();
+			sendNodeAttributeChanged(sourceId, id, in.string(), null, in
+					.value());
+			break;
+		case JournalFormat.NODE_ATTRIBUTE_REMOVED:
+			id = in.string();
+			sendNodeAttributeRemoved(sourceId, id, in.string());
+			break;
+		case JournalFormat.EDGE_ATTRIBUTE_ADDED:
+			id = in.string();
+			sendEdgeAttributeAdded(sourceId, id, in.string(), in.value());
+			break;
+		case JournalFormat.EDGE_ATTRIBUTE_CHANGED:
+			id = in.string();
+			sendEdgeAttributeChanged(sourceId, id, in.string(), null, in
+					.value());
+			break;
+		case JournalFormat.EDGE_ATTRIBUTE_REMOVED:
+			id = in.string();
+			sendEdgeAttributeRemoved(sourceId, id, in.string());
+			break;
+		case JournalFormat.NODE_ADDED:
+			sendNodeAdded(sourceId, in.string());
+			break;
+		case JournalFormat.NODE_REMOVED:
+			sendNodeRemoved(sourceId, in.string());
+			break;
+		case JournalFormat.EDGE_ADDED:
+			id = in.string();
+			sendEdgeAdded(sourceId, id, in.string(), in.string(), in
+					.readBoolean());
+			break;
+		case JournalFormat.EDGE_REMOVED:
+			sendEdgeRemoved(sourceId, in.string());
+			break;
+		case JournalFormat.GRAPH_CLEARED:
+			sendGraphCleared(sourceId);
+			break;
+		case JournalFormat.STEP_BEGINS:
+			sendStepBegins(sourceId, in.readDouble());
+			break;
+		default:
+			throw new IOException("unknown event type " + type);
+		}
+	}
+}
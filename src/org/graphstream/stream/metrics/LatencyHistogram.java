@@ -0,0 +1,198 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.metrics;
+
+/**
+ * Distribution of durations in nanoseconds.
+ * 
+ * <p>
+ * Durations are counted in buckets whose bounds are powers of two. Bucket i
+ * counts the durations d such that 2^(i-1) &lt;= d &lt; 2^i. This gives a
+ * constant time and allocation-free {@link #record(long)}, with a precision
+ * sufficient to find which sink is slow. The histogram also keeps the exact
+ * count, sum and maximum of the durations.
+ * </p>
+ * 
+ * <p>
+ * The histogram is synchronised so that it can be recorded in the thread that
+ * dispatches events and read in another thread (JMX or a monitoring thread).
+ * </p>
+ */
+public class LatencyHistogram {
+	// Attribute
+
+	/**
+	 * Number of buckets, one per bit of a long.
+	 */
+	public static final int BUCKETS = 64;
+
+	/**
+	 * The count of durations in each bucket.
+	 */
+	protected long[] buckets = new long[BUCKETS];
+
+	/**
+	 * The number of durations recorded.
+	 */
+	protected long count;
+
+	/**
+	 * The sum of durations recorded.
+	 */
+	protected long total;
+
+	/**
+	 * The largest duration recorded.
+	 */
+	protected long max;
+
+	// Construction
+
+	public LatencyHistogram() {
+	}
+
+	/**
+	 * Copy constructor.
+	 * 
+	 * @param other
+	 *            The histogram to copy.
+	 */
+	public LatencyHistogram(LatencyHistogram other) {
+		synchronized (other) {
+			System.arraycopy(other.buckets, 0, buckets, 0, BUCKETS);
+			count = other.count;
+			total = other.total;
+			max = other.max;
+		}
+	}
+
+	// Access
+
+	/**
+	 * Number of durations recorded.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * The sum of all the durations recorded in nanoseconds.
+	 * 
+	 * @return The total duration.
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	/**
+	 * The largest duration recorded in nanoseconds.
+	 * 
+	 * @return The maximum duration.
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * The average duration in nanoseconds.
+	 * 
+	 * @return The mean duration or 0 if nothing was recorded.
+	 */
+	public synchronized double getMean() {
+		return count > 0 ? ((double) total) / count : 0;
+	}
+
+	/**
+	 * An approximation by excess of the given percentile. The value returned
+	 * is the upper bound of the bucket containing the percentile.
+	 * 
+	 * @param percent
+	 *            The percentile, between 0 and 100.
+	 * @return The duration in nanoseconds below which the given percent of the
+	 *         durations fall.
+	 */
+	public synchronized long getPercentile(double percent) {
+		long limit = (long) Math.ceil(count * percent / 100.0);
+		long sum = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			sum += buckets[i];
+
+			if (sum >= limit && sum > 0)
+				return Math.min(i == 63 ? Long.MAX_VALUE : (1L << i), max);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * The number of durations in a bucket.
+	 * 
+	 * @param bucket
+	 *            The bucket index, between 0 and {@link #BUCKETS}.
+	 * @return The count of the bucket.
+	 */
+	public synchronized long getBucketCount(int bucket) {
+		return buckets[bucket];
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("n=%d mean=%.1fus p50=%dus p99=%dus max=%dus",
+				count, getMean() / 1000.0, getPercentile(50) / 1000,
+				getPercentile(99) / 1000, max / 1000);
+	}
+
+	// Command
+
+	/**
+	 * Add a duration.
+	 * 
+	 * @param nanos
+	 *            The duration in nanoseconds.
+	 */
+	public synchronized void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+		count++;
+		total += nanos;
+
+		if (nanos > max)
+			max = nanos;
+	}
+
+	/**
+	 * Forget all the durations recorded.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = 0;
+
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+}
@@ -0,0 +1,704 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.graphstream.stream.AttributeSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.Pipe;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.SourceBase;
+
+/**
+ * A pipe that lets all events pass while measuring them.
+ * 
+ * <p>
+ * This pipe can be inserted anywhere in a chain of sources and sinks. When
+ * enabled, it counts the events it receives by type, and measures the time
+ * spent by each of its sinks to handle each event. Since a sink handles an
+ * event synchronously, this time includes the time spent by all the sinks
+ * downstream of it. Therefore, inserting metering pipes at several points of a
+ * chain allows to find which sink is slow.
+ * </p>
+ * 
+ * <p>
+ * When disabled (the default), the only overhead is a test on a volatile flag
+ * per event. To measure the sinks, the pipe replaces them by timing wrappers
+ * in its sink lists when it is enabled, and restores them when it is disabled.
+ * This replacement is done in the thread that sends events, at the next event,
+ * so {@link #setEnabled(boolean)} can be called from any thread (for example
+ * from JMX). As a consequence, {@link #attributeSinks()} and
+ * {@link #elementSinks()} return the wrappers while the pipe is enabled.
+ * </p>
+ * 
+ * <p>
+ * The counts and latencies can be read at any time from any thread using the
+ * accessors or {@link #snapshot()}, and exposed via JMX by
+ * {@link StreamMetrics}.
+ * </p>
+ */
+public class MeteringPipe extends SourceBase implements Pipe,
+		MeteringPipeMXBean {
+	// Attribute
+
+	/**
+	 * The kinds of events counted.
+	 */
+	public static enum EventType {
+		NODE_ADDED, NODE_REMOVED, EDGE_ADDED, EDGE_REMOVED, STEP_BEGINS, GRAPH_CLEARED, GRAPH_ATTRIBUTE_ADDED, GRAPH_ATTRIBUTE_CHANGED, GRAPH_ATTRIBUTE_REMOVED, NODE_ATTRIBUTE_ADDED, NODE_ATTRIBUTE_CHANGED, NODE_ATTRIBUTE_REMOVED, EDGE_ATTRIBUTE_ADDED, EDGE_ATTRIBUTE_CHANGED, EDGE_ATTRIBUTE_REMOVED
+	}
+
+	/**
+	 * True if metering is requested or if the sinks are still wrapped. This is
+	 * the only flag tested when the pipe is disabled.
+	 */
+	protected volatile boolean active = false;
+
+	/**
+	 * True if metering is requested.
+	 */
+	protected volatile boolean enabled = false;
+
+	/**
+	 * True if the sinks are currently wrapped. Only accessed in the thread
+	 * that sends events.
+	 */
+	protected boolean wrapped = false;
+
+	/**
+	 * Count of events by type.
+	 */
+	protected AtomicLongArray counts = new AtomicLongArray(
+			EventType.values().length);
+
+	/**
+	 * The timing wrappers, one per registered sink.
+	 */
+	protected ArrayList<TimedSink> timedSinks = new ArrayList<TimedSink>();
+
+	// Construction
+
+	public MeteringPipe() {
+	}
+
+	/**
+	 * New metering pipe.
+	 * 
+	 * @param enabled
+	 *            If true the metering starts immediately.
+	 */
+	public MeteringPipe(boolean enabled) {
+		setEnabled(enabled);
+	}
+
+	// Access
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Number of events of the given type received while enabled.
+	 * 
+	 * @param type
+	 *            The event type.
+	 * @return The event count.
+	 */
+	public long getEventCount(EventType type) {
+		return counts.get(type.ordinal());
+	}
+
+	public long getEventCount() {
+		long sum = 0;
+
+		for (int i = 0; i < counts.length(); i++)
+			sum += counts.get(i);
+
+		return sum;
+	}
+
+	public Map<String, Long> getEventCounts() {
+		LinkedHashMap<String, Long> map = new LinkedHashMap<String, Long>();
+
+		for (EventType type : EventType.values())
+			map.put(type.name(), counts.get(type.ordinal()));
+
+		return map;
+	}
+
+	/**
+	 * The latency histograms of each sink, by sink name.
+	 * 
+	 * @return A map from sink name to a copy of its latency histogram.
+	 */
+	public Map<String, LatencyHistogram> getLatencies() {
+		LinkedHashMap<String, LatencyHistogram> map = new LinkedHashMap<String, LatencyHistogram>();
+
+		synchronized (timedSinks) {
+			for (TimedSink t : timedSinks)
+				map.put(t.name, new LatencyHistogram(t.latency));
+		}
+
+		return map;
+	}
+
+	public Map<String, Double> getMeanLatencies() {
+		LinkedHashMap<String, Double> map = new LinkedHashMap<String, Double>();
+
+		for (Map.Entry<String, LatencyHistogram> e : getLatencies().entrySet())
+			map.put(e.getKey(), e.getValue().getMean() / 1000.0);
+
+		return map;
+	}
+
+	public Map<String, Double> getP99Latencies() {
+		LinkedHashMap<String, Double> map = new LinkedHashMap<String, Double>();
+
+		for (Map.Entry<String, LatencyHistogram> e : getLatencies().entrySet())
+			map.put(e.getKey(), e.getValue().getPercentile(99) / 1000.0);
+
+		return map;
+	}
+
+	public Map<String, Double> getMaxLatencies() {
+		LinkedHashMap<String, Double> map = new LinkedHashMap<String, Double>();
+
+		for (Map.Entry<String, LatencyHistogram> e : getLatencies().entrySet())
+			map.put(e.getKey(), e.getValue().getMax() / 1000.0);
+
+		return map;
+	}
+
+	/**
+	 * A copy of the current counts and latencies.
+	 * 
+	 * @return The snapshot.
+	 */
+	public Snapshot snapshot() {
+		EnumMap<EventType, Long> c = new EnumMap<EventType, Long>(
+				EventType.class);
+
+		for (EventType type : EventType.values())
+			c.put(type, counts.get(type.ordinal()));
+
+		return new Snapshot(c, getLatencies());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("metering-pipe(%s)", enabled ? "on" : "off");
+	}
+
+	// Command
+
+	public synchronized void setEnabled(boolean on) {
+		enabled = on;
+		active = true;
+	}
+
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++)
+			counts.set(i, 0);
+
+		synchronized (timedSinks) {
+			for (TimedSink t : timedSinks)
+				t.latency.reset();
+		}
+	}
+
+	@Override
+	public void addSink(Sink sink) {
+		if (wrapped) {
+			TimedSink t = timedSinkFor(sink);
+			attrSinks.add(t);
+			eltsSinks.add(t);
+		} else {
+			super.addSink(sink);
+		}
+	}
+
+	@Override
+	public void addAttributeSink(AttributeSink sink) {
+		if (wrapped)
+			attrSinks.add(timedSinkFor(sink));
+		else
+			super.addAttributeSink(sink);
+	}
+
+	@Override
+	public void addElementSink(ElementSink sink) {
+		if (wrapped)
+			eltsSinks.add(timedSinkFor(sink));
+		else
+			super.addElementSink(sink);
+	}
+
+	@Override
+	public void removeSink(Sink sink) {
+		if (eventProcessing) {
+			removesinkLater(sink);
+		} else {
+			TimedSink t = findTimedSink(sink);
+
+			attrSinks.remove(sink);
+			eltsSinks.remove(sink);
+
+			if (t != null) {
+				attrSinks.remove(t);
+				eltsSinks.remove(t);
+				forgetTimedSink(t);
+			}
+		}
+	}
+
+	@Override
+	public void removeAttributeSink(AttributeSink sink) {
+		if (eventProcessing) {
+			removesinkLater(sink);
+		} else {
+			TimedSink t = findTimedSink(sink);
+
+			attrSinks.remove(sink);
+
+			if (t != null) {
+				attrSinks.remove(t);
+				forgetTimedSink(t);
+			}
+		}
+	}
+
+	@Override
+	public void removeElementSink(ElementSink sink) {
+		if (eventProcessing) {
+			removesinkLater(sink);
+		} else {
+			TimedSink t = findTimedSink(sink);
+
+			eltsSinks.remove(sink);
+
+			if (t != null) {
+				eltsSinks.remove(t);
+				forgetTimedSink(t);
+			}
+		}
+	}
+
+	@Override
+	public void clearSinks() {
+		super.clearSinks();
+
+		synchronized (timedSinks) {
+			timedSinks.clear();
+		}
+	}
+
+	/**
+	 * Count an event and wrap or unwrap the sinks if the state changed. Only
+	 * called when {@link #active} is true.
+	 * 
+	 * @param type
+	 *            The event type.
+	 */
+	protected void meter(EventType type) {
+		boolean on = enabled;
+
+		if (wrapped != on && !eventProcessing)
+			wrapSinks(on);
+
+		if (on) {
+			counts.incrementAndGet(type.ordinal());
+		} else if (!wrapped) {
+			synchronized (this) {
+				if (!enabled)
+					active = false;
+			}
+		}
+	}
+
+	/**
+	 * Replace each sink by its timing wrapper, or the reverse.
+	 * 
+	 * @param on
+	 *            If true wrap the sinks, else unwrap them.
+	 */
+	protected void wrapSinks(boolean on) {
+		for (int i = 0; i < attrSinks.size(); i++) {
+			AttributeSink sink = attrSinks.get(i);
+
+			if (on)
+				attrSinks.set(i, timedSinkFor(sink));
+			else if (sink instanceof TimedSink)
+				attrSinks.set(i, (AttributeSink) ((TimedSink) sink).sink);
+		}
+
+		for (int i = 0; i < eltsSinks.size(); i++) {
+			ElementSink sink = eltsSinks.get(i);
+
+			if (on)
+				eltsSinks.set(i, timedSinkFor(sink));
+			else if (sink instanceof TimedSink)
+				eltsSinks.set(i, (ElementSink) ((TimedSink) sink).sink);
+		}
+
+		wrapped = on;
+	}
+
+	protected TimedSink findTimedSink(Object sink) {
+		synchronized (timedSinks) {
+			for (TimedSink t : timedSinks)
+				if (t.sink == sink)
+					return t;
+		}
+
+		return null;
+	}
+
+	protected TimedSink timedSinkFor(Object sink) {
+		TimedSink t = findTimedSink(sink);
+
+		if (t == null) {
+			t = new TimedSink(sink);
+
+			synchronized (timedSinks) {
+				timedSinks.add(t);
+			}
+		}
+
+		return t;
+	}
+
+	protected void forgetTimedSink(TimedSink t) {
+		if (!attrSinks.contains(t) && !eltsSinks.contains(t)) {
+			synchronized (timedSinks) {
+				timedSinks.remove(t);
+			}
+		}
+	}
+
+	// Sink
+
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (active)
+			meter(EventType.EDGE_ATTRIBUTE_ADDED);
+
+		sendEdgeAttributeAdded(graphId, timeId, edgeId, attribute, value);
+	}
+
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (active)
+			meter(EventType.EDGE_ATTRIBUTE_CHANGED);
+
+		sendEdgeAttributeChanged(graphId, timeId, edgeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		if (active)
+			meter(EventType.EDGE_ATTRIBUTE_REMOVED);
+
+		sendEdgeAttributeRemoved(graphId, timeId, edgeId, attribute);
+	}
+
+	public void graphAttributeAdded(String graphId, long timeId,
+			String attribute, Object value) {
+		if (active)
+			meter(EventType.GRAPH_ATTRIBUTE_ADDED);
+
+		sendGraphAttributeAdded(graphId, timeId, attribute, value);
+	}
+
+	public void graphAttributeChanged(String graphId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		if (active)
+			meter(EventType.GRAPH_ATTRIBUTE_CHANGED);
+
+		sendGraphAttributeChanged(graphId, timeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void graphAttributeRemoved(String graphId, long timeId,
+			String attribute) {
+		if (active)
+			meter(EventType.GRAPH_ATTRIBUTE_REMOVED);
+
+		sendGraphAttributeRemoved(graphId, timeId, attribute);
+	}
+
+	public void nodeAttributeAdded(String graphId, long timeId, String nodeId,
+			String attribute, Object value) {
+		if (active)
+			meter(EventType.NODE_ATTRIBUTE_ADDED);
+
+		sendNodeAttributeAdded(graphId, timeId, nodeId, attribute, value);
+	}
+
+	public void nodeAttributeChanged(String graphId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		if (active)
+			meter(EventType.NODE_ATTRIBUTE_CHANGED);
+
+		sendNodeAttributeChanged(graphId, timeId, nodeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void nodeAttributeRemoved(String graphId, long timeId,
+			String nodeId, String attribute) {
+		if (active)
+			meter(EventType.NODE_ATTRIBUTE_REMOVED);
+
+		sendNodeAttributeRemoved(graphId, timeId, nodeId, attribute);
+	}
+
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (active)
+			meter(EventType.EDGE_ADDED);
+
+		sendEdgeAdded(graphId, timeId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		if (active)
+			meter(EventType.EDGE_REMOVED);
+
+		sendEdgeRemoved(graphId, timeId, edgeId);
+	}
+
+	public void graphCleared(String graphId, long timeId) {
+		if (active)
+			meter(EventType.GRAPH_CLEARED);
+
+		sendGraphCleared(graphId, timeId);
+	}
+
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (active)
+			meter(EventType.NODE_ADDED);
+
+		sendNodeAdded(graphId, timeId, nodeId);
+	}
+
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		if (active)
+			meter(EventType.NODE_REMOVED);
+
+		sendNodeRemoved(graphId, timeId, nodeId);
+	}
+
+	public void stepBegins(String graphId, long timeId, double step) {
+		if (active)
+			meter(EventType.STEP_BEGINS);
+
+		sendStepBegins(graphId, timeId, step);
+	}
+
+	// Nested classes
+
+	/**
+	 * Immutable copy of the counts and latencies of a metering pipe.
+	 */
+	public static class Snapshot {
+		public final Map<EventType, Long> counts;
+
+		public final Map<String, LatencyHistogram> latencies;
+
+		public Snapshot(Map<EventType, Long> counts,
+				Map<String, LatencyHistogram> latencies) {
+			this.counts = Collections.unmodifiableMap(counts);
+			this.latencies = Collections.unmodifiableMap(latencies);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+
+			for (Map.Entry<EventType, Long> e : counts.entrySet())
+				if (e.getValue() > 0)
+					builder.append(String.format("%s=%d ", e.getKey(),
+							e.getValue()));
+
+			for (Map.Entry<String, LatencyHistogram> e : latencies.entrySet())
+				builder.append(String.format("%n    %s: %s", e.getKey(),
+						e.getValue()));
+
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Wrapper around a sink that measures the time spent in each of its event
+	 * handlers.
+	 */
+	protected static class TimedSink implements Sink {
+		/**
+		 * The sink measured, an attribute sink, an element sink or both.
+		 */
+		protected Object sink;
+
+		/**
+		 * The name of the sink in the reports.
+		 */
+		protected String name;
+
+		/**
+		 * Time spent by the sink in each event handler.
+		 */
+		protected LatencyHistogram latency = new LatencyHistogram();
+
+		public TimedSink(Object sink) {
+			String type = sink.getClass().getSimpleName();
+
+			if (type.length() == 0)
+				type = sink.getClass().getName();
+
+			this.sink = sink;
+			this.name = String.format("%s@%x", type,
+					System.identityHashCode(sink));
+		}
+
+		@Override
+		public String toString() {
+			return sink.toString();
+		}
+
+		public void edgeAttributeAdded(String sourceId, long timeId,
+				String edgeId, String attribute, Object value) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).edgeAttributeAdded(sourceId, timeId, edgeId,
+					attribute, value);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void edgeAttributeChanged(String sourceId, long timeId,
+				String edgeId, String attribute, Object oldValue,
+				Object newValue) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).edgeAttributeChanged(sourceId, timeId,
+					edgeId, attribute, oldValue, newValue);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void edgeAttributeRemoved(String sourceId, long timeId,
+				String edgeId, String attribute) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).edgeAttributeRemoved(sourceId, timeId,
+					edgeId, attribute);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void graphAttributeAdded(String sourceId, long timeId,
+				String attribute, Object value) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).graphAttributeAdded(sourceId, timeId,
+					attribute, value);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void graphAttributeChanged(String sourceId, long timeId,
+				String attribute, Object oldValue, Object newValue) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).graphAttributeChanged(sourceId, timeId,
+					attribute, oldValue, newValue);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void graphAttributeRemoved(String sourceId, long timeId,
+				String attribute) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).graphAttributeRemoved(sourceId, timeId,
+					attribute);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).nodeAttributeAdded(sourceId, timeId, nodeId,
+					attribute, value);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).nodeAttributeChanged(sourceId, timeId,
+					nodeId, attribute, oldValue, newValue);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void nodeAttributeRemoved(String sourceId, long timeId,
+				String nodeId, String attribute) {
+			long t = System.nanoTime();
+			((AttributeSink) sink).nodeAttributeRemoved(sourceId, timeId,
+					nodeId, attribute);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			long t = System.nanoTime();
+			((ElementSink) sink).edgeAdded(sourceId, timeId, edgeId,
+					fromNodeId, toNodeId, directed);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+			long t = System.nanoTime();
+			((ElementSink) sink).edgeRemoved(sourceId, timeId, edgeId);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void graphCleared(String sourceId, long timeId) {
+			long t = System.nanoTime();
+			((ElementSink) sink).graphCleared(sourceId, timeId);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			long t = System.nanoTime();
+			((ElementSink) sink).nodeAdded(sourceId, timeId, nodeId);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			long t = System.nanoTime();
+			((ElementSink) sink).nodeRemoved(sourceId, timeId, nodeId);
+			latency.record(System.nanoTime() - t);
+		}
+
+		public void stepBegins(String sourceId, long timeId, double step) {
+			long t = System.nanoTime();
+			((ElementSink) sink).stepBegins(sourceId, timeId, step);
+			latency.record(System.nanoTime() - t);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of a {@link MeteringPipe}.
+ * 
+ * <p>
+ * This is a JMX MXBean, the maps are exposed as tabular data.
+ * </p>
+ */
+public interface MeteringPipeMXBean {
+	/**
+	 * Is the metering active?
+	 * 
+	 * @return True if events are counted and sinks timed.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Activate or deactivate the metering.
+	 * 
+	 * @param on
+	 *            True to count events and time sinks.
+	 */
+	void setEnabled(boolean on);
+
+	/**
+	 * Total number of events received while enabled.
+	 * 
+	 * @return The event count.
+	 */
+	long getEventCount();
+
+	/**
+	 * Number of events received while enabled, by event type.
+	 * 
+	 * @return A map from event type name to event count.
+	 */
+	Map<String, Long> getEventCounts();
+
+	/**
+	 * Average time spent by each sink to handle an event.
+	 * 
+	 * @return A map from sink name to mean latency in microseconds.
+	 */
+	Map<String, Double> getMeanLatencies();
+
+	/**
+	 * The 99th percentile of the time spent by each sink to handle an event.
+	 * 
+	 * @return A map from sink name to latency in microseconds.
+	 */
+	Map<String, Double> getP99Latencies();
+
+	/**
+	 * Largest time spent by each sink to handle an event.
+	 * 
+	 * @return A map from sink name to maximum latency in microseconds.
+	 */
+	Map<String, Double> getMaxLatencies();
+
+	/**
+	 * Forget all counts and latencies.
+	 */
+	void reset();
+}
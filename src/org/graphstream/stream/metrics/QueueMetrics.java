@@ -0,0 +1,226 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.metrics;
+
+import org.miv.mbox.MBoxBase;
+
+/**
+ * Queue statistics of a {@link org.graphstream.stream.thread.ThreadProxyPipe}.
+ * 
+ * <p>
+ * Once given to a thread proxy pipe with
+ * {@link org.graphstream.stream.thread.ThreadProxyPipe#setQueueMetrics(QueueMetrics)}
+ * , each pump is measured : the number of events waiting in the message box,
+ * the time spent to dispatch them and the resulting drain rate. The drain rate
+ * is the number of events dispatched per second of wall time, smoothed with an
+ * exponential moving average.
+ * </p>
+ */
+public class QueueMetrics implements QueueMetricsMXBean {
+	// Attribute
+
+	/**
+	 * Weight of the last measure in the smoothed drain rate.
+	 */
+	protected static final double SMOOTHING = 0.2;
+
+	/**
+	 * The message box measured.
+	 */
+	protected volatile MBoxBase box;
+
+	/**
+	 * Largest depth seen at a pump.
+	 */
+	protected int maxDepth;
+
+	/**
+	 * Number of pumps.
+	 */
+	protected long pumps;
+
+	/**
+	 * Number of events dispatched.
+	 */
+	protected long drained;
+
+	/**
+	 * Smoothed drain rate in events per second.
+	 */
+	protected double drainRate;
+
+	/**
+	 * End time of the last pump, in nanoseconds.
+	 */
+	protected long lastPump = -1;
+
+	/**
+	 * Duration of pumps.
+	 */
+	protected LatencyHistogram pumpTimes = new LatencyHistogram();
+
+	// Construction
+
+	public QueueMetrics() {
+	}
+
+	// Access
+
+	public int getQueueDepth() {
+		MBoxBase b = box;
+
+		return b != null ? b.getMessageCount() : 0;
+	}
+
+	public synchronized int getMaxQueueDepth() {
+		return maxDepth;
+	}
+
+	public synchronized long getPumpCount() {
+		return pumps;
+	}
+
+	public synchronized long getDrainedEventCount() {
+		return drained;
+	}
+
+	public synchronized double getDrainRate() {
+		return drainRate;
+	}
+
+	public double getMeanPumpTime() {
+		return pumpTimes.getMean() / 1000.0;
+	}
+
+	/**
+	 * The distribution of the pump durations.
+	 * 
+	 * @return The pump duration histogram.
+	 */
+	public LatencyHistogram getPumpTimes() {
+		return pumpTimes;
+	}
+
+	/**
+	 * A consistent copy of the current statistics.
+	 * 
+	 * @return The snapshot.
+	 */
+	public synchronized Snapshot snapshot() {
+		return new Snapshot(getQueueDepth(), maxDepth, pumps, drained,
+				drainRate, new LatencyHistogram(pumpTimes));
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	// Command
+
+	public synchronized void reset() {
+		maxDepth = 0;
+		pumps = 0;
+		drained = 0;
+		drainRate = 0;
+		lastPump = -1;
+		pumpTimes.reset();
+	}
+
+	/**
+	 * Set the message box measured. This is called by the thread proxy pipe.
+	 * 
+	 * @param box
+	 *            The message box, or null to detach.
+	 */
+	public void attach(MBoxBase box) {
+		this.box = box;
+	}
+
+	/**
+	 * Dispatch all the pending messages of the measured box, measuring the
+	 * queue. This is called by the thread proxy pipe in place of
+	 * {@link MBoxBase#processMessages()}.
+	 */
+	public void pump() {
+		MBoxBase b = box;
+		int depth = b.getMessageCount();
+		long t1 = System.nanoTime();
+
+		b.processMessages();
+
+		long t2 = System.nanoTime();
+
+		pumpTimes.record(t2 - t1);
+
+		synchronized (this) {
+			pumps++;
+			drained += depth;
+
+			if (depth > maxDepth)
+				maxDepth = depth;
+
+			if (lastPump >= 0 && t2 > lastPump) {
+				double rate = depth / ((t2 - lastPump) / 1000000000.0);
+				drainRate = SMOOTHING * rate + (1 - SMOOTHING) * drainRate;
+			}
+
+			lastPump = t2;
+		}
+	}
+
+	// Nested classes
+
+	/**
+	 * Immutable copy of the queue statistics.
+	 */
+	public static class Snapshot {
+		public final int depth;
+
+		public final int maxDepth;
+
+		public final long pumps;
+
+		public final long drained;
+
+		public final double drainRate;
+
+		public final LatencyHistogram pumpTimes;
+
+		public Snapshot(int depth, int maxDepth, long pumps, long drained,
+				double drainRate, LatencyHistogram pumpTimes) {
+			this.depth = depth;
+			this.maxDepth = maxDepth;
+			this.pumps = pumps;
+			this.drained = drained;
+			this.drainRate = drainRate;
+			this.pumpTimes = pumpTimes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"depth=%d max=%d pumps=%d drained=%d rate=%.1f/s pump[%s]",
+					depth, maxDepth, pumps, drained, drainRate, pumpTimes);
+		}
+	}
+}
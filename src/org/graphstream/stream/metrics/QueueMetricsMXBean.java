@@ -0,0 +1,78 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.metrics;
+
+/**
+ * Management interface of a {@link QueueMetrics}.
+ * 
+ * <p>
+ * This is a JMX MXBean.
+ * </p>
+ */
+public interface QueueMetricsMXBean {
+	/**
+	 * Number of events currently waiting in the message box.
+	 * 
+	 * @return The queue depth.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * Largest number of events found in the message box at a pump.
+	 * 
+	 * @return The maximum queue depth.
+	 */
+	int getMaxQueueDepth();
+
+	/**
+	 * Number of calls to pump.
+	 * 
+	 * @return The pump count.
+	 */
+	long getPumpCount();
+
+	/**
+	 * Number of events dispatched by all the pumps.
+	 * 
+	 * @return The drained event count.
+	 */
+	long getDrainedEventCount();
+
+	/**
+	 * Smoothed number of events dispatched per second.
+	 * 
+	 * @return The drain rate in events per second.
+	 */
+	double getDrainRate();
+
+	/**
+	 * Average time spent dispatching events at each pump.
+	 * 
+	 * @return The mean pump duration in microseconds.
+	 */
+	double getMeanPumpTime();
+
+	/**
+	 * Forget all counts.
+	 */
+	void reset();
+}
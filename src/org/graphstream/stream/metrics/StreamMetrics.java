@@ -0,0 +1,270 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+package org.graphstream.stream.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.graphstream.stream.thread.ThreadProxyPipe;
+
+/**
+ * Registry of the metered parts of a stream.
+ * 
+ * <p>
+ * Metering pipes and thread proxy pipes registered here under a name are
+ * exposed as JMX MBeans in the platform MBean server, under the
+ * "org.graphstream" domain, and can be read all at once with
+ * {@link #snapshot()}. This allows to follow a chain like
+ * </p>
+ * 
+ * <pre>
+ * ThreadProxyPipe -&gt; GraphicGraph -&gt; layout -&gt; FileSinkDGS
+ * </pre>
+ * 
+ * <p>
+ * by registering the thread proxy pipe to see its queue depth and drain rate,
+ * and by inserting a {@link MeteringPipe} before the graphic graph to see the
+ * time spent in each sink.
+ * </p>
+ */
+public class StreamMetrics {
+	// Attribute
+
+	/**
+	 * The JMX domain of the MBeans.
+	 */
+	public static final String DOMAIN = "org.graphstream";
+
+	/**
+	 * Registered metering pipes by name.
+	 */
+	protected static HashMap<String, MeteringPipe> pipes = new HashMap<String, MeteringPipe>();
+
+	/**
+	 * Registered queues by name.
+	 */
+	protected static HashMap<String, QueueMetrics> queues = new HashMap<String, QueueMetrics>();
+
+	/**
+	 * The pipes measured by the registered queues, by name.
+	 */
+	protected static HashMap<String, ThreadProxyPipe> queuePipes = new HashMap<String, ThreadProxyPipe>();
+
+	// Access
+
+	/**
+	 * A registered metering pipe.
+	 * 
+	 * @param name
+	 *            The name of the pipe.
+	 * @return The pipe or null if not found.
+	 */
+	public static synchronized MeteringPipe getMeteringPipe(String name) {
+		return pipes.get(name);
+	}
+
+	/**
+	 * The queue metrics of a registered thread proxy pipe.
+	 * 
+	 * @param name
+	 *            The name of the thread proxy pipe.
+	 * @return The queue metrics or null if not found.
+	 */
+	public static synchronized QueueMetrics getQueueMetrics(String name) {
+		return queues.get(name);
+	}
+
+	/**
+	 * Copy of all the registered metrics at the current time.
+	 * 
+	 * @return The snapshot.
+	 */
+	public static synchronized Snapshot snapshot() {
+		LinkedHashMap<String, MeteringPipe.Snapshot> p = new LinkedHashMap<String, MeteringPipe.Snapshot>();
+		LinkedHashMap<String, QueueMetrics.Snapshot> q = new LinkedHashMap<String, QueueMetrics.Snapshot>();
+
+		for (Map.Entry<String, MeteringPipe> e : pipes.entrySet())
+			p.put(e.getKey(), e.getValue().snapshot());
+
+		for (Map.Entry<String, QueueMetrics> e : queues.entrySet())
+			q.put(e.getKey(), e.getValue().snapshot());
+
+		return new Snapshot(System.currentTimeMillis(), p, q);
+	}
+
+	// Command
+
+	/**
+	 * Create, enable and register a new metering pipe.
+	 * 
+	 * @param name
+	 *            The name of the pipe.
+	 * @return The new pipe.
+	 */
+	public static MeteringPipe newMeteringPipe(String name) {
+		MeteringPipe pipe = new MeteringPipe(true);
+		register(name, pipe);
+
+		return pipe;
+	}
+
+	/**
+	 * Register a metering pipe. If another pipe was registered with the same
+	 * name, it is replaced.
+	 * 
+	 * @param name
+	 *            The name of the pipe.
+	 * @param pipe
+	 *            The pipe.
+	 */
+	public static synchronized void register(String name, MeteringPipe pipe) {
+		unregister(name);
+		pipes.put(name, pipe);
+		registerMBean("MeteringPipe", name, pipe);
+	}
+
+	/**
+	 * Start measuring the queue of a thread proxy pipe and register it. If
+	 * another pipe was registered with the same name, it is replaced.
+	 * 
+	 * @param name
+	 *            The name of the pipe.
+	 * @param pipe
+	 *            The pipe.
+	 * @return The queue metrics of the pipe.
+	 */
+	public static synchronized QueueMetrics register(String name,
+			ThreadProxyPipe pipe) {
+		QueueMetrics metrics = new QueueMetrics();
+
+		unregister(name);
+		pipe.setQueueMetrics(metrics);
+		queues.put(name, metrics);
+		queuePipes.put(name, pipe);
+		registerMBean("ThreadProxyPipe", name, metrics);
+
+		return metrics;
+	}
+
+	/**
+	 * Remove a metering pipe or queue from the registry and from JMX. A
+	 * metering pipe is not disabled by this operation. A queue stops being
+	 * measured at the next pump of its pipe.
+	 * 
+	 * @param name
+	 *            The name under which the pipe was registered.
+	 */
+	public static synchronized void unregister(String name) {
+		if (pipes.remove(name) != null)
+			unregisterMBean("MeteringPipe", name);
+
+		QueueMetrics metrics = queues.remove(name);
+		ThreadProxyPipe pipe = queuePipes.remove(name);
+
+		if (metrics != null) {
+			if (pipe.getQueueMetrics() == metrics)
+				pipe.setQueueMetrics(null);
+
+			unregisterMBean("ThreadProxyPipe", name);
+		}
+	}
+
+	protected static ObjectName objectName(String type, String name)
+			throws JMException {
+		return new ObjectName(String.format("%s:type=%s,name=%s", DOMAIN,
+				type, ObjectName.quote(name)));
+	}
+
+	protected static void registerMBean(String type, String name, Object bean) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = objectName(type, name);
+
+			if (server.isRegistered(on))
+				server.unregisterMBean(on);
+
+			server.registerMBean(bean, on);
+		} catch (JMException e) {
+			System.err.printf("Cannot register MBean '%s' : %s%n", name,
+					e.getMessage());
+		}
+	}
+
+	protected static void unregisterMBean(String type, String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = objectName(type, name);
+
+			if (server.isRegistered(on))
+				server.unregisterMBean(on);
+		} catch (JMException e) {
+			System.err.printf("Cannot unregister MBean '%s' : %s%n", name,
+					e.getMessage());
+		}
+	}
+
+	// Nested classes
+
+	/**
+	 * Copy of all the registered metrics at a given time.
+	 */
+	public static class Snapshot {
+		/**
+		 * Time of the snapshot in milliseconds.
+		 */
+		public final long time;
+
+		public final Map<String, MeteringPipe.Snapshot> pipes;
+
+		public final Map<String, QueueMetrics.Snapshot> queues;
+
+		public Snapshot(long time, Map<String, MeteringPipe.Snapshot> pipes,
+				Map<String, QueueMetrics.Snapshot> queues) {
+			this.time = time;
+			this.pipes = Collections.unmodifiableMap(pipes);
+			this.queues = Collections.unmodifiableMap(queues);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+
+			for (Map.Entry<String, QueueMetrics.Snapshot> e : queues
+					.entrySet())
+				builder.append(String.format("queue %s: %s%n", e.getKey(),
+						e.getValue()));
+
+			for (Map.Entry<String, MeteringPipe.Snapshot> e : pipes.entrySet())
+				builder.append(String.format("pipe %s: %s%n", e.getKey(),
+						e.getValue()));
+
+			return builder.toString();
+		}
+	}
+}
@@ -29,8 +29,10 @@ import org.graphstream.stream.ProxyPipe;
 import org.graphstream.stream.Sink;
 import org.graphstream.stream.Source;
 import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.metrics.QueueMetrics;
 import org.miv.mbox.CannotPostException;
 import org.miv.mbox.MBox;
+import org.miv.mbox.MBoxBase;
 import org.miv.mbox.MBoxListener;
 import org.miv.mbox.MBoxStandalone;
 
@@ -99,6 +101,52 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 	 */
 	protected boolean unregisterWhenPossible = false;
 
+	/**
+	 * Optional measure of the message box, null if not measured.
+	 */
+	protected volatile QueueMetrics queueMetrics = null;
+
+	/**
+	 * The measure attached to the message box, changed only in the output
+	 * thread.
+	 */
+	protected QueueMetrics attachedMetrics = null;
+
+	/**
+	 * Set when a node or edge is added or removed or when the graph is
+	 * cleared, until a thread waiting for such changes sees it.
+	 */
+	protected volatile boolean structureChanged = false;
+
+	/**
+	 * Number of threads waiting for structure changes, modified under
+	 * {@link #structureLock}. Posting an event only takes the lock when it is
+	 * not zero.
+	 */
+	protected volatile int waiters = 0;
+
+	/**
+	 * Lock on which threads wait for structure changes.
+	 */
+	protected final Object structureLock = new Object();
+
+	/**
+	 * Prefix of the attributes whose changes wake up the threads waiting for
+	 * structure changes, null if none.
+	 */
+	protected volatile String wakingPrefix = null;
+
+	/**
+	 * Optional action run in the input thread when events are posted while
+	 * none were pending, null if none.
+	 */
+	protected volatile Runnable pendingListener = null;
+
+	/**
+	 * Set when the pending listener was run, until the next pump.
+	 */
+	protected volatile boolean pending = false;
+
 	// Constructors
 
 	/**
@@ -218,6 +266,15 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		return String.format("thread-proxy(from %s to %s)", from, dest);
 	}
 
+	/**
+	 * The measure of the message box of this proxy.
+	 * 
+	 * @return The queue metrics, or null if the queue is not measured.
+	 */
+	public QueueMetrics getQueueMetrics() {
+		return queueMetrics;
+	}
+
 	// Command
 
 	/**
@@ -248,7 +305,145 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 	 * called.
 	 */
 	public void pump() {
-		((MBoxStandalone) events).processMessages();
+		QueueMetrics metrics = queueMetrics;
+
+		pending = false;
+
+		if (metrics != attachedMetrics) {
+			if (attachedMetrics != null)
+				attachedMetrics.attach(null);
+
+			if (metrics != null)
+				metrics.attach((MBoxBase) events);
+
+			attachedMetrics = metrics;
+		}
+
+		if (metrics == null)
+			((MBoxStandalone) events).processMessages();
+		else
+			metrics.pump();
+	}
+
+	/**
+	 * Wait in the output thread until a node or edge is added or removed or
+	 * the graph is cleared in the input thread, or until a timeout. A change
+	 * that occurred since the last call returns at once. Other events do not
+	 * wake the waiting thread, unless they change an attribute whose name
+	 * starts with the prefix given to {@link #setWakingPrefix(String)}. They
+	 * are only dispatched by {@link #pump()}, the waiting thread should pump
+	 * at each timeout so that they do not pile up.
+	 * 
+	 * @param timeout
+	 *            Maximum time to wait in milliseconds, 0 to wait until a
+	 *            change.
+	 * @return True if the structure changed or {@link #wakeUp()} was called,
+	 *         false if the timeout expired.
+	 */
+	public boolean waitStructureChange(long timeout) {
+		synchronized (structureLock) {
+			if (!structureChanged) {
+				waiters++;
+
+				try {
+					// Checked again after counting this thread, see wakeUp().
+
+					if (!structureChanged)
+						structureLock.wait(timeout);
+				} catch (InterruptedException e) {
+				} finally {
+					waiters--;
+				}
+			}
+
+			boolean changed = structureChanged;
+			structureChanged = false;
+
+			return changed;
+		}
+	}
+
+	/**
+	 * Wake up the thread waiting in {@link #waitStructureChange(long)}, as if
+	 * the structure changed.
+	 */
+	public void wakeUp() {
+		// The flag is set before the waiters are counted, and a waiter counts
+		// itself before checking the flag, so one of them always sees the
+		// other.
+
+		if (!structureChanged) {
+			structureChanged = true;
+
+			if (waiters > 0) {
+				synchronized (structureLock) {
+					structureLock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wake up the threads waiting in {@link #waitStructureChange(long)} when
+	 * an attribute whose name starts with a prefix is added, changed or
+	 * removed.
+	 * 
+	 * @param prefix
+	 *            The prefix, or null to wake up only on structure changes.
+	 */
+	public void setWakingPrefix(String prefix) {
+		wakingPrefix = prefix;
+	}
+
+	/**
+	 * Run an action each time events are posted while none were pending, that
+	 * is at most once between two calls to {@link #pump()}. The action is run
+	 * in the input thread, it must only schedule the pump in the output
+	 * thread, not pump itself.
+	 * 
+	 * @param listener
+	 *            The action, or null to remove it.
+	 */
+	public void setPendingEventsListener(Runnable listener) {
+		pending = false;
+		pendingListener = listener;
+	}
+
+	/**
+	 * Wake up the waiting threads if an attribute starts with the waking
+	 * prefix.
+	 */
+	protected void wake(String attribute) {
+		String prefix = wakingPrefix;
+
+		if (prefix != null && attribute.startsWith(prefix))
+			wakeUp();
+	}
+
+	/**
+	 * Run the pending events listener if this is the first event posted since
+	 * the last pump.
+	 */
+	protected void signalPending() {
+		Runnable listener = pendingListener;
+
+		if (listener != null && !pending) {
+			pending = true;
+			listener.run();
+		}
+	}
+
+	/**
+	 * Measure the depth and drain rate of the message box at each pump. This
+	 * can be called from any thread, the metrics are attached to or detached
+	 * from the message box by the output thread at the next pump.
+	 * 
+	 * @param metrics
+	 *            The queue metrics, or null to stop measuring.
+	 * @see org.graphstream.stream.metrics.StreamMetrics
+	 */
+	public void setQueueMetrics(QueueMetrics metrics) {
+		queueMetrics = metrics;
 	}
 
 	// Command
@@ -324,6 +519,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.ADD_EDGE_ATTR, graphId, timeId,
 					edgeId, attribute, value);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -337,6 +534,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.CHG_EDGE_ATTR, graphId, timeId,
 					edgeId, attribute, oldValue, newValue);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -350,6 +549,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.DEL_EDGE_ATTR, graphId, timeId,
 					edgeId, attribute);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -363,6 +564,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.ADD_GRAPH_ATTR, graphId, timeId,
 					attribute, value);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -376,6 +579,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.CHG_GRAPH_ATTR, graphId, timeId,
 					attribute, oldValue, newValue);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -389,6 +594,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.DEL_GRAPH_ATTR, graphId, timeId,
 					attribute);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -402,6 +609,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.ADD_NODE_ATTR, graphId, timeId,
 					nodeId, attribute, value);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -415,6 +624,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.CHG_NODE_ATTR, graphId, timeId,
 					nodeId, attribute, oldValue, newValue);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -428,6 +639,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.DEL_NODE_ATTR, graphId, timeId,
 					nodeId, attribute);
+			wake(attribute);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -441,6 +654,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 		try {
 			events.post(from, GraphEvents.ADD_EDGE, graphId, timeId, edgeId,
 					fromNodeId, toNodeId, directed);
+			wakeUp();
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -452,6 +667,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 
 		try {
 			events.post(from, GraphEvents.DEL_EDGE, graphId, timeId, edgeId);
+			wakeUp();
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -463,6 +680,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 
 		try {
 			events.post(from, GraphEvents.CLEARED, graphId, timeId);
+			wakeUp();
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -474,6 +693,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 
 		try {
 			events.post(from, GraphEvents.ADD_NODE, graphId, timeId, nodeId);
+			wakeUp();
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -485,6 +706,8 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 
 		try {
 			events.post(from, GraphEvents.DEL_NODE, graphId, timeId, nodeId);
+			wakeUp();
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
@@ -496,6 +719,7 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe,
 
 		try {
 			events.post(from, GraphEvents.STEP, graphId, timeId, step);
+			signalPending();
 		} catch (CannotPostException e) {
 			e.printStackTrace();
 		}
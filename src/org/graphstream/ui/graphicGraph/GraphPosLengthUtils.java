@@ -16,7 +16,6 @@
 
 package org.graphstream.ui.graphicGraph;
 
-import java.util.Iterator;
 import java.util.Random;
 
 import org.graphstream.graph.Edge;
@@ -38,7 +37,7 @@ public class GraphPosLengthUtils {
 	 * Choose a node at random.
 	 * 
 	 * @return A node chosen at random.
-	 * @complexity at worse O(n) where n is the number of nodes.
+	 * @complexity Constant.
 	 */
 	public static Node randomNode(Graph graph) {
 		return randomNode(graph, new Random());
@@ -50,26 +49,32 @@ public class GraphPosLengthUtils {
 	 * @param random
 	 *            The random number generator to use.
 	 * @return A node chosen at random.
-	 * @complexity at worse O(n) where n is the number of nodes.
+	 * @complexity Constant.
 	 */
 	public static Node randomNode(Graph graph, Random random) {
-		int n = graph.getNodeCount();
-		int r = random.nextInt(n);
-		int i = 0;
-
-		Iterator<? extends Node> nodes = graph.getNodeIterator();
-
-		while (nodes.hasNext()) {
-			Node node = nodes.next();
-
-			if (r == i) {
-				return node;
-			}
+		return graph.getNode(random.nextInt(graph.getNodeCount()));
+	}
 
-			i++;
-		}
+	/**
+	 * Choose an edge at random.
+	 * 
+	 * @return An edge chosen at random.
+	 * @complexity Constant.
+	 */
+	public static Edge randomEdge(Graph graph) {
+		return randomEdge(graph, new Random());
+	}
 
-		throw new RuntimeException("Outch !!");
+	/**
+	 * Choose an edge at random.
+	 * 
+	 * @param random
+	 *            The random number generator to use.
+	 * @return An edge chosen at random.
+	 * @complexity Constant.
+	 */
+	public static Edge randomEdge(Graph graph, Random random) {
+		return graph.getEdge(random.nextInt(graph.getEdgeCount()));
 	}
 
 	/**
@@ -33,6 +33,8 @@ import org.graphstream.graph.NodeFactory;
 import org.graphstream.graph.ElementNotFoundException;
 import org.graphstream.graph.IdAlreadyInUseException;
 import org.graphstream.graph.implementations.AbstractElement;
+import org.graphstream.graph.implementations.ElementIndex;
+import org.graphstream.graph.implementations.SnapshotSupport;
 import org.graphstream.stream.AttributeSink;
 import org.graphstream.stream.ElementSink;
 import org.graphstream.stream.Sink;
@@ -116,6 +118,21 @@ public class GraphicGraph extends AbstractElement implements Graph,
 	 */
 	protected HashMap<GraphicNode, ArrayList<GraphicEdge>> connectivity;
 
+	/**
+	 * The nodes, by index.
+	 */
+	protected ElementIndex<GraphicNode> nodeIndex = new ElementIndex<GraphicNode>();
+
+	/**
+	 * The edges, by index.
+	 */
+	protected ElementIndex<GraphicEdge> edgeIndex = new ElementIndex<GraphicEdge>();
+
+	/**
+	 * Immutable versions of this graph, created by {@link #enableSnapshots()}.
+	 */
+	protected volatile SnapshotSupport snapshots;
+
 	/**
 	 * The style of this graph.
 	 */
@@ -386,6 +403,7 @@ public class GraphicGraph extends AbstractElement implements Graph,
 			edge = new GraphicEdge(id, n1, n2, directed, attributes);
 
 			styleGroups.addElement(edge);
+			edgeIndex.add(edge);
 
 			ArrayList<GraphicEdge> l1 = connectivity.get(n1);
 			ArrayList<GraphicEdge> l2 = connectivity.get(n2);
@@ -420,6 +438,7 @@ public class GraphicGraph extends AbstractElement implements Graph,
 			node = new GraphicNode(this, id, attributes);
 
 			styleGroups.addElement(node);
+			nodeIndex.add(node);
 
 			graphChanged = true;
 
@@ -457,6 +476,7 @@ public class GraphicGraph extends AbstractElement implements Graph,
 				connectivity.get(edge.to).remove(edge);
 
 			styleGroups.removeElement(edge);
+			edgeIndex.remove(edge);
 			edge.removed();
 
 			graphChanged = true;
@@ -507,6 +527,7 @@ public class GraphicGraph extends AbstractElement implements Graph,
 			}
 
 			styleGroups.removeElement(node);
+			nodeIndex.remove(node);
 			node.removed();
 
 			graphChanged = true;
@@ -523,6 +544,18 @@ public class GraphicGraph extends AbstractElement implements Graph,
 		return (GraphicEdge) styleGroups.getEdge(id);
 	}
 
+	@SuppressWarnings("unchecked")
+	public <T extends Node> T getNode(int index)
+			throws IndexOutOfBoundsException {
+		return (T) nodeIndex.get(index);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Edge> T getEdge(int index)
+			throws IndexOutOfBoundsException {
+		return (T) edgeIndex.get(index);
+	}
+
 	public GraphicSprite getSprite(String id) {
 		return styleGroups.getSprite(id);
 	}
@@ -582,6 +615,8 @@ public class GraphicGraph extends AbstractElement implements Graph,
 		listeners.sendGraphCleared(sourceId, timeId);
 		connectivity.clear();
 		styleGroups.clear();
+		nodeIndex.clear();
+		edgeIndex.clear();
 
 		step = 0;
 		graphChanged = true;
@@ -682,6 +717,14 @@ public class GraphicGraph extends AbstractElement implements Graph,
 		return listeners.elementSinks();
 	}
 
+	public Graph snapshot() {
+		return SnapshotSupport.snapshot(snapshots);
+	}
+
+	public void enableSnapshots() {
+		snapshots = SnapshotSupport.enable(this, snapshots);
+	}
+
 	public Edge addEdge(String id, String from, String to)
 			throws IdAlreadyInUseException, ElementNotFoundException {
 		return addEdge(getId(), newEvent(), id, from, to, false, null);
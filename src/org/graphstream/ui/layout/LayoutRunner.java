@@ -29,6 +29,19 @@ import org.graphstream.stream.thread.ThreadProxyPipe;
 
 /**
  * Allows to run a layout in a distinct thread.
+ * 
+ * <p>
+ * While the layout moves, steps are computed one after the other. Once it is
+ * stable (no node moved or the stabilisation value is under a limit), the
+ * runner waits longer and longer between steps, then stops computing until
+ * nodes or edges are added or removed, or until an attribute whose name starts
+ * with "layout." changes (the weights, force or quality of the layout for
+ * example). Such events wake it up at once. Other events are still dispatched
+ * to the layout at the last waiting time, so that they do not pile up. A CPU
+ * budget can be given so that the runner only uses a part of a core while
+ * the layout moves, the thread resting in proportion of the time taken by
+ * each step.
+ * </p>
  */
 public class LayoutRunner extends Thread {
 	/**
@@ -44,7 +57,28 @@ public class LayoutRunner extends Thread {
 	/**
 	 * The meaning of life.
 	 */
-	protected boolean loop = true;
+	protected volatile boolean loop = true;
+
+	/**
+	 * Proportion of a core the runner may use, in ]0,1].
+	 */
+	protected volatile double cpuBudget = 1;
+
+	/**
+	 * Under this stabilisation value the layout is considered stable.
+	 */
+	protected volatile double stabilizationLimit = 0.001;
+
+	/**
+	 * First and last waiting time in milliseconds when the layout is stable.
+	 * After the last, the runner waits for a structural change.
+	 */
+	protected volatile long minNap = 10, maxNap = 1000;
+
+	/**
+	 * Is the runner waiting for a structural change or a layout attribute?
+	 */
+	protected volatile boolean parked = false;
 
 	/**
 	 * New layout runner that listen at the given source and compute a layout on
@@ -75,6 +109,7 @@ public class LayoutRunner extends Thread {
 		this.layout = layout;
 		this.pumpPipe = new ThreadProxyPipe(source);
 		this.pumpPipe.addSink(layout);
+		this.pumpPipe.setWakingPrefix("layout.");
 
 		if (start)
 			start();
@@ -85,6 +120,7 @@ public class LayoutRunner extends Thread {
 		this.layout = layout;
 		this.pumpPipe = new ThreadProxyPipe(graph, true);
 		this.pumpPipe.addSink(layout);
+		this.pumpPipe.setWakingPrefix("layout.");
 
 		if (start)
 			start();
@@ -99,14 +135,103 @@ public class LayoutRunner extends Thread {
 		return new ThreadProxyPipe(layout);
 	}
 
+	/**
+	 * Is the runner waiting for a node or edge to be added or removed or for a
+	 * layout attribute to change, the layout being stable?
+	 */
+	public boolean isParked() {
+		return parked;
+	}
+
+	/**
+	 * Proportion of a core the runner may use.
+	 */
+	public double getCpuBudget() {
+		return cpuBudget;
+	}
+
+	/**
+	 * Set the proportion of a core the runner may use, 1 by default. With a
+	 * budget of 0.25, the thread rests three times the duration of each step.
+	 * 
+	 * @param budget
+	 *            A number in ]0,1].
+	 */
+	public void setCpuBudget(double budget) {
+		if (budget <= 0 || budget > 1)
+			throw new IllegalArgumentException("the CPU budget must be in ]0,1]");
+
+		cpuBudget = budget;
+	}
+
+	/**
+	 * Set the stabilisation value under which the layout is considered
+	 * stable, 0.001 by default.
+	 */
+	public void setStabilizationLimit(double limit) {
+		stabilizationLimit = limit;
+	}
+
+	/**
+	 * Set the waiting times between steps when the layout is stable, 10 and
+	 * 1000 milliseconds by default. The waiting time doubles at each stable
+	 * step from the first, and the runner parks once it exceeds the last.
+	 * 
+	 * @param min
+	 *            First waiting time in milliseconds.
+	 * @param max
+	 *            Last waiting time in milliseconds.
+	 */
+	public void setNaps(long min, long max) {
+		minNap = Math.max(1, min);
+		maxNap = Math.max(minNap, max);
+	}
+
 	@Override
 	public void run() {
-		String layoutName = layout.getLayoutAlgorithmName();
+		ThreadProxyPipe pipe = pumpPipe;
+		Layout algorithm = layout;
+		String layoutName = algorithm.getLayoutAlgorithmName();
+		long nap = 0;
+		long rest = 0;
 
 		while (loop) {
-			pumpPipe.pump();
-			layout.compute();
-			nap(10);
+			pipe.pump();
+
+			long t = System.nanoTime();
+			algorithm.compute();
+			t = System.nanoTime() - t;
+
+			// Rest in proportion of the step duration. Short rests are
+			// accumulated since sleeps are in milliseconds.
+
+			if (cpuBudget < 1) {
+				rest += (long) (t * (1 - cpuBudget) / cpuBudget);
+
+				if (rest >= 1000000) {
+					nap(rest / 1000000);
+					rest %= 1000000;
+				}
+			}
+
+			if (!stable(algorithm)) {
+				nap = 0;
+			} else if (nap < maxNap) {
+				nap = nap == 0 ? minNap : Math.min(nap * 2, maxNap);
+
+				if (pipe.waitStructureChange(nap))
+					nap = 0;
+			} else {
+				// Park, pumping the other events at the last waiting time.
+
+				parked = true;
+
+				while (loop && !pipe.waitStructureChange(maxNap))
+					pipe.pump();
+
+				parked = false;
+				nap = 0;
+			}
 		}
 
 		System.out.printf("Layout '%s' process stopped.%n", layoutName);
@@ -114,11 +239,22 @@ public class LayoutRunner extends Thread {
 	}
 
 	public void release() {
-		pumpPipe.unregisterFromSource();
-		pumpPipe.removeSink(layout);
+		ThreadProxyPipe pipe = pumpPipe;
+
+		loop = false;
+		pipe.unregisterFromSource();
+		pipe.removeSink(layout);
+		pipe.wakeUp();
 		pumpPipe = null;
 		layout = null;
-		loop = false;
+	}
+
+	/**
+	 * Is the layout stable?
+	 */
+	protected boolean stable(Layout algorithm) {
+		return algorithm.getNodeMoved() == 0
+				|| algorithm.getStabilization() < stabilizationLimit;
 	}
 
 	protected void nap(long ms) {
@@ -0,0 +1,589 @@
+/*
+ * This file is part of GraphStream.
+ * 
+ * GraphStream is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GraphStream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GraphStream.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2006 - 2009
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.ui.layout;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * A compact store of node positions, that can be saved to and loaded from a
+ * binary file using memory-mapped I/O, or read and written in the text format
+ * of {@link Layout#outputPos(String)}.
+ * 
+ * <p>
+ * This is used to start a layout from known positions instead of random ones.
+ * A layout saves its positions periodically, and at the next start the
+ * positions are loaded and applied in bulk before the first frame, either to
+ * the layout (see the <code>loadPositions()</code> method of the layouts) or
+ * to any graph, for
+ * example the graphic graph of a viewer (see {@link #apply(Graph)}). Nodes are
+ * matched by identifier: positions of nodes that no more exist are ignored and
+ * nodes that were not saved keep their position.
+ * </p>
+ * 
+ * <p>
+ * The file starts with the magic number "GSPC", a version number and the
+ * number of positions. Then each position is given by the length of the node
+ * identifier in bytes as a short, the identifier in UTF-8 and the three
+ * coordinates as floats. All numbers are big endian.
+ * </p>
+ */
+public class PositionCache {
+	// Attribute
+
+	/**
+	 * Magic number at the start of files.
+	 */
+	public static final int MAGIC = 0x47535043;
+
+	/**
+	 * Version of the file format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Encoding of identifiers.
+	 */
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Node identifiers, by index.
+	 */
+	protected String ids[] = new String[16];
+
+	/**
+	 * Coordinates, three per index.
+	 */
+	protected float xyz[] = new float[48];
+
+	/**
+	 * Number of positions.
+	 */
+	protected int count;
+
+	/**
+	 * Index of each node identifier.
+	 */
+	protected HashMap<String, Integer> index = new HashMap<String, Integer>();
+
+	// Construction
+
+	/**
+	 * New empty cache.
+	 */
+	public PositionCache() {
+	}
+
+	/**
+	 * New cache filled with the positions of a file.
+	 * 
+	 * @param filename
+	 *            The file to read.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a position file.
+	 */
+	public PositionCache(String filename) throws IOException {
+		load(filename);
+	}
+
+	// Access
+
+	/**
+	 * Number of positions.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Is there a position for the given node?.
+	 * 
+	 * @param id
+	 *            The node identifier.
+	 * @return True if the position is known.
+	 */
+	public boolean contains(String id) {
+		return index.containsKey(id);
+	}
+
+	/**
+	 * Copy the position of a node.
+	 * 
+	 * @param id
+	 *            The node identifier.
+	 * @param position
+	 *            An array of at least three floats where the coordinates are
+	 *            stored.
+	 * @return False if the position is not known, in which case the array is
+	 *         not modified.
+	 */
+	public boolean getPosition(String id, float position[]) {
+		Integer i = index.get(id);
+
+		if (i == null)
+			return false;
+
+		int p = i * 3;
+
+		position[0] = xyz[p];
+		position[1] = xyz[p + 1];
+		position[2] = xyz[p + 2];
+
+		return true;
+	}
+
+	// Command
+
+	/**
+	 * Set the position of a node.
+	 * 
+	 * @param id
+	 *            The node identifier.
+	 * @param x
+	 *            The abscissa.
+	 * @param y
+	 *            The ordinate.
+	 * @param z
+	 *            The depth.
+	 */
+	public void setPosition(String id, float x, float y, float z) {
+		Integer i = index.get(id);
+		int p;
+
+		if (i == null) {
+			if (count == ids.length) {
+				String ids2[] = new String[count * 2];
+				float xyz2[] = new float[count * 6];
+
+				System.arraycopy(ids, 0, ids2, 0, count);
+				System.arraycopy(xyz, 0, xyz2, 0, count * 3);
+
+				ids = ids2;
+				xyz = xyz2;
+			}
+
+			ids[count] = id;
+			index.put(id, count);
+			p = count * 3;
+			count++;
+		} else {
+			p = i * 3;
+		}
+
+		xyz[p] = x;
+		xyz[p + 1] = y;
+		xyz[p + 2] = z;
+	}
+
+	/**
+	 * Forget the position of a node.
+	 * 
+	 * @param id
+	 *            The node identifier.
+	 */
+	public void removePosition(String id) {
+		Integer i = index.remove(id);
+
+		if (i != null) {
+			int last = count - 1;
+
+			if (i != last) {
+				ids[i] = ids[last];
+				System.arraycopy(xyz, last * 3, xyz, i * 3, 3);
+				index.put(ids[i], i);
+			}
+
+			ids[last] = null;
+			count--;
+		}
+	}
+
+	/**
+	 * Forget all the positions.
+	 */
+	public void clear() {
+		for (int i = 0; i < count; i++)
+			ids[i] = null;
+
+		index.clear();
+		count = 0;
+	}
+
+	/**
+	 * Store the positions of the nodes of a graph, given by their "xyz" or
+	 * "xy" attributes. Nodes without position are ignored.
+	 * 
+	 * @param graph
+	 *            The graph.
+	 * @return The number of positions stored.
+	 */
+	public int store(Graph graph) {
+		int n = 0;
+
+		for (Node node : graph.getEachNode()) {
+			Object pos = node.getAttribute("xyz");
+
+			if (pos == null)
+				pos = node.getAttribute("xy");
+
+			if (pos instanceof Object[]) {
+				Object c[] = (Object[]) pos;
+
+				if (c.length >= 2 && c[0] instanceof Number
+						&& c[1] instanceof Number) {
+					float z = 0;
+
+					if (c.length > 2 && c[2] instanceof Number)
+						z = ((Number) c[2]).floatValue();
+
+					setPosition(node.getId(), ((Number) c[0]).floatValue(),
+							((Number) c[1]).floatValue(), z);
+					n++;
+				}
+			}
+		}
+
+		return n;
+	}
+
+	/**
+	 * Set the "xyz" attribute of each node of the graph whose position is
+	 * known. This can be applied to the graphic graph of a viewer before its
+	 * first frame.
+	 * 
+	 * @param graph
+	 *            The graph.
+	 * @return The number of nodes positioned.
+	 */
+	public int apply(Graph graph) {
+		int n = 0;
+
+		for (Node node : graph.getEachNode()) {
+			Integer i = index.get(node.getId());
+
+			if (i != null) {
+				int p = i * 3;
+
+				node.setAttribute("xyz", xyz[p], xyz[p + 1], xyz[p + 2]);
+				n++;
+			}
+		}
+
+		return n;
+	}
+
+	/**
+	 * Add the positions of a file to this cache. Positions already in the
+	 * cache are replaced.
+	 * 
+	 * @param filename
+	 *            The file to read.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a position file.
+	 */
+	public void load(String filename) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			byte bytes[] = new byte[256];
+
+			if (buffer.remaining() < 12 || buffer.getInt() != MAGIC)
+				throw new IOException(String.format(
+						"'%s' is not a position file", filename));
+
+			int version = buffer.getInt();
+
+			if (version != VERSION)
+				throw new IOException(String.format(
+						"'%s': unknown position file version %d", filename,
+						version));
+
+			int n = buffer.getInt();
+
+			for (int i = 0; i < n; i++) {
+				int length = buffer.getShort() & 0xFFFF;
+
+				if (length > bytes.length)
+					bytes = new byte[Math.max(length, bytes.length * 2)];
+
+				buffer.get(bytes, 0, length);
+
+				String id = new String(bytes, 0, length, UTF8);
+
+				setPosition(id, buffer.getFloat(), buffer.getFloat(), buffer
+						.getFloat());
+			}
+		} catch (RuntimeException e) {
+			throw new IOException(String.format("'%s' is truncated or corrupt",
+					filename));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Write the positions to a file. The positions are first written to a
+	 * temporary file that then atomically replaces the given one, so that an
+	 * interrupted checkpoint does not destroy the previous one. If the file
+	 * system cannot replace a file atomically, the previous file is kept and
+	 * an error is thrown.
+	 * 
+	 * @param filename
+	 *            The file to write.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void save(String filename) throws IOException {
+		byte encoded[][] = new byte[count][];
+		long size = 12;
+
+		for (int i = 0; i < count; i++) {
+			encoded[i] = ids[i].getBytes(UTF8);
+
+			if (encoded[i].length > 0xFFFF)
+				throw new IOException(String.format(
+						"node identifier too long '%s'", ids[i]));
+
+			size += 2 + encoded[i].length + 12;
+		}
+
+		File target = new File(filename);
+		File tmp = new File(filename + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(tmp, "rw");
+
+		try {
+			file.setLength(size);
+
+			ByteBuffer buffer = file.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0, size);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(count);
+
+			for (int i = 0; i < count; i++) {
+				int p = i * 3;
+
+				buffer.putShort((short) encoded[i].length);
+				buffer.put(encoded[i]);
+				buffer.putFloat(xyz[p]);
+				buffer.putFloat(xyz[p + 1]);
+				buffer.putFloat(xyz[p + 2]);
+			}
+
+			((MappedByteBuffer) buffer).force();
+		} finally {
+			file.close();
+		}
+
+		try {
+			Files.move(tmp.toPath(), target.toPath(),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			tmp.delete();
+			throw new IOException(String.format("cannot replace '%s': %s",
+					filename, e.getMessage()));
+		}
+	}
+
+	/**
+	 * Add the positions of a text file in the format of
+	 * {@link Layout#outputPos(String)} to this cache. Positions already in the
+	 * cache are replaced.
+	 * 
+	 * @param filename
+	 *            The file to read.
+	 * @throws IOException
+	 *             If the file cannot be read or a coordinate is not a number.
+	 */
+	public void loadText(String filename) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+
+		try {
+			String line;
+
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+
+				int colon = line.lastIndexOf(':');
+
+				if (colon < 0)
+					continue;
+
+				String id = line.substring(0, colon).trim();
+				String pos[] = line.substring(colon + 1).trim().split("\\s+");
+
+				if (id.startsWith("\"") && id.endsWith("\"") && id.length() > 1)
+					id = unquote(id.substring(1, id.length() - 1));
+
+				if (pos.length >= 2)
+					setPosition(id, Float.parseFloat(pos[0]), Float
+							.parseFloat(pos[1]), pos.length > 2 ? Float
+							.parseFloat(pos[2]) : 0);
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException(String.format("'%s': %s", filename, e
+					.getMessage()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write the positions to a text file in the format of
+	 * {@link Layout#outputPos(String)}. Identifiers are written between
+	 * quotes, their quotes and backslashes preceded by a backslash.
+	 * 
+	 * @param filename
+	 *            The file to write.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void saveText(String filename) throws IOException {
+		PrintStream out = new PrintStream(filename);
+
+		try {
+			for (int i = 0; i < count; i++) {
+				int p = i * 3;
+
+				out.printf(Locale.US, "\"%s\": %f %f %f%n", quote(ids[i]),
+						xyz[p], xyz[p + 1], xyz[p + 2]);
+			}
+
+			if (out.checkError())
+				throw new IOException(String.format("cannot write '%s'",
+						filename));
+		} finally {
+			out.close();
+		}
+	}
+
+	// Utility
+
+	/**
+	 * Escape the quotes and backslashes of an identifier written between
+	 * quotes.
+	 */
+	protected static String quote(String id) {
+		if (id.indexOf('"') < 0 && id.indexOf('\\') < 0)
+			return id;
+
+		StringBuilder quoted = new StringBuilder(id.length() + 8);
+
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+
+			if (c == '"' || c == '\\')
+				quoted.append('\\');
+
+			quoted.append(c);
+		}
+
+		return quoted.toString();
+	}
+
+	/**
+	 * Remove the escapes added by {@link #quote(String)}.
+	 */
+	protected static String unquote(String id) {
+		if (id.indexOf('\\') < 0)
+			return id;
+
+		StringBuilder unquoted = new StringBuilder(id.length());
+
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+
+			if (c == '\\' && i + 1 < id.length())
+				c = id.charAt(++i);
+
+			unquoted.append(c);
+		}
+
+		return unquoted.toString();
+	}
+
+	/**
+	 * Measure the time to save and load the positions of many nodes.
+	 * 
+	 * @param args
+	 *            The number of nodes, 500000 by default.
+	 */
+	public static void main(String args[]) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		Random random = new Random(1);
+		PositionCache cache = new PositionCache();
+		float pos[] = new float[3];
+		float check[] = new float[3];
+
+		for (int i = 0; i < n; i++)
+			cache.setPosition("n" + i, random.nextFloat(), random.nextFloat(),
+					random.nextFloat());
+
+		try {
+			File file = File.createTempFile("positions", ".gspc");
+			long t = System.currentTimeMillis();
+
+			cache.save(file.getPath());
+			System.out.printf("saved %d positions in %d ms (%d bytes)%n", n,
+					System.currentTimeMillis() - t, file.length());
+
+			t = System.currentTimeMillis();
+			PositionCache loaded = new PositionCache(file.getPath());
+			System.out.printf("loaded %d positions in %d ms%n", loaded.size(),
+					System.currentTimeMillis() - t);
+
+			loaded.getPosition("n" + (n / 2), pos);
+			cache.getPosition("n" + (n / 2), check);
+			System.out.printf("check: %b%n", pos[0] == check[0]
+					&& pos[1] == check[1] && pos[2] == check[2]);
+			file.delete();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,1695 @@
+/*
+ * This file is part of GraphStream.
+ * 
+ * GraphStream is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GraphStream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GraphStream.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2006 - 2009
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.ui.layout.mds;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.graphstream.algorithm.CompactGraph;
+import org.graphstream.stream.SourceBase;
+import org.graphstream.ui.geom.Point3;
+import org.graphstream.ui.layout.Layout;
+import org.graphstream.ui.layout.LayoutListener;
+import org.graphstream.ui.layout.PositionCache;
+
+/**
+ * A layout by pivot multidimensional scaling, for large graphs that change
+ * rarely.
+ * 
+ * <p>
+ * Unlike force-directed layouts that move nodes a little at each step, this
+ * layout computes positions globally in one go, following Brandes and Pich
+ * ("Eigensolver methods for progressive multidimensional scaling of large
+ * data"). The graph distances from a few pivot nodes are computed by breadth
+ * first searches. The pivots are chosen far from each other : each new pivot
+ * is the node farthest from the pivots already chosen. When several threads
+ * are used, pivots are chosen by batches, one per region of the farthest
+ * regions (a region being the nodes nearest to one pivot), and the searches
+ * of a batch run in parallel. The double centred matrix of the squared
+ * distances to the pivots then gives, with the eigenvectors of a small matrix
+ * whose size is the number of pivots, positions whose distances approximate
+ * the graph distances.
+ * </p>
+ * 
+ * <p>
+ * These positions are then improved by a few iterations of sparse stress
+ * majorisation (Ortmann, Klimenta and Brandes, "A sparse stress model") that
+ * only considers the edges and the distances to the pivots, each pivot
+ * standing for the nodes of its region. The number of iterations depends on
+ * the quality (see {@link #setQuality(int)}), quality 0 disables it.
+ * </p>
+ * 
+ * <p>
+ * All the computations are O(p(n + m)) for p pivots, and are shared among
+ * threads (see {@link #setThreadCount(int)}). The layout is deterministic for
+ * a given seed. Connected components are laid out separately and packed in
+ * rows, the largest first. When the graph changes, the whole layout is
+ * computed anew once the changes stop arriving, and is rotated to match the
+ * previous positions as well as possible so that the view stays still.
+ * </p>
+ * 
+ * <p>
+ * The distances to the pivots are stored on 16 bits, distances larger than
+ * 65534 are truncated.
+ * </p>
+ */
+public class PivotMDSLayout extends SourceBase implements Layout {
+	// Attribute
+
+	/**
+	 * A task on a range of indices.
+	 */
+	protected static abstract class Range {
+		abstract void run(int from, int to);
+	}
+
+	/**
+	 * Marks nodes not reached yet by a breadth first search.
+	 */
+	protected static final char UNREACHED = 0xFFFF;
+
+	/**
+	 * Largest distance stored.
+	 */
+	protected static final char MAX_DISTANCE = 0xFFFE;
+
+	/**
+	 * Number of consecutive steps a computation can be delayed while the
+	 * graph keeps changing.
+	 */
+	protected static final int MAX_DELAY = 10;
+
+	/**
+	 * Number of rows of the distance matrix processed at once.
+	 */
+	protected static final int BLOCK = 256;
+
+	/**
+	 * The graph.
+	 */
+	protected CompactGraph graph = new CompactGraph();
+
+	/**
+	 * Last position sent for each node slot.
+	 */
+	protected float[] px = new float[16], py = new float[16],
+			pz = new float[16];
+
+	/**
+	 * Node slots that have a position.
+	 */
+	protected boolean[] placed = new boolean[16];
+
+	/**
+	 * Frozen node slots.
+	 */
+	protected boolean[] frozen = new boolean[16];
+
+	/**
+	 * Positions read by {@link #inputPos(String)} or
+	 * {@link #loadPositions(String)}, given to the nodes added afterwards.
+	 */
+	protected PositionCache initialPositions;
+
+	/**
+	 * The graph structure changed since the last computation.
+	 */
+	protected boolean structureChanged = false;
+
+	/**
+	 * Number of structure changes, and number at the previous step.
+	 */
+	protected int changes = 0, changesSeen = 0;
+
+	/**
+	 * Number of steps the computation has been delayed.
+	 */
+	protected int delayed = 0;
+
+	/**
+	 * Positions have been computed once.
+	 */
+	protected boolean published = false;
+
+	/**
+	 * Random number generator, used to choose the first pivot.
+	 */
+	protected Random random;
+
+	/**
+	 * Threads for the parallel parts.
+	 */
+	protected ExecutorService pool;
+
+	/**
+	 * Set of listeners.
+	 */
+	protected ArrayList<LayoutListener> listeners = new ArrayList<LayoutListener>();
+
+	/**
+	 * The lowest node position.
+	 */
+	protected Point3 lo = new Point3(0, 0, 0);
+
+	/**
+	 * The highest node position.
+	 */
+	protected Point3 hi = new Point3(1, 1, 1);
+
+	// Attribute -- Parameters
+
+	/**
+	 * Length of edges.
+	 */
+	protected float k = 1f;
+
+	/**
+	 * Number of pivots.
+	 */
+	protected int pivotCount = 50;
+
+	/**
+	 * Number of stress majorisation iterations.
+	 */
+	protected int stressIterations = 20;
+
+	/**
+	 * Stress majorisation stops when nodes move less than this times k.
+	 */
+	protected float tolerance = 0.001f;
+
+	/**
+	 * Number of threads.
+	 */
+	protected int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Global force strength, unused.
+	 */
+	protected float force = 1f;
+
+	/**
+	 * The quality level.
+	 */
+	protected int quality = 2;
+
+	/**
+	 * Compute the third coordinate ?.
+	 */
+	protected boolean is3D = false;
+
+	/**
+	 * Send node informations?.
+	 */
+	protected boolean sendNodeInfos = false;
+
+	// Attribute -- Statistics
+
+	/**
+	 * Number of steps.
+	 */
+	protected int steps;
+
+	/**
+	 * Duration of the last step in nanoseconds.
+	 */
+	protected long lastStepTime;
+
+	/**
+	 * Number of nodes sent during the last step.
+	 */
+	protected int nodeMoveCount;
+
+	/**
+	 * 1 while a computation is pending, else 0.
+	 */
+	protected double stabilization = 1;
+
+	// Construction
+
+	public PivotMDSLayout() {
+		this(false);
+	}
+
+	public PivotMDSLayout(boolean is3D) {
+		this(is3D, new Random(1));
+	}
+
+	public PivotMDSLayout(boolean is3D, Random randomNumberGenerator) {
+		this.is3D = is3D;
+		this.random = randomNumberGenerator;
+	}
+
+	// Access
+
+	public String getLayoutAlgorithmName() {
+		return "Pivot MDS";
+	}
+
+	public int getNodeMoved() {
+		return nodeMoveCount;
+	}
+
+	public double getStabilization() {
+		return stabilization;
+	}
+
+	public Point3 getLowPoint() {
+		return new Point3(lo.x, lo.y, lo.z);
+	}
+
+	public Point3 getHiPoint() {
+		return new Point3(hi.x, hi.y, hi.z);
+	}
+
+	public int getSteps() {
+		return steps;
+	}
+
+	public long getLastStepTime() {
+		return lastStepTime;
+	}
+
+	public int getQuality() {
+		return quality;
+	}
+
+	public float getForce() {
+		return force;
+	}
+
+	/**
+	 * Number of pivots.
+	 */
+	public int getPivotCount() {
+		return pivotCount;
+	}
+
+	/**
+	 * Number of threads used.
+	 */
+	public int getThreadCount() {
+		return threads;
+	}
+
+	// Command
+
+	public void clear() {
+		graph.clear();
+		Arrays.fill(placed, false);
+		Arrays.fill(frozen, false);
+		structureChanged = false;
+		changes = changesSeen = delayed = 0;
+		published = false;
+		nodeMoveCount = 0;
+		stabilization = 1;
+	}
+
+	public void addListener(LayoutListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(LayoutListener listener) {
+		listeners.remove(listener);
+	}
+
+	public void setForce(float value) {
+		force = value;
+	}
+
+	/**
+	 * Set the quality. Quality levels 0 to 4 run 0, 5, 20, 50 or 100
+	 * iterations of stress majorisation. By default 2.
+	 */
+	public void setQuality(int qualityLevel) {
+		int iterations[] = { 0, 5, 20, 50, 100 };
+
+		if (qualityLevel < 0 || qualityLevel > 4) {
+			System.err.printf("invalid quality level %d%n", qualityLevel);
+			return;
+		}
+
+		quality = qualityLevel;
+		stressIterations = iterations[qualityLevel];
+		structureChanged();
+	}
+
+	/**
+	 * Set the number of pivots, 50 by default. More pivots give better
+	 * layouts but use more time and memory (2 bytes per node and pivot).
+	 */
+	public void setPivotCount(int count) {
+		pivotCount = Math.max(3, count);
+		structureChanged();
+	}
+
+	/**
+	 * Set the number of threads, by default the number of processors.
+	 */
+	public void setThreadCount(int count) {
+		threads = Math.max(1, count);
+
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	public void setSendNodeInfos(boolean send) {
+		sendNodeInfos = send;
+	}
+
+	/**
+	 * Compute the layout anew, from another first pivot.
+	 */
+	public void shake() {
+		structureChanged();
+	}
+
+	public void moveNode(String id, float x, float y, float z) {
+		int s = graph.getNodeSlot(id);
+
+		if (s >= 0) {
+			px[s] = x;
+			py[s] = y;
+			pz[s] = is3D ? z : 0;
+			placed[s] = true;
+			send(s);
+		}
+	}
+
+	public void freezeNode(String id, boolean frozen) {
+		int s = graph.getNodeSlot(id);
+
+		if (s >= 0)
+			this.frozen[s] = frozen;
+	}
+
+	/**
+	 * Compute the layout if the graph changed. The first time the layout is
+	 * computed at once, a single call is therefore enough. Afterwards, the
+	 * computation waits for a step without changes (or {@link #MAX_DELAY}
+	 * steps), so that a batch of changes arriving in several steps is laid
+	 * out only once.
+	 */
+	public void compute() {
+		long t1 = System.nanoTime();
+
+		nodeMoveCount = 0;
+
+		if (structureChanged) {
+			if (published && changes != changesSeen && delayed < MAX_DELAY) {
+				changesSeen = changes;
+				delayed++;
+			} else {
+				layout();
+			}
+		}
+
+		stabilization = structureChanged ? 1 : 0;
+		steps++;
+		lastStepTime = System.nanoTime() - t1;
+
+		for (LayoutListener listener : listeners)
+			listener.stepCompletion((float) (1 - stabilization));
+	}
+
+	// Layout
+
+	/**
+	 * Compute the positions of all the nodes and send them.
+	 */
+	protected void layout() {
+		int n = graph.getNodeCount();
+		int slotCount = graph.getNodeSlotCount();
+		int[] slots = new int[n];
+		int[] dense = new int[slotCount];
+
+		structureChanged = false;
+		changes = changesSeen = delayed = 0;
+
+		for (int s = 0, i = 0; s < slotCount; s++) {
+			if (graph.isNode(s)) {
+				dense[s] = i;
+				slots[i++] = s;
+			} else {
+				dense[s] = -1;
+			}
+		}
+
+		// Adjacency of the snapshot, in compressed rows.
+
+		int[] first = new int[n + 1];
+
+		for (int e = 0; e < graph.getEdgeSlotCount(); e++) {
+			if (graph.isEdge(e)) {
+				int u = dense[graph.getSource(e)];
+				int v = dense[graph.getTarget(e)];
+
+				if (u != v) {
+					first[u + 1]++;
+					first[v + 1]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++)
+			first[i + 1] += first[i];
+
+		int[] fill = Arrays.copyOf(first, n);
+		int[] adj = new int[first[n]];
+
+		for (int e = 0; e < graph.getEdgeSlotCount(); e++) {
+			if (graph.isEdge(e)) {
+				int u = dense[graph.getSource(e)];
+				int v = dense[graph.getTarget(e)];
+
+				if (u != v) {
+					adj[fill[u]++] = v;
+					adj[fill[v]++] = u;
+				}
+			}
+		}
+
+		// Connected components, as ranges of the order array.
+
+		int[] order = new int[n];
+		int[] component = new int[n];
+		ArrayList<Integer> starts = new ArrayList<Integer>();
+		int tail = 0;
+
+		Arrays.fill(component, -1);
+
+		for (int r = 0; r < n; r++) {
+			if (component[r] < 0) {
+				int head = tail;
+
+				starts.add(tail);
+				component[r] = starts.size() - 1;
+				order[tail++] = r;
+
+				while (head < tail) {
+					int u = order[head++];
+
+					for (int j = first[u]; j < first[u + 1]; j++) {
+						int v = adj[j];
+
+						if (component[v] < 0) {
+							component[v] = component[r];
+							order[tail++] = v;
+						}
+					}
+				}
+			}
+		}
+
+		starts.add(n);
+
+		float[] x = new float[n], y = new float[n], z = new float[n];
+		int[] local = new int[n];
+
+		for (int c = 0; c < starts.size() - 1; c++)
+			layoutComponent(order, starts.get(c), starts.get(c + 1), first,
+					adj, local, x, y, z);
+
+		pack(order, starts, x, y, z);
+		align(slots, x, y, z);
+		publish(slots, x, y, z);
+	}
+
+	/**
+	 * Lay out one connected component around the origin.
+	 * 
+	 * @param order
+	 *            The nodes, by component.
+	 * @param from
+	 *            First index of the component in order.
+	 * @param to
+	 *            Index after the last.
+	 * @param first
+	 *            The adjacency of the graph, in compressed rows.
+	 * @param adj
+	 *            The neighbours.
+	 * @param local
+	 *            Work array, the index of each node in its component.
+	 */
+	protected void layoutComponent(int[] order, int from, int to, int[] first,
+			int[] adj, int[] local, float[] x, float[] y, float[] z) {
+		int size = to - from;
+
+		if (size <= 2) {
+			for (int i = from; i < to; i++) {
+				x[order[i]] = (i - from) * k;
+				y[order[i]] = 0;
+				z[order[i]] = 0;
+			}
+
+			return;
+		}
+
+		// Adjacency of the component, with local indices.
+
+		int[] lfirst = new int[size + 1];
+
+		for (int i = 0; i < size; i++) {
+			int u = order[from + i];
+
+			local[u] = i;
+			lfirst[i + 1] = lfirst[i] + first[u + 1] - first[u];
+		}
+
+		int[] ladj = new int[lfirst[size]];
+
+		for (int i = 0, a = 0; i < size; i++) {
+			int u = order[from + i];
+
+			for (int j = first[u]; j < first[u + 1]; j++)
+				ladj[a++] = local[adj[j]];
+		}
+
+		// Pivots and distances.
+
+		int p = Math.min(pivotCount, size);
+		char[][] dist = new char[p][];
+		int[] pivots = new int[p];
+		int[] minDist = new int[size];
+		int[] nearest = new int[size];
+		int[] batch = { random.nextInt(size) };
+		int chosen = 0;
+
+		Arrays.fill(minDist, Integer.MAX_VALUE);
+
+		while (batch.length > 0) {
+			searches(batch, chosen, pivots, dist, lfirst, ladj);
+
+			for (int b = 0; b < batch.length; b++) {
+				char[] d = dist[chosen + b];
+
+				for (int i = 0; i < size; i++) {
+					if (d[i] < minDist[i]) {
+						minDist[i] = d[i];
+						nearest[i] = chosen + b;
+					}
+				}
+			}
+
+			chosen += batch.length;
+			batch = chosen < p ? choosePivots(Math.min(threads, p - chosen),
+					chosen, minDist, nearest) : new int[0];
+		}
+
+		p = chosen;
+
+		float[] lx = new float[size], ly = new float[size], lz = new float[size];
+
+		project(dist, p, size, lx, ly, lz);
+		normalize(lfirst, ladj, lx, ly, lz);
+
+		if (stressIterations > 0)
+			majorize(dist, pivots, p, minDist, nearest, lfirst, ladj, lx, ly,
+					lz);
+
+		for (int i = 0; i < size; i++) {
+			int u = order[from + i];
+
+			x[u] = lx[i];
+			y[u] = ly[i];
+			z[u] = lz[i];
+		}
+	}
+
+	/**
+	 * Run the breadth first searches of a batch of pivots, in parallel.
+	 */
+	protected void searches(final int[] batch, final int offset,
+			final int[] pivots, final char[][] dist, final int[] first,
+			final int[] adj) {
+		ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+
+		for (int b = 0; b < batch.length; b++) {
+			final int index = offset + b;
+			final int source = batch[b];
+
+			pivots[index] = source;
+			tasks.add(new Runnable() {
+				public void run() {
+					dist[index] = bfs(first, adj, source);
+				}
+			});
+		}
+
+		invoke(tasks);
+	}
+
+	/**
+	 * Distances from a node, inside its component.
+	 */
+	protected static char[] bfs(int[] first, int[] adj, int source) {
+		int n = first.length - 1;
+		char[] dist = new char[n];
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+
+		Arrays.fill(dist, UNREACHED);
+		dist[source] = 0;
+		queue[tail++] = source;
+
+		while (head < tail) {
+			int u = queue[head++];
+			char d = (char) Math.min(dist[u] + 1, MAX_DISTANCE);
+
+			for (int j = first[u]; j < first[u + 1]; j++) {
+				int v = adj[j];
+
+				if (dist[v] == UNREACHED) {
+					dist[v] = d;
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		return dist;
+	}
+
+	/**
+	 * Choose the next pivots : the farthest node of each region, for the
+	 * regions whose farthest node is the farthest from all pivots. With a
+	 * batch of one, this is the node farthest from the pivots.
+	 * 
+	 * @param count
+	 *            The maximum number of pivots.
+	 * @param regions
+	 *            The number of pivots already chosen.
+	 * @param minDist
+	 *            Distance from each node to the nearest pivot.
+	 * @param nearest
+	 *            The nearest pivot.
+	 * @return The pivots, possibly less than count.
+	 */
+	protected int[] choosePivots(int count, int regions, final int[] minDist,
+			int[] nearest) {
+		int[] far = new int[regions];
+		List<Integer> candidates = new ArrayList<Integer>();
+
+		Arrays.fill(far, -1);
+
+		for (int i = 0; i < minDist.length; i++) {
+			int r = nearest[i];
+
+			if (minDist[i] > 0 && (far[r] < 0 || minDist[i] > minDist[far[r]]))
+				far[r] = i;
+		}
+
+		for (int r = 0; r < regions; r++)
+			if (far[r] >= 0)
+				candidates.add(far[r]);
+
+		Collections.sort(candidates, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return minDist[b] != minDist[a] ? minDist[b] - minDist[a] : a
+						- b;
+			}
+		});
+
+		int[] batch = new int[Math.min(count, candidates.size())];
+
+		for (int b = 0; b < batch.length; b++)
+			batch[b] = candidates.get(b);
+
+		return batch;
+	}
+
+	/**
+	 * Positions from the double centred squared distances to the pivots,
+	 * projected on the main eigenvectors.
+	 */
+	protected void project(final char[][] dist, final int p, final int size,
+			final float[] x, final float[] y, final float[] z) {
+		final double[] rowMean = new double[size];
+		final double[] colMean = new double[p];
+		final double[] m = new double[p * p];
+		double grand = 0;
+
+		for (int a = 0; a < p; a++) {
+			char[] d = dist[a];
+			double sum = 0;
+
+			for (int i = 0; i < size; i++) {
+				double d2 = (double) d[i] * d[i];
+
+				sum += d2;
+				rowMean[i] += d2 / p;
+			}
+
+			colMean[a] = sum / size;
+			grand += colMean[a] / p;
+		}
+
+		final double g = grand;
+
+		// The small matrix C'C, by blocks of rows of C stored by column so
+		// that the products run on contiguous arrays.
+
+		parallel(size, new Range() {
+			void run(int from, int to) {
+				double[] part = new double[p * p];
+				double[] c = new double[p];
+				double[][] block = new double[p][BLOCK];
+
+				for (int i0 = from; i0 < to; i0 += BLOCK) {
+					int length = Math.min(BLOCK, to - i0);
+
+					for (int i = 0; i < length; i++) {
+						centred(dist, p, i0 + i, rowMean, colMean, g, c);
+
+						for (int a = 0; a < p; a++)
+							block[a][i] = c[a];
+					}
+
+					for (int a = 0; a < p; a++) {
+						double[] ca = block[a];
+
+						for (int b = a; b < p; b++) {
+							double[] cb = block[b];
+							double sum = 0;
+
+							for (int i = 0; i < length; i++)
+								sum += ca[i] * cb[i];
+
+							part[a * p + b] += sum;
+						}
+					}
+				}
+
+				synchronized (m) {
+					for (int a = 0; a < p * p; a++)
+						m[a] += part[a];
+				}
+			}
+		});
+
+		for (int a = 0; a < p; a++)
+			for (int b = 0; b < a; b++)
+				m[a * p + b] = m[b * p + a];
+
+		final double[][] v = eigenvectors(m, p, is3D ? 3 : 2);
+
+		parallel(size, new Range() {
+			void run(int from, int to) {
+				double[] c = new double[p];
+
+				for (int i = from; i < to; i++) {
+					double cx = 0, cy = 0, cz = 0;
+
+					centred(dist, p, i, rowMean, colMean, g, c);
+
+					for (int a = 0; a < p; a++) {
+						cx += c[a] * v[0][a];
+						cy += c[a] * v[1][a];
+
+						if (v.length > 2)
+							cz += c[a] * v[2][a];
+					}
+
+					x[i] = (float) cx;
+					y[i] = (float) cy;
+					z[i] = (float) cz;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Row i of the double centred matrix of squared distances.
+	 */
+	protected static void centred(char[][] dist, int p, int i,
+			double[] rowMean, double[] colMean, double grand, double[] c) {
+		for (int a = 0; a < p; a++) {
+			double d = dist[a][i];
+
+			c[a] = -0.5 * (d * d - rowMean[i] - colMean[a] + grand);
+		}
+	}
+
+	/**
+	 * Main eigenvectors of a symmetric matrix, by power iteration with
+	 * deflation.
+	 * 
+	 * @param m
+	 *            The matrix, in rows.
+	 * @param p
+	 *            Its size.
+	 * @param count
+	 *            The number of eigenvectors.
+	 * @return The eigenvectors.
+	 */
+	protected double[][] eigenvectors(double[] m, int p, int count) {
+		double[][] v = new double[count][p];
+		double[] w = new double[p];
+
+		for (int e = 0; e < count; e++) {
+			double[] u = v[e];
+
+			for (int a = 0; a < p; a++)
+				u[a] = random.nextDouble() - 0.5;
+
+			orthonormalize(u, v, e);
+
+			for (int iteration = 0; iteration < 1000; iteration++) {
+				for (int a = 0; a < p; a++) {
+					double sum = 0;
+
+					for (int b = 0; b < p; b++)
+						sum += m[a * p + b] * u[b];
+
+					w[a] = sum;
+				}
+
+				if (orthonormalize(w, v, e) == 0)
+					break;
+
+				double diff = 0;
+
+				for (int a = 0; a < p; a++) {
+					diff += Math.abs(w[a] - u[a]);
+					u[a] = w[a];
+				}
+
+				if (diff < 1e-9)
+					break;
+			}
+		}
+
+		return v;
+	}
+
+	/**
+	 * Make a vector orthogonal to the first vectors of a set, and of length
+	 * one.
+	 * 
+	 * @return The length before normalisation.
+	 */
+	protected static double orthonormalize(double[] u, double[][] v, int count) {
+		double norm = 0;
+
+		for (int e = 0; e < count; e++) {
+			double dot = 0;
+
+			for (int a = 0; a < u.length; a++)
+				dot += u[a] * v[e][a];
+
+			for (int a = 0; a < u.length; a++)
+				u[a] -= dot * v[e][a];
+		}
+
+		for (int a = 0; a < u.length; a++)
+			norm += u[a] * u[a];
+
+		norm = Math.sqrt(norm);
+
+		if (norm > 0)
+			for (int a = 0; a < u.length; a++)
+				u[a] /= norm;
+
+		return norm;
+	}
+
+	/**
+	 * Scale the positions so that the mean edge length is k.
+	 */
+	protected void normalize(int[] first, int[] adj, float[] x, float[] y,
+			float[] z) {
+		double sum = 0;
+
+		for (int i = 0; i < x.length; i++) {
+			for (int j = first[i]; j < first[i + 1]; j++) {
+				int o = adj[j];
+				double dx = x[i] - x[o], dy = y[i] - y[o], dz = z[i] - z[o];
+
+				sum += Math.sqrt(dx * dx + dy * dy + dz * dz);
+			}
+		}
+
+		if (sum > 0) {
+			float scale = (float) (k * first[x.length] / sum);
+
+			for (int i = 0; i < x.length; i++) {
+				x[i] *= scale;
+				y[i] *= scale;
+				z[i] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * Sparse stress majorisation. The stress considers the edges, of length
+	 * k, and the distances to the pivots. The weight of a pivot p for node i
+	 * is the number of nodes of the region of p that are nearer from p than
+	 * half the distance from p to i, divided by the squared distance. Each
+	 * iteration moves all nodes at once.
+	 */
+	protected void majorize(final char[][] dist, final int[] pivots,
+			final int p, int[] minDist, int[] nearest, final int[] first,
+			final int[] adj, float[] x, float[] y, float[] z) {
+		final int size = x.length;
+
+		// Weight of the distance to each pivot, by number of hops : the number
+		// of nodes of the region of the pivot nearer than half this distance,
+		// divided by the squared distance.
+
+		int[][] within = new int[p][];
+		int[] radius = new int[p];
+		final float[][] weights = new float[p][];
+
+		for (int i = 0; i < size; i++)
+			radius[nearest[i]] = Math.max(radius[nearest[i]], minDist[i]);
+
+		for (int a = 0; a < p; a++)
+			within[a] = new int[radius[a] + 1];
+
+		for (int i = 0; i < size; i++)
+			within[nearest[i]][minDist[i]]++;
+
+		for (int a = 0; a < p; a++) {
+			int hopsMax = 0;
+
+			for (int d = 1; d < within[a].length; d++)
+				within[a][d] += within[a][d - 1];
+
+			for (int i = 0; i < size; i++)
+				hopsMax = Math.max(hopsMax, dist[a][i]);
+
+			weights[a] = new float[hopsMax + 1];
+
+			for (int hops = 1; hops <= hopsMax; hops++) {
+				int count = within[a][Math.min(hops / 2, radius[a])];
+
+				weights[a][hops] = count / (hops * k * hops * k);
+			}
+		}
+
+		final float edgeWeight = 1 / (k * k);
+		final float[][] pos = { x, y, z }, next = { new float[size],
+				new float[size], new float[size] };
+		final float[] moves = new float[1];
+
+		for (int iteration = 0; iteration < stressIterations; iteration++) {
+			final float[] cx = pos[0], cy = pos[1], cz = pos[2];
+			final float[] nx = next[0], ny = next[1], nz = next[2];
+
+			moves[0] = 0;
+
+			parallel(size, new Range() {
+				void run(int from, int to) {
+					float maxMove = 0;
+
+					for (int i = from; i < to; i++) {
+						float xi = cx[i], yi = cy[i], zi = cz[i];
+						double sx = 0, sy = 0, sz = 0, sw = 0;
+
+						for (int t = first[i]; t < first[i + 1]; t++) {
+							int j = adj[t];
+							float dx = xi - cx[j], dy = yi - cy[j], dz = zi
+									- cz[j];
+							float len = (float) Math.sqrt(dx * dx + dy * dy
+									+ dz * dz);
+							float f = len > 0 ? k / len : 0;
+
+							sx += edgeWeight * (cx[j] + f * dx);
+							sy += edgeWeight * (cy[j] + f * dy);
+							sz += edgeWeight * (cz[j] + f * dz);
+							sw += edgeWeight;
+						}
+
+						for (int a = 0; a < p; a++) {
+							int hops = dist[a][i];
+							float w = weights[a][hops];
+
+							if (w > 0) {
+								int j = pivots[a];
+								float dx = xi - cx[j], dy = yi - cy[j], dz = zi
+										- cz[j];
+								float len = (float) Math.sqrt(dx * dx + dy
+										* dy + dz * dz);
+								float f = len > 0 ? hops * k / len : 0;
+
+								sx += w * (cx[j] + f * dx);
+								sy += w * (cy[j] + f * dy);
+								sz += w * (cz[j] + f * dz);
+								sw += w;
+							}
+						}
+
+						if (sw > 0) {
+							nx[i] = (float) (sx / sw);
+							ny[i] = (float) (sy / sw);
+							nz[i] = is3D ? (float) (sz / sw) : 0;
+						} else {
+							nx[i] = xi;
+							ny[i] = yi;
+							nz[i] = zi;
+						}
+
+						maxMove = Math.max(maxMove, Math.abs(nx[i] - xi)
+								+ Math.abs(ny[i] - yi) + Math.abs(nz[i] - zi));
+					}
+
+					synchronized (moves) {
+						moves[0] = Math.max(moves[0], maxMove);
+					}
+				}
+			});
+
+			float[][] swap = { pos[0], pos[1], pos[2] };
+
+			for (int c = 0; c < 3; c++) {
+				pos[c] = next[c];
+				next[c] = swap[c];
+			}
+
+			if (moves[0] < tolerance * k)
+				break;
+		}
+
+		if (pos[0] != x) {
+			System.arraycopy(pos[0], 0, x, 0, size);
+			System.arraycopy(pos[1], 0, y, 0, size);
+			System.arraycopy(pos[2], 0, z, 0, size);
+		}
+	}
+
+	/**
+	 * Place the components in rows, the largest first, two edge lengths
+	 * apart.
+	 */
+	protected void pack(int[] order, final ArrayList<Integer> starts,
+			float[] x, float[] y, float[] z) {
+		int count = starts.size() - 1;
+		float[] minx = new float[count], miny = new float[count], minz = new float[count];
+		float[] width = new float[count], height = new float[count];
+		Integer[] byCount = new Integer[count];
+		float gap = 2 * k;
+		double area = 0;
+		float row = 0;
+
+		for (int c = 0; c < count; c++) {
+			float maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE;
+
+			minx[c] = miny[c] = minz[c] = Float.MAX_VALUE;
+
+			for (int i = starts.get(c); i < starts.get(c + 1); i++) {
+				int u = order[i];
+
+				minx[c] = Math.min(minx[c], x[u]);
+				miny[c] = Math.min(miny[c], y[u]);
+				minz[c] = Math.min(minz[c], z[u]);
+				maxx = Math.max(maxx, x[u]);
+				maxy = Math.max(maxy, y[u]);
+			}
+
+			width[c] = maxx - minx[c];
+			height[c] = maxy - miny[c];
+			area += (width[c] + gap) * (height[c] + gap);
+			row = Math.max(row, width[c]);
+			byCount[c] = c;
+		}
+
+		Arrays.sort(byCount, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int na = starts.get(a + 1) - starts.get(a);
+				int nb = starts.get(b + 1) - starts.get(b);
+
+				return na != nb ? nb - na : a - b;
+			}
+		});
+
+		row = Math.max(row, (float) Math.sqrt(area));
+
+		float cursorX = 0, cursorY = 0, shelf = 0;
+
+		for (int c : byCount) {
+			if (cursorX > 0 && cursorX + width[c] > row) {
+				cursorY += shelf + gap;
+				cursorX = 0;
+				shelf = 0;
+			}
+
+			float dx = cursorX - minx[c], dy = cursorY - miny[c];
+
+			for (int i = starts.get(c); i < starts.get(c + 1); i++) {
+				int u = order[i];
+
+				x[u] += dx;
+				y[u] += dy;
+				z[u] -= minz[c];
+			}
+
+			cursorX += width[c] + gap;
+			shelf = Math.max(shelf, height[c]);
+		}
+	}
+
+	/**
+	 * Rotate, possibly mirror, and translate the new positions in the plane
+	 * to match the positions of the nodes that already had one.
+	 */
+	protected void align(int[] slots, float[] x, float[] y, float[] z) {
+		double ax = 0, ay = 0, az = 0, bx = 0, by = 0, bz = 0;
+		int common = 0;
+
+		for (int i = 0; i < slots.length; i++) {
+			int s = slots[i];
+
+			if (placed[s]) {
+				ax += x[i];
+				ay += y[i];
+				az += z[i];
+				bx += px[s];
+				by += py[s];
+				bz += pz[s];
+				common++;
+			}
+		}
+
+		if (common == 0)
+			return;
+
+		ax /= common;
+		ay /= common;
+		az /= common;
+		bx /= common;
+		by /= common;
+		bz /= common;
+
+		double sxx = 0, sxy = 0, syx = 0, syy = 0;
+
+		for (int i = 0; i < slots.length; i++) {
+			int s = slots[i];
+
+			if (placed[s]) {
+				double u = x[i] - ax, v = y[i] - ay;
+				double ox = px[s] - bx, oy = py[s] - by;
+
+				sxx += u * ox;
+				sxy += u * oy;
+				syx += v * ox;
+				syy += v * oy;
+			}
+		}
+
+		// Best rotation, and best rotation after a mirror on the x axis.
+
+		double direct = Math.hypot(sxx + syy, sxy - syx);
+		double mirrored = Math.hypot(sxx - syy, sxy + syx);
+		boolean mirror = mirrored > direct;
+		double angle = mirror ? Math.atan2(sxy + syx, sxx - syy) : Math.atan2(
+				sxy - syx, sxx + syy);
+		double cos = Math.cos(angle), sin = Math.sin(angle);
+
+		for (int i = 0; i < slots.length; i++) {
+			double u = x[i] - ax, v = mirror ? ay - y[i] : y[i] - ay;
+
+			x[i] = (float) (bx + u * cos - v * sin);
+			y[i] = (float) (by + u * sin + v * cos);
+			z[i] = (float) (z[i] - az + bz);
+		}
+	}
+
+	/**
+	 * Send the positions that changed, frozen nodes keeping theirs, and
+	 * update the bounds.
+	 */
+	protected void publish(int[] slots, float[] x, float[] y, float[] z) {
+		float eps = k * 1e-4f;
+		boolean all = !published;
+
+		published = true;
+
+		if (slots.length > 0) {
+			lo.set(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+			hi.set(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+		}
+
+		for (int i = 0; i < slots.length; i++) {
+			int s = slots[i];
+
+			if (!(frozen[s] && placed[s])) {
+				if (all || !placed[s] || Math.abs(px[s] - x[i]) > eps
+						|| Math.abs(py[s] - y[i]) > eps
+						|| Math.abs(pz[s] - z[i]) > eps) {
+					if (sendNodeInfos) {
+						for (LayoutListener listener : listeners)
+							listener.nodeInfos(graph.getNodeId(s), x[i] - px[s],
+									y[i] - py[s], z[i] - pz[s]);
+					}
+
+					px[s] = x[i];
+					py[s] = y[i];
+					pz[s] = z[i];
+					placed[s] = true;
+					send(s);
+				}
+			}
+
+			lo.set(Math.min(lo.x, px[s]), Math.min(lo.y, py[s]), Math.min(lo.z,
+					pz[s]));
+			hi.set(Math.max(hi.x, px[s]), Math.max(hi.y, py[s]), Math.max(hi.z,
+					pz[s]));
+		}
+	}
+
+	/**
+	 * Send the position of a node slot to the listeners and as a "xyz"
+	 * attribute.
+	 */
+	protected void send(int s) {
+		String id = graph.getNodeId(s);
+
+		nodeMoveCount++;
+
+		for (LayoutListener listener : listeners)
+			listener.nodeMoved(id, px[s], py[s], pz[s]);
+
+		Object xyz[] = new Object[3];
+		xyz[0] = px[s];
+		xyz[1] = py[s];
+		xyz[2] = pz[s];
+
+		sendNodeAttributeChanged(getLayoutAlgorithmName(), id, "xyz", xyz, xyz);
+	}
+
+	// Threads
+
+	/**
+	 * Run a task on a range of indices, split among the threads.
+	 */
+	protected void parallel(int n, final Range range) {
+		int parts = Math.min(threads, Math.max(1, n / 1024));
+		ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+
+		for (int part = 0; part < parts; part++) {
+			final int from = (int) ((long) n * part / parts);
+			final int to = (int) ((long) n * (part + 1) / parts);
+
+			tasks.add(new Runnable() {
+				public void run() {
+					range.run(from, to);
+				}
+			});
+		}
+
+		invoke(tasks);
+	}
+
+	/**
+	 * Run tasks on the threads and wait for them.
+	 */
+	protected void invoke(ArrayList<Runnable> tasks) {
+		if (threads <= 1 || tasks.size() <= 1) {
+			for (Runnable task : tasks)
+				task.run();
+
+			return;
+		}
+
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "pivot-mds");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		ArrayList<Callable<Object>> callables = new ArrayList<Callable<Object>>();
+
+		for (Runnable task : tasks)
+			callables.add(Executors.callable(task));
+
+		try {
+			for (Future<Object> future : pool.invokeAll(callables))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	// Graph representation
+
+	/**
+	 * Grow the per slot arrays to the number of node slots.
+	 */
+	protected void ensureSlots() {
+		int n = graph.getNodeSlotCount();
+
+		if (n > px.length) {
+			n = Math.max(n, px.length * 2);
+			px = Arrays.copyOf(px, n);
+			py = Arrays.copyOf(py, n);
+			pz = Arrays.copyOf(pz, n);
+			placed = Arrays.copyOf(placed, n);
+			frozen = Arrays.copyOf(frozen, n);
+		}
+	}
+
+	/**
+	 * Set the state of a new node slot, with its position from
+	 * {@link #initialPositions} if known.
+	 */
+	protected void resetSlot(int s) {
+		float pos[] = new float[3];
+
+		frozen[s] = false;
+		placed[s] = initialPositions != null
+				&& initialPositions.getPosition(graph.getNodeId(s), pos);
+
+		if (placed[s]) {
+			px[s] = pos[0];
+			py[s] = pos[1];
+			pz[s] = is3D ? pos[2] : 0;
+		}
+	}
+
+	protected void structureChanged() {
+		structureChanged = true;
+		changes++;
+	}
+
+	// Output
+
+	public void inputPos(String filename) throws IOException {
+		PositionCache cache = new PositionCache();
+
+		cache.loadText(filename);
+		usePositions(cache);
+	}
+
+	public void outputPos(String filename) throws IOException {
+		getPositions().saveText(filename);
+	}
+
+	/**
+	 * Read node positions in the binary format of {@link PositionCache}. They
+	 * are sent at once, kept for the nodes added afterwards, and the computed
+	 * layouts are rotated to match them.
+	 * 
+	 * @param filename
+	 *            The file to read.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a position file.
+	 */
+	public void loadPositions(String filename) throws IOException {
+		usePositions(new PositionCache(filename));
+	}
+
+	/**
+	 * Save the node positions in the binary format of {@link PositionCache},
+	 * faster to read back than the text format of {@link #outputPos(String)}.
+	 * 
+	 * @param filename
+	 *            The file to write.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void savePositions(String filename) throws IOException {
+		getPositions().save(filename);
+	}
+
+	/**
+	 * The positions of the placed nodes.
+	 */
+	protected PositionCache getPositions() {
+		PositionCache cache = new PositionCache();
+
+		for (int s = 0; s < graph.getNodeSlotCount(); s++) {
+			if (graph.isNode(s) && placed[s])
+				cache.setPosition(graph.getNodeId(s), px[s], py[s], pz[s]);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Move the nodes to the positions of a cache, and keep the cache for the
+	 * nodes added afterwards.
+	 */
+	protected void usePositions(PositionCache cache) {
+		float pos[] = new float[3];
+
+		for (int s = 0; s < graph.getNodeSlotCount(); s++) {
+			if (graph.isNode(s) && cache.getPosition(graph.getNodeId(s), pos))
+				moveNode(graph.getNodeId(s), pos[0], pos[1], pos[2]);
+		}
+
+		initialPositions = cache;
+	}
+
+	// Sink
+
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (graph.getNodeSlot(nodeId) < 0) {
+			int s = graph.addNode(nodeId);
+
+			ensureSlots();
+			resetSlot(s);
+			structureChanged();
+		}
+
+		sendNodeAdded(graphId, timeId, nodeId);
+	}
+
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int s = graph.getNodeSlot(nodeId);
+
+		if (s >= 0) {
+			graph.removeNode(s);
+			structureChanged();
+		}
+
+		sendNodeRemoved(graphId, timeId, nodeId);
+	}
+
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (graph.getEdgeSlot(edgeId) < 0) {
+			int from = graph.getNodeSlot(fromNodeId);
+			int to = graph.getNodeSlot(toNodeId);
+
+			graph.addEdge(edgeId, fromNodeId, toNodeId, false, 1);
+			ensureSlots();
+
+			if (from < 0)
+				resetSlot(graph.getNodeSlot(fromNodeId));
+
+			if (to < 0)
+				resetSlot(graph.getNodeSlot(toNodeId));
+
+			structureChanged();
+		}
+
+		sendEdgeAdded(graphId, timeId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = graph.getEdgeSlot(edgeId);
+
+		if (e >= 0) {
+			graph.removeEdge(e);
+			structureChanged();
+		}
+
+		sendEdgeRemoved(graphId, timeId, edgeId);
+	}
+
+	public void graphCleared(String graphId, long timeId) {
+		clear();
+		sendGraphCleared(graphId, timeId);
+	}
+
+	public void stepBegins(String graphId, long timeId, double step) {
+		sendStepBegins(graphId, timeId, step);
+	}
+
+	public void graphAttributeAdded(String graphId, long timeId,
+			String attribute, Object value) {
+		graphAttributeChanged_(attribute, value);
+		sendGraphAttributeAdded(graphId, timeId, attribute, value);
+	}
+
+	public void graphAttributeChanged(String graphId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		graphAttributeChanged_(attribute, newValue);
+		sendGraphAttributeChanged(graphId, timeId, attribute, oldValue,
+				newValue);
+	}
+
+	protected void graphAttributeChanged_(String attribute, Object newValue) {
+		if (attribute.equals("layout.force")) {
+			if (newValue instanceof Number)
+				setForce(((Number) newValue).floatValue());
+		} else if (attribute.equals("layout.quality")) {
+			if (newValue instanceof Number)
+				setQuality(Math.max(0, Math.min(4, ((Number) newValue)
+						.intValue())));
+		}
+	}
+
+	public void graphAttributeRemoved(String graphId, long timeId,
+			String attribute) {
+		sendGraphAttributeRemoved(graphId, timeId, attribute);
+	}
+
+	public void nodeAttributeAdded(String graphId, long timeId, String nodeId,
+			String attribute, Object value) {
+		sendNodeAttributeAdded(graphId, timeId, nodeId, attribute, value);
+	}
+
+	public void nodeAttributeChanged(String graphId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		sendNodeAttributeChanged(graphId, timeId, nodeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void nodeAttributeRemoved(String graphId, long timeId,
+			String nodeId, String attribute) {
+		sendNodeAttributeRemoved(graphId, timeId, nodeId, attribute);
+	}
+
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		sendEdgeAttributeAdded(graphId, timeId, edgeId, attribute, value);
+	}
+
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		sendEdgeAttributeChanged(graphId, timeId, edgeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		sendEdgeAttributeRemoved(graphId, timeId, edgeId, attribute);
+	}
+
+	// Benchmark
+
+	/**
+	 * Lay out a grid graph and measure the time and the stress of the
+	 * distances from a sample of nodes, after scaling the layout optimally.
+	 * 
+	 * <p>
+	 * Arguments : the side of the grid (default 1000), and the quality
+	 * (default 2).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int quality = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int n = side * side;
+		PivotMDSLayout layout = new PivotMDSLayout();
+
+		layout.setQuality(quality);
+
+		long t1 = System.nanoTime();
+
+		for (int i = 0; i < n; i++)
+			layout.nodeAdded("bench", 0, Integer.toString(i));
+
+		for (int i = 0; i < n; i++) {
+			if (i % side < side - 1)
+				layout.edgeAdded("bench", 0, i + "_" + (i + 1), Integer
+						.toString(i), Integer.toString(i + 1), false);
+			if (i + side < n)
+				layout.edgeAdded("bench", 0, i + "_" + (i + side), Integer
+						.toString(i), Integer.toString(i + side), false);
+		}
+
+		System.out.printf("grid %dx%d, %d nodes, loaded in %.3f s%n", side,
+				side, n, (System.nanoTime() - t1) / 1e9);
+
+		t1 = System.nanoTime();
+		layout.compute();
+
+		System.out.printf("pivot mds: %d pivots, %d threads, quality %d, %.3f s%n",
+				layout.getPivotCount(), layout.getThreadCount(), quality,
+				(System.nanoTime() - t1) / 1e9);
+
+		// Stress from a sample of nodes. In a grid the graph distance is the
+		// Manhattan distance.
+
+		Random random = new Random(1);
+		double num = 0, den = 0, stress = 0;
+		int pairs = 0;
+		int[] sources = new int[16];
+
+		for (int s = 0; s < sources.length; s++)
+			sources[s] = random.nextInt(n);
+
+		for (int pass = 0; pass < 2; pass++) {
+			double scale = pass == 0 ? 1 : num / den;
+
+			for (int source : sources) {
+				int a = layout.graph.getNodeSlot(Integer.toString(source));
+
+				for (int v = 0; v < n; v += 7) {
+					int b = layout.graph.getNodeSlot(Integer.toString(v));
+					int d = Math.abs(source / side - v / side)
+							+ Math.abs(source % side - v % side);
+
+					if (d == 0)
+						continue;
+
+					double dx = layout.px[a] - layout.px[b];
+					double dy = layout.py[a] - layout.py[b];
+					double e = Math.sqrt(dx * dx + dy * dy);
+
+					if (pass == 0) {
+						num += e / d;
+						den += e * e / ((double) d * d);
+					} else {
+						stress += (scale * e - d) * (scale * e - d)
+								/ ((double) d * d);
+						pairs++;
+					}
+				}
+			}
+		}
+
+		System.out.printf("stress %.4f%n", stress / pairs);
+	}
+}
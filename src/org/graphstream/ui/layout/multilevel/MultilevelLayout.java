@@ -0,0 +1,1546 @@
+/*
+ * This file is part of GraphStream.
+ * 
+ * GraphStream is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GraphStream is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GraphStream.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2006 - 2009
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.ui.layout.multilevel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.graphstream.algorithm.CompactGraph;
+import org.graphstream.stream.SourceBase;
+import org.graphstream.ui.geom.Point3;
+import org.graphstream.ui.layout.Layout;
+import org.graphstream.ui.layout.LayoutListener;
+import org.graphstream.ui.layout.PositionCache;
+import org.graphstream.ui.layout.springbox.SpringBox;
+
+/**
+ * A multilevel force-directed layout for very large graphs.
+ *
+ * <p>
+ * Force-directed layouts like the {@link SpringBox} only move nodes locally at
+ * each step, therefore untangling a large graph from random positions needs a
+ * very large number of steps. This layout follows the multilevel method of
+ * Walshaw ("A multilevel algorithm for force-directed graph drawing") : the
+ * graph is recursively coarsened by collapsing matchings of neighbour nodes,
+ * until it cannot be reduced anymore. The coarsest graph, that is small, is
+ * laid out from random positions. Then its positions are interpolated to the
+ * graph of the level below, that is refined, and so on until the original
+ * graph. As the global shape is found on small graphs, each level only needs
+ * a few local refinement steps.
+ * </p>
+ *
+ * <p>
+ * Each refinement step is a Fruchterman-Reingold step with attraction along
+ * the edges and repulsion between nodes nearer than twice the natural length
+ * of the level, found with a grid, that costs O(n + m). Unlike in the
+ * original method the repulsion is not weighted by the number of nodes
+ * collapsed, this keeps the same scale at all levels and avoids folds when
+ * going down. The displacements are limited by a temperature that decreases
+ * at each step. A level is refined until the nodes move less than the
+ * tolerance (see {@link #setQuality(int)}) times the natural length.
+ * </p>
+ *
+ * <p>
+ * Each call to {@link #compute()} makes one step on the current level. The
+ * positions are sent as "xyz" attributes and to the layout listeners only
+ * once the finest level is reached, and afterwards only for nodes that moved.
+ * The layout can therefore be driven by a
+ * {@link org.graphstream.ui.layout.LayoutRunner}, or be used once, for example
+ * before an image export, by calling {@link #compute()} until
+ * {@link #getNodeMoved()} returns zero.
+ * </p>
+ *
+ * <p>
+ * The layout follows graph changes. Changes of the finest graph are refined
+ * directly, from the previous positions, new nodes being placed at the centre
+ * of their neighbours. When the graph changed too much since the levels were
+ * built (see {@link #setRebuildRatio(float)}), the levels are built anew,
+ * starting from the current positions.
+ * </p>
+ */
+public class MultilevelLayout extends SourceBase implements Layout {
+	// Attribute
+
+	/**
+	 * Refinement state of one level of the graph.
+	 */
+	protected static class Level {
+		/**
+		 * Number of nodes.
+		 */
+		int n;
+
+		/**
+		 * Neighbours of node i are adj[first[i]] to adj[first[i+1]-1].
+		 */
+		int[] first, adj;
+
+		/**
+		 * Number of original nodes collapsed in each node.
+		 */
+		float[] mass;
+
+		/**
+		 * Node of the coarser level each node is collapsed in, null for the
+		 * coarsest level.
+		 */
+		int[] parent;
+
+		/**
+		 * Positions.
+		 */
+		float[] x, y, z;
+
+		/**
+		 * Positions when the levels were built, the positions of the finer
+		 * level are relative to them.
+		 */
+		float[] x0, y0, z0;
+
+		/**
+		 * Natural length and temperature.
+		 */
+		float k, t;
+
+		Level(int n) {
+			this.n = n;
+			first = new int[n + 1];
+			mass = new float[n];
+			x = new float[n];
+			y = new float[n];
+			z = new float[n];
+		}
+	}
+
+	/**
+	 * Ratio of the natural lengths of two successive levels.
+	 */
+	protected static final float LEVEL_RATIO = (float) Math.sqrt(7.0 / 4.0);
+
+	/**
+	 * The graph.
+	 */
+	protected CompactGraph graph = new CompactGraph();
+
+	/**
+	 * Last position sent for each node slot.
+	 */
+	protected float[] px = new float[16], py = new float[16],
+			pz = new float[16];
+
+	/**
+	 * Node slots that have a position.
+	 */
+	protected boolean[] placed = new boolean[16];
+
+	/**
+	 * Frozen node slots.
+	 */
+	protected boolean[] frozen = new boolean[16];
+
+	/**
+	 * Node slot of each node of the finest level.
+	 */
+	protected int[] slots = new int[0];
+
+	/**
+	 * The levels, the finest first.
+	 */
+	protected ArrayList<Level> levels = new ArrayList<Level>();
+
+	/**
+	 * Index of the level being refined.
+	 */
+	protected int current;
+
+	/**
+	 * The finest level has been reached once, the layout is not built from
+	 * random positions anymore.
+	 */
+	protected boolean published = false;
+
+	/**
+	 * No node had a position when the levels were built, the coarsest level
+	 * was placed randomly.
+	 */
+	protected boolean cold = true;
+
+	/**
+	 * Number of nodes that had no position when the levels were built.
+	 */
+	protected int fresh = 0;
+
+	/**
+	 * The finest level is refined.
+	 */
+	protected boolean converged = false;
+
+	/**
+	 * The graph structure changed since the last step.
+	 */
+	protected boolean structureChanged = false;
+
+	/**
+	 * Number of structure changes since the levels were built.
+	 */
+	protected int changes = 0;
+
+	/**
+	 * Random number generator.
+	 */
+	protected Random random;
+
+	/**
+	 * Set of listeners.
+	 */
+	protected ArrayList<LayoutListener> listeners = new ArrayList<LayoutListener>();
+
+	/**
+	 * The lowest node position.
+	 */
+	protected Point3 lo = new Point3(0, 0, 0);
+
+	/**
+	 * The highest node position.
+	 */
+	protected Point3 hi = new Point3(1, 1, 1);
+
+	// Attribute -- Parameters
+
+	/**
+	 * Natural length of the finest level.
+	 */
+	protected float k = 1f;
+
+	/**
+	 * Strength of the repulsion.
+	 */
+	protected float repulsion = 0.2f;
+
+	/**
+	 * Factor applied to the temperature at each step.
+	 */
+	protected float cooling = 0.9f;
+
+	/**
+	 * A level is refined when nodes move less than this times the natural
+	 * length.
+	 */
+	protected float tolerance = 0.01f;
+
+	/**
+	 * Initial temperature, in natural lengths, when starting from known
+	 * positions.
+	 */
+	protected float warmth = 0.1f;
+
+	/**
+	 * Fraction of the graph that must change to build the levels anew.
+	 */
+	protected float rebuildRatio = 0.25f;
+
+	/**
+	 * Coarsening stops when a level has less nodes.
+	 */
+	protected int coarsestSize = 8;
+
+	/**
+	 * Coarsening stops when a level is not reduced by this fraction.
+	 */
+	protected float minReduction = 0.05f;
+
+	/**
+	 * Global force strength, factor of the initial temperatures.
+	 */
+	protected float force = 1f;
+
+	/**
+	 * The quality level.
+	 */
+	protected int quality = 2;
+
+	/**
+	 * Compute the third coordinate ?.
+	 */
+	protected boolean is3D = false;
+
+	/**
+	 * Send node informations?.
+	 */
+	protected boolean sendNodeInfos = false;
+
+	// Attribute -- Statistics
+
+	/**
+	 * Number of steps.
+	 */
+	protected int steps;
+
+	/**
+	 * Duration of the last step in nanoseconds.
+	 */
+	protected long lastStepTime;
+
+	/**
+	 * Number of nodes sent during the last step.
+	 */
+	protected int nodeMoveCount;
+
+	/**
+	 * Temperature of the finest level relative to its natural length, 1 on
+	 * coarser levels, 0 when refined.
+	 */
+	protected double stabilization = 1;
+
+	// Construction
+
+	public MultilevelLayout() {
+		this(false);
+	}
+
+	public MultilevelLayout(boolean is3D) {
+		this(is3D, new Random(System.currentTimeMillis()));
+	}
+
+	public MultilevelLayout(boolean is3D, Random randomNumberGenerator) {
+		this.is3D = is3D;
+		this.random = randomNumberGenerator;
+	}
+
+	// Access
+
+	public String getLayoutAlgorithmName() {
+		return "Multilevel";
+	}
+
+	public int getNodeMoved() {
+		return nodeMoveCount;
+	}
+
+	public double getStabilization() {
+		return stabilization;
+	}
+
+	public Point3 getLowPoint() {
+		return new Point3(lo.x, lo.y, lo.z);
+	}
+
+	public Point3 getHiPoint() {
+		return new Point3(hi.x, hi.y, hi.z);
+	}
+
+	public int getSteps() {
+		return steps;
+	}
+
+	public long getLastStepTime() {
+		return lastStepTime;
+	}
+
+	public int getQuality() {
+		return quality;
+	}
+
+	public float getForce() {
+		return force;
+	}
+
+	/**
+	 * Number of levels, including the graph itself.
+	 */
+	public int getLevelCount() {
+		return levels.size();
+	}
+
+	/**
+	 * Index of the level being refined, 0 being the graph itself.
+	 */
+	public int getCurrentLevel() {
+		return current;
+	}
+
+	// Command
+
+	public void clear() {
+		graph.clear();
+		levels.clear();
+		slots = new int[0];
+		Arrays.fill(placed, false);
+		Arrays.fill(frozen, false);
+		published = false;
+		cold = true;
+		converged = false;
+		structureChanged = false;
+		changes = 0;
+		nodeMoveCount = 0;
+		stabilization = 1;
+	}
+
+	public void addListener(LayoutListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(LayoutListener listener) {
+		listeners.remove(listener);
+	}
+
+	public void setForce(float value) {
+		force = value;
+	}
+
+	/**
+	 * Set the quality. The levels are refined until nodes move less than
+	 * 0.05, 0.02, 0.01, 0.005 or 0.002 natural lengths, for quality levels 0
+	 * to 4. By default 2.
+	 */
+	public void setQuality(int qualityLevel) {
+		float tolerances[] = { 0.05f, 0.02f, 0.01f, 0.005f, 0.002f };
+
+		if (qualityLevel < 0 || qualityLevel > 4) {
+			System.err.printf("invalid quality level %d%n", qualityLevel);
+			return;
+		}
+
+		quality = qualityLevel;
+		tolerance = tolerances[qualityLevel];
+	}
+
+	/**
+	 * Set the fraction of the graph that must change (nodes and edges added
+	 * or removed) to build the levels anew instead of only refining the
+	 * graph. By default 0.25.
+	 */
+	public void setRebuildRatio(float ratio) {
+		rebuildRatio = ratio;
+	}
+
+	public void setSendNodeInfos(boolean send) {
+		sendNodeInfos = send;
+	}
+
+	public void shake() {
+		float size = hi.distance(lo) * 0.1f;
+
+		for (int i = 0; i < slots.length; i++) {
+			int s = slots[i];
+
+			if (!frozen[s]) {
+				px[s] += (random.nextFloat() * 2 - 1) * size;
+				py[s] += (random.nextFloat() * 2 - 1) * size;
+
+				if (is3D)
+					pz[s] += (random.nextFloat() * 2 - 1) * size;
+			}
+		}
+
+		reheat(1);
+	}
+
+	public void moveNode(String id, float x, float y, float z) {
+		int s = graph.getNodeSlot(id);
+
+		if (s >= 0) {
+			px[s] = x;
+			py[s] = y;
+			pz[s] = is3D ? z : 0;
+			placed[s] = true;
+			reheat(warmth);
+		}
+	}
+
+	public void freezeNode(String id, boolean frozen) {
+		int s = graph.getNodeSlot(id);
+
+		if (s >= 0)
+			this.frozen[s] = frozen;
+	}
+
+	public void compute() {
+		long t1 = System.nanoTime();
+
+		if (structureChanged)
+			rebuild();
+
+		if (!converged && !levels.isEmpty()) {
+			Level level = levels.get(current);
+			float moved = step(level, current == 0);
+
+			level.t *= cooling;
+
+			if (moved < tolerance * level.k || level.t < tolerance * level.k) {
+				if (current > 0) {
+					interpolate(level, levels.get(current - 1));
+					current--;
+				} else {
+					converged = true;
+				}
+			}
+		}
+
+		if (current == 0 && !levels.isEmpty()) {
+			Level level = levels.get(0);
+
+			stabilization = converged ? 0 : level.t / level.k;
+			publish(level);
+		} else {
+			stabilization = 1;
+			nodeMoveCount = graph.getNodeCount();
+		}
+
+		steps++;
+		lastStepTime = System.nanoTime() - t1;
+
+		for (LayoutListener listener : listeners)
+			listener.stepCompletion((float) (1 - stabilization));
+	}
+
+	/**
+	 * Restart the refinement of the finest level, or of the current level if
+	 * the finest is not reached yet, at a given temperature.
+	 *
+	 * @param temperature
+	 *            The temperature in natural lengths.
+	 */
+	protected void reheat(float temperature) {
+		structureChanged = true;
+		converged = false;
+
+		if (!levels.isEmpty() && current == 0)
+			levels.get(0).t = Math.max(levels.get(0).t, temperature * k * force);
+	}
+
+	// Levels
+
+	/**
+	 * Build the finest level from the graph, and build the coarser levels if
+	 * needed. If some nodes already have a position, the levels start from
+	 * them, at a low temperature unless many nodes are new.
+	 */
+	protected void rebuild() {
+		Level finest = buildFinest();
+		float oldT = levels.isEmpty() ? 0 : levels.get(0).t;
+		float heat;
+
+		cold = fresh == finest.n;
+
+		if (cold || fresh > rebuildRatio * finest.n)
+			heat = 1;
+		else
+			heat = Math.max(warmth, fresh / (float) finest.n);
+
+		structureChanged = false;
+
+		if (cold || changes > rebuildRatio * finest.n) {
+			levels.clear();
+			levels.add(finest);
+
+			Level level = finest;
+
+			while (level.n > coarsestSize) {
+				level = coarsen(level);
+
+				if (level == null)
+					break;
+
+				levels.add(level);
+			}
+
+			current = levels.size() - 1;
+
+			for (int l = 0; l < levels.size(); l++) {
+				level = levels.get(l);
+				level.t = level.k * force * heat;
+
+				// From random positions, nodes start at the position of the
+				// node they are collapsed in.
+
+				if (cold) {
+					Arrays.fill(level.x, 0);
+					Arrays.fill(level.y, 0);
+					Arrays.fill(level.z, 0);
+				}
+
+				level.x0 = level.x.clone();
+				level.y0 = level.y.clone();
+				level.z0 = level.z.clone();
+
+				if (cold && l == current)
+					randomize(level);
+			}
+		} else {
+			levels.clear();
+			levels.add(finest);
+			current = 0;
+			finest.t = Math.max(oldT, finest.k * force * heat);
+		}
+
+		changes = 0;
+		converged = false;
+	}
+
+	/**
+	 * Build the finest level from the graph, and place the nodes that have no
+	 * position yet.
+	 */
+	protected Level buildFinest() {
+		int n = graph.getNodeCount();
+		int slotCount = graph.getNodeSlotCount();
+		int[] dense = new int[slotCount];
+		Level level = new Level(n);
+
+		slots = new int[n];
+		level.k = k;
+
+		for (int s = 0, i = 0; s < slotCount; s++) {
+			if (graph.isNode(s)) {
+				dense[s] = i;
+				slots[i++] = s;
+			} else {
+				dense[s] = -1;
+			}
+		}
+
+		int[] degree = level.first;
+
+		for (int e = 0; e < graph.getEdgeSlotCount(); e++) {
+			if (graph.isEdge(e)) {
+				int u = dense[graph.getSource(e)];
+				int v = dense[graph.getTarget(e)];
+
+				if (u != v) {
+					degree[u + 1]++;
+					degree[v + 1]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++)
+			level.first[i + 1] += level.first[i];
+
+		int[] fill = Arrays.copyOf(level.first, n);
+		level.adj = new int[level.first[n]];
+
+		for (int e = 0; e < graph.getEdgeSlotCount(); e++) {
+			if (graph.isEdge(e)) {
+				int u = dense[graph.getSource(e)];
+				int v = dense[graph.getTarget(e)];
+
+				if (u != v) {
+					level.adj[fill[u]++] = v;
+					level.adj[fill[v]++] = u;
+				}
+			}
+		}
+
+		Arrays.fill(level.mass, 1);
+
+		// Nodes without position are placed near a neighbour, in breadth first
+		// order from the nodes that have one, or randomly.
+
+		boolean[] known = new boolean[n];
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE, minz = Float.MAX_VALUE;
+		float maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE, maxz = -Float.MAX_VALUE;
+
+		for (int i = 0; i < n; i++) {
+			int s = slots[i];
+
+			if (placed[s]) {
+				level.x[i] = px[s];
+				level.y[i] = py[s];
+				level.z[i] = pz[s];
+				known[i] = true;
+				queue[tail++] = i;
+				minx = Math.min(minx, px[s]);
+				miny = Math.min(miny, py[s]);
+				minz = Math.min(minz, pz[s]);
+				maxx = Math.max(maxx, px[s]);
+				maxy = Math.max(maxy, py[s]);
+				maxz = Math.max(maxz, pz[s]);
+			}
+		}
+
+		fresh = n - tail;
+
+		while (head < tail) {
+			int u = queue[head++];
+
+			for (int j = level.first[u]; j < level.first[u + 1]; j++) {
+				int v = level.adj[j];
+
+				if (!known[v]) {
+					level.x[v] = level.x[u] + (random.nextFloat() - 0.5f) * k;
+					level.y[v] = level.y[u] + (random.nextFloat() - 0.5f) * k;
+					level.z[v] = is3D ? level.z[u]
+							+ (random.nextFloat() - 0.5f) * k : 0;
+					known[v] = true;
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		if (fresh == n) {
+			float side = (float) Math.sqrt(n) * k;
+
+			minx = miny = minz = 0;
+			maxx = maxy = maxz = side;
+		}
+
+		for (int i = 0; i < n; i++) {
+			int s = slots[i];
+
+			if (!known[i]) {
+				level.x[i] = minx + random.nextFloat() * (maxx - minx);
+				level.y[i] = miny + random.nextFloat() * (maxy - miny);
+				level.z[i] = is3D ? minz + random.nextFloat() * (maxz - minz)
+						: 0;
+			}
+
+			if (fresh < n) {
+				px[s] = level.x[i];
+				py[s] = level.y[i];
+				pz[s] = level.z[i];
+				placed[s] = true;
+			}
+		}
+
+		return level;
+	}
+
+	/**
+	 * Build the coarser level of a level by collapsing a matching. Nodes are
+	 * visited in random order and matched with their lightest free
+	 * neighbour. The positions of the coarser nodes are the centres of their
+	 * collapsed nodes.
+	 *
+	 * @param fine
+	 *            The level to coarsen.
+	 * @return The coarser level, or null if the level cannot be reduced
+	 *         enough.
+	 */
+	protected Level coarsen(Level fine) {
+		int n = fine.n;
+		int[] parent = new int[n];
+		int[] order = new int[n];
+		int nc = 0;
+
+		Arrays.fill(parent, -1);
+
+		for (int i = 0; i < n; i++) {
+			int j = random.nextInt(i + 1);
+			order[i] = order[j];
+			order[j] = i;
+		}
+
+		for (int o = 0; o < n; o++) {
+			int u = order[o];
+
+			if (parent[u] >= 0)
+				continue;
+
+			int best = -1;
+
+			for (int j = fine.first[u]; j < fine.first[u + 1]; j++) {
+				int v = fine.adj[j];
+
+				if (parent[v] < 0 && v != u
+						&& (best < 0 || fine.mass[v] < fine.mass[best]))
+					best = v;
+			}
+
+			parent[u] = nc;
+
+			if (best >= 0)
+				parent[best] = nc;
+
+			nc++;
+		}
+
+		if (nc > n * (1 - minReduction))
+			return null;
+
+		Level coarse = new Level(nc);
+		int[] children = new int[n];
+		int[] start = new int[nc + 1];
+		int[] mark = new int[nc];
+
+		coarse.k = fine.k * LEVEL_RATIO;
+
+		for (int u = 0; u < n; u++) {
+			int p = parent[u];
+			float m = fine.mass[u];
+
+			start[p + 1]++;
+			coarse.mass[p] += m;
+			coarse.x[p] += fine.x[u] * m;
+			coarse.y[p] += fine.y[u] * m;
+			coarse.z[p] += fine.z[u] * m;
+		}
+
+		for (int p = 0; p < nc; p++) {
+			start[p + 1] += start[p];
+			coarse.x[p] /= coarse.mass[p];
+			coarse.y[p] /= coarse.mass[p];
+			coarse.z[p] /= coarse.mass[p];
+		}
+
+		int[] fill = Arrays.copyOf(start, nc);
+
+		for (int u = 0; u < n; u++)
+			children[fill[parent[u]]++] = u;
+
+		// Two passes on the children neighbours, to count then store the
+		// distinct coarse neighbours.
+
+		Arrays.fill(mark, -1);
+
+		for (int p = 0; p < nc; p++) {
+			int degree = 0;
+
+			for (int c = start[p]; c < start[p + 1]; c++) {
+				int u = children[c];
+
+				for (int j = fine.first[u]; j < fine.first[u + 1]; j++) {
+					int q = parent[fine.adj[j]];
+
+					if (q != p && mark[q] != p) {
+						mark[q] = p;
+						degree++;
+					}
+				}
+			}
+
+			coarse.first[p + 1] = coarse.first[p] + degree;
+		}
+
+		coarse.adj = new int[coarse.first[nc]];
+		Arrays.fill(mark, -1);
+
+		for (int p = 0; p < nc; p++) {
+			int a = coarse.first[p];
+
+			for (int c = start[p]; c < start[p + 1]; c++) {
+				int u = children[c];
+
+				for (int j = fine.first[u]; j < fine.first[u + 1]; j++) {
+					int q = parent[fine.adj[j]];
+
+					if (q != p && mark[q] != p) {
+						mark[q] = p;
+						coarse.adj[a++] = q;
+					}
+				}
+			}
+		}
+
+		fine.parent = parent;
+
+		return coarse;
+	}
+
+	/**
+	 * Place the nodes of a level randomly in a square (or cube) whose side
+	 * grows with the square root of the number of nodes.
+	 */
+	protected void randomize(Level level) {
+		float side = (float) Math.sqrt(level.n) * level.k;
+
+		for (int i = 0; i < level.n; i++) {
+			level.x[i] = random.nextFloat() * side;
+			level.y[i] = random.nextFloat() * side;
+			level.z[i] = is3D ? random.nextFloat() * side : 0;
+		}
+	}
+
+	/**
+	 * Move the nodes of a finer level by the displacement of the node they
+	 * are collapsed in since the refinement of the coarse level started.
+	 */
+	protected void interpolate(Level coarse, Level fine) {
+		boolean split = cold;
+
+		for (int u = 0; u < fine.n; u++) {
+			int p = fine.parent[u];
+
+			fine.x[u] += coarse.x[p] - coarse.x0[p];
+			fine.y[u] += coarse.y[p] - coarse.y0[p];
+
+			if (is3D)
+				fine.z[u] += coarse.z[p] - coarse.z0[p];
+
+			if (split) {
+				fine.x[u] += jitter() * fine.k;
+				fine.y[u] += jitter() * fine.k;
+
+				if (is3D)
+					fine.z[u] += jitter() * fine.k;
+			}
+		}
+	}
+
+	/**
+	 * A small random offset.
+	 */
+	protected float jitter() {
+		return (random.nextFloat() - 0.5f) * 0.02f;
+	}
+
+	// Refinement
+
+	/**
+	 * One refinement step of a level. Nodes repulse each other inside a
+	 * radius of two natural lengths, using a grid whose cells have this size,
+	 * and attract their neighbours. Each node then moves along its force by
+	 * at most the temperature.
+	 *
+	 * @param level
+	 *            The level.
+	 * @param finest
+	 *            If true, frozen nodes do not move.
+	 * @return The largest displacement.
+	 */
+	protected float step(Level level, boolean finest) {
+		int n = level.n;
+		float[] x = level.x, y = level.y, z = level.z;
+		float kk = level.k * level.k;
+		float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE, minz = Float.MAX_VALUE;
+		float maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE, maxz = -Float.MAX_VALUE;
+
+		if (n == 0)
+			return 0;
+
+		for (int i = 0; i < n; i++) {
+			minx = Math.min(minx, x[i]);
+			miny = Math.min(miny, y[i]);
+			minz = Math.min(minz, z[i]);
+			maxx = Math.max(maxx, x[i]);
+			maxy = Math.max(maxy, y[i]);
+			maxz = Math.max(maxz, z[i]);
+		}
+
+		// The grid. Cells grow if the nodes are so sparse that the grid would
+		// be larger than the graph.
+
+		float r = 2 * level.k;
+		int gx, gy, gz;
+
+		while (((maxx - minx) / r + 1) * ((maxy - miny) / r + 1)
+				* (is3D ? (maxz - minz) / r + 1 : 1) > 2 * n + 64)
+			r *= 1.5f;
+
+		gx = (int) ((maxx - minx) / r) + 1;
+		gy = (int) ((maxy - miny) / r) + 1;
+		gz = is3D ? (int) ((maxz - minz) / r) + 1 : 1;
+
+		int[] cell = new int[n];
+		int[] start = new int[gx * gy * gz + 1];
+		int[] members = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			int cx = Math.min(gx - 1, (int) ((x[i] - minx) / r));
+			int cy = Math.min(gy - 1, (int) ((y[i] - miny) / r));
+			int cz = is3D ? Math.min(gz - 1, (int) ((z[i] - minz) / r)) : 0;
+
+			cell[i] = (cz * gy + cy) * gx + cx;
+			start[cell[i] + 1]++;
+		}
+
+		for (int c = 0; c < gx * gy * gz; c++)
+			start[c + 1] += start[c];
+
+		int[] fill = Arrays.copyOf(start, start.length - 1);
+
+		for (int i = 0; i < n; i++)
+			members[fill[cell[i]]++] = i;
+
+		float r2 = r * r;
+		float maxMove = 0;
+		float[] dx = new float[n], dy = new float[n], dz = new float[n];
+
+		for (int i = 0; i < n; i++) {
+			int c = cell[i];
+			int cx = c % gx;
+			int cy = (c / gx) % gy;
+			int cz = c / (gx * gy);
+			float fx = 0, fy = 0, fz = 0;
+
+			// Repulsion.
+
+			for (int oz = Math.max(0, cz - 1); oz <= Math.min(gz - 1, cz + 1); oz++) {
+				for (int oy = Math.max(0, cy - 1); oy <= Math.min(gy - 1,
+						cy + 1); oy++) {
+					for (int ox = Math.max(0, cx - 1); ox <= Math.min(gx - 1,
+							cx + 1); ox++) {
+						int o = (oz * gy + oy) * gx + ox;
+
+						for (int m = start[o]; m < start[o + 1]; m++) {
+							int j = members[m];
+
+							if (j == i)
+								continue;
+
+							float ddx = x[i] - x[j];
+							float ddy = y[i] - y[j];
+							float ddz = z[i] - z[j];
+							float d2 = ddx * ddx + ddy * ddy + ddz * ddz;
+
+							if (d2 < r2) {
+								if (d2 == 0) {
+									ddx = (i < j ? 1e-3f : -1e-3f) * level.k;
+									d2 = ddx * ddx;
+								}
+
+								float f = repulsion * kk / d2;
+
+								fx += ddx * f;
+								fy += ddy * f;
+								fz += ddz * f;
+							}
+						}
+					}
+				}
+			}
+
+			// Attraction.
+
+			for (int a = level.first[i]; a < level.first[i + 1]; a++) {
+				int j = level.adj[a];
+				float ddx = x[j] - x[i];
+				float ddy = y[j] - y[i];
+				float ddz = z[j] - z[i];
+				float d = (float) Math.sqrt(ddx * ddx + ddy * ddy + ddz * ddz);
+				float f = d / level.k;
+
+				fx += ddx * f;
+				fy += ddy * f;
+				fz += ddz * f;
+			}
+
+			dx[i] = fx;
+			dy[i] = fy;
+			dz[i] = is3D ? fz : 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			if (finest && frozen[slots[i]])
+				continue;
+
+			float len = (float) Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i] + dz[i]
+					* dz[i]);
+
+			if (len > 0) {
+				float move = Math.min(len, level.t);
+				float s = move / len;
+
+				x[i] += dx[i] * s;
+				y[i] += dy[i] * s;
+				z[i] += dz[i] * s;
+				maxMove = Math.max(maxMove, move);
+
+				if (finest && sendNodeInfos) {
+					for (LayoutListener listener : listeners)
+						listener.nodeInfos(graph.getNodeId(slots[i]), dx[i]
+								* s, dy[i] * s, dz[i] * s);
+				}
+			}
+		}
+
+		return maxMove;
+	}
+
+	/**
+	 * Send the positions of the finest level nodes that moved noticeably
+	 * since they were last sent, and update the bounds.
+	 */
+	protected void publish(Level level) {
+		float eps = tolerance * level.k * 0.1f;
+		boolean all = !published;
+
+		published = true;
+		nodeMoveCount = 0;
+
+		if (level.n > 0) {
+			lo.set(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+			hi.set(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+		}
+
+		for (int i = 0; i < level.n; i++) {
+			int s = slots[i];
+			float x = level.x[i], y = level.y[i], z = level.z[i];
+
+			lo.set(Math.min(lo.x, x), Math.min(lo.y, y), Math.min(lo.z, z));
+			hi.set(Math.max(hi.x, x), Math.max(hi.y, y), Math.max(hi.z, z));
+
+			if (all || !placed[s] || Math.abs(px[s] - x) > eps
+					|| Math.abs(py[s] - y) > eps || Math.abs(pz[s] - z) > eps) {
+				String id = graph.getNodeId(s);
+
+				px[s] = x;
+				py[s] = y;
+				pz[s] = z;
+				placed[s] = true;
+				nodeMoveCount++;
+
+				for (LayoutListener listener : listeners)
+					listener.nodeMoved(id, x, y, z);
+
+				Object xyz[] = new Object[3];
+				xyz[0] = x;
+				xyz[1] = y;
+				xyz[2] = z;
+
+				sendNodeAttributeChanged(getLayoutAlgorithmName(), id, "xyz",
+						xyz, xyz);
+			}
+		}
+	}
+
+	// Graph representation
+
+	/**
+	 * Grow the per slot arrays to the number of node slots.
+	 */
+	protected void ensureSlots() {
+		int n = graph.getNodeSlotCount();
+
+		if (n > px.length) {
+			n = Math.max(n, px.length * 2);
+			px = Arrays.copyOf(px, n);
+			py = Arrays.copyOf(py, n);
+			pz = Arrays.copyOf(pz, n);
+			placed = Arrays.copyOf(placed, n);
+			frozen = Arrays.copyOf(frozen, n);
+		}
+	}
+
+	/**
+	 * Forget the position and state of a new node slot.
+	 */
+	protected void resetSlot(int s) {
+		placed[s] = false;
+		frozen[s] = false;
+	}
+
+	protected void structureChanged() {
+		structureChanged = true;
+		changes++;
+	}
+
+	// Output
+
+	public void inputPos(String filename) throws IOException {
+		PositionCache cache = new PositionCache();
+
+		cache.loadText(filename);
+		usePositions(cache);
+	}
+
+	public void outputPos(String filename) throws IOException {
+		getPositions().saveText(filename);
+	}
+
+	/**
+	 * Read node positions in the binary format of {@link PositionCache}.
+	 * Positions of unknown nodes are ignored.
+	 * 
+	 * @param filename
+	 *            The file to read.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a position file.
+	 */
+	public void loadPositions(String filename) throws IOException {
+		usePositions(new PositionCache(filename));
+	}
+
+	/**
+	 * Save the node positions in the binary format of {@link PositionCache},
+	 * faster to read back than the text format of {@link #outputPos(String)}.
+	 * 
+	 * @param filename
+	 *            The file to write.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void savePositions(String filename) throws IOException {
+		getPositions().save(filename);
+	}
+
+	/**
+	 * The positions of the placed nodes.
+	 */
+	protected PositionCache getPositions() {
+		PositionCache cache = new PositionCache();
+
+		for (int s = 0; s < graph.getNodeSlotCount(); s++) {
+			if (graph.isNode(s) && placed[s])
+				cache.setPosition(graph.getNodeId(s), px[s], py[s], pz[s]);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Move the nodes to the positions of a cache.
+	 */
+	protected void usePositions(PositionCache cache) {
+		float pos[] = new float[3];
+
+		for (int s = 0; s < graph.getNodeSlotCount(); s++) {
+			if (graph.isNode(s) && cache.getPosition(graph.getNodeId(s), pos))
+				moveNode(graph.getNodeId(s), pos[0], pos[1], pos[2]);
+		}
+	}
+
+	// Sink
+
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (graph.getNodeSlot(nodeId) < 0) {
+			int s = graph.addNode(nodeId);
+
+			ensureSlots();
+			resetSlot(s);
+			structureChanged();
+		}
+
+		sendNodeAdded(graphId, timeId, nodeId);
+	}
+
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		int s = graph.getNodeSlot(nodeId);
+
+		if (s >= 0) {
+			graph.removeNode(s);
+			structureChanged();
+		}
+
+		sendNodeRemoved(graphId, timeId, nodeId);
+	}
+
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (graph.getEdgeSlot(edgeId) < 0) {
+			int from = graph.getNodeSlot(fromNodeId);
+			int to = graph.getNodeSlot(toNodeId);
+
+			graph.addEdge(edgeId, fromNodeId, toNodeId, false, 1);
+			ensureSlots();
+
+			if (from < 0) {
+				resetSlot(graph.getNodeSlot(fromNodeId));
+				changes++;
+			}
+
+			if (to < 0) {
+				resetSlot(graph.getNodeSlot(toNodeId));
+				changes++;
+			}
+
+			structureChanged();
+		}
+
+		sendEdgeAdded(graphId, timeId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		int e = graph.getEdgeSlot(edgeId);
+
+		if (e >= 0) {
+			graph.removeEdge(e);
+			structureChanged();
+		}
+
+		sendEdgeRemoved(graphId, timeId, edgeId);
+	}
+
+	public void graphCleared(String graphId, long timeId) {
+		clear();
+		sendGraphCleared(graphId, timeId);
+	}
+
+	public void stepBegins(String graphId, long timeId, double step) {
+		sendStepBegins(graphId, timeId, step);
+	}
+
+	public void graphAttributeAdded(String graphId, long timeId,
+			String attribute, Object value) {
+		graphAttributeChanged_(attribute, value);
+		sendGraphAttributeAdded(graphId, timeId, attribute, value);
+	}
+
+	public void graphAttributeChanged(String graphId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		graphAttributeChanged_(attribute, newValue);
+		sendGraphAttributeChanged(graphId, timeId, attribute, oldValue,
+				newValue);
+	}
+
+	protected void graphAttributeChanged_(String attribute, Object newValue) {
+		if (attribute.equals("layout.force")) {
+			if (newValue instanceof Number)
+				setForce(((Number) newValue).floatValue());
+		} else if (attribute.equals("layout.quality")) {
+			if (newValue instanceof Number)
+				setQuality(Math.max(0, Math.min(4, ((Number) newValue)
+						.intValue())));
+		}
+	}
+
+	public void graphAttributeRemoved(String graphId, long timeId,
+			String attribute) {
+		sendGraphAttributeRemoved(graphId, timeId, attribute);
+	}
+
+	public void nodeAttributeAdded(String graphId, long timeId, String nodeId,
+			String attribute, Object value) {
+		sendNodeAttributeAdded(graphId, timeId, nodeId, attribute, value);
+	}
+
+	public void nodeAttributeChanged(String graphId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		sendNodeAttributeChanged(graphId, timeId, nodeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void nodeAttributeRemoved(String graphId, long timeId,
+			String nodeId, String attribute) {
+		sendNodeAttributeRemoved(graphId, timeId, nodeId, attribute);
+	}
+
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		sendEdgeAttributeAdded(graphId, timeId, edgeId, attribute, value);
+	}
+
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		sendEdgeAttributeChanged(graphId, timeId, edgeId, attribute, oldValue,
+				newValue);
+	}
+
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		sendEdgeAttributeRemoved(graphId, timeId, edgeId, attribute);
+	}
+
+	// Benchmark
+
+	/**
+	 * Compare the time needed by this layout and by the {@link SpringBox} to
+	 * reach a given stress on a grid graph. The stress is measured on the
+	 * distances from a sample of nodes, after scaling the layout optimally.
+	 *
+	 * <p>
+	 * Arguments : the side of the grid (default 100), and the maximum time
+	 * given to the SpringBox in seconds (default 60).
+	 * </p>
+	 */
+	public static void main(String args[]) {
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		double maxTime = args.length > 1 ? Double.parseDouble(args[1]) : 60;
+		int n = side * side;
+		int[][] adjacency = new int[n][];
+
+		for (int i = 0; i < n; i++) {
+			int r = i / side, c = i % side;
+			int[] nb = new int[4];
+			int d = 0;
+
+			if (r > 0)
+				nb[d++] = i - side;
+			if (r < side - 1)
+				nb[d++] = i + side;
+			if (c > 0)
+				nb[d++] = i - 1;
+			if (c < side - 1)
+				nb[d++] = i + 1;
+
+			adjacency[i] = Arrays.copyOf(nb, d);
+		}
+
+		Random random = new Random(1);
+		int[] sources = new int[16];
+		int[][] distances = new int[sources.length][];
+
+		for (int s = 0; s < sources.length; s++) {
+			sources[s] = random.nextInt(n);
+			distances[s] = bfs(adjacency, sources[s]);
+		}
+
+		System.out.printf("grid %dx%d, %d nodes%n", side, side, n);
+
+		MultilevelLayout multilevel = new MultilevelLayout(false,
+				new Random(2));
+		PositionRecorder positions = new PositionRecorder();
+
+		multilevel.addListener(positions);
+		feed(multilevel, adjacency);
+
+		long t1 = System.nanoTime();
+
+		do {
+			multilevel.compute();
+		} while (multilevel.getNodeMoved() > 0);
+
+		double mlTime = (System.nanoTime() - t1) / 1e9;
+		double target = stress(positions.positions, sources, distances);
+
+		System.out.printf(
+				"multilevel: %d levels, %d steps, %.3f s, stress %.4f%n",
+				multilevel.getLevelCount(), multilevel.getSteps(), mlTime,
+				target);
+
+		SpringBox springBox = new SpringBox(false, new Random(2));
+
+		positions = new PositionRecorder();
+		springBox.addListener(positions);
+		feed(springBox, adjacency);
+
+		double time = 0, stress = Double.MAX_VALUE;
+
+		while (time < maxTime && stress > target) {
+			t1 = System.nanoTime();
+
+			for (int i = 0; i < 10; i++)
+				springBox.compute();
+
+			time += (System.nanoTime() - t1) / 1e9;
+			stress = stress(positions.positions, sources, distances);
+		}
+
+		if (stress <= target)
+			System.out.printf(
+					"springbox: reached stress %.4f in %d steps, %.3f s (%.1fx)%n",
+					stress, springBox.getSteps(), time, time / mlTime);
+		else
+			System.out.printf(
+					"springbox: stress %.4f after %d steps, %.3f s (not reached)%n",
+					stress, springBox.getSteps(), time);
+	}
+
+	protected static void feed(Layout layout, int[][] adjacency) {
+		for (int i = 0; i < adjacency.length; i++)
+			layout.nodeAdded("bench", 0, Integer.toString(i));
+
+		for (int i = 0; i < adjacency.length; i++)
+			for (int j : adjacency[i])
+				if (i < j)
+					layout.edgeAdded("bench", 0, i + "_" + j, Integer
+							.toString(i), Integer.toString(j), false);
+	}
+
+	protected static int[] bfs(int[][] adjacency, int source) {
+		int[] distance = new int[adjacency.length];
+		int[] queue = new int[adjacency.length];
+		int head = 0, tail = 0;
+
+		Arrays.fill(distance, -1);
+		distance[source] = 0;
+		queue[tail++] = source;
+
+		while (head < tail) {
+			int u = queue[head++];
+
+			for (int v : adjacency[u]) {
+				if (distance[v] < 0) {
+					distance[v] = distance[u] + 1;
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Normalised stress of the distances from the sources, with the layout
+	 * scaled to minimise it.
+	 */
+	protected static double stress(Map<String, float[]> positions,
+			int[] sources, int[][] distances) {
+		double num = 0, den = 0, stress = 0;
+		int pairs = 0;
+
+		for (int pass = 0; pass < 2; pass++) {
+			double scale = pass == 0 ? 1 : num / den;
+
+			for (int s = 0; s < sources.length; s++) {
+				float[] p = positions.get(Integer.toString(sources[s]));
+
+				for (int v = 0; v < distances[s].length; v++) {
+					float[] q = positions.get(Integer.toString(v));
+					int d = distances[s][v];
+
+					if (d <= 0 || p == null || q == null)
+						continue;
+
+					double dx = p[0] - q[0], dy = p[1] - q[1], dz = p[2]
+							- q[2];
+					double e = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+					if (pass == 0) {
+						num += e / d;
+						den += e * e / ((double) d * d);
+					} else {
+						stress += (scale * e - d) * (scale * e - d)
+								/ ((double) d * d);
+						pairs++;
+					}
+				}
+			}
+		}
+
+		return pairs > 0 ? stress / pairs : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Remembers the last position of each node.
+	 */
+	protected static class PositionRecorder implements LayoutListener {
+		HashMap<String, float[]> positions = new HashMap<String, float[]>();
+
+		public void nodeMoved(String id, float x, float y, float z) {
+			positions.put(id, new float[] { x, y, z });
+		}
+
+		public void nodeInfos(String id, float dx, float dy, float dz) {
+		}
+
+		public void edgeChanged(String id, float[] points) {
+		}
+
+		public void nodesMoved(Map<String, float[]> nodes) {
+		}
+
+		public void edgesChanged(Map<String, float[]> edges) {
+		}
+
+		public void stepCompletion(float percent) {
+		}
+	}
+}
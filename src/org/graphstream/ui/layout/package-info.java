@@ -34,6 +34,8 @@
  * <p>
  * The <tt>Layout</tt> and <tt>LayoutListener</tt> interfaces are the main definition of a layout.
  * They are quite low level. The <tt>elasticbox</tt> is an implementation of these interfaces.
+ * The <tt>multilevel</tt> layout is faster for very large graphs.
+ * The <tt>mds</tt> layout computes a global layout at once, for large graphs that rarely change.
  * </p>
  * 
  * <p>
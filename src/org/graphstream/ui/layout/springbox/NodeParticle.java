@@ -49,6 +49,25 @@ public class NodeParticle extends Particle {
 	 */
 	public boolean frozen = false;
 
+	/**
+	 * Was the node frozen explicitly using {@link SpringBox#freezeNode(String,
+	 * boolean)}? In incremental mode the spring box toggles {@link #frozen} as
+	 * the node heats up and cools down, but a pinned node stays frozen.
+	 */
+	public boolean pinned = false;
+
+	/**
+	 * Activity of the node in incremental mode. It is raised by structural
+	 * changes near the node and by its own moves, and decays at each step. Under
+	 * a given level the node is frozen.
+	 */
+	public float heat = 0;
+
+	/**
+	 * Last position sent to the listeners, in incremental mode.
+	 */
+	public float sentX = Float.NaN, sentY = Float.NaN, sentZ = Float.NaN;
+
 	/**
 	 * Displacement vector.
 	 */
@@ -144,6 +163,23 @@ public class NodeParticle extends Particle {
 		return neighbours;
 	}
 
+	/**
+	 * Distance between the current position and the last position sent to the
+	 * listeners. If the position was never sent this is infinite.
+	 * 
+	 * @return The distance.
+	 */
+	public float distanceFromSent() {
+		if (Float.isNaN(sentX))
+			return Float.POSITIVE_INFINITY;
+
+		float dx = pos.x - sentX;
+		float dy = pos.y - sentY;
+		float dz = pos.z - sentZ;
+
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
 	// Commands
 
 	@Override
@@ -183,6 +219,8 @@ public class NodeParticle extends Particle {
 
 			if (len > box.maxMoveLength)
 				box.maxMoveLength = len;
+		} else if (box.incremental) {
+			len = 0;
 		}
 	}
 
@@ -196,6 +234,16 @@ public class NodeParticle extends Particle {
 		// node in place. This is another mechanism to allow the layout to
 		// stabilise...
 
+		// In incremental mode a cold node keeps its position, the
+		// displacement computed before it cooled down is stale. Outside of
+		// this mode a frozen node still applies its last displacement, as it
+		// always did.
+
+		if (frozen && box.incremental) {
+			moved = false;
+			return;
+		}
+
 		// if( len > box.area * 0.0000001f )
 		{
 			nextPos.x = pos.x + disp.data[0];
@@ -229,6 +277,15 @@ public class NodeParticle extends Particle {
 		pos.set(pos.x + dx, pos.y + dy, pos.z + dz);
 	}
 
+	/**
+	 * Remember the current position as the last one sent to the listeners.
+	 */
+	public void positionSent() {
+		sentX = pos.x;
+		sentY = pos.y;
+		sentZ = pos.z;
+	}
+
 	/**
 	 * Compute the repulsion for each other node. This is the most precise way,
 	 * but the algorithm is a time hog : complexity is O(n^2).
@@ -28,6 +28,8 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Random;
 
@@ -35,6 +37,7 @@ import org.graphstream.stream.SourceBase;
 import org.graphstream.ui.geom.Point3;
 import org.graphstream.ui.layout.Layout;
 import org.graphstream.ui.layout.LayoutListener;
+import org.graphstream.ui.layout.PositionCache;
 import org.miv.pherd.ParticleBox;
 import org.miv.pherd.ParticleBoxListener;
 import org.miv.pherd.ntree.Anchor;
@@ -81,6 +84,19 @@ import org.miv.pherd.ntree.QuadtreeCellSpace;
  * between 0 and 1 will make the edge smaller.</li>
  * </ul>
  * </p>
+ * 
+ * <p>
+ * On large graphs that change a little at a time, the incremental mode (see
+ * {@link #setIncremental(boolean)} or the "layout.incremental" graph
+ * attribute, off when removed or false, "false", "no", "off" or zero) avoids
+ * relaxing the whole graph for each change. Each node has a heat. The nodes
+ * touched by a structural event and their neighbourhood up to a few hops are
+ * heated, the heat decays at each step and nodes that moved significantly
+ * heat their neighbours. Only hot nodes are relaxed, the others are frozen but
+ * still repulse the hot ones. Position events are only sent for nodes that
+ * moved more than a threshold since their last event, and once when a node
+ * cools down. When all nodes are cold no node moves and the layout is stable.
+ * </p>
  */
 public class SpringBox extends SourceBase implements Layout,
 		ParticleBoxListener {
@@ -235,6 +251,62 @@ public class SpringBox extends SourceBase implements Layout,
 	 */
 	protected int sendMoveEventsEvery = 1;
 
+	/**
+	 * Positions read by {@link #inputPos(String)} or
+	 * {@link #loadPositions(String)}, given to the nodes added afterwards.
+	 */
+	protected PositionCache initialPositions;
+
+	/**
+	 * If non null, positions are saved to this file every
+	 * {@link #checkpointSteps} steps.
+	 */
+	protected String checkpointFile;
+
+	/**
+	 * Number of steps between two checkpoints.
+	 */
+	protected int checkpointSteps = 1000;
+
+	// Attributes -- Incremental mode
+
+	/**
+	 * Relax only the nodes near recent changes?.
+	 */
+	protected boolean incremental = false;
+
+	/**
+	 * Number of hops around a structural change whose nodes are heated.
+	 */
+	protected int heatHops = 2;
+
+	/**
+	 * Factor applied to the heat of each node at each step.
+	 */
+	protected float heatDecay = 0.9f;
+
+	/**
+	 * Fraction of the heat transmitted at each hop, and of the activity of a
+	 * moving node transmitted to its neighbours.
+	 */
+	protected float heatSpread = 0.5f;
+
+	/**
+	 * Under this heat a node is frozen.
+	 */
+	protected float coldHeat = 0.01f;
+
+	/**
+	 * In incremental mode, a node position is sent only if it moved more than
+	 * this distance (a multiple of k) since the last position sent.
+	 */
+	protected float moveThreshold = 0.05f;
+
+	/**
+	 * The nodes that are not frozen in incremental mode.
+	 */
+	protected HashSet<NodeParticle> hotNodes = new HashSet<NodeParticle>();
+
 	// Constructors
 
 	public SpringBox() {
@@ -325,6 +397,24 @@ public class SpringBox extends SourceBase implements Layout,
 		return force;
 	}
 
+	/**
+	 * Is the incremental mode enabled?.
+	 * 
+	 * @return True if only the nodes near recent changes are relaxed.
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Number of nodes that are relaxed in incremental mode.
+	 * 
+	 * @return The number of hot nodes.
+	 */
+	public int getHotNodeCount() {
+		return hotNodes.size();
+	}
+
 	// Commands
 
 	public void setSendNodeInfos(boolean on) {
@@ -347,6 +437,82 @@ public class SpringBox extends SourceBase implements Layout,
 		this.force = value;
 	}
 
+	/**
+	 * Save the positions periodically in the binary format of
+	 * {@link #savePositions(String)}, so that a later run can start from them
+	 * using {@link #loadPositions(String)}.
+	 * 
+	 * @param filename
+	 *            The file to write, or null to stop checkpoints.
+	 * @param steps
+	 *            The number of steps between two checkpoints.
+	 */
+	public void setCheckpoint(String filename, int steps) {
+		checkpointFile = filename;
+		checkpointSteps = steps < 1 ? 1 : steps;
+	}
+
+	/**
+	 * Enable or disable the incremental mode. When enabled, all the nodes are
+	 * heated once so that the current layout settles, after which only the
+	 * nodes near changes are relaxed. When disabled, all the nodes not frozen
+	 * with {@link #freezeNode(String, boolean)} move again.
+	 * 
+	 * @param on
+	 *            True to enable the incremental mode.
+	 */
+	public void setIncremental(boolean on) {
+		if (on != incremental) {
+			Iterator<Object> i = nodes.getParticleIdIterator();
+
+			incremental = on;
+			hotNodes.clear();
+
+			while (i.hasNext()) {
+				NodeParticle node = (NodeParticle) nodes.getParticle(i.next());
+
+				node.heat = 0;
+				node.frozen = node.pinned;
+
+				if (on)
+					heatNode(node, 1);
+			}
+		}
+	}
+
+	/**
+	 * Set the number of hops around a structural change whose nodes are heated
+	 * in incremental mode.
+	 * 
+	 * @param hops
+	 *            The number of hops, zero heats only the nodes of the change.
+	 */
+	public void setHeatHops(int hops) {
+		heatHops = hops < 0 ? 0 : hops;
+	}
+
+	/**
+	 * Set the factor applied to the heat of nodes at each step in incremental
+	 * mode. The smaller, the sooner nodes freeze.
+	 * 
+	 * @param decay
+	 *            A factor in ]0..1[.
+	 */
+	public void setHeatDecay(float decay) {
+		heatDecay = decay;
+	}
+
+	/**
+	 * Set the distance, as a multiple of k, a node must move before its
+	 * position is sent again in incremental mode.
+	 * 
+	 * @param threshold
+	 *            The distance.
+	 */
+	public void setMoveThreshold(float threshold) {
+		moveThreshold = threshold;
+	}
+
 	public void setQuality(int qualityLevel) {
 		quality = qualityLevel;
 
@@ -393,6 +559,9 @@ public class SpringBox extends SourceBase implements Layout,
 		 */
 		nodes.step();
 
+		if (incremental)
+			coolDown();
+
 		if (nodeMoveCount > 0)
 			avgLength /= nodeMoveCount;
 
@@ -401,6 +570,10 @@ public class SpringBox extends SourceBase implements Layout,
 		energies.storeEnergy();
 		printStats();
 		time++;
+
+		if (checkpointFile != null && (time % checkpointSteps) == 0)
+			checkpoint();
+
 		lastStepTime = System.currentTimeMillis() - t1;
 
 		for (LayoutListener listener : listeners)
@@ -442,12 +615,154 @@ public class SpringBox extends SourceBase implements Layout,
 		energies.clearEnergies();
 	}
 
+	/**
+	 * Save the positions to the checkpoint file.
+	 */
+	protected void checkpoint() {
+		try {
+			savePositions(checkpointFile);
+		} catch (IOException e) {
+			System.err.printf("cannot save positions to '%s': %s%n",
+					checkpointFile, e.getMessage());
+		}
+	}
+
+	// Incremental mode
+
+	/**
+	 * Raise the heat of a node to at least the given amount. If this is enough
+	 * the node is unfrozen, unless it is pinned.
+	 * 
+	 * @param node
+	 *            The node.
+	 * @param amount
+	 *            The heat.
+	 */
+	protected void heatNode(NodeParticle node, float amount) {
+		if (!node.pinned && amount >= coldHeat) {
+			if (amount > node.heat)
+				node.heat = amount;
+
+			if (hotNodes.add(node))
+				node.frozen = false;
+		}
+	}
+
+	/**
+	 * Heat a node and its neighbourhood up to {@link #heatHops} hops, the heat
+	 * being reduced by {@link #heatSpread} at each hop.
+	 * 
+	 * @param source
+	 *            The node where a change occurred.
+	 */
+	protected void heatNeighbourhood(NodeParticle source) {
+		HashSet<NodeParticle> visited = new HashSet<NodeParticle>();
+		ArrayList<NodeParticle> frontier = new ArrayList<NodeParticle>();
+		float amount = 1;
+
+		visited.add(source);
+		frontier.add(source);
+
+		for (int hop = 0; hop <= heatHops && !frontier.isEmpty(); hop++) {
+			ArrayList<NodeParticle> next = new ArrayList<NodeParticle>();
+
+			for (NodeParticle node : frontier) {
+				heatNode(node, amount);
+
+				if (hop < heatHops) {
+					for (EdgeSpring edge : node.neighbours) {
+						NodeParticle other = edge.getOpposite(node);
+
+						if (visited.add(other))
+							next.add(other);
+					}
+				}
+			}
+
+			frontier = next;
+			amount *= heatSpread;
+		}
+	}
+
+	/**
+	 * Update the heat of hot nodes after a step. The heat decays but cannot be
+	 * lower than the node activity (its last move relative to k), and nodes
+	 * whose move is larger than the move threshold heat their neighbours.
+	 * Nodes that become cold are frozen and their final position is sent if it
+	 * changed.
+	 */
+	protected void coolDown() {
+		Iterator<NodeParticle> i = hotNodes.iterator();
+		ArrayList<NodeParticle> active = new ArrayList<NodeParticle>();
+
+		while (i.hasNext()) {
+			NodeParticle node = i.next();
+			float activity = node.len / k;
+
+			node.heat = Math.max(node.heat * heatDecay, activity);
+
+			if (activity >= moveThreshold)
+				active.add(node);
+
+			if (node.heat < coldHeat) {
+				node.heat = 0;
+				node.frozen = true;
+				i.remove();
+
+				if (node.distanceFromSent() > 0)
+					sendPosition(node);
+			}
+		}
+
+		for (NodeParticle node : active) {
+			float amount = (node.len / k) * heatSpread;
+
+			for (EdgeSpring edge : node.neighbours)
+				heatNode(edge.getOpposite(node), amount);
+		}
+	}
+
+	/**
+	 * Send the current position of a node to the listeners and as a "xyz"
+	 * attribute.
+	 * 
+	 * @param node
+	 *            The node.
+	 */
+	protected void sendPosition(NodeParticle node) {
+		org.miv.pherd.geom.Point3 pos = node.getPosition();
+
+		node.positionSent();
+
+		for (LayoutListener listener : listeners)
+			listener.nodeMoved((String) node.getId(), pos.x, pos.y, pos.z);
+
+		Object xyz[] = new Object[3];
+		xyz[0] = pos.x;
+		xyz[1] = pos.y;
+		xyz[2] = pos.z;
+
+		sendNodeAttributeChanged(getLayoutAlgorithmName(), (String) node
+				.getId(), "xyz", xyz, xyz);
+	}
+
 	// Graph representation
 
 	protected void addNode(String sourceId, String id) // throws
 														// SingletonException
 	{
-		nodes.addParticle(new NodeParticle(this, id));
+		NodeParticle node;
+		float pos[] = new float[3];
+
+		if (initialPositions != null && initialPositions.getPosition(id, pos))
+			node = new NodeParticle(this, id, pos[0], pos[1], pos[2]);
+		else
+			node = new NodeParticle(this, id);
+
+		nodes.addParticle(node);
+
+		if (incremental)
+			heatNode(node, 1);
 	}
 
 	public void moveNode(String id, float dx, float dy, float dz) {
@@ -456,6 +771,9 @@ public class SpringBox extends SourceBase implements Layout,
 		if (node != null) {
 			node.move(dx, dy, dz);
 			energies.clearEnergies();
+
+			if (incremental)
+				heatNeighbourhood(node);
 		}
 	}
 
@@ -463,15 +781,27 @@ public class SpringBox extends SourceBase implements Layout,
 		NodeParticle node = (NodeParticle) nodes.getParticle(id);
 
 		if (node != null) {
+			node.pinned = on;
 			node.frozen = on;
+
+			if (incremental) {
+				if (on)
+					hotNodes.remove(node);
+				else
+					heatNeighbourhood(node);
+			}
 		}
 	}
 
 	protected void setNodeWeight(String id, float weight) {
 		NodeParticle node = (NodeParticle) nodes.getParticle(id);
 
-		if (node != null)
+		if (node != null) {
 			node.setWeight(weight);
+
+			if (incremental)
+				heatNeighbourhood(node);
+		}
 	}
 
 	protected void removeNode(String sourceId, String id) {
@@ -479,6 +809,7 @@ public class SpringBox extends SourceBase implements Layout,
 
 		if (node != null) {
 			node.removeNeighborEdges();
+			hotNodes.remove(node);
 		}
 	}
 
@@ -498,12 +829,59 @@ public class SpringBox extends SourceBase implements Layout,
 				// );
 				System.err.printf("edge '%s' already exists%n", id);
 			} else {
+				if (incremental)
+					placeNewNode(n0, n1);
+
 				n0.registerEdge(e);
 				n1.registerEdge(e);
+
+				if (incremental) {
+					heatNeighbourhood(n0);
+					heatNeighbourhood(n1);
+				}
 			}
 		}
 	}
 
+	/**
+	 * In incremental mode, a node that was never connected and whose position
+	 * was never sent is put near the other end of its first edge, instead of
+	 * crossing the whole graph.
+	 * 
+	 * @param n0
+	 *            One end of the new edge.
+	 * @param n1
+	 *            The other end.
+	 */
+	protected void placeNewNode(NodeParticle n0, NodeParticle n1) {
+		boolean fresh0 = n0.neighbours.isEmpty()
+				&& n0.distanceFromSent() == Float.POSITIVE_INFINITY;
+		boolean fresh1 = n1.neighbours.isEmpty()
+				&& n1.distanceFromSent() == Float.POSITIVE_INFINITY;
+
+		if (fresh0 && !fresh1)
+			placeNear(n0, n1);
+		else if (fresh1 && !fresh0)
+			placeNear(n1, n0);
+	}
+
+	/**
+	 * Move a node at a random position at distance k of another.
+	 * 
+	 * @param node
+	 *            The node to move.
+	 * @param other
+	 *            The reference node.
+	 */
+	protected void placeNear(NodeParticle node, NodeParticle other) {
+		org.miv.pherd.geom.Point3 p = node.getPosition();
+		org.miv.pherd.geom.Point3 o = other.getPosition();
+		double angle = random.nextDouble() * Math.PI * 2;
+
+		node.move((float) (o.x + k * Math.cos(angle) - p.x), (float) (o.y + k
+				* Math.sin(angle) - p.y), is3D ? o.z - p.z : 0);
+	}
+
 	protected void addEdgeBreakPoint(String edgeId, int points) {
 		System.err.printf("edge break points are not handled yet.");
 	}
@@ -513,14 +891,25 @@ public class SpringBox extends SourceBase implements Layout,
 
 		if (edge != null) {
 			edge.ignored = on;
+
+			if (incremental) {
+				heatNeighbourhood(edge.node0);
+				heatNeighbourhood(edge.node1);
+			}
 		}
 	}
 
 	protected void setEdgeWeight(String id, float weight) {
 		EdgeSpring edge = edges.get(id);
 
-		if (edge != null)
+		if (edge != null) {
 			edge.weight = weight;
+
+			if (incremental) {
+				heatNeighbourhood(edge.node0);
+				heatNeighbourhood(edge.node1);
+			}
+		}
 	}
 
 	protected void removeEdge(String sourceId, String id) {
@@ -529,15 +918,92 @@ public class SpringBox extends SourceBase implements Layout,
 		if (e != null) {
 			e.node0.unregisterEdge(e);
 			e.node1.unregisterEdge(e);
+
+			if (incremental) {
+				heatNeighbourhood(e.node0);
+				heatNeighbourhood(e.node1);
+			}
 		}
 	}
 
+	public void inputPos(String filename) throws IOException {
+		PositionCache cache = new PositionCache();
+
+		cache.loadText(filename);
+		usePositions(cache);
+	}
+
 	public void outputPos(String filename) throws IOException {
-		// TODO Auto-generated method stub
+		getPositions().saveText(filename);
 	}
 
-	public void inputPos(String filename) throws IOException {
-		// TODO Auto-generated method stub
+	/**
+	 * Read node positions in the binary format of {@link PositionCache}. The
+	 * nodes already there are moved and their positions sent at once. The
+	 * positions are kept and given to the nodes added afterwards, so this can
+	 * be called before the graph is loaded. Positions of unknown nodes are
+	 * ignored.
+	 * 
+	 * @param filename
+	 *            The file to read.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a position file.
+	 */
+	public void loadPositions(String filename) throws IOException {
+		usePositions(new PositionCache(filename));
+	}
+
+	/**
+	 * Save the node positions in the binary format of {@link PositionCache},
+	 * faster to read back than the text format of {@link #outputPos(String)}.
+	 * 
+	 * @param filename
+	 *            The file to write.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void savePositions(String filename) throws IOException {
+		getPositions().save(filename);
+	}
+
+	/**
+	 * The current node positions.
+	 */
+	protected PositionCache getPositions() {
+		PositionCache cache = new PositionCache();
+		Iterator<Object> i = nodes.getParticleIdIterator();
+
+		while (i.hasNext()) {
+			NodeParticle node = (NodeParticle) nodes.getParticle(i.next());
+			org.miv.pherd.geom.Point3 p = node.getPosition();
+
+			cache.setPosition((String) node.getId(), p.x, p.y, p.z);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Move the nodes to the positions of a cache, and keep the cache for the
+	 * nodes added afterwards.
+	 */
+	protected void usePositions(PositionCache cache) {
+		Iterator<Object> i = nodes.getParticleIdIterator();
+		float pos[] = new float[3];
+
+		while (i.hasNext()) {
+			NodeParticle node = (NodeParticle) nodes.getParticle(i.next());
+
+			if (cache.getPosition((String) node.getId(), pos)) {
+				org.miv.pherd.geom.Point3 p = node.getPosition();
+
+				node.move(pos[0] - p.x, pos[1] - p.y, is3D ? pos[2] - p.z : 0);
+				sendPosition(node);
+			}
+		}
+
+		initialPositions = cache;
+		energies.clearEnergies();
 	}
 
 	// Particle box listener
@@ -549,7 +1015,12 @@ public class SpringBox extends SourceBase implements Layout,
 	}
 
 	public void particleMoved(Object id, float x, float y, float z) {
-		if ((time % sendMoveEventsEvery) == 0) {
+		if (incremental) {
+			NodeParticle node = (NodeParticle) nodes.getParticle(id);
+
+			if (node.distanceFromSent() > moveThreshold * k)
+				sendPosition(node);
+		} else if ((time % sendMoveEventsEvery) == 0) {
 			for (LayoutListener listener : listeners)
 				listener.nodeMoved((String) id, x, y, z);
 
@@ -587,6 +1058,9 @@ public class SpringBox extends SourceBase implements Layout,
 	public void nodeAdded(String graphId, long time, String nodeId) {
 		addNode(graphId, nodeId);
 		sendNodeAdded(graphId, time, nodeId);
+
+		if (initialPositions != null && initialPositions.contains(nodeId))
+			sendPosition((NodeParticle) nodes.getParticle(nodeId));
 	}
 
 	public void edgeRemoved(String graphId, long time, String edgeId) {
@@ -657,14 +1131,39 @@ public class SpringBox extends SourceBase implements Layout,
 
 			System.err.printf("layout.elasticBox.output-stats: %b%n",
 					outputStats);
+		} else if (attribute.equals("layout.incremental")) {
+			setIncremental(isOn(newValue));
 		}
 	}
 
 	public void graphAttributeRemoved(String graphId, long time,
 			String attribute) {
+		if (attribute.equals("layout.incremental"))
+			setIncremental(false);
+
 		sendGraphAttributeRemoved(graphId, time, attribute);
 	}
 
+	/**
+	 * Value of a boolean attribute. It is false for a false boolean, a zero
+	 * number, or the strings "false", "no", "off" and "0", and true for any
+	 * other value, like the true boolean given to an attribute set without
+	 * value.
+	 */
+	protected static boolean isOn(Object value) {
+		if (value == null)
+			return false;
+		else if (value instanceof Boolean)
+			return (Boolean) value;
+		else if (value instanceof Number)
+			return ((Number) value).doubleValue() != 0;
+
+		String string = value.toString().trim().toLowerCase();
+
+		return !(string.equals("false") || string.equals("no")
+				|| string.equals("off") || string.equals("0"));
+	}
+
 	public void nodeAttributeAdded(String graphId, long time, String nodeId,
 			String attribute, Object value) {
 		nodeAttributeChanged_(graphId, nodeId, attribute, null, value);
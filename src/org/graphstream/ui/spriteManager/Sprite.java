@@ -358,6 +358,15 @@ public class Sprite implements Element {
 		return id;
 	}
 
+	/**
+	 * Sprites are not indexed by the graph.
+	 * 
+	 * @return Always -1.
+	 */
+	public int getIndex() {
+		return -1;
+	}
+
 	public CharSequence getLabel(String key) {
 		return manager.graph.getLabel(String.format("%s.%s", completeId, key));
 	}
@@ -167,9 +167,20 @@ public class DefaultView extends View implements ComponentListener,
 
 	@Override
 	public void display(GraphicGraph graph, boolean graphChanged) {
-		this.graphChanged = graphChanged;
+		if (graphChanged)
+			this.graphChanged = true;
 
-		repaint();
+		if (this.graphChanged || canvasChanged)
+			repaint();
+	}
+
+	/**
+	 * Mark the canvas as changed so that it is repainted at the next frame,
+	 * and ask the viewer for this frame.
+	 */
+	protected void invalidateCanvas() {
+		canvasChanged = true;
+		viewer.requestFrame();
 	}
 
 	@Override
@@ -256,25 +267,25 @@ public class DefaultView extends View implements ComponentListener,
 	@Override
 	public void beginSelectionAt(float x1, float y1) {
 		renderer.beginSelectionAt(x1, y1);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void selectionGrowsAt(float x, float y) {
 		renderer.selectionGrowsAt(x, y);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void endSelectionAt(float x2, float y2) {
 		renderer.endSelectionAt(x2, y2);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	// Component listener
 
 	public void componentShown(ComponentEvent e) {
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	public void componentHidden(ComponentEvent e) {
@@ -284,13 +295,13 @@ public class DefaultView extends View implements ComponentListener,
 	}
 
 	public void componentResized(ComponentEvent e) {
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	// Window Listener
 
 	public void windowActivated(WindowEvent e) {
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	public void windowClosed(WindowEvent e) {
@@ -321,7 +332,7 @@ public class DefaultView extends View implements ComponentListener,
 	}
 
 	public void windowDeiconified(WindowEvent e) {
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	public void windowIconified(WindowEvent e) {
@@ -329,7 +340,7 @@ public class DefaultView extends View implements ComponentListener,
 
 	public void windowOpened(WindowEvent e) {
 		graph.removeAttribute("ui.viewClosed");
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	// Methods deferred to the renderer
@@ -368,12 +379,13 @@ public class DefaultView extends View implements ComponentListener,
 	@Override
 	public void moveElementAtPx(GraphicElement element, float x, float y) {
 		renderer.moveElementAtPx(element, x, y);
+		viewer.requestFrame();
 	}
 
 	@Override
 	public void resetView() {
 		renderer.resetView();
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
@@ -385,42 +397,42 @@ public class DefaultView extends View implements ComponentListener,
 	@Override
 	public void setViewCenter(float x, float y, float z) {
 		renderer.setViewCenter(x, y, z);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void setGraphViewport(float minx, float miny, float maxx, float maxy) {
 		renderer.setGraphViewport(minx, miny, maxx, maxy);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void removeGraphViewport() {
 		renderer.removeGraphViewport();
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void setViewPercent(float percent) {
 		renderer.setViewPercent(percent);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void setViewRotation(float theta) {
 		renderer.setViewRotation(theta);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void setBackLayerRenderer(LayerRenderer renderer) {
 		this.renderer.setBackLayerRenderer(renderer);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 
 	@Override
 	public void setForeLayoutRenderer(LayerRenderer renderer) {
 		this.renderer.setForeLayoutRenderer(renderer);
-		canvasChanged = true;
+		invalidateCanvas();
 	}
 }
\ No newline at end of file
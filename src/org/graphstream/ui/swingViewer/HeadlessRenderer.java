@@ -0,0 +1,677 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ * 
+ * Copyright 2006 - 2010
+ * 	Julien Baudry
+ * 	Antoine Dutot
+ * 	Yoann Pigné
+ * 	Guilhelm Savin
+ */
+
+package org.graphstream.ui.swingViewer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.imageio.ImageIO;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.DefaultGraph;
+import org.graphstream.stream.ChangeSink;
+import org.graphstream.stream.ProxyPipe;
+import org.graphstream.stream.thread.ThreadProxyPipe;
+import org.graphstream.ui.geom.Point3;
+import org.graphstream.ui.graphicGraph.GraphicGraph;
+import org.graphstream.ui.layout.Layout;
+import org.graphstream.ui.layout.LayoutRunner;
+import org.graphstream.ui.layout.Layouts;
+
+/**
+ * Render a graph into images without any window.
+ * 
+ * <p>
+ * This is a long-lived rendering engine for server-side use. Contrary to
+ * {@link org.graphstream.stream.file.FileSinkImages} that creates its graphic
+ * graph, style sheet and renderer for each output, this class keeps a single
+ * {@link GraphicGraph} fed by a {@link ProxyPipe}. Images are only produced on
+ * demand, at a requested view port and resolution, using
+ * {@link GraphRenderer#render(Graphics2D, int, int)} on an off-screen
+ * {@link BufferedImage}. No Swing component is ever created, so this class can
+ * be used when the "java.awt.headless" property is set.
+ * </p>
+ * 
+ * <p>
+ * Encoded PNG images are cached. The cache key is made of the graph version,
+ * the view port and the image size. The graph version is incremented each time
+ * an event arrives through the pipe, therefore a request on a graph that did
+ * not change since the last identical request is served without rendering. The
+ * cache is bounded and evicts the least recently used images first.
+ * </p>
+ * 
+ * <p>
+ * The methods of this class can be called from any number of threads. Cache
+ * hits do not wait for renders in progress : a request pumps the pending
+ * events only if no render is running, otherwise it looks for the image of the
+ * last version pumped. Renders are serialised since the underlying renderer is
+ * not thread-safe.
+ * </p>
+ */
+public class HeadlessRenderer {
+	// Attribute
+
+	/**
+	 * Default number of images kept in the cache.
+	 */
+	public static int DEFAULT_CACHE_SIZE = 64;
+
+	/**
+	 * The graph rendered.
+	 */
+	protected GraphicGraph graph;
+
+	/**
+	 * The pipe from which graph events come.
+	 */
+	protected ProxyPipe pumpPipe;
+
+	/**
+	 * The renderer used to draw the graph.
+	 */
+	protected GraphRenderer renderer;
+
+	/**
+	 * Incremented at each event received from the pipe.
+	 */
+	protected volatile long version = 0;
+
+	/**
+	 * The sink that increments the version.
+	 */
+	protected ChangeSink versionTracker = new ChangeSink(new Runnable() {
+		public void run() {
+			version++;
+		}
+	});
+
+	/**
+	 * Lock held while the graphic graph is modified or rendered.
+	 */
+	protected final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The cache of encoded images.
+	 */
+	protected FrameCache cache;
+
+	/**
+	 * Reusable off-screen image, reallocated only when the size changes.
+	 */
+	protected BufferedImage image;
+
+	/**
+	 * Number of renders actually done.
+	 */
+	protected long renderCount = 0;
+
+	/**
+	 * Number of requests served from the cache.
+	 */
+	protected long hitCount = 0;
+
+	/**
+	 * Optional layout algorithm running in another thread.
+	 */
+	protected LayoutRunner optLayout = null;
+
+	/**
+	 * If there is a layout in another thread, this is the pipe coming from it.
+	 */
+	protected ProxyPipe layoutPipeIn = null;
+
+	// Construction
+
+	/**
+	 * New headless renderer on a graph that lives in another thread. A
+	 * {@link ThreadProxyPipe} is created on the graph, and the graph content
+	 * is replayed.
+	 * 
+	 * @param graph
+	 *            The graph to render.
+	 */
+	public HeadlessRenderer(Graph graph) {
+		this(new ThreadProxyPipe(graph, true), DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * New headless renderer on the events coming from the given pipe.
+	 * 
+	 * @param source
+	 *            The pipe to pump events from.
+	 * @param cacheSize
+	 *            The maximum number of images kept in the cache.
+	 */
+	public HeadlessRenderer(ProxyPipe source, int cacheSize) {
+		this(source, cacheSize, Viewer.newGraphRenderer());
+	}
+
+	/**
+	 * New headless renderer on the events coming from the given pipe, using a
+	 * specific renderer.
+	 * 
+	 * @param source
+	 *            The pipe to pump events from.
+	 * @param cacheSize
+	 *            The maximum number of images kept in the cache.
+	 * @param renderer
+	 *            The renderer to use.
+	 */
+	public HeadlessRenderer(ProxyPipe source, int cacheSize,
+			GraphRenderer renderer) {
+		this.graph = new GraphicGraph(String.format("HeadlessGraph_%d",
+				(int) (Math.random() * 10000)));
+		this.pumpPipe = source;
+		this.renderer = renderer;
+		this.cache = new FrameCache(cacheSize);
+
+		pumpPipe.addSink(graph);
+		pumpPipe.addSink(versionTracker);
+		renderer.open(graph, null);
+	}
+
+	// Access
+
+	/**
+	 * The graphic graph rendered. It must only be accessed while holding the
+	 * lock returned by {@link #getLock()}.
+	 * 
+	 * @return The graphic graph.
+	 */
+	public GraphicGraph getGraphicGraph() {
+		return graph;
+	}
+
+	/**
+	 * The lock held while the graphic graph is modified or rendered.
+	 * 
+	 * @return The lock of the renderer.
+	 */
+	public ReentrantLock getLock() {
+		return lock;
+	}
+
+	/**
+	 * The current version of the graph, incremented each time an event is
+	 * received.
+	 * 
+	 * @return The graph version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Number of images actually rendered since creation.
+	 * 
+	 * @return The render count.
+	 */
+	public long getRenderCount() {
+		lock.lock();
+
+		try {
+			return renderCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Number of images served from the cache since creation.
+	 * 
+	 * @return The cache hit count.
+	 */
+	public long getCacheHitCount() {
+		synchronized (cache) {
+			return hitCount;
+		}
+	}
+
+	// Command
+
+	/**
+	 * Close this renderer, stop listening at the pipe and empty the cache.
+	 */
+	public void close() {
+		lock.lock();
+
+		try {
+			disableAutoLayout();
+			renderer.close();
+			pumpPipe.removeSink(graph);
+			pumpPipe.removeSink(versionTracker);
+
+			synchronized (cache) {
+				cache.clear();
+			}
+
+			image = null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Enable high-quality rendering and anti-aliasing.
+	 */
+	public void setHighQuality() {
+		lock.lock();
+
+		try {
+			graph.addAttribute("ui.quality");
+			graph.addAttribute("ui.antialias");
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Defines style of the graph as a css style sheet.
+	 * 
+	 * @param styleSheet
+	 *            the style sheet
+	 */
+	public void setStyleSheet(String styleSheet) {
+		lock.lock();
+
+		try {
+			graph.addAttribute("ui.stylesheet", styleSheet);
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Launch an automatic layout process that will position nodes in the
+	 * background.
+	 * 
+	 * @param layoutAlgorithm
+	 *            The algorithm to use (see Layouts.newLayoutAlgorithm() for the
+	 *            default algorithm).
+	 */
+	public void enableAutoLayout(Layout layoutAlgorithm) {
+		lock.lock();
+
+		try {
+			if (optLayout == null) {
+				optLayout = new LayoutRunner(graph, layoutAlgorithm, true, true);
+				layoutPipeIn = optLayout.newLayoutPipe();
+				layoutPipeIn.addAttributeSink(graph);
+				layoutPipeIn.addAttributeSink(versionTracker);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Launch the default automatic layout process.
+	 */
+	public void enableAutoLayout() {
+		enableAutoLayout(Layouts.newLayoutAlgorithm());
+	}
+
+	/**
+	 * Disable the running automatic layout process, if any.
+	 */
+	public void disableAutoLayout() {
+		lock.lock();
+
+		try {
+			if (optLayout != null) {
+				((ThreadProxyPipe) layoutPipeIn).unregisterFromSource();
+				layoutPipeIn.removeAttributeSink(graph);
+				layoutPipeIn.removeAttributeSink(versionTracker);
+				layoutPipeIn = null;
+				optLayout.release();
+				optLayout = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Render the whole graph and encode it as a PNG image.
+	 * 
+	 * @param width
+	 *            The image width in pixels.
+	 * @param height
+	 *            The image height in pixels.
+	 * @return The PNG encoded image.
+	 * @throws IOException
+	 *             If the image cannot be encoded.
+	 */
+	public byte[] renderPNG(int width, int height) throws IOException {
+		return renderPNG(null, width, height);
+	}
+
+	/**
+	 * Render the part of the graph in the given view port and encode it as a
+	 * PNG image.
+	 * 
+	 * @param minx
+	 *            The minimum abscissa visible in graph units.
+	 * @param miny
+	 *            The minimum ordinate visible in graph units.
+	 * @param maxx
+	 *            The maximum abscissa visible in graph units.
+	 * @param maxy
+	 *            The maximum ordinate visible in graph units.
+	 * @param width
+	 *            The image width in pixels.
+	 * @param height
+	 *            The image height in pixels.
+	 * @return The PNG encoded image.
+	 * @throws IOException
+	 *             If the image cannot be encoded.
+	 */
+	public byte[] renderPNG(float minx, float miny, float maxx, float maxy,
+			int width, int height) throws IOException {
+		return renderPNG(new float[] { minx, miny, maxx, maxy }, width, height);
+	}
+
+	/**
+	 * Look in the cache for the image and render it if not found.
+	 * 
+	 * @param viewport
+	 *            The view port (minx, miny, maxx, maxy) or null to render the
+	 *            whole graph.
+	 * @param width
+	 *            The image width in pixels.
+	 * @param height
+	 *            The image height in pixels.
+	 * @return The PNG encoded image.
+	 * @throws IOException
+	 *             If the image cannot be encoded.
+	 */
+	protected byte[] renderPNG(float[] viewport, int width, int height)
+			throws IOException {
+		// Pump only if no render is running, a cache hit must not wait.
+
+		if (lock.tryLock()) {
+			try {
+				pump();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		FrameKey key = new FrameKey(version, viewport, width, height);
+		byte[] data;
+
+		synchronized (cache) {
+			data = cache.get(key);
+
+			if (data != null) {
+				hitCount++;
+				return data;
+			}
+		}
+
+		lock.lock();
+
+		try {
+			// The key may have been rendered by another thread while we were
+			// waiting. We recompute the key after pumping since this call may
+			// bring new events.
+
+			pump();
+			key = new FrameKey(version, viewport, width, height);
+
+			synchronized (cache) {
+				data = cache.get(key);
+			}
+
+			if (data == null) {
+				BufferedImage img = render(viewport, width, height);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+				ImageIO.write(img, "png", out);
+				data = out.toByteArray();
+
+				synchronized (cache) {
+					cache.put(key, data);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		return data;
+	}
+
+	/**
+	 * Render the graph in an image. The returned image is reused by the next
+	 * render, it must be copied or encoded before releasing the lock of this
+	 * renderer.
+	 * 
+	 * @param viewport
+	 *            The view port (minx, miny, maxx, maxy) or null to render the
+	 *            whole graph.
+	 * @param width
+	 *            The image width in pixels.
+	 * @param height
+	 *            The image height in pixels.
+	 * @return The rendered image.
+	 */
+	public BufferedImage render(float[] viewport, int width,
+			int height) {
+		lock.lock();
+
+		try {
+			if (image == null || image.getWidth() != width
+					|| image.getHeight() != height)
+				image = new BufferedImage(width, height,
+						BufferedImage.TYPE_INT_ARGB);
+
+			Graphics2D g2d = image.createGraphics();
+
+			if (graph.graphChangedFlag()) {
+				graph.computeBounds();
+				graph.resetGraphChangedFlag();
+			}
+
+			Point3 lo = graph.getMinPos();
+			Point3 hi = graph.getMaxPos();
+
+			renderer.setBounds(lo.x, lo.y, lo.z, hi.x, hi.y, hi.z);
+
+			if (viewport != null)
+				renderer.setGraphViewport(viewport[0], viewport[1], viewport[2],
+						viewport[3]);
+			else
+				renderer.removeGraphViewport();
+
+			renderer.render(g2d, width, height);
+			g2d.dispose();
+			image.flush();
+			renderCount++;
+
+			return image;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Dispatch the pending events to the graphic graph.
+	 */
+	protected void pump() {
+		lock.lock();
+
+		try {
+			pumpPipe.pump();
+
+			if (layoutPipeIn != null)
+				layoutPipeIn.pump();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Nested classes
+
+	/**
+	 * Key of an image in the cache.
+	 */
+	protected static class FrameKey {
+		long version;
+
+		float[] viewport;
+
+		int width, height;
+
+		public FrameKey(long version, float[] viewport, int width, int height) {
+			this.version = version;
+			this.viewport = viewport;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof FrameKey))
+				return false;
+
+			FrameKey other = (FrameKey) o;
+
+			return version == other.version && width == other.width
+					&& height == other.height
+					&& Arrays.equals(viewport, other.viewport);
+		}
+
+		@Override
+		public int hashCode() {
+			int h = (int) (version ^ (version >>> 32));
+
+			h = 31 * h + width;
+			h = 31 * h + height;
+			h = 31 * h + Arrays.hashCode(viewport);
+
+			return h;
+		}
+	}
+
+	/**
+	 * Least recently used set of encoded images.
+	 */
+	protected static class FrameCache extends LinkedHashMap<FrameKey, byte[]> {
+		private static final long serialVersionUID = 1L;
+
+		protected int maxSize;
+
+		public FrameCache(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<FrameKey, byte[]> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	// Benchmark
+
+	/**
+	 * Measure the number of requests per second served under concurrent
+	 * requests on a random graph.
+	 * 
+	 * <pre>
+	 * usage: java HeadlessRenderer [nodes] [threads] [requests per thread]
+	 * </pre>
+	 */
+	public static void main(String... args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		final int requests = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+		final Graph graph = new DefaultGraph("bench");
+		final Random random = new Random(1);
+
+		for (int i = 0; i < nodes; i++) {
+			graph.addNode(Integer.toString(i));
+			graph.getNode(Integer.toString(i)).addAttribute("xyz",
+					random.nextFloat(), random.nextFloat(), 0);
+		}
+
+		for (int i = 1; i < nodes; i++)
+			graph.addEdge(Integer.toString(i), Integer.toString(i),
+					Integer.toString(random.nextInt(i)));
+
+		final HeadlessRenderer hr = new HeadlessRenderer(graph);
+		final int[][] sizes = { { 320, 240 }, { 640, 480 }, { 1024, 768 } };
+		Thread[] workers = new Thread[threads];
+
+		hr.renderPNG(320, 240);
+
+		long t = System.nanoTime();
+
+		for (int i = 0; i < threads; i++) {
+			final Random r = new Random(i);
+
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < requests; j++) {
+							int[] size = sizes[r.nextInt(sizes.length)];
+							float x = r.nextInt(4) * 0.25f;
+							float y = r.nextInt(4) * 0.25f;
+
+							hr.renderPNG(x, y, x + 0.25f, y + 0.25f, size[0],
+									size[1]);
+						}
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			workers[i].start();
+		}
+
+		for (Thread worker : workers)
+			worker.join();
+
+		double seconds = (System.nanoTime() - t) / 1000000000.0;
+
+		System.out.printf("%d requests in %.2fs: %.1f requests/s%n", threads
+				* requests, seconds, threads * requests / seconds);
+		System.out.printf("%d renders (%.1f renders/s), %d cache hits%n",
+				hr.getRenderCount(), hr.getRenderCount() / seconds,
+				hr.getCacheHitCount());
+
+		hr.close();
+	}
+}
@@ -26,9 +26,11 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.HashMap;
 
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import org.graphstream.graph.Graph;
+import org.graphstream.stream.ChangeSink;
 import org.graphstream.stream.ProxyPipe;
 import org.graphstream.stream.Source;
 import org.graphstream.stream.thread.ThreadProxyPipe;
@@ -38,6 +40,7 @@ import org.graphstream.ui.layout.Layout;
 import org.graphstream.ui.layout.LayoutRunner;
 import org.graphstream.ui.layout.Layouts;
 import org.graphstream.ui.swingViewer.basicRenderer.SwingBasicGraphRenderer;
+import org.graphstream.ui.swingViewer.util.FpsCounter;
 
 /**
  * Set of views on a graphic graph.
@@ -74,6 +77,16 @@ import org.graphstream.ui.swingViewer.basicRenderer.SwingBasicGraphRenderer;
  * loop. This allows to run algorithms on a graph in the main thread (or any
  * other thread) while letting the viewer run in the swing thread.
  * </p>
+ * 
+ * <p>
+ * By default a timer pumps the events and displays the views at a fixed rate,
+ * even if nothing changed. In the {@link RefreshMode#EVENT_DRIVEN} refresh mode
+ * (see {@link #setRefreshMode(RefreshMode)}), the thread proxy pipes, the graph
+ * and the views request a frame when something happened. Requests arriving
+ * before the frame is drawn are coalesced in this frame, and frames are never
+ * closer than the delay given by {@link #setMaxFrameRate(float)}. When nothing
+ * happens the viewer does nothing.
+ * </p>
  */
 public class Viewer implements ActionListener {
 	// Attributes
@@ -100,6 +113,15 @@ public class Viewer implements ActionListener {
 		GRAPH_IN_SWING_THREAD, GRAPH_IN_ANOTHER_THREAD, GRAPH_ON_NETWORK
 	};
 
+	/**
+	 * When does the viewer pump events and display the views. With TIMER this
+	 * is done at a fixed rate. With EVENT_DRIVEN this is done only when events
+	 * are pending or a view changed, at most at the maximum frame rate.
+	 */
+	public static enum RefreshMode {
+		TIMER, EVENT_DRIVEN
+	};
+
 	// Attribute
 
 	/**
@@ -134,6 +156,64 @@ public class Viewer implements ActionListener {
 	 */
 	protected int delay = 40;
 
+	/**
+	 * When are frames drawn.
+	 */
+	protected RefreshMode refreshMode = RefreshMode.TIMER;
+
+	/**
+	 * A frame is scheduled and not yet drawn, guarded by {@link #frameLock}.
+	 */
+	protected boolean frameScheduled = false;
+
+	/**
+	 * Lock of {@link #frameScheduled}, frames are requested from any thread.
+	 */
+	protected final Object frameLock = new Object();
+
+	/**
+	 * Set while a frame is drawn, the graph changes it causes are drawn by it.
+	 */
+	protected boolean inFrame = false;
+
+	/**
+	 * Time in milliseconds at which the last frame started.
+	 */
+	protected long lastFrame = 0;
+
+	/**
+	 * Measure of the time taken by frames.
+	 */
+	protected FpsCounter fps = new FpsCounter();
+
+	/**
+	 * Starts the timer in the Swing thread for a requested frame.
+	 */
+	protected Runnable frameStarter = new Runnable() {
+		public void run() {
+			startFrame();
+		}
+	};
+
+	/**
+	 * Requests a frame when events are pending in a thread proxy pipe.
+	 */
+	protected Runnable frameRequester = new Runnable() {
+		public void run() {
+			requestFrame();
+		}
+	};
+
+	/**
+	 * Requests a frame when the graphic graph changes outside of a frame.
+	 */
+	protected ChangeSink graphWatcher = new ChangeSink(new Runnable() {
+		public void run() {
+			if (!inFrame)
+				requestFrame();
+		}
+	});
+
 	/**
 	 * The set of views.
 	 */
@@ -260,6 +340,7 @@ public class Viewer implements ActionListener {
 			disableAutoLayout();
 			timer.stop();
 			timer.removeActionListener(this);
+			watchEvents(false);
 
 			if (pumpPipe != null)
 				pumpPipe.removeSink(graph);
@@ -367,6 +448,31 @@ public class Viewer implements ActionListener {
 		}
 	}
 
+	/**
+	 * When are frames drawn.
+	 */
+	public RefreshMode getRefreshMode() {
+		return refreshMode;
+	}
+
+	/**
+	 * The maximum number of frames per second. In the timer refresh mode this
+	 * is the fixed frame rate.
+	 */
+	public float getMaxFrameRate() {
+		return 1000f / delay;
+	}
+
+	/**
+	 * Measure of the time taken by frames, that is pumping the events and
+	 * displaying the views. Only frames actually drawn are measured.
+	 * 
+	 * @return The frame time measure.
+	 */
+	public FpsCounter getFpsCounter() {
+		return fps;
+	}
+
 	// Command
 
 	/**
@@ -462,10 +568,121 @@ public class Viewer implements ActionListener {
 		}
 	}
 
+	/**
+	 * Choose when frames are drawn. This must be called in the Swing thread.
+	 * 
+	 * @param mode
+	 *            The refresh mode.
+	 */
+	public void setRefreshMode(RefreshMode mode) {
+		if (mode == refreshMode || timer == null)
+			return;
+
+		refreshMode = mode;
+
+		timer.stop();
+
+		if (mode == RefreshMode.TIMER) {
+			watchEvents(false);
+			timer.setRepeats(true);
+			timer.setInitialDelay(delay);
+			timer.start();
+		} else {
+			timer.setRepeats(false);
+			watchEvents(true);
+			requestFrame();
+		}
+	}
+
+	/**
+	 * Set the maximum number of frames per second. In the timer refresh mode
+	 * this is the fixed frame rate. By default 25 frames per second.
+	 * 
+	 * @param framesPerSecond
+	 *            The maximum frame rate.
+	 */
+	public void setMaxFrameRate(float framesPerSecond) {
+		delay = Math.max(1, (int) (1000 / framesPerSecond));
+
+		if (timer != null) {
+			timer.setDelay(delay);
+
+			if (refreshMode == RefreshMode.TIMER)
+				timer.setInitialDelay(delay);
+		}
+	}
+
+	/**
+	 * Ask for a frame in the event driven refresh mode. Several requests made
+	 * before the frame starts produce only one frame. This can be called from
+	 * any thread, and does nothing in the timer refresh mode.
+	 */
+	public void requestFrame() {
+		if (refreshMode != RefreshMode.EVENT_DRIVEN)
+			return;
+
+		synchronized (frameLock) {
+			if (frameScheduled)
+				return;
+
+			frameScheduled = true;
+		}
+
+		SwingUtilities.invokeLater(frameStarter);
+	}
+
+	/**
+	 * Start the timer for a requested frame, so that it occurs at least
+	 * {@link #delay} milliseconds after the previous one.
+	 */
+	protected void startFrame() {
+		if (timer == null || refreshMode != RefreshMode.EVENT_DRIVEN)
+			return;
+
+		long wait = lastFrame + delay - System.currentTimeMillis();
+
+		timer.setInitialDelay((int) Math.max(0, Math.min(wait, delay)));
+		timer.restart();
+	}
+
+	/**
+	 * Register or unregister the frame requests on the thread proxy pipes and
+	 * the graphic graph.
+	 * 
+	 * @param on
+	 *            If true register, else unregister.
+	 */
+	protected void watchEvents(boolean on) {
+		Runnable listener = on ? frameRequester : null;
+
+		if (pumpPipe instanceof ThreadProxyPipe)
+			((ThreadProxyPipe) pumpPipe).setPendingEventsListener(listener);
+		if (layoutPipeIn instanceof ThreadProxyPipe)
+			((ThreadProxyPipe) layoutPipeIn).setPendingEventsListener(listener);
+
+		if (graph != null) {
+			if (on)
+				graph.addSink(graphWatcher);
+			else
+				graph.removeSink(graphWatcher);
+		}
+	}
+
 	/**
 	 * Never call this method.
 	 */
 	public void actionPerformed(ActionEvent e) {
+		if (graph == null)
+			return;
+
+		synchronized (frameLock) {
+			frameScheduled = false;
+		}
+
+		lastFrame = System.currentTimeMillis();
+		inFrame = true;
+		fps.beginFrame();
+
 		if (pumpPipe != null)
 			pumpPipe.pump();
 
@@ -483,6 +700,8 @@ public class Viewer implements ActionListener {
 		}
 
 		graph.resetGraphChangedFlag();
+		fps.endFrame();
+		inFrame = false;
 	}
 
 	/**
@@ -545,6 +764,10 @@ public class Viewer implements ActionListener {
 			optLayout = new LayoutRunner(graph, layoutAlgorithm, true, true);
 			layoutPipeIn = optLayout.newLayoutPipe();
 			layoutPipeIn.addAttributeSink(graph);
+
+			if (refreshMode == RefreshMode.EVENT_DRIVEN)
+				((ThreadProxyPipe) layoutPipeIn)
+						.setPendingEventsListener(frameRequester);
 		}
 	}
 
@@ -554,10 +777,11 @@ public class Viewer implements ActionListener {
 	public void disableAutoLayout() {
 		if (optLayout != null) {
 			((ThreadProxyPipe) layoutPipeIn).unregisterFromSource();
+			((ThreadProxyPipe) layoutPipeIn).setPendingEventsListener(null);
 			layoutPipeIn.removeSink(graph);
 			layoutPipeIn = null;
 			optLayout.release();
 			optLayout = null;
 		}
 	}
-}
\ No newline at end of file
+}
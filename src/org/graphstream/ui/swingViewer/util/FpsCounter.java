@@ -97,7 +97,7 @@ public class FpsCounter {
 	 * @return The time used by a frame in average.
 	 */
 	public double getAverageFrameTimeInSeconds() {
-		return ((avgTime / count) * 1000000000.0);
+		return ((avgTime / count) / 1000000000.0);
 	}
 
 	// Command
@@ -26,38 +26,112 @@ package org.graphstream.ui.swingViewer.util;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
 
 /**
- * A simple cache for images to avoid reloading them constantly and to allow
- * sharing.
+ * A cache for images to avoid reloading them constantly and to allow sharing.
  * 
- * TODO have a policy to release images if they have not been used for a given
- * time.
+ * <p>
+ * The cache is bounded by the memory used by the decoded images (see
+ * {@link #setMaxMemory(long)}). When it is full, the least recently used
+ * images are released. Images that could not be read are remembered and not
+ * read again, unless asked.
+ * </p>
+ * 
+ * <p>
+ * The {@link #getImage(String)} methods read the image in the calling thread
+ * if it is not in the cache. The rendering code must rather use
+ * {@link #requestImage(String)} or {@link #requestImage(String, int, int)},
+ * that never block : if the image is not ready, a placeholder image is
+ * returned and the image is read (and scaled) by a pool of worker threads.
+ * When it is ready, the repaint callback (see
+ * {@link #setRepaintCallback(Runnable)}) is run in the Swing thread so that
+ * the views can be redrawn. Scaled variants are cached as any other image,
+ * this way a renderer never scales an image at each frame.
+ * </p>
+ * 
+ * <p>
+ * The methods of the cache can be called from any thread.
+ * </p>
  */
 public class ImageCache {
+	// Attribute
+
+	/**
+	 * The image cache, in least recently used order. Scaled variants are
+	 * stored under the key returned by {@link #variantKey(String, int, int)}.
+	 */
+	protected LinkedHashMap<String, Image> imageCache = new LinkedHashMap<String, Image>(
+			16, 0.75f, true);
+
+	/**
+	 * Names of the images that could not be read (avoid trying to reload them
+	 * again and again).
+	 */
+	protected HashSet<String> notFound = new HashSet<String>();
+
+	/**
+	 * Keys of the images and variants being read or scaled by the workers.
+	 */
+	protected HashSet<String> loading = new HashSet<String>();
+
 	/**
-	 * The image cache.
+	 * Estimated memory used by the images in the cache, in bytes.
 	 */
-	protected HashMap<String, Image> imageCache = new HashMap<String, Image>();
+	protected long memory = 0;
 
 	/**
-	 * The dummy image used to mark a not found image (and avoid trying to
-	 * reload it again and again).
+	 * Maximum memory used by the images in the cache, in bytes.
+	 */
+	protected long maxMemory = 64 * 1024 * 1024;
+
+	/**
+	 * Number of worker threads.
+	 */
+	protected int workerCount = 2;
+
+	/**
+	 * The worker threads, created at the first asynchronous request.
+	 */
+	protected ExecutorService workers;
+
+	/**
+	 * Run in the Swing thread each time an image requested asynchronously is
+	 * ready, null if none.
+	 */
+	protected Runnable repaintCallback;
+
+	/**
+	 * The dummy image used to mark a not found image.
 	 */
 	protected Image dummy;
 
+	/**
+	 * The image returned while an image is being loaded.
+	 */
+	protected Image placeholder;
+
 	/**
 	 * The default singleton image cache instance.
 	 */
 	protected static ImageCache defaultImageCache;
 
+	// Construction
+
 	/**
 	 * New empty image cache.
 	 */
@@ -70,28 +144,39 @@ public class ImageCache {
 		g2.drawRect(0, 0, img.getWidth() - 1, img.getHeight() - 1);
 		g2.drawLine(0, 0, img.getWidth() - 1, img.getHeight() - 1);
 		g2.drawLine(0, img.getHeight() - 1, img.getWidth() - 1, 0);
+		g2.dispose();
 
 		dummy = img;
+
+		img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+		g2 = img.createGraphics();
+
+		g2.setColor(Color.LIGHT_GRAY);
+		g2.drawRect(0, 0, img.getWidth() - 1, img.getHeight() - 1);
+		g2.dispose();
+
+		placeholder = img;
 	}
 
 	/**
-	 * Default singleton image cache instance that can be shared. This method
-	 * and singleton must be used only in the Swing thread.
+	 * Default singleton image cache instance that can be shared.
 	 * 
 	 * @return The default singleton image cache instance.
 	 */
-	public static ImageCache defaultImageCache() {
+	public static synchronized ImageCache defaultImageCache() {
 		if (defaultImageCache == null)
 			defaultImageCache = new ImageCache();
 
 		return defaultImageCache;
 	}
 
+	// Access
+
 	/**
 	 * Lookup an image based on its name, if found return it, else try to load
-	 * it. If an image is not found once, the cache remembers it and will not
-	 * try to reload it again if the same image is requested anew. Therefore
-	 * using getImage() is fast and smooth.
+	 * it in the calling thread. If an image is not found once, the cache
+	 * remembers it and will not try to reload it again if the same image is
+	 * requested anew.
 	 * 
 	 * @param fileNameOrUrl
 	 *            A file name or an URL pointing at the image.
@@ -112,43 +197,107 @@ public class ImageCache {
 	 * @return An image or null if the image cannot be found.
 	 */
 	public Image getImage(String fileNameOrUrl, boolean forceTryReload) {
-		Image ii = imageCache.get(fileNameOrUrl);
+		synchronized (this) {
+			if (forceTryReload)
+				notFound.remove(fileNameOrUrl);
+			else if (notFound.contains(fileNameOrUrl))
+				return null;
+
+			Image ii = imageCache.get(fileNameOrUrl);
+
+			if (ii != null)
+				return ii;
+		}
+
+		return load(fileNameOrUrl);
+	}
+
+	/**
+	 * Lookup an image based on its name without blocking. If the image is not
+	 * in the cache, it is read by a worker thread, the placeholder image is
+	 * returned and the repaint callback is run once the image is ready.
+	 * 
+	 * @param fileNameOrUrl
+	 *            A file name or an URL pointing at the image.
+	 * @return The image, the placeholder image if it is not yet loaded or null
+	 *         if the image cannot be found.
+	 */
+	public Image requestImage(String fileNameOrUrl) {
+		return requestImage(fileNameOrUrl, 0, 0);
+	}
 
-		if (ii == dummy && !forceTryReload)
+	/**
+	 * Lookup a variant of an image scaled to the given size in pixels without
+	 * blocking. If the variant is not in the cache, it is read and scaled by a
+	 * worker thread, the placeholder image is returned and the repaint
+	 * callback is run once the variant is ready.
+	 * 
+	 * @param fileNameOrUrl
+	 *            A file name or an URL pointing at the image.
+	 * @param width
+	 *            The width in pixels, if zero or less the image is not scaled.
+	 * @param height
+	 *            The height in pixels, if zero or less the image is not
+	 *            scaled.
+	 * @return The scaled image, the placeholder image if it is not yet ready
+	 *         or null if the image cannot be found.
+	 */
+	public synchronized Image requestImage(String fileNameOrUrl, int width,
+			int height) {
+		if (notFound.contains(fileNameOrUrl))
 			return null;
 
-		if (ii == null) {
-			URL url = ClassLoader.getSystemClassLoader().getResource(
-					fileNameOrUrl);
+		String key = variantKey(fileNameOrUrl, width, height);
+		Image ii = imageCache.get(key);
 
-			if (url != null) {
-				try {
-					ii = ImageIO.read(url);
-					imageCache.put(fileNameOrUrl, ii);
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			} else {
-				try {
-					url = new URL(fileNameOrUrl);
-
-					ii = ImageIO.read(url);
-					imageCache.put(fileNameOrUrl, ii);
-				} catch (Exception e) {
-					try {
-						ii = ImageIO.read(new File(fileNameOrUrl));
-						imageCache.put(fileNameOrUrl, ii);
-					} catch (IOException ee) {
-						imageCache.put(fileNameOrUrl, dummy);
-						// ee.printStackTrace();
-						System.err.printf("Cannot read image '%s'%n",
-								fileNameOrUrl);
-					}
-				}
-			}
+		if (ii != null)
+			return ii;
+
+		if (loading.add(key)) {
+			if (workers == null)
+				workers = Executors.newFixedThreadPool(workerCount,
+						new ThreadFactory() {
+							public Thread newThread(Runnable r) {
+								Thread thread = new Thread(r, "image-cache");
+								thread.setDaemon(true);
+								return thread;
+							}
+						});
+
+			workers.execute(new Loader(fileNameOrUrl, width, height));
 		}
 
-		return ii;
+		return placeholder;
+	}
+
+	/**
+	 * Is the image or its scaled variant in the cache.
+	 * 
+	 * @param fileNameOrUrl
+	 *            A file name or an URL pointing at the image.
+	 * @param width
+	 *            The width of the variant, zero for the image itself.
+	 * @param height
+	 *            The height of the variant, zero for the image itself.
+	 * @return True if the image is ready.
+	 */
+	public synchronized boolean isReady(String fileNameOrUrl, int width,
+			int height) {
+		return imageCache.containsKey(variantKey(fileNameOrUrl, width, height));
+	}
+
+	/**
+	 * Estimated memory used by the images in the cache, in bytes.
+	 */
+	public synchronized long getMemory() {
+		return memory;
+	}
+
+	/**
+	 * Maximum memory used by the images in the cache, in bytes.
+	 */
+	public synchronized long getMaxMemory() {
+		return maxMemory;
 	}
 
 	/**
@@ -159,4 +308,233 @@ public class ImageCache {
 	public Image getDummyImage() {
 		return dummy;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The 16x16 image returned while an image is loaded.
+	 * 
+	 * @return An image.
+	 */
+	public Image getPlaceholderImage() {
+		return placeholder;
+	}
+
+	// Command
+
+	/**
+	 * Set the maximum memory used by the images in the cache. The least
+	 * recently used images are released if needed.
+	 * 
+	 * @param bytes
+	 *            The memory in bytes.
+	 */
+	public synchronized void setMaxMemory(long bytes) {
+		maxMemory = bytes;
+		evict(null);
+	}
+
+	/**
+	 * Set the number of worker threads that read and scale images. This must
+	 * be called before the first asynchronous request.
+	 * 
+	 * @param count
+	 *            The number of threads.
+	 */
+	public synchronized void setWorkerCount(int count) {
+		workerCount = Math.max(1, count);
+	}
+
+	/**
+	 * Set the action run in the Swing thread each time an image requested
+	 * asynchronously is ready, for example a repaint of the view or a frame
+	 * request of the viewer.
+	 * 
+	 * @param callback
+	 *            The action, or null to remove it.
+	 */
+	public synchronized void setRepaintCallback(Runnable callback) {
+		repaintCallback = callback;
+	}
+
+	/**
+	 * Release all the images and forget the images that were not found.
+	 */
+	public synchronized void clear() {
+		imageCache.clear();
+		notFound.clear();
+		memory = 0;
+	}
+
+	// Utility
+
+	/**
+	 * Key of an image or of one of its scaled variants in the cache.
+	 */
+	protected static String variantKey(String fileNameOrUrl, int width,
+			int height) {
+		if (width <= 0 || height <= 0)
+			return fileNameOrUrl;
+
+		return String.format("%s@%dx%d", fileNameOrUrl, width, height);
+	}
+
+	/**
+	 * Read an image and store it in the cache, or remember it was not found.
+	 * 
+	 * @param fileNameOrUrl
+	 *            A file name or an URL pointing at the image.
+	 * @return The image or null if not found.
+	 */
+	protected Image load(String fileNameOrUrl) {
+		Image ii = read(fileNameOrUrl);
+
+		synchronized (this) {
+			if (ii == null)
+				notFound.add(fileNameOrUrl);
+			else
+				put(fileNameOrUrl, ii);
+		}
+
+		return ii;
+	}
+
+	/**
+	 * Read an image from the class path, an URL or a file.
+	 * 
+	 * @param fileNameOrUrl
+	 *            A file name or an URL pointing at the image.
+	 * @return The image or null if it cannot be read.
+	 */
+	protected Image read(String fileNameOrUrl) {
+		URL url = ClassLoader.getSystemClassLoader().getResource(fileNameOrUrl);
+
+		if (url != null) {
+			try {
+				return ImageIO.read(url);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		} else {
+			try {
+				url = new URL(fileNameOrUrl);
+
+				return ImageIO.read(url);
+			} catch (Exception e) {
+				try {
+					Image ii = ImageIO.read(new File(fileNameOrUrl));
+
+					if (ii != null)
+						return ii;
+				} catch (IOException ee) {
+				}
+
+				System.err.printf("Cannot read image '%s'%n", fileNameOrUrl);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Draw an image at another size, with bilinear interpolation.
+	 */
+	protected Image scale(Image image, int width, int height) {
+		BufferedImage img = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = img.createGraphics();
+
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2.drawImage(image, 0, 0, width, height, null);
+		g2.dispose();
+
+		return img;
+	}
+
+	/**
+	 * Estimated memory used by a decoded image, four bytes per pixel.
+	 */
+	protected static long sizeOf(Image image) {
+		return 4L * Math.max(0, image.getWidth(null))
+				* Math.max(0, image.getHeight(null));
+	}
+
+	/**
+	 * Store an image in the cache and release the least recently used ones if
+	 * the cache is full. The caller must hold the lock of the cache.
+	 */
+	protected void put(String key, Image image) {
+		Image old = imageCache.put(key, image);
+
+		if (old != null)
+			memory -= sizeOf(old);
+
+		memory += sizeOf(image);
+		evict(key);
+	}
+
+	/**
+	 * Release the least recently used images until the memory fits in the
+	 * maximum. The caller must hold the lock of the cache.
+	 * 
+	 * @param keep
+	 *            Key of an image never released, or null.
+	 */
+	protected void evict(String keep) {
+		Iterator<Map.Entry<String, Image>> i = imageCache.entrySet()
+				.iterator();
+
+		while (memory > maxMemory && i.hasNext()) {
+			Map.Entry<String, Image> entry = i.next();
+
+			if (!entry.getKey().equals(keep)) {
+				memory -= sizeOf(entry.getValue());
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Read and scale an image in a worker thread, then run the repaint
+	 * callback.
+	 */
+	protected class Loader implements Runnable {
+		protected String name;
+
+		protected int width, height;
+
+		public Loader(String name, int width, int height) {
+			this.name = name;
+			this.width = width;
+			this.height = height;
+		}
+
+		public void run() {
+			String key = variantKey(name, width, height);
+			Image ii;
+			Runnable callback;
+
+			synchronized (ImageCache.this) {
+				ii = imageCache.get(name);
+			}
+
+			if (ii == null)
+				ii = load(name);
+
+			Image scaled = null;
+
+			if (ii != null && !key.equals(name))
+				scaled = scale(ii, width, height);
+
+			synchronized (ImageCache.this) {
+				if (scaled != null)
+					put(key, scaled);
+
+				loading.remove(key);
+				callback = repaintCallback;
+			}
+
+			if (ii != null && callback != null)
+				SwingUtilities.invokeLater(callback);
+		}
+	}
+}